@@ -0,0 +1,89 @@
+package uk.ac.soton.comp1206.bench;
+
+import java.util.SplittableRandom;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+
+/**
+ * Set up shared by the benchmarks
+ */
+class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Turn logging down to warnings. The game logs every move at info, which would swamp what is being measured.
+     */
+    static void quietLogging() {
+        Configurator.setRootLevel(Level.WARN);
+    }
+
+    /**
+     * Fill a board the way a game does, playing random pieces and clearing completed lines, until a fraction of it is
+     * filled
+     * @param size the width and height of the board
+     * @param fill the fraction of blocks to fill
+     * @param random the source of the pieces and positions
+     * @return the board
+     */
+    static Grid filledGrid(int size, double fill, SplittableRandom random) {
+        Grid grid = new Grid(size, size);
+        int target = (int) (fill * size * size);
+        int filled = 0;
+        int misses = 0;
+        while(filled < target) {
+            GamePiece piece = GamePiece.createPiece(random.nextInt(GamePiece.PIECES), random.nextInt(GamePiece.ROTATIONS));
+            int x = random.nextInt(size);
+            int y = random.nextInt(size);
+            if(grid.canPlayPiece(piece, x, y)) {
+                grid.playPiece(piece, x, y);
+                grid.clearFullLines();
+                filled = count(grid);
+                misses = 0;
+            } else if(++misses > size * size * 100) {
+                //Clogged up short of the target, which only happens on small boards with high targets
+                break;
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Find the blocks a piece fills when played
+     * @param piece the piece
+     * @param x the column it is centred on
+     * @param y the row it is centred on
+     * @param size the width and height of the board
+     * @return the x and y of each block, in pairs
+     */
+    static int[] blocks(GamePiece piece, int x, int y, int size) {
+        Grid empty = new Grid(size, size);
+        empty.playPiece(piece, x, y);
+        int[] blocks = new int[2 * count(empty)];
+        int b = 0;
+        for(int blockY = 0; blockY < size; blockY++) {
+            for(int blockX = 0; blockX < size; blockX++) {
+                if(empty.isFilled(blockX, blockY)) {
+                    blocks[b++] = blockX;
+                    blocks[b++] = blockY;
+                }
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Count the filled blocks on a board
+     */
+    private static int count(Grid grid) {
+        int filled = 0;
+        for(int y = 0; y < grid.getRows(); y++) {
+            filled += grid.getRowCount(y);
+        }
+        return filled;
+    }
+
+}
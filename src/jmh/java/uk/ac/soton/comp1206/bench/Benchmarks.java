@@ -0,0 +1,151 @@
+package uk.ac.soton.comp1206.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the allocation profiler and checks them against a saved baseline.
+ *
+ * Each run writes JMH's full results to target/jmh-result.json and a summary of time and allocation per operation to
+ * the file given with --save. Given a summary from an earlier run with --baseline, every benchmark which has become
+ * slower or allocates more, by more than the tolerance and the measurement error, is reported and the exit code is 1,
+ * so a build can fail on it. Any other arguments are passed to JMH, for example a pattern to run only some benchmarks.
+ *
+ * Build and run with: mvn -P jmh package, then java -jar target/benchmarks.jar [--save file] [--baseline file]
+ * [JMH options]
+ */
+public class Benchmarks {
+
+    /**
+     * How much slower, or how much more allocation, counts as a regression
+     */
+    private static final double TOLERANCE = 0.10;
+
+    /**
+     * Allocation differences of less than this are ignored, in bytes per operation
+     */
+    private static final double ALLOCATION_SLACK = 8;
+
+    /**
+     * The name the GC profiler gives the bytes allocated per operation
+     */
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    /**
+     * Run the benchmarks
+     * @param args --save and --baseline with a file each, then any JMH options
+     * @throws Exception if JMH fails or a summary cannot be read or written
+     */
+    public static void main(String[] args) throws Exception {
+        Path save = null;
+        Path baseline = null;
+        List<String> jmhArgs = new ArrayList<>();
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "--save" -> save = Path.of(args[++i]);
+                case "--baseline" -> baseline = Path.of(args[++i]);
+                default -> jmhArgs.add(args[i]);
+            }
+        }
+
+        Options options = new OptionsBuilder()
+            .parent(new CommandLineOptions(jmhArgs.toArray(new String[0])))
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result("target/jmh-result.json")
+            .build();
+        Map<String, double[]> results = summarise(new Runner(options).run());
+
+        if(save != null) {
+            List<String> lines = new ArrayList<>();
+            results.forEach((name, result) -> lines.add(name + "\t" + result[0] + "\t" + result[1] + "\t" + result[2]));
+            Files.write(save, lines);
+            System.out.println("Saved the results to " + save);
+        }
+        if(baseline != null && !compare(load(baseline), results)) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Reduce the results to the time, its error and the allocation of each benchmark
+     * @return {time, error, bytes allocated} per operation, by benchmark name and parameters
+     */
+    private static Map<String, double[]> summarise(Collection<RunResult> runs) {
+        Map<String, double[]> results = new HashMap<>();
+        for(RunResult run : runs) {
+            BenchmarkParams params = run.getParams();
+            StringBuilder name = new StringBuilder(params.getBenchmark());
+            for(String key : params.getParamsKeys()) {
+                name.append(' ').append(key).append('=').append(params.getParam(key));
+            }
+            Result<?> time = run.getPrimaryResult();
+            double allocated = Double.NaN;
+            //JMH hands the secondary results back in a map of raw Results, so each is read out as a Result<?>
+            Map<String, ?> secondaries = run.getSecondaryResults();
+            for(String key : secondaries.keySet()) {
+                if(key.endsWith(ALLOCATION)) {
+                    Result<?> allocation = run.getSecondaryResults().get(key);
+                    allocated = allocation.getScore();
+                }
+            }
+            results.put(name.toString(), new double[] {time.getScore(), time.getScoreError(), allocated});
+        }
+        return results;
+    }
+
+    /**
+     * Read a summary written by --save
+     */
+    private static Map<String, double[]> load(Path path) throws IOException {
+        Map<String, double[]> results = new HashMap<>();
+        for(String line : Files.readAllLines(path)) {
+            String[] parts = line.split("\t");
+            results.put(parts[0], new double[] {Double.parseDouble(parts[1]), Double.parseDouble(parts[2]),
+                Double.parseDouble(parts[3])});
+        }
+        return results;
+    }
+
+    /**
+     * Report every benchmark that is slower or allocates more than its baseline
+     * @return true if nothing regressed
+     */
+    private static boolean compare(Map<String, double[]> baseline, Map<String, double[]> results) {
+        boolean passed = true;
+        for(Map.Entry<String, double[]> entry : results.entrySet()) {
+            double[] before = baseline.get(entry.getKey());
+            if(before == null) {
+                continue;
+            }
+            double[] after = entry.getValue();
+            //Only a slowdown bigger than both the tolerance and the errors of the two runs counts
+            if(after[0] > before[0] * (1 + TOLERANCE) && after[0] - after[1] > before[0] + before[1]) {
+                System.out.printf("REGRESSION %s: %.2f -> %.2f ns/op%n", entry.getKey(), before[0], after[0]);
+                passed = false;
+            }
+            if(after[2] > before[2] * (1 + TOLERANCE) + ALLOCATION_SLACK) {
+                System.out.printf("REGRESSION %s: %.0f -> %.0f B/op allocated%n", entry.getKey(), before[2], after[2]);
+                passed = false;
+            }
+        }
+        System.out.println(passed ? "No regressions against the baseline" : "Regressions against the baseline");
+        return passed;
+    }
+
+}
@@ -0,0 +1,112 @@
+package uk.ac.soton.comp1206.bench;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.soton.comp1206.component.CellSet;
+import uk.ac.soton.comp1206.component.GameBlockCoordinate;
+
+/**
+ * Benchmarks holding cleared lines as GameBlockCoordinates in a HashSet, as the board used to be handed them to fade
+ * out, against the packed CellSet which replaced it
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CoordinateBenchmark {
+
+    /**
+     * The width and height of the board
+     */
+    @Param({"5", "16", "64"})
+    public int size;
+
+    private Set<GameBlockCoordinate> cleared;
+    private CellSet cells;
+    private CellSet packedCleared;
+    private int next;
+
+    /**
+     * Build a set holding one cleared row and column
+     */
+    @Setup
+    public void setup() {
+        BenchmarkSupport.quietLogging();
+        cleared = clearCross(size / 2);
+        cells = new CellSet(size, size);
+        packedCleared = new CellSet(size, size);
+        packedCleared.addRow(size / 2);
+        packedCleared.addColumn(size / 2);
+    }
+
+    /**
+     * Build the set of blocks for a cleared row and column crossing, as Game.afterPiece does
+     * @return the set
+     */
+    @Benchmark
+    public Set<GameBlockCoordinate> addLines() {
+        return clearCross(next++ % size);
+    }
+
+    /**
+     * Look up new coordinates in the set, so each lookup has to work out a hash
+     * @return whether the coordinate is in the set
+     */
+    @Benchmark
+    public boolean contains() {
+        int i = next++;
+        return cleared.contains(new GameBlockCoordinate(i % size, (i / size) % size));
+    }
+
+    /**
+     * Fill the reused CellSet with a cleared row and column crossing, as Game.afterPiece now does
+     * @return the set
+     */
+    @Benchmark
+    public CellSet addLinesPacked() {
+        int line = next++ % size;
+        cells.clear();
+        cells.addRow(line);
+        cells.addColumn(line);
+        return cells;
+    }
+
+    /**
+     * Look up blocks in the CellSet
+     * @return whether the block is in the set
+     */
+    @Benchmark
+    public boolean containsPacked() {
+        int i = next++;
+        return packedCleared.contains(i % size, (i / size) % size);
+    }
+
+    /**
+     * Build the set of blocks in row and column line
+     */
+    private Set<GameBlockCoordinate> clearCross(int line) {
+        Set<GameBlockCoordinate> coords = new HashSet<>();
+        for(int x = 0; x < size; x++) {
+            coords.add(new GameBlockCoordinate(x, line));
+        }
+        for(int y = 0; y < size; y++) {
+            coords.add(new GameBlockCoordinate(line, y));
+        }
+        return coords;
+    }
+
+}
@@ -0,0 +1,107 @@
+package uk.ac.soton.comp1206.bench;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.GamePiece;
+
+/**
+ * Benchmarks Game.afterPiece, which turns the lines the engine cleared into the blocks to fade out.
+ *
+ * The board is filled except for the blocks of one piece and one block in each other row and column. The piece is then
+ * played, so it completes every row and column it touches - the most lines one piece can clear. afterPiece only reads
+ * what the engine cleared, so it can be called over and over on the same state.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameBenchmark {
+
+    /**
+     * The piece played to clear the lines, three blocks in a line
+     */
+    private static final int PIECE = 0;
+
+    /**
+     * The width and height of the board
+     */
+    @Param({"5", "16", "64"})
+    public int size;
+
+    private Game game;
+
+    /**
+     * Fill the board and play the piece that clears it
+     */
+    @Setup
+    public void setup() {
+        BenchmarkSupport.quietLogging();
+        GameEngine engine = new GameEngine(size, size, () -> PIECE);
+        int centre = size / 2;
+        int[] gap = BenchmarkSupport.blocks(GamePiece.createPiece(PIECE), centre, centre, size);
+        for(int y = 0; y < size; y++) {
+            for(int x = 0; x < size; x++) {
+                engine.fill(x, y, 1);
+            }
+        }
+        boolean[] pieceCols = new boolean[size];
+        boolean[] pieceRows = new boolean[size];
+        for(int b = 0; b < gap.length; b += 2) {
+            engine.fill(gap[b], gap[b + 1], 0);
+            pieceCols[gap[b]] = true;
+            pieceRows[gap[b + 1]] = true;
+        }
+
+        //Leave a hole in every other row and column, away from the piece, so only the piece's lines complete
+        int[] otherCols = others(pieceCols);
+        int[] otherRows = others(pieceRows);
+        for(int i = 0; i < Math.max(otherCols.length, otherRows.length); i++) {
+            engine.fill(otherCols[i % otherCols.length], otherRows[i % otherRows.length], 0);
+        }
+        engine.start();
+        if(!engine.play(centre, centre) || engine.getLinesCleared() == 0) {
+            throw new IllegalStateException("The piece did not clear any lines");
+        }
+        game = new Game(engine) { };
+    }
+
+    /**
+     * Work out the blocks to fade out and update the score properties
+     * @return the number of blocks to fade out
+     */
+    @Benchmark
+    public int afterPiece() {
+        game.afterPiece();
+        return game.getCoords().size();
+    }
+
+    /**
+     * Find the lines not covered by the piece
+     */
+    private static int[] others(boolean[] covered) {
+        int[] others = new int[covered.length];
+        int count = 0;
+        for(int i = 0; i < covered.length; i++) {
+            if(!covered[i]) {
+                others[count++] = i;
+            }
+        }
+        return Arrays.copyOf(others, count);
+    }
+
+}
@@ -0,0 +1,144 @@
+package uk.ac.soton.comp1206.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+
+/**
+ * Benchmarks checking and playing pieces on a Grid part way through a game.
+ *
+ * The board is filled the way a game fills it, by playing random pieces and clearing any lines they complete, until
+ * the fill level is reached. The moves measured are drawn in advance, so the benchmark loop only indexes an array.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GridBenchmark {
+
+    /**
+     * The number of moves drawn in advance, a power of two so the index can wrap with a mask
+     */
+    private static final int MOVES = 1024;
+
+    /**
+     * The width and height of the board
+     */
+    @Param({"5", "16"})
+    public int size;
+
+    /**
+     * The fraction of the board filled before measuring
+     */
+    @Param({"0.2", "0.4", "0.6"})
+    public double fill;
+
+    private Grid grid;
+
+    //Random moves, legal or not, for canPlayPiece
+    private final GamePiece[] pieces = new GamePiece[MOVES];
+    private final int[] xs = new int[MOVES];
+    private final int[] ys = new int[MOVES];
+
+    //Legal moves for playPiece, with the blocks each one fills so it can be undone
+    private GamePiece[] legalPieces;
+    private int[] legalXs;
+    private int[] legalYs;
+    private int[][] legalBlocks;
+
+    private int next;
+
+    /**
+     * Fill the board and draw the moves
+     */
+    @Setup
+    public void setup() {
+        BenchmarkSupport.quietLogging();
+        SplittableRandom random = new SplittableRandom(size * 31L + (long) (fill * 100));
+        grid = BenchmarkSupport.filledGrid(size, fill, random);
+
+        List<int[]> legal = new ArrayList<>();
+        for(int i = 0; i < MOVES; i++) {
+            pieces[i] = GamePiece.createPiece(random.nextInt(GamePiece.PIECES), random.nextInt(GamePiece.ROTATIONS));
+            xs[i] = random.nextInt(size);
+            ys[i] = random.nextInt(size);
+        }
+        //Keep drawing until there are enough legal moves, the fuller boards turn most of them down
+        for(int attempt = 0; legal.size() < MOVES && attempt < MOVES * 1000; attempt++) {
+            int piece = random.nextInt(GamePiece.PIECES);
+            int rotation = random.nextInt(GamePiece.ROTATIONS);
+            int x = random.nextInt(size);
+            int y = random.nextInt(size);
+            if(grid.canPlayPiece(GamePiece.createPiece(piece, rotation), x, y)) {
+                legal.add(new int[] {piece, rotation, x, y});
+            }
+        }
+        if(legal.isEmpty()) {
+            throw new IllegalStateException("No legal moves on a board filled to " + fill);
+        }
+
+        legalPieces = new GamePiece[MOVES];
+        legalXs = new int[MOVES];
+        legalYs = new int[MOVES];
+        legalBlocks = new int[MOVES][];
+        for(int i = 0; i < MOVES; i++) {
+            int[] move = legal.get(i % legal.size());
+            legalPieces[i] = GamePiece.createPiece(move[0], move[1]);
+            legalXs[i] = move[2];
+            legalYs[i] = move[3];
+            legalBlocks[i] = BenchmarkSupport.blocks(legalPieces[i], move[2], move[3], size);
+        }
+    }
+
+    /**
+     * Check whether a random piece fits at a random position
+     * @return whether it fits
+     */
+    @Benchmark
+    public boolean canPlayPiece() {
+        int i = next++ & (MOVES - 1);
+        return grid.canPlayPiece(pieces[i], xs[i], ys[i]);
+    }
+
+    /**
+     * Play a piece where it fits, then empty the blocks it filled again so the board stays at its fill level.
+     * The undo is a few set calls, so this measures slightly more than playPiece alone.
+     * @return the grid
+     */
+    @Benchmark
+    public Grid playPiece() {
+        int i = next++ & (MOVES - 1);
+        grid.playPiece(legalPieces[i], legalXs[i], legalYs[i]);
+        int[] blocks = legalBlocks[i];
+        for(int b = 0; b < blocks.length; b += 2) {
+            grid.set(blocks[b], blocks[b + 1], 0);
+        }
+        return grid;
+    }
+
+    /**
+     * Find every full row and column, as the engine does after each piece
+     * @return the full rows and columns
+     */
+    @Benchmark
+    public long fullLines() {
+        return grid.fullRows() ^ grid.fullCols();
+    }
+
+}
@@ -0,0 +1,60 @@
+package uk.ac.soton.comp1206.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.soton.comp1206.game.GamePiece;
+
+/**
+ * Benchmarks creating and rotating GamePieces, which happens on every piece drawn and every rotation the player or a
+ * search makes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PieceBenchmark {
+
+    private GamePiece piece;
+    private int next;
+
+    /**
+     * Create the piece to rotate
+     */
+    @Setup
+    public void setup() {
+        BenchmarkSupport.quietLogging();
+        piece = GamePiece.createPiece(GamePiece.PIECES - 1);
+    }
+
+    /**
+     * Create each piece in each rotation in turn
+     * @return the piece
+     */
+    @Benchmark
+    public GamePiece createPiece() {
+        int i = next++;
+        return GamePiece.createPiece(i % GamePiece.PIECES, i & (GamePiece.ROTATIONS - 1));
+    }
+
+    /**
+     * Rotate a piece once clockwise and read its shape, as the board does to draw it
+     * @return the shape of the rotated piece
+     */
+    @Benchmark
+    public long[] rotate() {
+        piece.rotate();
+        return piece.getRowMasks();
+    }
+
+}
@@ -1,4 +1,5 @@
 module uk.ac.soton.comp1206 {
+    requires java.management;
     requires java.scripting;
     requires javafx.controls;
     requires javafx.fxml;
@@ -13,4 +14,6 @@ module uk.ac.soton.comp1206 {
     exports uk.ac.soton.comp1206.event;
     exports uk.ac.soton.comp1206.component;
     exports uk.ac.soton.comp1206.game;
+    exports uk.ac.soton.comp1206.sim;
+    exports uk.ac.soton.comp1206.ai;
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+package uk.ac.soton.comp1206.ai;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import javafx.application.Platform;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.LineClearedListener;
+import uk.ac.soton.comp1206.event.NextPieceListener;
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.GamePiece;
+
+/**
+ * Plays a Game, or a MultiplayerGame, on its own, through the same calls a player's clicks and keys make.
+ *
+ * Each time a new piece is ready the AutoPlayer takes a snapshot of the game and searches it on a background thread,
+ * within a time budget of at most half the piece's timer. The chosen move is then made on the JavaFX thread by
+ * swapping, rotating and playing the piece as a player would.
+ */
+public class AutoPlayer implements NextPieceListener {
+
+    private static final Logger logger = LogManager.getLogger(AutoPlayer.class);
+
+    /**
+     * The most time spent choosing each move, in milliseconds
+     */
+    public static final long DEFAULT_BUDGET_MILLIS = 400;
+
+    /**
+     * The number of entries in the transposition table of the default search
+     */
+    public static final int DEFAULT_TABLE_SIZE = 1 << 18;
+
+    private final Game game;
+    private final ExpectimaxSearch search;
+    private final long budgetMillis;
+    private final LineClearedListener lineClearedListener;
+
+    /**
+     * Runs the searches, one at a time, off the JavaFX thread
+     */
+    private final ExecutorService thinker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "AutoPlayer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Counts the pieces handed to the player, so a move worked out for an older piece is never played
+     */
+    private int turn;
+
+    /**
+     * Create an auto player with the default search and budget
+     * @param game the game to play
+     * @param lineClearedListener told about the blocks each move clears, as the scene is after a click. May be null.
+     */
+    public AutoPlayer(Game game, LineClearedListener lineClearedListener) {
+        this(game, new ExpectimaxSearch(new Evaluator(), ForkJoinPool.commonPool(),
+            new TranspositionTable(DEFAULT_TABLE_SIZE)), DEFAULT_BUDGET_MILLIS, lineClearedListener);
+    }
+
+    /**
+     * Create an auto player
+     * @param game the game to play
+     * @param search the search choosing each move
+     * @param budgetMillis the most time spent choosing each move, in milliseconds
+     * @param lineClearedListener told about the blocks each move clears, as the scene is after a click. May be null.
+     */
+    public AutoPlayer(Game game, ExpectimaxSearch search, long budgetMillis, LineClearedListener lineClearedListener) {
+        this.game = game;
+        this.search = search;
+        this.budgetMillis = budgetMillis;
+        this.lineClearedListener = lineClearedListener;
+    }
+
+    /**
+     * Start playing, beginning with the piece in play now if there is one
+     */
+    public void start() {
+        logger.info("Auto player taking over");
+        game.setOnNextPiece(this);
+        if(game.getCurrentPiece() != null && !game.getGameEnd()) {
+            nextPiece(game.getCurrentPiece(), game.getFollowingPiece());
+        }
+    }
+
+    /**
+     * Stop playing. Any move being worked out is thrown away, and the player cannot be started again.
+     */
+    public void stop() {
+        logger.info("Auto player handing back");
+        game.setOnNextPiece(null);
+        turn++;
+        thinker.shutdownNow();
+    }
+
+    /**
+     * Take a snapshot of the new piece and start working out where to play it. Called on the JavaFX thread.
+     * @param currentPiece the piece to play
+     * @param followingPiece the piece after it
+     */
+    @Override
+    public void nextPiece(GamePiece currentPiece, GamePiece followingPiece) {
+        int thisTurn = ++turn;
+        Position position = Position.of(game.getEngine());
+        long budget = Math.min(budgetMillis, game.getTimerDelayLength() / 2);
+        thinker.execute(() -> {
+            Move move = search.search(position, budget * 1_000_000L);
+            logger.debug("Chose {} for {}", move, currentPiece);
+            if(search.getTable() != null) {
+                logger.debug("Transposition table: {}", search.getTable());
+            }
+            if(move != null) {
+                Platform.runLater(() -> play(move, thisTurn));
+            }
+        });
+    }
+
+    /**
+     * Make a move, unless the game has moved on since it was worked out. Called on the JavaFX thread.
+     */
+    private void play(Move move, int moveTurn) {
+        if(moveTurn != turn || game.getGameEnd() || game.getCurrentPiece() == null) {
+            return;
+        }
+        if(move.isSwap()) {
+            game.swapCurrentPiece();
+        }
+        int turns = Math.floorMod(move.getRotation() - game.getCurrentPiece().getRotation(), GamePiece.ROTATIONS);
+        for(int i = 0; i < turns; i++) {
+            game.rotateCurrentPieceClockwise();
+        }
+        game.playPiecePostSteps(move.getX(), move.getY());
+        if(lineClearedListener != null) {
+            lineClearedListener.whenLineCleared(game.getCoords());
+        }
+    }
+
+}
@@ -0,0 +1,212 @@
+package uk.ac.soton.comp1206.ai;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs the work of computer opponents within a fixed share of the CPU, so however many of them there are the player's
+ * own game stays smooth.
+ *
+ * Tasks run on a small ForkJoinPool of low priority threads, which the opponents' searches fork onto too, so all of
+ * their work happens on threads the scheduler knows about. A clock thread ticks every few milliseconds. Each tick adds
+ * CPU time to a budget at the rate allowed, then takes off the CPU time the pool's threads have actually used since the
+ * last tick, as the JVM measures it. Tasks that are due only start while the budget is in credit, oldest first. When
+ * the opponents want more than their share their moves simply come later; nothing else is slowed down.
+ */
+public class BotScheduler {
+
+    private static final Logger logger = LogManager.getLogger(BotScheduler.class);
+
+    /**
+     * The CPU the opponents may use between them by default, in cores
+     */
+    public static final double DEFAULT_CORES = 0.5;
+
+    /**
+     * How often the budget is topped up and due tasks are started, in milliseconds
+     */
+    private static final long TICK_MILLIS = 5;
+
+    /**
+     * The most CPU time, per core allowed, the budget can save up while the opponents are idle, in nanoseconds
+     */
+    private static final long BURST_NANOS = 50_000_000L;
+
+    private final double cores;
+    private final int threads;
+    private final ForkJoinPool pool;
+    private final ScheduledExecutorService clock = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "BotClock");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The tasks which are due but waiting for budget. Only used on the clock thread.
+     */
+    private final Deque<Runnable> ready = new ArrayDeque<>();
+
+    /**
+     * The CPU time of each thread of the pool at the last tick
+     */
+    private final Map<Thread, Long> workers = new ConcurrentHashMap<>();
+
+    private final ThreadMXBean cpu = ManagementFactory.getThreadMXBean();
+    private final boolean measured = cpu.isThreadCpuTimeSupported();
+    private final AtomicInteger running = new AtomicInteger();
+
+    /**
+     * Time tasks have taken by the clock, charged instead of CPU time where the JVM cannot measure it
+     */
+    private final AtomicLong unmeasured = new AtomicLong();
+
+    /**
+     * The CPU time charged to the tasks so far
+     */
+    private final AtomicLong used = new AtomicLong();
+
+    /**
+     * The CPU time the tasks may still use, which goes below zero when a task overruns. Only used on the clock thread.
+     */
+    private double credit;
+    private long lastTick = System.nanoTime();
+
+    /**
+     * Create a scheduler with the default share of the CPU
+     */
+    public BotScheduler() {
+        this(DEFAULT_CORES);
+    }
+
+    /**
+     * Create a scheduler
+     * @param cores the CPU the tasks may use between them, in cores. Half a core lets them use half of one core's
+     * time, spread across however many threads.
+     */
+    public BotScheduler(double cores) {
+        if(cores <= 0) {
+            throw new IllegalArgumentException("The CPU share must be positive, not " + cores);
+        }
+        this.cores = cores;
+        this.threads = (int) Math.ceil(cores);
+        this.pool = new ForkJoinPool(threads, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("Bot-" + thread.getPoolIndex());
+            thread.setPriority(Thread.MIN_PRIORITY);
+            workers.put(thread, 0L);
+            return thread;
+        }, null, false);
+        if(!measured) {
+            logger.warn("Thread CPU time cannot be measured, charging opponents for the time their tasks take instead");
+        }
+        clock.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get the pool the tasks run on. Searches for the tasks should use it too, so their work is counted.
+     * @return pool
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Run a task once a delay has passed and there is budget for it
+     * @param task the task
+     * @param delayMillis the least time to wait, in milliseconds
+     */
+    public void schedule(Runnable task, long delayMillis) {
+        try {
+            clock.schedule(() -> ready.add(task), delayMillis, TimeUnit.MILLISECONDS);
+        } catch(RejectedExecutionException e) {
+            logger.debug("Scheduler shut down, dropping a task");
+        }
+    }
+
+    /**
+     * Get the CPU time charged to the tasks so far
+     * @return the time in nanoseconds
+     */
+    public long getCpuNanos() {
+        return used.get();
+    }
+
+    /**
+     * Top up the budget, charge for the CPU used since the last tick and start what the budget allows
+     */
+    private void tick() {
+        long now = System.nanoTime();
+        credit = Math.min(credit + cores * (now - lastTick), cores * BURST_NANOS);
+        lastTick = now;
+
+        long spent = unmeasured.getAndSet(0);
+        if(measured) {
+            for(Map.Entry<Thread, Long> worker : workers.entrySet()) {
+                Thread thread = worker.getKey();
+                long time = cpu.getThreadCpuTime(thread.getId());
+                if(time < 0) {
+                    //Not started yet, or finished for good
+                    if(thread.getState() == Thread.State.TERMINATED) {
+                        workers.remove(thread);
+                    }
+                    continue;
+                }
+                spent += time - worker.getValue();
+                worker.setValue(time);
+            }
+        }
+        credit -= spent;
+        used.addAndGet(spent);
+
+        while(credit > 0 && running.get() < threads && !ready.isEmpty()) {
+            Runnable task = ready.poll();
+            running.incrementAndGet();
+            pool.execute(() -> run(task));
+        }
+    }
+
+    /**
+     * Run a task on the pool, never letting a failure stop the scheduler
+     */
+    private void run(Runnable task) {
+        long start = System.nanoTime();
+        try {
+            task.run();
+        } catch(RuntimeException e) {
+            if(pool.isShutdown()) {
+                logger.debug("Opponent task stopped by shutdown");
+            } else {
+                logger.error("Opponent task failed", e);
+            }
+        } finally {
+            if(!measured) {
+                unmeasured.addAndGet(System.nanoTime() - start);
+            }
+            running.decrementAndGet();
+        }
+    }
+
+    /**
+     * Stop running tasks. Tasks still waiting are dropped.
+     */
+    public void shutdown() {
+        logger.info("Opponents used {} ms of CPU", used.get() / 1_000_000);
+        clock.shutdownNow();
+        pool.shutdownNow();
+    }
+
+}
@@ -0,0 +1,188 @@
+package uk.ac.soton.comp1206.ai;
+
+import java.util.Arrays;
+import uk.ac.soton.comp1206.game.Bitboard;
+import uk.ac.soton.comp1206.game.GamePiece;
+
+/**
+ * Scores how good a board is to be left with, as a weighted sum of features of its row masks.
+ *
+ * Every feature is scaled by the size of the board, so the same weights work on any board. The REWARD weight is not a
+ * board feature: it converts the points a move scores into the same units, so the search can trade points now against
+ * a healthier board later.
+ */
+public class Evaluator {
+
+    /**
+     * The fraction of the board that is empty
+     */
+    public static final int EMPTY = 0;
+
+    /**
+     * The fraction of the board made up of empty blocks with no empty neighbour, which only a Dot can ever fill
+     */
+    public static final int ISOLATED = 1;
+
+    /**
+     * Changes between filled and empty along every row and column, per block
+     */
+    public static final int ROUGHNESS = 2;
+
+    /**
+     * How close the rows and columns are to being full, as the mean of the square of their fill
+     */
+    public static final int LINE_FILL = 3;
+
+    /**
+     * The fraction of pieces that could not be played anywhere
+     */
+    public static final int DEAD_PIECES = 4;
+
+    /**
+     * The weight of each point scored
+     */
+    public static final int REWARD = 5;
+
+    /**
+     * The number of weights
+     */
+    public static final int FEATURES = 6;
+
+    /**
+     * Hand-picked weights which play a sensible game
+     */
+    private static final double[] DEFAULT_WEIGHTS = {1.0, -2.0, -0.5, 0.5, -3.0, 0.002};
+
+    private final double[] weights;
+
+    /**
+     * Create an evaluator with the default weights
+     */
+    public Evaluator() {
+        this(DEFAULT_WEIGHTS);
+    }
+
+    /**
+     * Create an evaluator with the given weights
+     * @param weights one weight per feature, indexed by the feature constants
+     */
+    public Evaluator(double[] weights) {
+        if(weights.length != FEATURES) {
+            throw new IllegalArgumentException("Expected " + FEATURES + " weights but got " + weights.length);
+        }
+        this.weights = weights.clone();
+    }
+
+    /**
+     * Get a copy of the default weights
+     * @return weights
+     */
+    public static double[] defaultWeights() {
+        return DEFAULT_WEIGHTS.clone();
+    }
+
+    /**
+     * Get a copy of the weights of this evaluator
+     * @return weights
+     */
+    public double[] getWeights() {
+        return weights.clone();
+    }
+
+    /**
+     * Convert the points scored by a move into the units of the evaluation
+     * @param points the points scored
+     * @return the value of those points
+     */
+    public double reward(int points) {
+        return weights[REWARD] * points;
+    }
+
+    /**
+     * Score a board
+     * @param occupancy the row masks of the board
+     * @param cols number of columns
+     * @param rows number of rows
+     * @return the value of being left with this board, higher is better
+     */
+    public double evaluate(long[] occupancy, int cols, int rows) {
+        double[] features = new double[FEATURES];
+        features(occupancy, cols, rows, features);
+        double value = 0;
+        for(int i = 0; i < REWARD; i++) {
+            value += weights[i] * features[i];
+        }
+        return value;
+    }
+
+    /**
+     * Work out the features of a board
+     * @param occupancy the row masks of the board
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param features an array of FEATURES entries to fill in. The REWARD entry is left as 0.
+     */
+    public static void features(long[] occupancy, int cols, int rows, double[] features) {
+        long fullRow = Bitboard.fullRow(cols);
+        double cells = cols * rows;
+
+        int empty = 0;
+        int isolated = 0;
+        int transitions = 0;
+        double lineFill = 0;
+        int[] colCounts = new int[cols];
+        for(int y = 0; y < rows; y++) {
+            long row = occupancy[y];
+            long free = ~row & fullRow;
+            int filled = Long.bitCount(row);
+            empty += cols - filled;
+            lineFill += (double) filled * filled / ((double) cols * cols);
+
+            //An empty block is isolated when the blocks left, right, above and below it are filled or off the board
+            long neighbours = (free << 1) | (free >>> 1);
+            if(y > 0) neighbours |= ~occupancy[y - 1];
+            if(y < rows - 1) neighbours |= ~occupancy[y + 1];
+            isolated += Long.bitCount(free & ~neighbours);
+
+            //Changes along the row, and down to the next row
+            transitions += Long.bitCount((row ^ (row >>> 1)) & (fullRow >>> 1));
+            if(y < rows - 1) {
+                transitions += Long.bitCount((row ^ occupancy[y + 1]) & fullRow);
+            }
+
+            for(long bits = row; bits != 0; bits &= bits - 1) {
+                colCounts[Long.numberOfTrailingZeros(bits)]++;
+            }
+        }
+        for(int count : colCounts) {
+            lineFill += (double) count * count / ((double) rows * rows);
+        }
+
+        int dead = 0;
+        for(int piece = 0; piece < GamePiece.PIECES; piece++) {
+            if(!canPlayAnywhere(occupancy, rows, fullRow, piece)) {
+                dead++;
+            }
+        }
+
+        Arrays.fill(features, 0);
+        features[EMPTY] = empty / cells;
+        features[ISOLATED] = isolated / cells;
+        features[ROUGHNESS] = transitions / cells;
+        features[LINE_FILL] = lineFill / (cols + rows);
+        features[DEAD_PIECES] = (double) dead / GamePiece.PIECES;
+    }
+
+    private static boolean canPlayAnywhere(long[] occupancy, int rows, long fullRow, int piece) {
+        for(int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+            long[] pieceRows = GamePiece.rowMasks(piece, rotation);
+            for(int y = 0; y < rows; y++) {
+                if(Bitboard.legalColumns(occupancy, rows, fullRow, pieceRows, y) != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,457 @@
+package uk.ac.soton.comp1206.ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.Bitboard;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Zobrist;
+
+/**
+ * Chooses moves by expectimax search.
+ *
+ * The first ply plays the current piece, or the following piece after a swap. The second ply plays whichever of the
+ * two is left. The third ply is a chance node over the fifteen equally likely pieces that can spawn next, each played
+ * in its best place. Leaves are scored by an Evaluator, plus the value of the points scored on the way.
+ *
+ * The search deepens one ply at a time until it runs out of time and answers with the deepest search it finished, so
+ * it always has a move ready. Even the first ply keeps to the time allowed: if it cannot be finished in time, the best
+ * of the moves looked at so far is played. The candidate first moves are shared out across a ForkJoinPool, so every core works on
+ * the same decision.
+ *
+ * With a TranspositionTable, leaf evaluations and chance node values are cached by the Zobrist hash of their board, so
+ * boards reached by playing the two pieces in either order, or seen again on the next move, are only worked out once.
+ */
+public class ExpectimaxSearch {
+
+    private static final Logger logger = LogManager.getLogger(ExpectimaxSearch.class);
+
+    /**
+     * The deepest the search goes: the current piece, the following piece and one chance ply
+     */
+    public static final int MAX_DEPTH = 3;
+
+    /**
+     * The value of a move that could not be searched
+     */
+    private static final double NONE = Double.NEGATIVE_INFINITY;
+
+    private final Evaluator evaluator;
+    private final ForkJoinPool pool;
+
+    /**
+     * Caches leaf evaluations and chance node values, or null for no caching
+     */
+    private final TranspositionTable table;
+
+    /**
+     * Create a search using the common pool
+     * @param evaluator scores the boards at the leaves
+     */
+    public ExpectimaxSearch(Evaluator evaluator) {
+        this(evaluator, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a search using the given pool, without a transposition table
+     * @param evaluator scores the boards at the leaves
+     * @param pool the pool to search on
+     */
+    public ExpectimaxSearch(Evaluator evaluator, ForkJoinPool pool) {
+        this(evaluator, pool, null);
+    }
+
+    /**
+     * Create a search using the given pool and transposition table
+     * @param evaluator scores the boards at the leaves
+     * @param pool the pool to search on
+     * @param table caches values between the threads of a search and from one search to the next. Must only be shared
+     *              between searches with the same evaluator. May be null.
+     */
+    public ExpectimaxSearch(Evaluator evaluator, ForkJoinPool pool, TranspositionTable table) {
+        this.evaluator = evaluator;
+        this.pool = pool;
+        this.table = table;
+    }
+
+    /**
+     * Get the evaluator scoring the leaves
+     * @return evaluator
+     */
+    public Evaluator getEvaluator() {
+        return evaluator;
+    }
+
+    /**
+     * Get the transposition table
+     * @return the table, or null if there is none
+     */
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    /**
+     * Search as deep as the time budget allows
+     * @param position the position to move from
+     * @param budgetNanos the time allowed. If even the first ply does not fit, the best of the moves looked at is
+     *                    chosen, or the first legal move if there was no time to look at any.
+     * @return the best move found, or null if neither piece can be played anywhere
+     */
+    public Move search(Position position, long budgetNanos) {
+        return search(position, budgetNanos, null);
+    }
+
+    /**
+     * Search as deep as the time budget allows, stopping early if the search is no longer wanted
+     * @param position the position to move from
+     * @param budgetNanos the time allowed. If even the first ply does not fit, the best of the moves looked at is
+     *                    chosen, or the first legal move if there was no time to look at any.
+     * @param cancelled checked as the search goes, which stops as though out of time once it returns true. May be
+     *                  null.
+     * @return the best move found, or null if neither piece can be played anywhere
+     */
+    public Move search(Position position, long budgetNanos, BooleanSupplier cancelled) {
+        Limit limit = new Limit(System.nanoTime() + budgetNanos, cancelled);
+        Move best = search(position, 1, limit);
+        for(int depth = 2; depth <= MAX_DEPTH && best != null && !limit.expired(); depth++) {
+            try {
+                best = search(position, depth, limit);
+            } catch(SearchTimeout e) {
+                logger.debug("Out of time during depth {}, using depth {}", depth, depth - 1);
+                break;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Search to a fixed depth with no time limit
+     * @param position the position to move from
+     * @param depth the number of plies, from 1 to MAX_DEPTH
+     * @return the best move found, or null if neither piece can be played anywhere
+     */
+    public Move search(Position position, int depth) {
+        return search(position, depth, Limit.NONE);
+    }
+
+    /**
+     * Work out the value of a given move, searched to a fixed depth with no time limit, so it can be compared with
+     * the value of the best move
+     * @param position the position to move from
+     * @param move the move to value
+     * @param depth the number of plies, from 1 to MAX_DEPTH
+     * @return the value of the move
+     * @throws IllegalArgumentException if the move does not fit
+     */
+    public double value(Position position, Move move, int depth) {
+        int piece = move.isSwap() ? position.getFollowingPiece() : position.getCurrentPiece();
+        long[] placements = new long[GamePiece.ROTATIONS * position.getRows()];
+        Bitboard.legalPlacements(position.getOccupancy(), position.getRows(), Bitboard.fullRow(position.getCols()),
+            piece, placements);
+        int y = move.getY();
+        if(move.getRotation() < 0 || move.getRotation() >= GamePiece.ROTATIONS || y < 0 || y >= position.getRows()
+            || move.getX() < 0 || move.getX() >= position.getCols()
+            || (placements[move.getRotation() * position.getRows() + y] & (1L << move.getX())) == 0) {
+            throw new IllegalArgumentException("The move " + move + " does not fit");
+        }
+        return searchCandidate(position, move, depth, Limit.NONE);
+    }
+
+    private Move search(Position position, int depth, Limit limit) {
+        List<Move> candidates = new ArrayList<>();
+        addCandidates(position, false, candidates);
+        addCandidates(position, true, candidates);
+        if(candidates.isEmpty()) {
+            return null;
+        }
+
+        double[] values = new double[candidates.size()];
+        Arrays.fill(values, NONE);
+        pool.invoke(new CandidateTask(position, candidates, values, 0, candidates.size(), depth, limit));
+
+        //The first best candidate wins, so the same position always gives the same move
+        int bestIndex = 0;
+        for(int i = 1; i < values.length; i++) {
+            if(values[i] > values[bestIndex]) {
+                bestIndex = i;
+            }
+        }
+        return candidates.get(bestIndex).withValue(values[bestIndex]);
+    }
+
+    /**
+     * List every distinct placement of the piece that would be played first
+     */
+    private static void addCandidates(Position position, boolean swap, List<Move> candidates) {
+        int piece = swap ? position.getFollowingPiece() : position.getCurrentPiece();
+        if(swap && piece == position.getCurrentPiece()) {
+            //Swapping two of the same piece changes nothing
+            return;
+        }
+        int rows = position.getRows();
+        long[] occupancy = position.getOccupancy();
+        long fullRow = Bitboard.fullRow(position.getCols());
+        long[] placements = new long[GamePiece.ROTATIONS * rows];
+        Bitboard.legalPlacements(occupancy, rows, fullRow, piece, placements);
+        for(int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+            if(isRepeatRotation(piece, rotation)) continue;
+            for(int y = 0; y < rows; y++) {
+                for(long bits = placements[rotation * rows + y]; bits != 0; bits &= bits - 1) {
+                    candidates.add(new Move(swap, rotation, Long.numberOfTrailingZeros(bits), y, NONE));
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether a rotation of a piece has the same shape as an earlier rotation, so need not be searched again
+     */
+    private static boolean isRepeatRotation(int piece, int rotation) {
+        int mask = GamePiece.mask(piece, rotation);
+        for(int earlier = 0; earlier < rotation; earlier++) {
+            if(GamePiece.mask(piece, earlier) == mask) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Searches a range of candidate first moves, splitting the range in half until each task holds a single move
+     */
+    @SuppressWarnings("serial")
+    private class CandidateTask extends RecursiveAction {
+        private final Position position;
+        private final List<Move> candidates;
+        private final double[] values;
+        private final int from;
+        private final int to;
+        private final int depth;
+        private final Limit limit;
+
+        CandidateTask(Position position, List<Move> candidates, double[] values, int from, int to, int depth,
+                      Limit limit) {
+            this.position = position;
+            this.candidates = candidates;
+            this.values = values;
+            this.from = from;
+            this.to = to;
+            this.depth = depth;
+            this.limit = limit;
+        }
+
+        @Override
+        protected void compute() {
+            //A single ply is too cheap to be worth splitting finely
+            int threshold = depth == 1 ? 32 : 1;
+            if(to - from > threshold) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new CandidateTask(position, candidates, values, from, middle, depth, limit),
+                    new CandidateTask(position, candidates, values, middle, to, depth, limit));
+                return;
+            }
+            if(depth == 1) {
+                //A single ply is never abandoned, only cut short, so there is always a move to answer with. The
+                //candidates not reached keep the value NONE.
+                for(int i = from; i < to && !limit.expired(); i++) {
+                    values[i] = searchCandidate(position, candidates.get(i), depth, limit);
+                }
+                return;
+            }
+            for(int i = from; i < to; i++) {
+                values[i] = searchCandidate(position, candidates.get(i), depth, limit);
+            }
+        }
+    }
+
+    /**
+     * Search one candidate first move
+     */
+    private double searchCandidate(Position position, Move move, int depth, Limit limit) {
+        int cols = position.getCols();
+        int rows = position.getRows();
+        long[] before = position.getOccupancy();
+        long[] occupancy = position.getOccupancy();
+        int piece = move.isSwap() ? position.getFollowingPiece() : position.getCurrentPiece();
+        int next = move.isSwap() ? position.getCurrentPiece() : position.getFollowingPiece();
+
+        Bitboard.place(occupancy, GamePiece.rowMasks(piece, move.getRotation()), move.getX(), move.getY());
+        int points = clearLines(occupancy, cols, rows, position.getMultiplier());
+        int multiplier = points > 0 ? position.getMultiplier() + 1 : 1;
+        long hash = Zobrist.update(position.getHash(), before, occupancy, rows);
+        return evaluator.reward(points)
+            + continuation(occupancy, hash, cols, rows, multiplier, next, depth - 1, limit);
+    }
+
+    /**
+     * The value of a board with the given plies still to search
+     * @param next the piece to play next, or -1 for a chance ply
+     */
+    private double continuation(long[] occupancy, long hash, int cols, int rows, int multiplier, int next, int depth,
+                                Limit limit) {
+        if(depth == 0) {
+            return evaluate(occupancy, hash, cols, rows);
+        }
+        if(next >= 0) {
+            double best = best(occupancy, hash, cols, rows, multiplier, next, depth, limit);
+            return best == NONE ? evaluate(occupancy, hash, cols, rows) : best;
+        }
+
+        //Chance nodes are where different orders of play meet, so they are worth caching
+        long key = nodeKey(hash, multiplier, depth);
+        if(table != null) {
+            double cached = table.get(key, depth);
+            if(!Double.isNaN(cached)) {
+                return cached;
+            }
+        }
+
+        //Every piece is equally likely to spawn
+        double total = 0;
+        double stay = NONE;
+        for(int piece = 0; piece < GamePiece.PIECES; piece++) {
+            double best = best(occupancy, hash, cols, rows, multiplier, piece, depth, limit);
+            if(best == NONE) {
+                if(stay == NONE) {
+                    stay = evaluate(occupancy, hash, cols, rows);
+                }
+                best = stay;
+            }
+            total += best;
+        }
+        double value = total / GamePiece.PIECES;
+        if(table != null) {
+            table.put(key, depth, value);
+        }
+        return value;
+    }
+
+    /**
+     * Evaluate a leaf board, through the transposition table if there is one
+     */
+    private double evaluate(long[] occupancy, long hash, int cols, int rows) {
+        if(table == null) {
+            return evaluator.evaluate(occupancy, cols, rows);
+        }
+        long key = nodeKey(hash, 0, 0);
+        double value = table.get(key, 0);
+        if(Double.isNaN(value)) {
+            value = evaluator.evaluate(occupancy, cols, rows);
+            table.put(key, 0, value);
+        }
+        return value;
+    }
+
+    /**
+     * Combine the hash of a board with the rest of the state a value depends on. The multiplier changes the points
+     * scored below a node, and the depth how far it was searched.
+     */
+    private static long nodeKey(long hash, int multiplier, int depth) {
+        long salt = (multiplier * 31L + depth + 1) * 0x9E3779B97F4A7C15L;
+        salt ^= salt >>> 29;
+        return hash ^ salt;
+    }
+
+    /**
+     * The value of the best placement of a piece, followed by chance plies for whatever depth is left
+     * @return the value, or NONE if the piece cannot be played anywhere
+     */
+    private double best(long[] occupancy, long hash, int cols, int rows, int multiplier, int piece, int depth,
+                        Limit limit) {
+        limit.check();
+        long fullRow = Bitboard.fullRow(cols);
+        long[] placements = new long[GamePiece.ROTATIONS * rows];
+        if(!Bitboard.legalPlacements(occupancy, rows, fullRow, piece, placements)) {
+            return NONE;
+        }
+
+        long[] child = new long[rows];
+        double best = NONE;
+        for(int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+            if(isRepeatRotation(piece, rotation)) continue;
+            long[] pieceRows = GamePiece.rowMasks(piece, rotation);
+            for(int y = 0; y < rows; y++) {
+                for(long bits = placements[rotation * rows + y]; bits != 0; bits &= bits - 1) {
+                    System.arraycopy(occupancy, 0, child, 0, rows);
+                    Bitboard.place(child, pieceRows, Long.numberOfTrailingZeros(bits), y);
+                    int points = clearLines(child, cols, rows, multiplier);
+                    int childMultiplier = points > 0 ? multiplier + 1 : 1;
+                    long childHash = Zobrist.update(hash, occupancy, child, rows);
+                    double value = evaluator.reward(points)
+                        + continuation(child, childHash, cols, rows, childMultiplier, -1, depth - 1, limit);
+                    if(value > best) {
+                        best = value;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Clear any full lines and work out the points they score, in the same way as the GameEngine
+     * @return the points scored
+     */
+    private static int clearLines(long[] occupancy, int cols, int rows, int multiplier) {
+        long fullRow = Bitboard.fullRow(cols);
+        long clearedRows = Bitboard.fullRows(occupancy, rows, fullRow);
+        long clearedCols = Bitboard.fullCols(occupancy, rows, fullRow);
+        if((clearedRows | clearedCols) == 0) {
+            return 0;
+        }
+        Bitboard.clear(occupancy, rows, clearedRows, clearedCols);
+        int lineRows = Long.bitCount(clearedRows);
+        int lineCols = Long.bitCount(clearedCols);
+        int blocks = lineRows * cols + lineCols * rows - lineRows * lineCols;
+        return (lineRows + lineCols) * blocks * 10 * (multiplier + 1);
+    }
+
+    /**
+     * When a search must stop: a deadline, and a check for whether it is still wanted
+     */
+    private static final class Limit {
+        static final Limit NONE = new Limit(0, null);
+
+        private final long deadline;
+        private final BooleanSupplier cancelled;
+
+        Limit(long deadline, BooleanSupplier cancelled) {
+            this.deadline = deadline;
+            this.cancelled = cancelled;
+        }
+
+        /**
+         * Check whether the search is out of time or no longer wanted
+         */
+        boolean expired() {
+            return deadline != 0 && System.nanoTime() > deadline || cancelled != null && cancelled.getAsBoolean();
+        }
+
+        /**
+         * Abandon the search if it is out of time or no longer wanted
+         */
+        void check() {
+            if(expired()) {
+                throw SearchTimeout.INSTANCE;
+            }
+        }
+    }
+
+    /**
+     * Thrown to abandon a search that has run out of time. Shared and without a stack trace, as it is only a signal.
+     */
+    @SuppressWarnings("serial")
+    private static class SearchTimeout extends RuntimeException {
+        static final SearchTimeout INSTANCE = new SearchTimeout();
+
+        private SearchTimeout() {
+            super(null, null, false, false);
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package uk.ac.soton.comp1206.ai;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javafx.application.Platform;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Works out the best placement for the piece in play on a background thread, to show the player as a hint.
+ *
+ * Only the latest request matters: asking again cancels the search still running for the previous one, which gives
+ * up at its next check, and a result that comes back for an older request is dropped. The JavaFX thread only ever
+ * hands over a snapshot and is called back with the answer, so it never waits on a search.
+ */
+public class HintSearch {
+
+    private static final Logger logger = LogManager.getLogger(HintSearch.class);
+
+    /**
+     * The most time spent on each hint, in milliseconds, so it shows within a frame or two
+     */
+    public static final long DEFAULT_BUDGET_MILLIS = 25;
+
+    /**
+     * The number of entries in the transposition table of the default search
+     */
+    public static final int DEFAULT_TABLE_SIZE = 1 << 16;
+
+    private final ExpectimaxSearch search;
+    private final long budgetMillis;
+
+    /**
+     * Runs the searches, one at a time, off the JavaFX thread
+     */
+    private final ExecutorService hinter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Hints");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Counts the requests, so a search can tell when it has been overtaken
+     */
+    private final AtomicInteger generation = new AtomicInteger();
+
+    /**
+     * The search for the latest request, if it may still be running
+     */
+    private Future<?> pending;
+
+    /**
+     * Create a hint search with the default search and budget
+     */
+    public HintSearch() {
+        this(new ExpectimaxSearch(new Evaluator(), ForkJoinPool.commonPool(),
+            new TranspositionTable(DEFAULT_TABLE_SIZE)), DEFAULT_BUDGET_MILLIS);
+    }
+
+    /**
+     * Create a hint search
+     * @param search the search choosing each hint
+     * @param budgetMillis the most time spent on each hint, in milliseconds
+     */
+    public HintSearch(ExpectimaxSearch search, long budgetMillis) {
+        this.search = search;
+        this.budgetMillis = budgetMillis;
+    }
+
+    /**
+     * Start working out a hint, cancelling any hint still being worked out. Called on the JavaFX thread.
+     * @param position the position to find the best move in
+     * @param onHint called on the JavaFX thread with the best move, or null if there is none, unless another hint
+     *               has been asked for or the hints have been cancelled first
+     */
+    public void request(Position position, Consumer<Move> onHint) {
+        int request = generation.incrementAndGet();
+        if(pending != null) {
+            pending.cancel(false);
+        }
+        pending = hinter.submit(() -> {
+            Move move = search.search(position, budgetMillis * 1_000_000L, () -> generation.get() != request);
+            if(generation.get() != request) {
+                logger.debug("Dropped stale hint {}", move);
+                return;
+            }
+            Platform.runLater(() -> {
+                if(generation.get() == request) {
+                    onHint.accept(move);
+                }
+            });
+        });
+    }
+
+    /**
+     * Cancel the hint being worked out, if any, so it is never delivered
+     */
+    public void cancel() {
+        generation.incrementAndGet();
+        if(pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    /**
+     * Cancel any hint and stop the background thread. No more hints can be asked for.
+     */
+    public void shutdown() {
+        cancel();
+        hinter.shutdownNow();
+    }
+
+}
@@ -0,0 +1,103 @@
+package uk.ac.soton.comp1206.ai;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.GamePiece;
+
+/**
+ * A move chosen by the search: whether to swap first, which rotation to play the piece in, and where to play it
+ */
+public final class Move {
+
+    private final boolean swap;
+    private final int rotation;
+    private final int x;
+    private final int y;
+    private final double value;
+
+    /**
+     * Create a move
+     * @param swap whether to swap the current and following piece first
+     * @param rotation the rotation to play the piece in, counted clockwise from its unrotated shape
+     * @param x the column to play the centre of the piece on
+     * @param y the row to play the centre of the piece on
+     * @param value the value the search gave the move
+     */
+    public Move(boolean swap, int rotation, int x, int y, double value) {
+        this.swap = swap;
+        this.rotation = rotation;
+        this.x = x;
+        this.y = y;
+        this.value = value;
+    }
+
+    /**
+     * Check whether the current and following piece should be swapped first
+     * @return true to swap
+     */
+    public boolean isSwap() {
+        return swap;
+    }
+
+    /**
+     * Get the rotation to play the piece in
+     * @return rotation
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * Get the column to play on
+     * @return column
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Get the row to play on
+     * @return row
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Get the value the search gave the move
+     * @return value
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Make this move on a headless engine: swap if needed, turn the piece to the chosen rotation and play it
+     * @param engine the engine to play on
+     * @return true if the piece was played
+     */
+    public boolean playOn(GameEngine engine) {
+        if(swap) {
+            engine.swap();
+        }
+        int turns = Math.floorMod(rotation - engine.getCurrentPiece().getRotation(), GamePiece.ROTATIONS);
+        for(int i = 0; i < turns; i++) {
+            engine.rotateClockwise();
+        }
+        return engine.play(x, y);
+    }
+
+    /**
+     * Get a move with the same placement but a different value
+     * @param value the new value
+     * @return the move
+     */
+    Move withValue(double value) {
+        return new Move(swap, rotation, x, y, value);
+    }
+
+    @Override
+    public String toString() {
+        return (swap ? "swap, " : "") + "rotation " + rotation + " at " + x + "," + y;
+    }
+
+}
@@ -0,0 +1,181 @@
+package uk.ac.soton.comp1206.ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import javafx.application.Platform;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.PieceCatalogue;
+import uk.ac.soton.comp1206.game.Replayer;
+import uk.ac.soton.comp1206.game.ReplayLog;
+
+/**
+ * Grades every placement of a finished game against the best placement the search can find from the same position.
+ *
+ * The game is replayed from its ReplayLog, taking a snapshot of the position before each placement, and the positions
+ * are then searched in parallel across a pool. Each grade gives the expected points the move played gave up, worked
+ * out from the difference in value between it and the best move.
+ */
+public class MoveAnalyzer {
+
+    private static final Logger logger = LogManager.getLogger(MoveAnalyzer.class);
+
+    /**
+     * The depth each position is searched to, deep enough to see the next piece and quick enough for a long game to
+     * be graded in a second or two
+     */
+    public static final int DEFAULT_DEPTH = 2;
+
+    /**
+     * The number of entries in the transposition table of the default search
+     */
+    public static final int DEFAULT_TABLE_SIZE = 1 << 18;
+
+    private final ExpectimaxSearch search;
+    private final int depth;
+    private final ForkJoinPool pool;
+
+    /**
+     * Create an analyzer with the default search and depth, on the common pool
+     */
+    public MoveAnalyzer() {
+        this(new ExpectimaxSearch(new Evaluator(), ForkJoinPool.commonPool(),
+            new TranspositionTable(DEFAULT_TABLE_SIZE)), DEFAULT_DEPTH, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create an analyzer
+     * @param search the search to find the best moves and value the moves played with
+     * @param depth the number of plies to search each position, from 1 to ExpectimaxSearch.MAX_DEPTH
+     * @param pool the pool to grade the moves on
+     */
+    public MoveAnalyzer(ExpectimaxSearch search, int depth, ForkJoinPool pool) {
+        this.search = search;
+        this.depth = depth;
+        this.pool = pool;
+    }
+
+    /**
+     * Grade every placement of a game
+     * @param log the replay log of the game
+     * @return a grade for each placement, in the order they were played
+     * @throws IllegalStateException if the log does not describe a game that could have been played, or was played
+     *                               with a piece pack other than the standard one
+     */
+    public List<MoveGrade> analyze(ReplayLog log) {
+        if(!log.getPack().equals(PieceCatalogue.STANDARD)) {
+            //The search only knows the standard pieces, so it would grade the game against the wrong shapes
+            throw new IllegalStateException("Only games with the standard pieces can be analysed, not the "
+                + log.getPack() + " pieces");
+        }
+        List<Position> positions = new ArrayList<>();
+        List<Move> played = new ArrayList<>();
+        Replayer.replay(log, (engine, x, y) -> {
+            positions.add(Position.of(engine));
+            played.add(new Move(false, engine.getCurrentPiece().getRotation(), x, y, 0));
+        });
+
+        long start = System.nanoTime();
+        MoveGrade[] grades = new MoveGrade[positions.size()];
+        pool.invoke(new GradeTask(positions, played, grades, 0, grades.length));
+        logger.info("Graded {} moves in {} ms", grades.length, (System.nanoTime() - start) / 1_000_000);
+        return Arrays.asList(grades);
+    }
+
+    /**
+     * Grade every placement of a game in the background
+     * @param log the replay log of the game, which must not change while it is graded
+     * @param onAnalysed called on the JavaFX thread with a grade for each placement
+     * @param onFailed called on the JavaFX thread instead, with the reason, if the game could not be analysed
+     */
+    public void analyzeLater(ReplayLog log, Consumer<List<MoveGrade>> onAnalysed, Consumer<RuntimeException> onFailed) {
+        pool.execute(() -> {
+            try {
+                List<MoveGrade> grades = analyze(log);
+                Platform.runLater(() -> onAnalysed.accept(grades));
+            } catch(RuntimeException e) {
+                //Anything escaping to the pool would be lost, and leave the caller waiting for ever
+                logger.error("Could not analyse the game: {}", e.toString());
+                Platform.runLater(() -> onFailed.accept(e));
+            }
+        });
+    }
+
+    /**
+     * Grade one placement
+     */
+    private MoveGrade grade(int turn, Position position, Move played) {
+        Move best = search.search(position, depth);
+        double value = search.value(position, played, depth);
+        //The best move was picked from the same values, so only rounding can make the move played look better
+        double lost = Math.max(0, best.getValue() - value);
+        double rewardWeight = search.getEvaluator().getWeights()[Evaluator.REWARD];
+        return new MoveGrade(turn, played.withValue(value), best, rewardWeight > 0 ? lost / rewardWeight : lost);
+    }
+
+    /**
+     * Grades a range of placements, splitting the range in half until each task holds a single placement
+     */
+    @SuppressWarnings("serial")
+    private class GradeTask extends RecursiveAction {
+        private final List<Position> positions;
+        private final List<Move> played;
+        private final MoveGrade[] grades;
+        private final int from;
+        private final int to;
+
+        GradeTask(List<Position> positions, List<Move> played, MoveGrade[] grades, int from, int to) {
+            this.positions = positions;
+            this.played = played;
+            this.grades = grades;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new GradeTask(positions, played, grades, from, middle),
+                    new GradeTask(positions, played, grades, middle, to));
+                return;
+            }
+            for(int i = from; i < to; i++) {
+                grades[i] = grade(i, positions.get(i), played.get(i));
+            }
+        }
+    }
+
+    /**
+     * Add up the expected points lost across a game
+     * @param grades the grades of the game
+     * @return total points lost
+     */
+    public static double totalPointsLost(List<MoveGrade> grades) {
+        double total = 0;
+        for(MoveGrade grade : grades) {
+            total += grade.getPointsLost();
+        }
+        return total;
+    }
+
+    /**
+     * Find the move that lost the most expected points
+     * @param grades the grades of the game
+     * @return the worst grade, or null if there are none
+     */
+    public static MoveGrade worst(List<MoveGrade> grades) {
+        MoveGrade worst = null;
+        for(MoveGrade grade : grades) {
+            if(worst == null || grade.getPointsLost() > worst.getPointsLost()) {
+                worst = grade;
+            }
+        }
+        return worst;
+    }
+
+}
@@ -0,0 +1,64 @@
+package uk.ac.soton.comp1206.ai;
+
+/**
+ * How one placement of a finished game compares with the best placement the search could find from the same position
+ */
+public final class MoveGrade {
+
+    private final int turn;
+    private final Move played;
+    private final Move best;
+    private final double pointsLost;
+
+    /**
+     * Create a grade
+     * @param turn the number of the placement in the game, counting from 0
+     * @param played the move that was played, with its value
+     * @param best the best move found, with its value
+     * @param pointsLost the expected points given up by playing the played move rather than the best move
+     */
+    public MoveGrade(int turn, Move played, Move best, double pointsLost) {
+        this.turn = turn;
+        this.played = played;
+        this.best = best;
+        this.pointsLost = pointsLost;
+    }
+
+    /**
+     * Get the number of the placement in the game, counting from 0
+     * @return turn
+     */
+    public int getTurn() {
+        return turn;
+    }
+
+    /**
+     * Get the move that was played, with the value the search gives it
+     * @return played move
+     */
+    public Move getPlayed() {
+        return played;
+    }
+
+    /**
+     * Get the best move found from the same position, with its value
+     * @return best move
+     */
+    public Move getBest() {
+        return best;
+    }
+
+    /**
+     * Get the expected points given up by the move played, 0 if it was as good as the best move
+     * @return points lost
+     */
+    public double getPointsLost() {
+        return pointsLost;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Move %d: played %s, best %s, lost %.0f", turn + 1, played, best, pointsLost);
+    }
+
+}
@@ -0,0 +1,132 @@
+package uk.ac.soton.comp1206.ai;
+
+import java.util.SplittableRandom;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.network.LocalServer;
+
+/**
+ * A computer opponent in a multiplayer game played offline. It plays its own GameEngine, dealt the same pieces as
+ * everyone else, and tells the LocalServer its score and lives with the messages a player on the network sends.
+ *
+ * The opponent plays in real time, like a person: it waits a random while before each move and has to beat the same
+ * timer, losing a life if it does not. Its moves run as tasks on a BotScheduler, so if the opponents are being held
+ * to their share of the CPU they lose lives rather than slowing the player's game down.
+ */
+public class Opponent {
+
+    private static final Logger logger = LogManager.getLogger(Opponent.class);
+
+    /**
+     * The shortest time taken over a move, in milliseconds
+     */
+    public static final int MIN_THINK_MILLIS = 500;
+
+    /**
+     * The longest time taken over a move, in milliseconds
+     */
+    public static final int MAX_THINK_MILLIS = 2500;
+
+    private final String name;
+    private final GameEngine engine;
+    private final Strategy strategy;
+    private final LocalServer server;
+    private final BotScheduler scheduler;
+    private final SplittableRandom random;
+
+    /**
+     * When the piece in play arrived, by System.nanoTime
+     */
+    private long pieceArrived;
+
+    private volatile boolean stopped;
+
+    /**
+     * Create an opponent on the standard board
+     * @param name the name shown on the leaderboard
+     * @param strategy chooses the moves. Any search it does should run on the scheduler's pool.
+     * @param server the server to report to, which also deals the pieces
+     * @param scheduler runs the moves
+     */
+    public Opponent(String name, Strategy strategy, LocalServer server, BotScheduler scheduler) {
+        this.name = name;
+        this.engine = new GameEngine(5, 5, server.getSeed());
+        this.strategy = strategy;
+        this.server = server;
+        this.scheduler = scheduler;
+        this.random = new SplittableRandom(server.getSeed() ^ name.hashCode());
+    }
+
+    /**
+     * Get the name shown on the leaderboard
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Join the server and start playing
+     */
+    public void start() {
+        server.join(name);
+        engine.start();
+        nextPiece();
+    }
+
+    /**
+     * Stop playing. The opponent stays on the leaderboard as it was.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Start the clock on the piece now in play and choose when to move it
+     */
+    private void nextPiece() {
+        pieceArrived = System.nanoTime();
+        int think = MIN_THINK_MILLIS + random.nextInt(MAX_THINK_MILLIS - MIN_THINK_MILLIS);
+        scheduler.schedule(this::move, Math.min(think, engine.getTimerDelay()));
+    }
+
+    /**
+     * Choose and play a move, or lose a life if the timer ran out first. Runs on the scheduler's pool.
+     */
+    private void move() {
+        if(stopped) {
+            return;
+        }
+        Move move = elapsedMillis() < engine.getTimerDelay() ? strategy.choose(Position.of(engine)) : null;
+        if(move != null && elapsedMillis() < engine.getTimerDelay()) {
+            int score = engine.getScore();
+            move.playOn(engine);
+            if(engine.getScore() != score) {
+                server.handle(name, "SCORE " + engine.getScore());
+            }
+        } else {
+            logger.debug("{} ran out of time", name);
+            engine.timerExpired();
+            if(!engine.isGameOver()) {
+                server.handle(name, "LIVES " + engine.getLives());
+            }
+        }
+
+        if(engine.isGameOver()) {
+            logger.info("{} is out with {} points", name, engine.getScore());
+            server.handle(name, "DIE");
+            return;
+        }
+        nextPiece();
+    }
+
+    /**
+     * The time since the piece in play arrived
+     * @return the time in milliseconds
+     */
+    private long elapsedMillis() {
+        return (System.nanoTime() - pieceArrived) / 1_000_000;
+    }
+
+}
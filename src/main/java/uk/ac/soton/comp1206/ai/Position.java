@@ -0,0 +1,144 @@
+package uk.ac.soton.comp1206.ai;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.Zobrist;
+
+/**
+ * A snapshot of everything the search needs to choose a move: the row masks of the board, the current and following
+ * piece with their rotations, and the multiplier. A Position never changes once made, so it can be searched on any
+ * thread while the game carries on.
+ */
+public final class Position {
+
+    private final int cols;
+    private final int rows;
+    private final long[] occupancy;
+    private final int currentPiece;
+    private final int currentRotation;
+    private final int followingPiece;
+    private final int followingRotation;
+    private final int multiplier;
+    private final long hash;
+
+    /**
+     * Create a position
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param occupancy the row masks of the board, copied
+     * @param currentPiece the piece number of the current piece
+     * @param currentRotation the rotation of the current piece
+     * @param followingPiece the piece number of the following piece
+     * @param followingRotation the rotation of the following piece
+     * @param multiplier the score multiplier
+     */
+    public Position(int cols, int rows, long[] occupancy, int currentPiece, int currentRotation,
+                    int followingPiece, int followingRotation, int multiplier) {
+        this(cols, rows, occupancy, currentPiece, currentRotation, followingPiece, followingRotation, multiplier,
+            Zobrist.hash(occupancy, rows));
+    }
+
+    private Position(int cols, int rows, long[] occupancy, int currentPiece, int currentRotation,
+                     int followingPiece, int followingRotation, int multiplier, long hash) {
+        this.cols = cols;
+        this.rows = rows;
+        this.occupancy = occupancy.clone();
+        this.currentPiece = currentPiece;
+        this.currentRotation = currentRotation;
+        this.followingPiece = followingPiece;
+        this.followingRotation = followingRotation;
+        this.multiplier = multiplier;
+        this.hash = hash;
+    }
+
+    /**
+     * Take a snapshot of a game engine
+     * @param engine the engine
+     * @return the position
+     */
+    public static Position of(GameEngine engine) {
+        Grid grid = engine.getGrid();
+        long[] occupancy = new long[grid.getRows()];
+        for(int y = 0; y < occupancy.length; y++) {
+            occupancy[y] = grid.getRowMask(y);
+        }
+        GamePiece current = engine.getCurrentPiece();
+        GamePiece following = engine.getFollowingPiece();
+        return new Position(grid.getCols(), grid.getRows(), occupancy, current.getType(), current.getRotation(),
+            following.getType(), following.getRotation(), engine.getMultiplier(), grid.getHash());
+    }
+
+    /**
+     * Get the number of columns
+     * @return columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the number of rows
+     * @return rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get a copy of the row masks of the board
+     * @return row masks
+     */
+    public long[] getOccupancy() {
+        return occupancy.clone();
+    }
+
+    /**
+     * Get the Zobrist hash of the row masks of the board
+     * @return hash
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Get the piece number of the current piece
+     * @return piece number
+     */
+    public int getCurrentPiece() {
+        return currentPiece;
+    }
+
+    /**
+     * Get the rotation of the current piece
+     * @return rotation
+     */
+    public int getCurrentRotation() {
+        return currentRotation;
+    }
+
+    /**
+     * Get the piece number of the following piece
+     * @return piece number
+     */
+    public int getFollowingPiece() {
+        return followingPiece;
+    }
+
+    /**
+     * Get the rotation of the following piece
+     * @return rotation
+     */
+    public int getFollowingRotation() {
+        return followingRotation;
+    }
+
+    /**
+     * Get the score multiplier
+     * @return multiplier
+     */
+    public int getMultiplier() {
+        return multiplier;
+    }
+
+}
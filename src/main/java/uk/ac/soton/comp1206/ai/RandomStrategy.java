@@ -0,0 +1,53 @@
+package uk.ac.soton.comp1206.ai;
+
+import java.util.SplittableRandom;
+import uk.ac.soton.comp1206.game.Bitboard;
+import uk.ac.soton.comp1206.game.GamePiece;
+
+/**
+ * Plays the current piece in a random legal place and rotation, never swapping. A baseline for the other strategies.
+ */
+public class RandomStrategy implements Strategy {
+
+    private final SplittableRandom random;
+
+    /**
+     * Create a random strategy
+     * @param seed the seed of its random number generator
+     */
+    public RandomStrategy(long seed) {
+        this.random = new SplittableRandom(seed);
+    }
+
+    @Override
+    public Move choose(Position position) {
+        int rows = position.getRows();
+        long[] placements = new long[GamePiece.ROTATIONS * rows];
+        Bitboard.legalPlacements(position.getOccupancy(), rows, Bitboard.fullRow(position.getCols()),
+            position.getCurrentPiece(), placements);
+
+        int count = 0;
+        for(long placement : placements) {
+            count += Long.bitCount(placement);
+        }
+        if(count == 0) {
+            return null;
+        }
+
+        //Walk to the chosen set bit
+        int chosen = random.nextInt(count);
+        for(int i = 0; i < placements.length; i++) {
+            int here = Long.bitCount(placements[i]);
+            if(chosen < here) {
+                long bits = placements[i];
+                for(int skip = 0; skip < chosen; skip++) {
+                    bits &= bits - 1;
+                }
+                return new Move(false, i / rows, Long.numberOfTrailingZeros(bits), i % rows, 0);
+            }
+            chosen -= here;
+        }
+        throw new IllegalStateException("Unreachable");
+    }
+
+}
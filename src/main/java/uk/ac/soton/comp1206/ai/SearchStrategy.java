@@ -0,0 +1,31 @@
+package uk.ac.soton.comp1206.ai;
+
+/**
+ * Chooses moves with an ExpectimaxSearch to a fixed depth. At depth 1 this is the greedy strategy: the best
+ * immediate placement of either piece by the evaluator. A fixed depth rather than a time budget keeps the choices the
+ * same from run to run, however busy the machine is.
+ */
+public class SearchStrategy implements Strategy {
+
+    private final ExpectimaxSearch search;
+    private final int depth;
+
+    /**
+     * Create a search strategy
+     * @param search the search to use
+     * @param depth the number of plies to search, from 1 to ExpectimaxSearch.MAX_DEPTH
+     */
+    public SearchStrategy(ExpectimaxSearch search, int depth) {
+        if(depth < 1 || depth > ExpectimaxSearch.MAX_DEPTH) {
+            throw new IllegalArgumentException("Unsupported search depth: " + depth);
+        }
+        this.search = search;
+        this.depth = depth;
+    }
+
+    @Override
+    public Move choose(Position position) {
+        return search.search(position, depth);
+    }
+
+}
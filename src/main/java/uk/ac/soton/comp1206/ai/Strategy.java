@@ -0,0 +1,18 @@
+package uk.ac.soton.comp1206.ai;
+
+/**
+ * A way of choosing moves, which can be plugged into anything that plays games without a person, such as the
+ * tournament simulator or a computer opponent.
+ *
+ * A strategy may keep state, such as its own random number generator, so each game should have its own instance.
+ */
+public interface Strategy {
+
+    /**
+     * Choose a move
+     * @param position the position to move from
+     * @return the move, or null if neither the current nor the following piece can be played anywhere
+     */
+    Move choose(Position position);
+
+}
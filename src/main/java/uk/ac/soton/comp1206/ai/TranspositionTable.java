@@ -0,0 +1,191 @@
+package uk.ac.soton.comp1206.ai;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of search values keyed by Zobrist hash, shared by every thread of a search.
+ *
+ * Entries live in fixed buckets of four, so the table never grows past the size it was made with. When a bucket is
+ * full a new entry replaces the one searched to the shallowest depth, and of those the one used least recently, so
+ * the expensive deep values survive longest. Each bucket belongs to one of a fixed number of lock stripes, so threads
+ * only wait for each other when they touch buckets in the same stripe. Each stripe counts its own uses under its lock,
+ * which is all the ordering needs as entries are only ever compared with others in the same bucket.
+ */
+public class TranspositionTable {
+
+    /**
+     * The number of entries in each bucket
+     */
+    private static final int WAYS = 4;
+
+    /**
+     * The number of locks shared out between the buckets
+     */
+    private static final int STRIPES = 256;
+
+    /**
+     * The bytes held for each entry: the key, the value, the depth and the last use
+     */
+    private static final int ENTRY_BYTES = Long.BYTES + Double.BYTES + Byte.BYTES + Integer.BYTES;
+
+    private final long[] keys;
+    private final double[] values;
+    private final byte[] depths;
+    private final int[] lastUsed;
+    private final int bucketMask;
+    private final Object[] locks = new Object[STRIPES];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Counts the uses of the entries of each stripe, to tell which were used least recently. Each count is only read
+     * and written under its stripe's lock.
+     */
+    private final int[] clocks = new int[STRIPES];
+
+    /**
+     * Create a table
+     * @param capacity the most entries to hold, rounded up to a power of two of at least one bucket
+     */
+    public TranspositionTable(int capacity) {
+        int buckets = Integer.highestOneBit(Math.max(1, (capacity + WAYS - 1) / WAYS) * 2 - 1);
+        this.keys = new long[buckets * WAYS];
+        this.values = new double[buckets * WAYS];
+        this.depths = new byte[buckets * WAYS];
+        this.lastUsed = new int[buckets * WAYS];
+        this.bucketMask = buckets - 1;
+        for(int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Look up a value
+     * @param key the hash of the position, which must not be 0
+     * @param depth the depth the value must have been searched to
+     * @return the value, or NaN if there is none
+     */
+    public double get(long key, int depth) {
+        int bucket = bucket(key);
+        int stripe = bucket & (STRIPES - 1);
+        synchronized(locks[stripe]) {
+            int base = bucket * WAYS;
+            for(int i = base; i < base + WAYS; i++) {
+                if(keys[i] == key && depths[i] == depth) {
+                    lastUsed[i] = ++clocks[stripe];
+                    hits.increment();
+                    return values[i];
+                }
+            }
+        }
+        misses.increment();
+        return Double.NaN;
+    }
+
+    /**
+     * Store a value
+     * @param key the hash of the position, which must not be 0
+     * @param depth the depth the value was searched to
+     * @param value the value
+     */
+    public void put(long key, int depth, double value) {
+        int bucket = bucket(key);
+        int stripe = bucket & (STRIPES - 1);
+        synchronized(locks[stripe]) {
+            int base = bucket * WAYS;
+            int victim = base;
+            for(int i = base; i < base + WAYS; i++) {
+                if(keys[i] == key && depths[i] == depth) {
+                    victim = i;
+                    break;
+                }
+                if(keys[i] == 0) {
+                    victim = i;
+                    break;
+                }
+                //Keep the deepest values, and of equal depths the most recently used
+                if(depths[i] < depths[victim] || (depths[i] == depths[victim] && lastUsed[i] < lastUsed[victim])) {
+                    victim = i;
+                }
+            }
+            keys[victim] = key;
+            depths[victim] = (byte) depth;
+            values[victim] = value;
+            lastUsed[victim] = ++clocks[stripe];
+        }
+    }
+
+    private int bucket(long key) {
+        //Mix the high bits in, as the low bits pick the bucket
+        return (int) (key ^ (key >>> 32)) & bucketMask;
+    }
+
+    /**
+     * Empty the table and reset its statistics
+     */
+    public void clear() {
+        for(int stripe = 0; stripe < STRIPES; stripe++) {
+            synchronized(locks[stripe]) {
+                for(int bucket = stripe; bucket <= bucketMask; bucket += STRIPES) {
+                    for(int i = bucket * WAYS; i < (bucket + 1) * WAYS; i++) {
+                        keys[i] = 0;
+                        lastUsed[i] = 0;
+                    }
+                }
+                clocks[stripe] = 0;
+            }
+        }
+        hits.reset();
+        misses.reset();
+    }
+
+    /**
+     * Get the number of entries the table can hold
+     * @return capacity
+     */
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    /**
+     * Get the number of lookups that found a value
+     * @return hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of lookups that found nothing
+     * @return misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the fraction of lookups that found a value
+     * @return hit rate from 0 to 1
+     */
+    public double getHitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Get the memory held by the entries of the table
+     * @return bytes
+     */
+    public long getMemoryBytes() {
+        return (long) keys.length * ENTRY_BYTES;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d entries, %.1f MiB, %d hits, %d misses, %.1f%% hit rate", getCapacity(),
+            getMemoryBytes() / (1024.0 * 1024.0), getHits(), getMisses(), getHitRate() * 100);
+    }
+
+}
@@ -0,0 +1,334 @@
+package uk.ac.soton.comp1206.component;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A set of blocks on a board, packed one bit per block.
+ *
+ * Block x, y is bit y * cols + x, so a whole row is a run of bits and adding one is a few word operations. Nothing is
+ * allocated once the set is built: it is filled, combined and cleared in place, and walked with nextCell the same way
+ * as a java.util.BitSet:
+ *
+ * for(int cell = cells.nextCell(0); cell &gt;= 0; cell = cells.nextCell(cell + 1)) { ... cells.getX(cell) ... }
+ *
+ * asSet gives a Set of GameBlockCoordinates for code which still expects one.
+ */
+public class CellSet {
+
+    private final int cols;
+    private final int rows;
+    private final long[] words;
+
+    /**
+     * Create an empty set for a board
+     * @param cols the number of columns on the board
+     * @param rows the number of rows on the board
+     */
+    public CellSet(int cols, int rows) {
+        if(cols <= 0 || rows <= 0) {
+            throw new IllegalArgumentException("A board must have at least one block, not " + cols + "x" + rows);
+        }
+        this.cols = cols;
+        this.rows = rows;
+        this.words = new long[(cols * rows + Long.SIZE - 1) / Long.SIZE];
+    }
+
+    /**
+     * Create a set holding the given coordinates, to convert from a Set of GameBlockCoordinates
+     * @param cols the number of columns on the board
+     * @param rows the number of rows on the board
+     * @param coords the coordinates
+     * @return the set
+     */
+    public static CellSet of(int cols, int rows, Collection<GameBlockCoordinate> coords) {
+        CellSet cells = new CellSet(cols, rows);
+        for(GameBlockCoordinate coord : coords) {
+            cells.add(coord.getX(), coord.getY());
+        }
+        return cells;
+    }
+
+    /**
+     * Get the number of columns on the board
+     * @return columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the number of rows on the board
+     * @return rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Add a block
+     * @param x column
+     * @param y row
+     */
+    public void add(int x, int y) {
+        int cell = cell(x, y);
+        words[cell >>> 6] |= 1L << cell;
+    }
+
+    /**
+     * Remove a block
+     * @param x column
+     * @param y row
+     */
+    public void remove(int x, int y) {
+        int cell = cell(x, y);
+        words[cell >>> 6] &= ~(1L << cell);
+    }
+
+    /**
+     * Check whether a block is in the set
+     * @param x column
+     * @param y row
+     * @return true if it is
+     */
+    public boolean contains(int x, int y) {
+        int cell = cell(x, y);
+        return (words[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Add every block of a row
+     * @param y row
+     */
+    public void addRow(int y) {
+        if(y < 0 || y >= rows) {
+            throw new IndexOutOfBoundsException("No row " + y + " on a board of " + rows);
+        }
+        int from = y * cols;
+        int to = from + cols;
+        int first = from >>> 6;
+        int last = (to - 1) >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> -to;
+        if(first == last) {
+            words[first] |= firstMask & lastMask;
+            return;
+        }
+        words[first] |= firstMask;
+        for(int word = first + 1; word < last; word++) {
+            words[word] = -1L;
+        }
+        words[last] |= lastMask;
+    }
+
+    /**
+     * Add every block of a column
+     * @param x column
+     */
+    public void addColumn(int x) {
+        if(x < 0 || x >= cols) {
+            throw new IndexOutOfBoundsException("No column " + x + " on a board of " + cols);
+        }
+        for(int cell = x; cell < cols * rows; cell += cols) {
+            words[cell >>> 6] |= 1L << cell;
+        }
+    }
+
+    /**
+     * Add every block of the other set to this one
+     * @param other a set for a board of the same size
+     */
+    public void union(CellSet other) {
+        checkSameBoard(other);
+        for(int i = 0; i < words.length; i++) {
+            words[i] |= other.words[i];
+        }
+    }
+
+    /**
+     * Remove every block which is not also in the other set
+     * @param other a set for a board of the same size
+     */
+    public void intersect(CellSet other) {
+        checkSameBoard(other);
+        for(int i = 0; i < words.length; i++) {
+            words[i] &= other.words[i];
+        }
+    }
+
+    /**
+     * Remove every block
+     */
+    public void clear() {
+        Arrays.fill(words, 0);
+    }
+
+    /**
+     * Check whether the set is empty
+     * @return true if there are no blocks in it
+     */
+    public boolean isEmpty() {
+        for(long word : words) {
+            if(word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Count the blocks in the set
+     * @return the number of blocks
+     */
+    public int size() {
+        int size = 0;
+        for(long word : words) {
+            size += Long.bitCount(word);
+        }
+        return size;
+    }
+
+    /**
+     * Find the next block in the set, in order along each row and then down the rows
+     * @param from the first cell to look at
+     * @return the cell of the next block at or after from, or -1 if there are no more
+     */
+    public int nextCell(int from) {
+        int word = from >>> 6;
+        if(from < 0 || word >= words.length) {
+            return -1;
+        }
+        long bits = words[word] & (-1L << from);
+        while(bits == 0) {
+            if(++word == words.length) {
+                return -1;
+            }
+            bits = words[word];
+        }
+        return word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * Get the column of a cell found by nextCell
+     * @param cell the cell
+     * @return column
+     */
+    public int getX(int cell) {
+        return cell % cols;
+    }
+
+    /**
+     * Get the row of a cell found by nextCell
+     * @param cell the cell
+     * @return row
+     */
+    public int getY(int cell) {
+        return cell / cols;
+    }
+
+    /**
+     * Get a view of this set as GameBlockCoordinates, for code written against Set. It changes as this set does, but
+     * cannot be changed itself, and creates a coordinate for every block it visits.
+     * @return the view
+     */
+    public Set<GameBlockCoordinate> asSet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<GameBlockCoordinate> iterator() {
+                return new Iterator<>() {
+                    private int next = nextCell(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return next >= 0;
+                    }
+
+                    @Override
+                    public GameBlockCoordinate next() {
+                        if(next < 0) {
+                            throw new NoSuchElementException();
+                        }
+                        GameBlockCoordinate coord = new GameBlockCoordinate(getX(next), getY(next));
+                        next = nextCell(next + 1);
+                        return coord;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return CellSet.this.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if(!(o instanceof GameBlockCoordinate coord)) {
+                    return false;
+                }
+                return coord.getX() >= 0 && coord.getX() < cols && coord.getY() >= 0 && coord.getY() < rows
+                    && CellSet.this.contains(coord.getX(), coord.getY());
+            }
+        };
+    }
+
+    /**
+     * Work out the cell of a block
+     */
+    private int cell(int x, int y) {
+        if(x < 0 || x >= cols || y < 0 || y >= rows) {
+            throw new IndexOutOfBoundsException("No block " + x + ", " + y + " on a board of " + cols + "x" + rows);
+        }
+        return y * cols + x;
+    }
+
+    /**
+     * Check that another set is for a board of the same size, so the bits line up
+     */
+    private void checkSameBoard(CellSet other) {
+        if(other.cols != cols || other.rows != rows) {
+            throw new IllegalArgumentException("Cannot combine a " + cols + "x" + rows + " set with a "
+                + other.cols + "x" + other.rows + " set");
+        }
+    }
+
+    /**
+     * Compare this set to another
+     * @param obj other object to compare to
+     * @return true if it is a set for a board of the same size with the same blocks
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof CellSet other && other.cols == cols && other.rows == rows
+            && Arrays.equals(other.words, words);
+    }
+
+    /**
+     * Calculate a hash code of this set
+     * @return hash code
+     */
+    @Override
+    public int hashCode() {
+        return 31 * (31 * cols + rows) + Arrays.hashCode(words);
+    }
+
+    /**
+     * Return a string representation of this set
+     * @return the blocks, as (x, y)
+     */
+    @Override
+    public String toString() {
+        StringBuilder string = new StringBuilder("CellSet [");
+        for(int cell = nextCell(0); cell >= 0; cell = nextCell(cell + 1)) {
+            if(string.length() > "CellSet [".length()) {
+                string.append(", ");
+            }
+            string.append('(').append(getX(cell)).append(", ").append(getY(cell)).append(')');
+        }
+        return string.append(']').toString();
+    }
+
+}
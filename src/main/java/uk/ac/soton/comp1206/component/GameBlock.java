@@ -54,6 +54,11 @@ public class GameBlock extends Canvas {
             Color.WHITE
     };
 
+    /**
+     * The colour the keyboard cursor is shaded with
+     */
+    private static final int CURSOR = 16;
+
     private final GameBoard gameBoard;
 
     private final double width;
@@ -74,6 +79,26 @@ public class GameBlock extends Canvas {
      */
     private final IntegerProperty value = new SimpleIntegerProperty(0);
 
+    /**
+     * Whether the centre indicator circle is drawn on top of this block
+     */
+    private boolean circle = false;
+
+    /**
+     * The value of the hinted piece drawn over this block, or 0 for no hint
+     */
+    private int hint = 0;
+
+    /**
+     * Whether the keyboard cursor is drawn over this block
+     */
+    private boolean cursor = false;
+
+    /**
+     * Whether a fade out animation is currently painting this block
+     */
+    private boolean fading = false;
+
     /**
      * Create a new single Game Block
      * @param gameBoard the board this block belongs to
@@ -114,6 +139,11 @@ public class GameBlock extends Canvas {
      * Handle painting of the block canvas
      */
     public void paint() {
+        //Leave the block alone while the fade out animation owns it
+        if(fading) {
+            return;
+        }
+
         //If the block is empty, paint as empty
         if(value.get() == 0) {
             paintEmpty();
@@ -121,6 +151,18 @@ public class GameBlock extends Canvas {
             //If the block is not empty, paint with the colour represented by the value
             paintColor(COLOURS[value.get()]);
         }
+
+        if(hint != 0) {
+            paintHint();
+        }
+
+        if(cursor) {
+            paintCursor();
+        }
+
+        if(circle) {
+            paintCircle();
+        }
     }
 
     /**
@@ -197,6 +239,15 @@ public class GameBlock extends Canvas {
         return this.value.get();
     }
 
+    /**
+     * Set the value of this block, repainting it if the value changed. Used by the GameBoard when it applies a set of
+     * changes from the Grid.
+     * @param value the new value
+     */
+    public void setValue(int value) {
+        this.value.set(value);
+    }
+
     /**
      * Bind the value of this block to another property. Used to link the visual block to a corresponding block in the Grid.
      * @param input property to bind the value to
@@ -206,10 +257,67 @@ public class GameBlock extends Canvas {
     }
 
 
+    /**
+     * Show or hide the outline of a hinted piece over this block. Only drawn on the board, never put in the Grid.
+     * @param hint the value of the hinted piece, or 0 to hide the hint
+     */
+    public void setHint(int hint) {
+        if(this.hint != hint) {
+            this.hint = hint;
+            paint();
+        }
+    }
+
+    /**
+     * Paint a faint fill and an outline in the colour of the hinted piece on top of the block
+     */
+    private void paintHint() {
+        var gc = getGraphicsContext2D();
+        Color colour = COLOURS[hint];
+        gc.setFill(colour.deriveColor(0, 1, 1, 0.3));
+        gc.fillRect(0, 0, width, height);
+        gc.setStroke(colour);
+        gc.setLineWidth(4);
+        gc.strokeRect(3, 3, width - 6, height - 6);
+        gc.setLineWidth(1);
+    }
+
+    /**
+     * Show or hide the keyboard cursor over this block. Only drawn on the board, never put in the Grid.
+     * @param cursor whether the cursor is over this block
+     */
+    public void setCursor(boolean cursor) {
+        if(this.cursor != cursor) {
+            this.cursor = cursor;
+            paint();
+        }
+    }
+
+    /**
+     * Shade the block under the keyboard cursor, leaving whatever is in it visible
+     */
+    private void paintCursor() {
+        var gc = getGraphicsContext2D();
+        gc.setFill(COLOURS[CURSOR]);
+        gc.fillRect(0, 0, width, height);
+        gc.setStroke(Color.WHITE);
+        gc.setLineWidth(2);
+        gc.strokeRect(1, 1, width - 2, height - 2);
+        gc.setLineWidth(1);
+    }
+
     /**
      * Used to display a circle on the game block to show an indicator on the middle square
      */
     public void showCircle() {
+        circle = true;
+        paintCircle();
+    }
+
+    /**
+     * Paint the indicator circle on top of the block
+     */
+    private void paintCircle() {
         var gc = getGraphicsContext2D();
         gc.setFill(Color.rgb(42, 42, 43, 0.55));
         gc.fillOval((width - 20) / 2, (height - 20) / 2, 20, 20);
@@ -221,7 +329,9 @@ public class GameBlock extends Canvas {
     public void fadeOut() {
         logger.info("Attempting to fade out");
 
+        opacity = 1;
         paintColor(Color.WHITE);
+        fading = true;
 
         AnimationTimer timer = new AnimationTimer() {
             @Override
@@ -233,7 +343,8 @@ public class GameBlock extends Canvas {
 
                 if(opacity<0.35) {
                     stop();
-                    paintEmpty();
+                    fading = false;
+                    paint();
                 }
 
             }
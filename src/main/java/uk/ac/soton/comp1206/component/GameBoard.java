@@ -1,7 +1,9 @@
 package uk.ac.soton.comp1206.component;
 
+import java.util.Arrays;
 import java.util.Set;
 import java.util.TimerTask;
+import javafx.animation.AnimationTimer;
 import javafx.animation.FillTransition;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.GridPane;
@@ -10,6 +12,10 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.util.Timer;
 import uk.ac.soton.comp1206.event.BlockClickedListener;
+import uk.ac.soton.comp1206.event.CursorMovedListener;
+import uk.ac.soton.comp1206.event.GridChangedListener;
+import uk.ac.soton.comp1206.game.Bitboard;
+import uk.ac.soton.comp1206.game.GamePiece;
 import uk.ac.soton.comp1206.game.Grid;
 
 /**
@@ -21,8 +27,11 @@ import uk.ac.soton.comp1206.game.Grid;
  *
  * The GameBoard is only a visual representation and should not contain game logic or model logic in it, which should
  * take place in the Grid.
+ *
+ * Changes published by the Grid are collected and applied once per frame, so only blocks that changed are repainted
+ * and each of them at most once a frame.
  */
-public class GameBoard extends GridPane {
+public class GameBoard extends GridPane implements GridChangedListener, CursorMovedListener {
 
     private static final Logger logger = LogManager.getLogger(GameBoard.class);
 
@@ -61,6 +70,38 @@ public class GameBoard extends GridPane {
      */
     private BlockClickedListener blockClickedListener;
 
+    /**
+     * Blocks changed in the Grid but not yet repainted, one mask per row
+     */
+    private long[] pendingRows;
+
+    /**
+     * Blocks showing the hint overlay, one mask per row
+     */
+    private long[] hintRows;
+
+    /**
+     * The block showing the keyboard cursor, or null if it is hidden
+     */
+    private GameBlock cursorBlock;
+
+    /**
+     * Whether the repaint timer is waiting for the next frame
+     */
+    private boolean repaintScheduled = false;
+
+    /**
+     * Applies pending changes on the next frame, then stops until there are more
+     */
+    private final AnimationTimer repaintTimer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            stop();
+            repaintScheduled = false;
+            repaintPending();
+        }
+    };
+
 
     /**
      * Create a new GameBoard, based off a given grid, with a visual width and height.
@@ -121,12 +162,46 @@ public class GameBoard extends GridPane {
         setGridLinesVisible(true);
 
         blocks = new GameBlock[cols][rows];
+        pendingRows = new long[rows];
+        hintRows = new long[rows];
 
         for(var y = 0; y < rows; y++) {
             for (var x = 0; x < cols; x++) {
                 createBlock(x,y);
             }
         }
+
+        //Repaint blocks when the Grid publishes changes
+        grid.addChangeListener(this);
+    }
+
+    /**
+     * Collect a set of changes from the Grid, to be repainted on the next frame
+     * @param grid the grid that changed
+     * @param changedRows one mask per row of the blocks that changed
+     */
+    @Override
+    public void gridChanged(Grid grid, long[] changedRows) {
+        for(int y = 0; y < rows; y++) {
+            pendingRows[y] |= changedRows[y];
+        }
+        if(!repaintScheduled) {
+            repaintScheduled = true;
+            repaintTimer.start();
+        }
+    }
+
+    /**
+     * Repaint every block changed since the last frame, with its value from the Grid
+     */
+    private void repaintPending() {
+        for(int y = 0; y < rows; y++) {
+            for(long bits = pendingRows[y]; bits != 0; bits &= bits - 1) {
+                int x = Long.numberOfTrailingZeros(bits);
+                blocks[x][y].setValue(grid.get(x, y));
+            }
+        }
+        Arrays.fill(pendingRows, 0);
     }
 
     /**
@@ -147,8 +222,8 @@ public class GameBoard extends GridPane {
         //Add to our block directory
         blocks[x][y] = block;
 
-        //Link the GameBlock component to the corresponding value in the Grid
-        block.bind(grid.getGridProperty(x,y));
+        //Start the GameBlock component from the corresponding value in the Grid, later changes arrive per frame
+        block.setValue(grid.get(x,y));
 
         //Add a mouse click handler to the block to trigger GameBoard blockClicked method
         block.setOnMouseClicked((e) -> blockClicked(e, block));
@@ -178,19 +253,74 @@ public class GameBoard extends GridPane {
     }
 
 
+    /**
+     * Outline where a piece could be played, without touching the Grid. Replaces any hint already shown.
+     * @param piece the piece number
+     * @param rotation the rotation of the piece
+     * @param x the column the centre of the piece goes on
+     * @param y the row the centre of the piece goes on
+     */
+    public void showHint(int piece, int rotation, int x, int y) {
+        clearHint();
+        long[] pieceRows = GamePiece.rowMasks(piece, rotation);
+        int anchor = Bitboard.anchor(pieceRows);
+        for(int blockY = 0; blockY < pieceRows.length; blockY++) {
+            int gridY = y - anchor + blockY;
+            if(pieceRows[blockY] == 0 || gridY < 0 || gridY >= rows) continue;
+            hintRows[gridY] = Bitboard.shiftPieceRow(pieceRows[blockY], x, anchor) & grid.getFullRowMask();
+            for(long bits = hintRows[gridY]; bits != 0; bits &= bits - 1) {
+                blocks[Long.numberOfTrailingZeros(bits)][gridY].setHint(piece + 1);
+            }
+        }
+    }
+
+    /**
+     * Remove the hint overlay
+     */
+    public void clearHint() {
+        for(int y = 0; y < rows; y++) {
+            for(long bits = hintRows[y]; bits != 0; bits &= bits - 1) {
+                blocks[Long.numberOfTrailingZeros(bits)][y].setHint(0);
+            }
+        }
+        Arrays.fill(hintRows, 0);
+    }
+
+    /**
+     * Move the keyboard cursor overlay, without touching the Grid
+     * @param x the column of the cursor
+     * @param y the row of the cursor
+     * @param shown whether the cursor is showing
+     */
+    @Override
+    public void cursorMoved(int x, int y, boolean shown) {
+        if(cursorBlock != null) {
+            cursorBlock.setCursor(false);
+            cursorBlock = null;
+        }
+        if(shown) {
+            cursorBlock = getBlock(x, y);
+            cursorBlock.setCursor(true);
+        }
+    }
+
     /**
      * Fades out a gameblock when a line is cleared
      * @param coords the set of coordinates that can be cleared
      */
-    public void fadeOut(Set<GameBlockCoordinate> coords){
-        for (GameBlockCoordinate gameBlockCoordinate : coords){
-            var x = gameBlockCoordinate.getX();
-            var y = gameBlockCoordinate.getY();
-
-            GameBlock gameBlock = getBlock(x,y);
+    public void fadeOut(CellSet coords){
+        for (int cell = coords.nextCell(0); cell >= 0; cell = coords.nextCell(cell + 1)){
+            GameBlock gameBlock = getBlock(coords.getX(cell), coords.getY(cell));
             gameBlock.fadeOut();
         }
+    }
 
+    /**
+     * Fades out a gameblock when a line is cleared, for callers still holding a Set of coordinates
+     * @param coords the set of coordinates that can be cleared
+     */
+    public void fadeOut(Set<GameBlockCoordinate> coords){
+        fadeOut(CellSet.of(cols, rows, coords));
     }
 
 }
@@ -23,16 +23,27 @@ public class PieceBoard extends GameBoard {
   }
 
   /**
-   * Displays the piece that is passed in onto the pieceboard's grid
+   * Displays the piece that is passed in onto the pieceboard's grid, anchored on the middle block
    * @param piece the game piece that you want to show on screen.
    */
   public void displayPiece(GamePiece piece) {
+    grid.beginUpdate();
     grid.resetGrid();
-    grid.playPiece(piece, 1, 1);
+    int middleX = grid.getCols() / 2;
+    int middleY = grid.getRows() / 2;
+    grid.playPiece(piece, middleX, middleY);
+    grid.commitUpdate();
 
-    GameBlock middleBlock = getBlock(1,1);
+    GameBlock middleBlock = getBlock(middleX, middleY);
     middleBlock.showCircle();
 
   }
 
+  /**
+   * Empties the pieceboard, for when there is no piece to show
+   */
+  public void clear() {
+    grid.resetGrid();
+  }
+
 }
@@ -0,0 +1,478 @@
+package uk.ac.soton.comp1206.component;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.paint.Color;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.CellClickedListener;
+import uk.ac.soton.comp1206.event.ChunkChangedListener;
+import uk.ac.soton.comp1206.game.Bitboard;
+import uk.ac.soton.comp1206.game.ChunkedGrid;
+import uk.ac.soton.comp1206.game.GamePiece;
+
+/**
+ * A SandboxBoard is the visual component for a ChunkedGrid, which is far too big to have a GameBlock for every block.
+ *
+ * It is a single Canvas the size of the viewport, which looks at part of the board and can be panned and zoomed. Each
+ * frame it draws only the chunks inside the viewport, and of those only the chunks that have been allocated, a row at
+ * a time from their occupancy masks. Empty space is a single fill. So memory and the time to draw a frame depend on the
+ * size of the viewport and how much of it is built on, never on the size of the board.
+ *
+ * The board is repainted at most once a frame, and only when it has been panned or zoomed or a chunk inside the
+ * viewport has changed.
+ */
+public class SandboxBoard extends Canvas implements ChunkChangedListener {
+
+    private static final Logger logger = LogManager.getLogger(SandboxBoard.class);
+
+    /**
+     * The smallest a block is drawn, in pixels, which bounds how many blocks can be in view at once
+     */
+    public static final double MIN_BLOCK_SIZE = 3;
+
+    /**
+     * The largest a block is drawn, in pixels
+     */
+    public static final double MAX_BLOCK_SIZE = 64;
+
+    /**
+     * The size blocks are drawn at to begin with, in pixels
+     */
+    public static final double DEFAULT_BLOCK_SIZE = 24;
+
+    /**
+     * Below this size, in pixels, blocks are drawn without borders or grid lines
+     */
+    private static final double DETAIL_BLOCK_SIZE = 8;
+
+    /**
+     * How far the mouse can move while a button is down and still count as a click rather than a drag, in pixels
+     */
+    private static final double CLICK_SLOP = 4;
+
+    private static final Color BACKGROUND = Color.rgb(10, 10, 12);
+    private static final Color GRID_LINE = Color.rgb(0, 0, 0, 0.6);
+
+    /**
+     * The grid this board shows
+     */
+    private final ChunkedGrid grid;
+
+    /**
+     * The column and row shown at the top left corner of the viewport, in blocks
+     */
+    private double viewX;
+    private double viewY;
+
+    /**
+     * The size blocks are drawn at, in pixels
+     */
+    private double blockSize = DEFAULT_BLOCK_SIZE;
+
+    /**
+     * The piece drawn under the mouse, and the block the mouse is over, or -1 when it is off the board
+     */
+    private GamePiece preview;
+    private int hoverX = -1;
+    private int hoverY = -1;
+
+    /**
+     * Where a mouse button went down, and whether it has been dragged far enough since to be a pan
+     */
+    private double pressX;
+    private double pressY;
+    private double lastDragX;
+    private double lastDragY;
+    private boolean dragging;
+
+    /**
+     * The listener to call when a block is clicked
+     */
+    private CellClickedListener cellClickedListener;
+
+    /**
+     * Whether the repaint timer is waiting for the next frame
+     */
+    private boolean repaintScheduled = false;
+
+    /**
+     * Repaints on the next frame, then stops until something else changes
+     */
+    private final AnimationTimer repaintTimer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            stop();
+            repaintScheduled = false;
+            paint();
+        }
+    };
+
+    /**
+     * Create a new SandboxBoard showing a grid, centred on the middle of the board
+     * @param grid linked grid
+     * @param width the visual width of the viewport
+     * @param height the visual height of the viewport
+     */
+    public SandboxBoard(ChunkedGrid grid, double width, double height) {
+        super(width, height);
+        this.grid = grid;
+        centreOn(grid.getCols() / 2.0, grid.getRows() / 2.0);
+
+        //Repaint when a chunk in view changes
+        grid.addChangeListener(this);
+
+        setOnMousePressed(this::mousePressed);
+        setOnMouseDragged(this::mouseDragged);
+        setOnMouseReleased(this::mouseReleased);
+        setOnMouseMoved(this::mouseMoved);
+        setOnMouseExited(e -> hover(-1, -1));
+        setOnScroll(this::scrolled);
+
+        logger.info("Showing a {} x {} board through a {} x {} viewport", grid.getCols(), grid.getRows(), width, height);
+        paint();
+    }
+
+    /**
+     * Set the listener to handle an event when a block is clicked
+     * @param listener listener to add
+     */
+    public void setOnCellClick(CellClickedListener listener) {
+        this.cellClickedListener = listener;
+    }
+
+    /**
+     * Set the piece drawn under the mouse, to show where it would go
+     * @param piece the piece, or null for none
+     */
+    public void setPreview(GamePiece piece) {
+        this.preview = piece;
+        scheduleRepaint();
+    }
+
+    /**
+     * Stop listening to the grid, so the board can be thrown away
+     */
+    public void dispose() {
+        repaintTimer.stop();
+        grid.removeChangeListener(this);
+    }
+
+    /**
+     * Move the viewport so the given block is in the middle of it
+     * @param x column
+     * @param y row
+     */
+    public void centreOn(double x, double y) {
+        viewX = x - getWidth() / blockSize / 2;
+        viewY = y - getHeight() / blockSize / 2;
+        clampView();
+        scheduleRepaint();
+    }
+
+    /**
+     * Move the viewport by a number of pixels
+     * @param dx pixels to move right
+     * @param dy pixels to move down
+     */
+    public void pan(double dx, double dy) {
+        viewX += dx / blockSize;
+        viewY += dy / blockSize;
+        clampView();
+        scheduleRepaint();
+    }
+
+    /**
+     * Zoom in or out, keeping the block under the given point of the viewport where it is
+     * @param factor how much bigger to draw blocks, below 1 to zoom out
+     * @param pivotX the x position in the viewport to zoom around
+     * @param pivotY the y position in the viewport to zoom around
+     */
+    public void zoom(double factor, double pivotX, double pivotY) {
+        double size = Math.max(MIN_BLOCK_SIZE, Math.min(MAX_BLOCK_SIZE, blockSize * factor));
+        double boardX = viewX + pivotX / blockSize;
+        double boardY = viewY + pivotY / blockSize;
+        blockSize = size;
+        viewX = boardX - pivotX / blockSize;
+        viewY = boardY - pivotY / blockSize;
+        clampView();
+        scheduleRepaint();
+    }
+
+    /**
+     * Zoom in or out around the middle of the viewport
+     * @param factor how much bigger to draw blocks, below 1 to zoom out
+     */
+    public void zoom(double factor) {
+        zoom(factor, getWidth() / 2, getHeight() / 2);
+    }
+
+    /**
+     * Keep at least half of the viewport over the board
+     */
+    private void clampView() {
+        double halfWidth = getWidth() / blockSize / 2;
+        double halfHeight = getHeight() / blockSize / 2;
+        viewX = Math.max(-halfWidth, Math.min(grid.getCols() - halfWidth, viewX));
+        viewY = Math.max(-halfHeight, Math.min(grid.getRows() - halfHeight, viewY));
+    }
+
+    /**
+     * Repaint on the next frame if a chunk in view changed
+     * @param grid the grid that changed
+     * @param chunkX the column of the chunk, counted in chunks
+     * @param chunkY the row of the chunk, counted in chunks
+     */
+    @Override
+    public void chunkChanged(ChunkedGrid grid, int chunkX, int chunkY) {
+        int left = (chunkX << ChunkedGrid.CHUNK_SHIFT);
+        int top = (chunkY << ChunkedGrid.CHUNK_SHIFT);
+        if(left + ChunkedGrid.CHUNK_SIZE > viewX && left < viewX + getWidth() / blockSize
+            && top + ChunkedGrid.CHUNK_SIZE > viewY && top < viewY + getHeight() / blockSize) {
+            scheduleRepaint();
+        }
+    }
+
+    /**
+     * Repaint on the next frame, once however many changes arrive before it
+     */
+    private void scheduleRepaint() {
+        if(!repaintScheduled) {
+            repaintScheduled = true;
+            repaintTimer.start();
+        }
+    }
+
+    /**
+     * Draw the part of the board inside the viewport
+     */
+    private void paint() {
+        GraphicsContext gc = getGraphicsContext2D();
+        double width = getWidth();
+        double height = getHeight();
+        gc.setFill(BACKGROUND);
+        gc.fillRect(0, 0, width, height);
+
+        //The blocks at least partly in view, cut to the board
+        int left = Math.max(0, (int) Math.floor(viewX));
+        int top = Math.max(0, (int) Math.floor(viewY));
+        int right = Math.min(grid.getCols() - 1, (int) Math.floor(viewX + width / blockSize));
+        int bottom = Math.min(grid.getRows() - 1, (int) Math.floor(viewY + height / blockSize));
+        if(left > right || top > bottom) {
+            return;
+        }
+
+        //All of the board in view starts empty
+        gc.setFill(GameBlock.COLOURS[0]);
+        gc.fillRect(screenX(left), screenY(top), (right - left + 1) * blockSize, (bottom - top + 1) * blockSize);
+        boolean detail = blockSize >= DETAIL_BLOCK_SIZE;
+        if(detail) {
+            paintGridLines(gc, left, top, right, bottom);
+        }
+
+        //Then the filled blocks of each allocated chunk in view
+        for(int chunkY = top >>> ChunkedGrid.CHUNK_SHIFT; chunkY <= bottom >>> ChunkedGrid.CHUNK_SHIFT; chunkY++) {
+            for(int chunkX = left >>> ChunkedGrid.CHUNK_SHIFT; chunkX <= right >>> ChunkedGrid.CHUNK_SHIFT; chunkX++) {
+                ChunkedGrid.Chunk chunk = grid.getChunk(chunkX, chunkY);
+                if(chunk != null && chunk.getFilled() > 0) {
+                    paintChunk(gc, chunk, left, top, right, bottom, detail);
+                }
+            }
+        }
+
+        paintPreview(gc);
+    }
+
+    /**
+     * Draw the lines between the blocks in view
+     */
+    private void paintGridLines(GraphicsContext gc, int left, int top, int right, int bottom) {
+        gc.setStroke(GRID_LINE);
+        gc.setLineWidth(1);
+        double x0 = screenX(left);
+        double y0 = screenY(top);
+        double x1 = screenX(right + 1);
+        double y1 = screenY(bottom + 1);
+        for(int x = left; x <= right + 1; x++) {
+            gc.strokeLine(screenX(x), y0, screenX(x), y1);
+        }
+        for(int y = top; y <= bottom + 1; y++) {
+            gc.strokeLine(x0, screenY(y), x1, screenY(y));
+        }
+    }
+
+    /**
+     * Draw the filled blocks of a chunk which are in view
+     */
+    private void paintChunk(GraphicsContext gc, ChunkedGrid.Chunk chunk, int left, int top, int right, int bottom,
+                            boolean detail) {
+        int chunkLeft = chunk.getChunkX() << ChunkedGrid.CHUNK_SHIFT;
+        int chunkTop = chunk.getChunkY() << ChunkedGrid.CHUNK_SHIFT;
+
+        //Only the columns of the chunk in view
+        int fromX = Math.max(left - chunkLeft, 0);
+        int toX = Math.min(right - chunkLeft, ChunkedGrid.CHUNK_SIZE - 1);
+        long columns = Bitboard.fullRow(toX + 1) & ~Bitboard.fullRow(fromX);
+
+        int fromY = Math.max(top - chunkTop, 0);
+        int toY = Math.min(bottom - chunkTop, ChunkedGrid.CHUNK_SIZE - 1);
+        for(int localY = fromY; localY <= toY; localY++) {
+            for(long bits = chunk.getRowMask(localY) & columns; bits != 0; bits &= bits - 1) {
+                int localX = Long.numberOfTrailingZeros(bits);
+                paintBlock(gc, chunkLeft + localX, chunkTop + localY, chunk.get(localX, localY), detail);
+            }
+        }
+    }
+
+    /**
+     * Draw one filled block, shaded like a GameBlock when there is room for it
+     */
+    private void paintBlock(GraphicsContext gc, int x, int y, int value, boolean detail) {
+        Color colour = GameBlock.COLOURS[value];
+        double px = screenX(x);
+        double py = screenY(y);
+        gc.setFill(colour);
+        gc.fillRect(px, py, blockSize, blockSize);
+        if(detail) {
+            //The darker half below the diagonal
+            gc.setFill(colour.darker());
+            gc.beginPath();
+            gc.moveTo(px + blockSize, py);
+            gc.lineTo(px + blockSize, py + blockSize);
+            gc.lineTo(px, py + blockSize);
+            gc.closePath();
+            gc.fill();
+            gc.setStroke(Color.BLACK);
+            gc.strokeRect(px, py, blockSize, blockSize);
+        }
+    }
+
+    /**
+     * Outline where the preview piece would go, in its colour if it fits there and in grey if it does not
+     */
+    private void paintPreview(GraphicsContext gc) {
+        if(preview == null || hoverX < 0) {
+            return;
+        }
+        Color colour = grid.canPlayPiece(preview, hoverX, hoverY) ? GameBlock.COLOURS[preview.getValue()]
+            : GameBlock.COLOURS[0].brighter();
+        long[] pieceRows = preview.getRowMasks();
+        int anchor = Bitboard.anchor(pieceRows);
+        gc.setFill(colour.deriveColor(0, 1, 1, 0.3));
+        gc.setStroke(colour);
+        gc.setLineWidth(Math.max(1, blockSize / 8));
+        for(int blockY = 0; blockY < pieceRows.length; blockY++) {
+            for(long bits = pieceRows[blockY]; bits != 0; bits &= bits - 1) {
+                double px = screenX(hoverX - anchor + Long.numberOfTrailingZeros(bits));
+                double py = screenY(hoverY - anchor + blockY);
+                gc.fillRect(px, py, blockSize, blockSize);
+                gc.strokeRect(px, py, blockSize, blockSize);
+            }
+        }
+        gc.setLineWidth(1);
+    }
+
+    /**
+     * Work out where a column is drawn in the viewport
+     */
+    private double screenX(int x) {
+        return (x - viewX) * blockSize;
+    }
+
+    /**
+     * Work out where a row is drawn in the viewport
+     */
+    private double screenY(int y) {
+        return (y - viewY) * blockSize;
+    }
+
+    /**
+     * Work out the column under a point of the viewport
+     */
+    private int boardX(double screenX) {
+        return (int) Math.floor(viewX + screenX / blockSize);
+    }
+
+    /**
+     * Work out the row under a point of the viewport
+     */
+    private int boardY(double screenY) {
+        return (int) Math.floor(viewY + screenY / blockSize);
+    }
+
+    /**
+     * Remember the block under the mouse, to draw the preview on
+     */
+    private void hover(int x, int y) {
+        if(x < 0 || x >= grid.getCols() || y < 0 || y >= grid.getRows()) {
+            x = -1;
+            y = -1;
+        }
+        if(x != hoverX || y != hoverY) {
+            hoverX = x;
+            hoverY = y;
+            if(preview != null) {
+                scheduleRepaint();
+            }
+        }
+    }
+
+    private void mouseMoved(MouseEvent event) {
+        hover(boardX(event.getX()), boardY(event.getY()));
+    }
+
+    private void mousePressed(MouseEvent event) {
+        pressX = event.getX();
+        pressY = event.getY();
+        lastDragX = pressX;
+        lastDragY = pressY;
+        dragging = false;
+    }
+
+    /**
+     * Pan by however far the mouse was dragged, once it has gone further than a click would
+     */
+    private void mouseDragged(MouseEvent event) {
+        if(!dragging && Math.hypot(event.getX() - pressX, event.getY() - pressY) > CLICK_SLOP) {
+            dragging = true;
+        }
+        if(dragging) {
+            pan(lastDragX - event.getX(), lastDragY - event.getY());
+            lastDragX = event.getX();
+            lastDragY = event.getY();
+        }
+        hover(boardX(event.getX()), boardY(event.getY()));
+    }
+
+    /**
+     * A press and release without a drag is a click on a block
+     */
+    private void mouseReleased(MouseEvent event) {
+        if(dragging || event.getButton() != MouseButton.PRIMARY) {
+            return;
+        }
+        int x = boardX(event.getX());
+        int y = boardY(event.getY());
+        if(x < 0 || x >= grid.getCols() || y < 0 || y >= grid.getRows()) {
+            return;
+        }
+        logger.info("Block clicked: {}, {}", x, y);
+        if(cellClickedListener != null) {
+            cellClickedListener.cellClicked(x, y);
+        }
+    }
+
+    /**
+     * Zoom around the mouse, a step for each notch of the wheel
+     */
+    private void scrolled(ScrollEvent event) {
+        if(event.getDeltaY() != 0) {
+            zoom(Math.pow(1.1, event.getDeltaY() / 40), event.getX(), event.getY());
+        }
+    }
+
+}
@@ -0,0 +1,16 @@
+package uk.ac.soton.comp1206.event;
+
+/**
+ * The Cell Clicked listener is used to handle the event when a block of a board drawn without a GameBlock for each
+ * block, such as a SandboxBoard, is clicked. It passes the column and row that were clicked.
+ */
+public interface CellClickedListener {
+
+  /**
+   * Handle a cell clicked event
+   * @param x the column clicked
+   * @param y the row clicked
+   */
+  void cellClicked(int x, int y);
+
+}
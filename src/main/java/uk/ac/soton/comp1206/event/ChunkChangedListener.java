@@ -0,0 +1,19 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.ChunkedGrid;
+
+/**
+ * The Chunk Changed listener is used to handle the event when blocks in a chunk of a ChunkedGrid change value. Changes
+ * made inside a batch update are published once per chunk, when the batch is committed.
+ */
+public interface ChunkChangedListener {
+
+  /**
+   * Handle a chunk whose blocks changed
+   * @param grid the grid that changed
+   * @param chunkX the column of the chunk, counted in chunks
+   * @param chunkY the row of the chunk, counted in chunks
+   */
+  void chunkChanged(ChunkedGrid grid, int chunkX, int chunkY);
+
+}
@@ -0,0 +1,16 @@
+package uk.ac.soton.comp1206.event;
+
+/**
+ * The Cursor Moved listener is used to handle the event when the keyboard cursor moves, shows or hides
+ */
+public interface CursorMovedListener {
+
+  /**
+   * Handle the keyboard cursor changing
+   * @param x the column of the cursor
+   * @param y the row of the cursor
+   * @param shown whether the cursor is showing
+   */
+  void cursorMoved(int x, int y, boolean shown);
+
+}
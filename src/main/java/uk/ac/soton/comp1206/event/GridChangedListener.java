@@ -0,0 +1,19 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.Grid;
+
+/**
+ * The Grid Changed listener is used to handle the event when blocks in a Grid change value. Changes made inside a
+ * batch update are collected and published together once, when the batch is committed.
+ */
+public interface GridChangedListener {
+
+  /**
+   * Handle a set of changed blocks
+   * @param grid the grid that changed
+   * @param changedRows one mask per row, with bit x set when the block at column x of that row changed. Only valid
+   *                    for the duration of the call.
+   */
+  void gridChanged(Grid grid, long[] changedRows);
+
+}
@@ -1,10 +1,9 @@
 package uk.ac.soton.comp1206.event;
 
-import java.util.Set;
-import uk.ac.soton.comp1206.component.GameBlockCoordinate;
+import uk.ac.soton.comp1206.component.CellSet;
 
 public interface LineClearedListener {
 
-  public Set<GameBlockCoordinate> whenLineCleared(Set<GameBlockCoordinate> coords);
+  public CellSet whenLineCleared(CellSet coords);
 
 }
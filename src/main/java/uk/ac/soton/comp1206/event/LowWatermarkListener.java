@@ -0,0 +1,16 @@
+package uk.ac.soton.comp1206.event;
+
+/**
+ * The Low Watermark listener is used to handle the event when a piece buffer has been drawn down to its low
+ * watermark, and should be topped up before it runs dry
+ */
+public interface LowWatermarkListener {
+
+  /**
+   * Handle a piece being taken from a buffer at or below its low watermark. Called on the thread taking the pieces,
+   * after every such piece, so it must be cheap and only hand the work of refilling off, never wait for it.
+   * @param remaining the number of pieces left in the buffer
+   */
+  void lowWatermark(int remaining);
+
+}
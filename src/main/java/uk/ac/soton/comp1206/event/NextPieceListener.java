@@ -0,0 +1,18 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.GamePiece;
+
+/**
+ * The Next Piece listener is used to handle the event when a new piece is ready to be played and its timer has
+ * started
+ */
+public interface NextPieceListener {
+
+  /**
+   * Handle a new piece being ready to play
+   * @param currentPiece the piece to play
+   * @param followingPiece the piece after it
+   */
+  void nextPiece(GamePiece currentPiece, GamePiece followingPiece);
+
+}
@@ -0,0 +1,18 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+
+/**
+ * The Placement listener is used to look at a replayed game just before each piece is placed
+ */
+public interface PlacementListener {
+
+  /**
+   * Handle a piece about to be placed. The engine must not be changed.
+   * @param engine the engine, with the piece to place as its current piece, already rotated
+   * @param x the column the centre of the piece is placed on
+   * @param y the row the centre of the piece is placed on
+   */
+  void beforePlacement(GameEngine engine, int x, int y);
+
+}
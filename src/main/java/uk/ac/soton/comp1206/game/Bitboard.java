@@ -0,0 +1,185 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * The board rules on a bare array of row masks, one long per row with bit x set when column x is filled.
+ *
+ * Grid keeps its occupancy in this form alongside its colours and properties. Anything that needs to look ahead many
+ * moves, such as the AI search, works on copies of the row masks with these methods instead of a whole Grid.
+ */
+public final class Bitboard {
+
+    private Bitboard() {
+    }
+
+    /**
+     * Get a mask with a bit set for every column of a board
+     * @param cols number of columns
+     * @return the full row mask
+     */
+    public static long fullRow(int cols) {
+        return cols == Long.SIZE ? -1L : (1L << cols) - 1;
+    }
+
+    /**
+     * Shift a row mask of a 3x3 piece, whose bit 0 lines up with column x-1, so that it lines up with the board.
+     * @param pieceRow the piece row mask
+     * @param x the column the centre of the piece is placed on
+     * @return the shifted mask
+     */
+    public static long shiftPieceRow(long pieceRow, int x) {
+        return x == 0 ? pieceRow >>> 1 : pieceRow << (x - 1);
+    }
+
+    /**
+     * Shift a piece row mask, whose bit 0 lines up with column x-anchor, so that it lines up with the board.
+     * @param pieceRow the piece row mask
+     * @param x the column the anchor of the piece is placed on
+     * @param anchor the offset of the anchor into the piece's box, see anchor
+     * @return the shifted mask
+     */
+    public static long shiftPieceRow(long pieceRow, int x, int anchor) {
+        return x < anchor ? pieceRow >>> (anchor - x) : pieceRow << (x - anchor);
+    }
+
+    /**
+     * Find the offset of the anchor of a piece into the square box its row masks are laid out in. The anchor is the
+     * middle of the box, so 1 for every standard piece and 2 for a 5x5 one.
+     * @param pieceRows the row masks of the piece
+     * @return the column and row of the anchor within the box
+     */
+    public static int anchor(long[] pieceRows) {
+        return pieceRows.length >>> 1;
+    }
+
+    /**
+     * Find every column a piece can be played on in a given row by shifting the free blocks of each row it covers
+     * under each of its blocks.
+     * @param occupancy the row masks of the board
+     * @param rows number of rows
+     * @param fullRow the full row mask of the board
+     * @param pieceRows the row masks of the piece
+     * @param y the row the anchor of the piece is placed on
+     * @return a mask with bit x set when the piece can be played anchored on column x
+     */
+    public static long legalColumns(long[] occupancy, int rows, long fullRow, long[] pieceRows, int y) {
+        int anchor = anchor(pieceRows);
+        long valid = fullRow;
+        for(int blockY = 0; blockY < pieceRows.length && valid != 0; blockY++) {
+            long pieceRow = pieceRows[blockY];
+            if(pieceRow == 0) continue;
+
+            int gridY = y - anchor + blockY;
+            if(gridY < 0 || gridY >= rows) {
+                return 0;
+            }
+
+            //A block at offset d from the anchor needs the block d along from it to be free
+            long free = ~occupancy[gridY] & fullRow;
+            for(long bits = pieceRow; bits != 0; bits &= bits - 1) {
+                int offset = Long.numberOfTrailingZeros(bits) - anchor;
+                valid &= offset < 0 ? free << -offset : free >>> offset;
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Find every legal placement of a standard piece, across all of its rotations. The result is laid out as in
+     * Grid.legalPlacements: bit x of placements[rotation * rows + y] is set when the piece can be played there.
+     * @param occupancy the row masks of the board
+     * @param rows number of rows
+     * @param fullRow the full row mask of the board
+     * @param piece the piece number
+     * @param placements an array of at least GamePiece.ROTATIONS * rows entries to fill in
+     * @return true if there is at least one legal placement
+     */
+    public static boolean legalPlacements(long[] occupancy, int rows, long fullRow, int piece, long[] placements) {
+        return legalPlacements(occupancy, rows, fullRow, PieceCatalogue.standard(), piece, placements);
+    }
+
+    /**
+     * Find every legal placement of a piece from a pack, across all of its rotations, laid out as above
+     * @param occupancy the row masks of the board
+     * @param rows number of rows
+     * @param fullRow the full row mask of the board
+     * @param catalogue the pack the piece is from
+     * @param piece the piece number
+     * @param placements an array of at least GamePiece.ROTATIONS * rows entries to fill in
+     * @return true if there is at least one legal placement
+     */
+    public static boolean legalPlacements(long[] occupancy, int rows, long fullRow, PieceCatalogue catalogue,
+                                          int piece, long[] placements) {
+        long any = 0;
+        for(int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+            long[] pieceRows = catalogue.rowMasks(piece, rotation);
+            for(int y = 0; y < rows; y++) {
+                long valid = legalColumns(occupancy, rows, fullRow, pieceRows, y);
+                placements[rotation * rows + y] = valid;
+                any |= valid;
+            }
+        }
+        return any != 0;
+    }
+
+    /**
+     * Fill in the blocks of a piece. The placement must be legal.
+     * @param occupancy the row masks of the board
+     * @param pieceRows the row masks of the piece
+     * @param x the column the anchor of the piece is placed on
+     * @param y the row the anchor of the piece is placed on
+     */
+    public static void place(long[] occupancy, long[] pieceRows, int x, int y) {
+        int anchor = anchor(pieceRows);
+        for(int blockY = 0; blockY < pieceRows.length; blockY++) {
+            if(pieceRows[blockY] != 0) {
+                occupancy[y - anchor + blockY] |= shiftPieceRow(pieceRows[blockY], x, anchor);
+            }
+        }
+    }
+
+    /**
+     * Find every full row
+     * @param occupancy the row masks of the board
+     * @param rows number of rows
+     * @param fullRow the full row mask of the board
+     * @return a mask with bit y set for every full row y
+     */
+    public static long fullRows(long[] occupancy, int rows, long fullRow) {
+        long full = 0;
+        for(int y = 0; y < rows; y++) {
+            if(occupancy[y] == fullRow) {
+                full |= 1L << y;
+            }
+        }
+        return full;
+    }
+
+    /**
+     * Find every full column
+     * @param occupancy the row masks of the board
+     * @param rows number of rows
+     * @param fullRow the full row mask of the board
+     * @return a mask with bit x set for every full column x
+     */
+    public static long fullCols(long[] occupancy, int rows, long fullRow) {
+        long full = fullRow;
+        for(int y = 0; y < rows && full != 0; y++) {
+            full &= occupancy[y];
+        }
+        return full;
+    }
+
+    /**
+     * Empty the given rows and columns
+     * @param occupancy the row masks of the board
+     * @param rows number of rows
+     * @param clearedRows a mask of the rows to empty
+     * @param clearedCols a mask of the columns to empty
+     */
+    public static void clear(long[] occupancy, int rows, long clearedRows, long clearedCols) {
+        for(int y = 0; y < rows; y++) {
+            occupancy[y] = (clearedRows & (1L << y)) != 0 ? 0 : occupancy[y] & ~clearedCols;
+        }
+    }
+
+}
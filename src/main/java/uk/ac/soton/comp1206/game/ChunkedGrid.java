@@ -0,0 +1,628 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.ChunkChangedListener;
+
+/**
+ * A ChunkedGrid is the model of a sandbox board, which can be thousands of blocks on each side.
+ *
+ * The board is split into square chunks of CHUNK_SIZE blocks. A chunk is only allocated when a block in it is first
+ * filled, and reading a block of a chunk which was never filled gives 0 without allocating anything. So the memory a
+ * board uses depends on how much of it has been built on, never on how big it is.
+ *
+ * Each chunk is held the same way as a Grid: an occupancy mask with one long per row, bit x set when column x of the
+ * chunk is filled, and a byte array of colours. The chunks are found through an open-addressed table keyed by their
+ * position, as a directory of every chunk would itself grow with the board.
+ *
+ * Changes can be grouped with beginUpdate and commitUpdate. Each chunk changed inside an update is published to the
+ * ChunkChangedListeners once, when the outermost update commits.
+ */
+public class ChunkedGrid {
+
+    private static final Logger logger = LogManager.getLogger(ChunkedGrid.class);
+
+    /**
+     * The number of columns and rows in a chunk, so that a row of a chunk fits in a single long
+     */
+    public static final int CHUNK_SIZE = Long.SIZE;
+
+    /**
+     * Shift from a column or row to the column or row of its chunk
+     */
+    public static final int CHUNK_SHIFT = Integer.numberOfTrailingZeros(CHUNK_SIZE);
+
+    /**
+     * The largest number of columns or rows a board can have
+     */
+    public static final int MAX_SIZE = 1 << 20;
+
+    /**
+     * Marks an unused slot in the chunk table. Keys are never negative, as chunk positions are not.
+     */
+    private static final long NO_CHUNK = -1L;
+
+    /**
+     * One square of the board, allocated the first time a block in it is filled
+     */
+    public static final class Chunk {
+        private final int chunkX;
+        private final int chunkY;
+
+        /**
+         * Bit x of occupancy[y] is set when the block at column x, row y of the chunk is not empty
+         */
+        private final long[] occupancy = new long[CHUNK_SIZE];
+
+        /**
+         * The colour of every block of the chunk, indexed by y * CHUNK_SIZE + x
+         */
+        private final byte[] colours = new byte[CHUNK_SIZE * CHUNK_SIZE];
+
+        /**
+         * The number of filled blocks in the chunk
+         */
+        private int filled;
+
+        /**
+         * Whether the chunk has changed since changes were last published
+         */
+        private boolean changed;
+
+        private Chunk(int chunkX, int chunkY) {
+            this.chunkX = chunkX;
+            this.chunkY = chunkY;
+        }
+
+        /**
+         * Get the column of this chunk, counted in chunks
+         * @return chunk column
+         */
+        public int getChunkX() {
+            return chunkX;
+        }
+
+        /**
+         * Get the row of this chunk, counted in chunks
+         * @return chunk row
+         */
+        public int getChunkY() {
+            return chunkY;
+        }
+
+        /**
+         * Get the occupancy mask of a row of the chunk
+         * @param y row within the chunk
+         * @return the row mask, bit x set when column x of the chunk is filled
+         */
+        public long getRowMask(int y) {
+            return occupancy[y];
+        }
+
+        /**
+         * Get the value of a block of the chunk
+         * @param x column within the chunk
+         * @param y row within the chunk
+         * @return the value
+         */
+        public int get(int x, int y) {
+            return colours[y * CHUNK_SIZE + x];
+        }
+
+        /**
+         * Get the number of filled blocks in the chunk
+         * @return filled blocks
+         */
+        public int getFilled() {
+            return filled;
+        }
+    }
+
+    /**
+     * The number of columns in this grid
+     */
+    private final int cols;
+
+    /**
+     * The number of rows in this grid
+     */
+    private final int rows;
+
+    /**
+     * The chunk table: the position key of each chunk, or NO_CHUNK, and the chunk in the same slot
+     */
+    private long[] keys;
+    private Chunk[] chunks;
+
+    /**
+     * The number of chunks allocated
+     */
+    private int chunkCount;
+
+    /**
+     * The chunk last looked up, as blocks next to each other are usually in the same chunk
+     */
+    private Chunk lastChunk;
+
+    /**
+     * The number of filled blocks on the whole board
+     */
+    private long filled;
+
+    /**
+     * Chunks which have changed since changes were last published
+     */
+    private final List<Chunk> changedChunks = new ArrayList<>();
+
+    /**
+     * How many batch updates are currently open
+     */
+    private int updateDepth;
+
+    /**
+     * Listeners told about each chunk changed
+     */
+    private final List<ChunkChangedListener> changeListeners = new ArrayList<>();
+
+    /**
+     * The number of lines removed by the last call to clearFullLines
+     */
+    private int clearedLines;
+
+    /**
+     * Create a new, empty ChunkedGrid. Nothing is allocated for its blocks until they are filled.
+     * @param cols number of columns
+     * @param rows number of rows
+     */
+    public ChunkedGrid(int cols, int rows) {
+        if(cols < 1 || cols > MAX_SIZE || rows < 1 || rows > MAX_SIZE) {
+            throw new IllegalArgumentException("Unsupported grid size: " + cols + " x " + rows);
+        }
+        this.cols = cols;
+        this.rows = rows;
+        this.keys = new long[16];
+        this.chunks = new Chunk[16];
+        Arrays.fill(keys, NO_CHUNK);
+    }
+
+    /**
+     * Add a listener to be told about each chunk that changes
+     * @param listener the listener to add
+     */
+    public void addChangeListener(ChunkChangedListener listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Remove a listener previously added with addChangeListener
+     * @param listener the listener to remove
+     */
+    public void removeChangeListener(ChunkChangedListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Start a batch update. Changes made until the matching commitUpdate are published together, once per chunk.
+     */
+    public void beginUpdate() {
+        updateDepth++;
+    }
+
+    /**
+     * Finish a batch update started with beginUpdate, publishing the changed chunks if it is the outermost one
+     */
+    public void commitUpdate() {
+        if(updateDepth == 0) {
+            throw new IllegalStateException("commitUpdate called without beginUpdate");
+        }
+        updateDepth--;
+        if(updateDepth == 0) {
+            publishChanges();
+        }
+    }
+
+    /**
+     * Tell the listeners about every chunk changed since the last publish
+     */
+    private void publishChanges() {
+        for(Chunk chunk : changedChunks) {
+            chunk.changed = false;
+            for(ChunkChangedListener listener : changeListeners) {
+                listener.chunkChanged(this, chunk.chunkX, chunk.chunkY);
+            }
+        }
+        changedChunks.clear();
+    }
+
+    /**
+     * Note that a chunk has changed, publishing it straight away outside of a batch update
+     */
+    private void changed(Chunk chunk) {
+        if(!chunk.changed) {
+            chunk.changed = true;
+            changedChunks.add(chunk);
+        }
+        if(updateDepth == 0) {
+            publishChanges();
+        }
+    }
+
+    /**
+     * Get the number of columns
+     * @return number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the number of rows
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the number of chunk columns, including a part chunk at the right edge
+     * @return chunk columns
+     */
+    public int getChunkCols() {
+        return (cols + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+    }
+
+    /**
+     * Get the number of chunk rows, including a part chunk at the bottom edge
+     * @return chunk rows
+     */
+    public int getChunkRows() {
+        return (rows + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+    }
+
+    /**
+     * Get the number of chunks allocated so far
+     * @return chunks
+     */
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * Get the number of filled blocks on the board
+     * @return filled blocks
+     */
+    public long getFilled() {
+        return filled;
+    }
+
+    /**
+     * Get a chunk, if any of its blocks have been filled
+     * @param chunkX chunk column
+     * @param chunkY chunk row
+     * @return the chunk, or null if it has never been allocated
+     */
+    public Chunk getChunk(int chunkX, int chunkY) {
+        Chunk last = lastChunk;
+        if(last != null && last.chunkX == chunkX && last.chunkY == chunkY) {
+            return last;
+        }
+        long key = key(chunkX, chunkY);
+        for(int slot = slot(key); keys[slot] != NO_CHUNK; slot = (slot + 1) & (keys.length - 1)) {
+            if(keys[slot] == key) {
+                lastChunk = chunks[slot];
+                return lastChunk;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get a chunk, allocating it if it has never been filled
+     */
+    private Chunk chunkFor(int chunkX, int chunkY) {
+        Chunk chunk = getChunk(chunkX, chunkY);
+        if(chunk != null) {
+            return chunk;
+        }
+
+        //Keep the table at most half full, so probes stay short
+        if((chunkCount + 1) * 2 > keys.length) {
+            grow();
+        }
+        long key = key(chunkX, chunkY);
+        int slot = slot(key);
+        while(keys[slot] != NO_CHUNK) {
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        chunk = new Chunk(chunkX, chunkY);
+        keys[slot] = key;
+        chunks[slot] = chunk;
+        chunkCount++;
+        lastChunk = chunk;
+        logger.debug("Allocated chunk {}, {}, {} chunks in use", chunkX, chunkY, chunkCount);
+        return chunk;
+    }
+
+    /**
+     * Double the size of the chunk table
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        Chunk[] oldChunks = chunks;
+        keys = new long[oldKeys.length * 2];
+        chunks = new Chunk[oldChunks.length * 2];
+        Arrays.fill(keys, NO_CHUNK);
+        for(int i = 0; i < oldKeys.length; i++) {
+            if(oldKeys[i] == NO_CHUNK) continue;
+            int slot = slot(oldKeys[i]);
+            while(keys[slot] != NO_CHUNK) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            keys[slot] = oldKeys[i];
+            chunks[slot] = oldChunks[i];
+        }
+    }
+
+    /**
+     * Work out the table key of a chunk
+     */
+    private static long key(int chunkX, int chunkY) {
+        return ((long) chunkY << 32) | chunkX;
+    }
+
+    /**
+     * Work out the first slot to look for a key in, spreading neighbouring chunks across the table
+     */
+    private int slot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & (keys.length - 1);
+    }
+
+    /**
+     * Update the value at the given x and y index within the grid. Emptying a block of a chunk which was never
+     * filled does nothing.
+     * @param x column
+     * @param y row
+     * @param value the new value
+     */
+    public void set(int x, int y, int value) {
+        if(x < 0 || x >= cols || y < 0 || y >= rows) {
+            throw new IndexOutOfBoundsException("No block " + x + ", " + y + " on a board of " + cols + "x" + rows);
+        }
+        Chunk chunk = value == 0 ? getChunk(x >>> CHUNK_SHIFT, y >>> CHUNK_SHIFT)
+            : chunkFor(x >>> CHUNK_SHIFT, y >>> CHUNK_SHIFT);
+        if(chunk == null) {
+            return;
+        }
+        int localX = x & (CHUNK_SIZE - 1);
+        int localY = y & (CHUNK_SIZE - 1);
+        int index = localY * CHUNK_SIZE + localX;
+        if(chunk.colours[index] == value) {
+            return;
+        }
+        chunk.colours[index] = (byte) value;
+
+        //Only a block changing between empty and filled moves the occupancy and the fill counts
+        long bit = 1L << localX;
+        boolean wasFilled = (chunk.occupancy[localY] & bit) != 0;
+        if(value != 0 && !wasFilled) {
+            chunk.occupancy[localY] |= bit;
+            chunk.filled++;
+            filled++;
+        } else if(value == 0 && wasFilled) {
+            chunk.occupancy[localY] &= ~bit;
+            chunk.filled--;
+            filled--;
+        }
+        changed(chunk);
+    }
+
+    /**
+     * Get the value represented at the given x and y index within the grid
+     * @param x column
+     * @param y row
+     * @return the value, or -1 if there is no such index
+     */
+    public int get(int x, int y) {
+        if(x < 0 || x >= cols || y < 0 || y >= rows) {
+            //No such index
+            return -1;
+        }
+        Chunk chunk = getChunk(x >>> CHUNK_SHIFT, y >>> CHUNK_SHIFT);
+        return chunk == null ? 0 : chunk.colours[(y & (CHUNK_SIZE - 1)) * CHUNK_SIZE + (x & (CHUNK_SIZE - 1))];
+    }
+
+    /**
+     * Check whether the block at the given x and y index is filled
+     * @param x column
+     * @param y row
+     * @return true if the block holds a value
+     */
+    public boolean isFilled(int x, int y) {
+        Chunk chunk = getChunk(x >>> CHUNK_SHIFT, y >>> CHUNK_SHIFT);
+        return chunk != null && (chunk.occupancy[y & (CHUNK_SIZE - 1)] & (1L << x)) != 0;
+    }
+
+    /**
+     * Checks whether a GamePiece can be played at a specific location.
+     * @param gamePiece game piece input
+     * @param x the column the anchor of the piece goes on
+     * @param y the row the anchor of the piece goes on
+     * @return true if the GamePiece can be played
+     */
+    public boolean canPlayPiece(GamePiece gamePiece, int x, int y) {
+        long[] pieceRows = gamePiece.getRowMasks();
+        int anchor = Bitboard.anchor(pieceRows);
+        for(int blockY = 0; blockY < pieceRows.length; blockY++) {
+            int gridY = y - anchor + blockY;
+            for(long bits = pieceRows[blockY]; bits != 0; bits &= bits - 1) {
+                int gridX = x - anchor + Long.numberOfTrailingZeros(bits);
+                if(gridX < 0 || gridX >= cols || gridY < 0 || gridY >= rows || isFilled(gridX, gridY)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Play a piece, if it fits
+     * @param gamePiece the piece
+     * @param x the column the anchor of the piece goes on
+     * @param y the row the anchor of the piece goes on
+     * @return true if the piece was played
+     */
+    public boolean playPiece(GamePiece gamePiece, int x, int y) {
+        if(!canPlayPiece(gamePiece, x, y)) {
+            return false;
+        }
+        int colour = gamePiece.getValue();
+        long[] pieceRows = gamePiece.getRowMasks();
+        int anchor = Bitboard.anchor(pieceRows);
+        beginUpdate();
+        for(int blockY = 0; blockY < pieceRows.length; blockY++) {
+            for(long bits = pieceRows[blockY]; bits != 0; bits &= bits - 1) {
+                set(x - anchor + Long.numberOfTrailingZeros(bits), y - anchor + blockY, colour);
+            }
+        }
+        commitUpdate();
+        return true;
+    }
+
+    /**
+     * Check whether a row is full. Only the chunks along the row are looked at, and a row crossing a chunk which was
+     * never filled cannot be full.
+     * @param y row
+     * @return true if every block of the row is filled
+     */
+    public boolean isRowFull(int y) {
+        int chunkY = y >>> CHUNK_SHIFT;
+        int localY = y & (CHUNK_SIZE - 1);
+        for(int chunkX = 0; chunkX < getChunkCols(); chunkX++) {
+            Chunk chunk = getChunk(chunkX, chunkY);
+            if(chunk == null || chunk.occupancy[localY] != columnMask(chunkX)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether a column is full, looking only at the chunks down it
+     * @param x column
+     * @return true if every block of the column is filled
+     */
+    public boolean isColumnFull(int x) {
+        long bit = 1L << x;
+        for(int chunkY = 0; chunkY < getChunkRows(); chunkY++) {
+            Chunk chunk = getChunk(x >>> CHUNK_SHIFT, chunkY);
+            if(chunk == null || chunk.filled < rowsIn(chunkY)) {
+                return false;
+            }
+            for(int localY = 0; localY < rowsIn(chunkY); localY++) {
+                if((chunk.occupancy[localY] & bit) == 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Clear every full row and column crossing an area, such as where a piece was just played. Lines are only looked
+     * for there, so the cost depends on the area and the length of a line rather than the size of the board.
+     * The number of lines removed is available afterwards from getClearedLines.
+     * @param left the first column of the area, which can be at most CHUNK_SIZE blocks wide and high
+     * @param top the first row of the area
+     * @param right the last column of the area
+     * @param bottom the last row of the area
+     * @return the number of blocks cleared
+     */
+    public long clearFullLines(int left, int top, int right, int bottom) {
+        left = Math.max(left, 0);
+        top = Math.max(top, 0);
+        right = Math.min(right, cols - 1);
+        bottom = Math.min(bottom, rows - 1);
+        if(right - left >= CHUNK_SIZE || bottom - top >= CHUNK_SIZE) {
+            throw new IllegalArgumentException("Can only look for lines across " + CHUNK_SIZE + " blocks at once");
+        }
+
+        //Find every full line before clearing any, so a row and a column can both clear through the same block
+        long fullRows = 0;
+        long fullCols = 0;
+        for(int y = top; y <= bottom; y++) {
+            if(isRowFull(y)) {
+                fullRows |= 1L << (y - top);
+            }
+        }
+        for(int x = left; x <= right; x++) {
+            if(isColumnFull(x)) {
+                fullCols |= 1L << (x - left);
+            }
+        }
+        int lineRows = Long.bitCount(fullRows);
+        int lineCols = Long.bitCount(fullCols);
+        clearedLines = lineRows + lineCols;
+        if(clearedLines == 0) {
+            return 0;
+        }
+
+        beginUpdate();
+        for(long bits = fullRows; bits != 0; bits &= bits - 1) {
+            clearRow(top + Long.numberOfTrailingZeros(bits));
+        }
+        for(long bits = fullCols; bits != 0; bits &= bits - 1) {
+            int x = left + Long.numberOfTrailingZeros(bits);
+            for(int y = 0; y < rows; y++) {
+                set(x, y, 0);
+            }
+        }
+        commitUpdate();
+
+        //Blocks where a cleared row crosses a cleared column only count once
+        return (long) lineRows * cols + (long) lineCols * rows - (long) lineRows * lineCols;
+    }
+
+    /**
+     * Empty a whole row a chunk at a time
+     */
+    private void clearRow(int y) {
+        int chunkY = y >>> CHUNK_SHIFT;
+        int localY = y & (CHUNK_SIZE - 1);
+        for(int chunkX = 0; chunkX < getChunkCols(); chunkX++) {
+            Chunk chunk = getChunk(chunkX, chunkY);
+            if(chunk == null || chunk.occupancy[localY] == 0) continue;
+            int emptied = Long.bitCount(chunk.occupancy[localY]);
+            chunk.occupancy[localY] = 0;
+            Arrays.fill(chunk.colours, localY * CHUNK_SIZE, (localY + 1) * CHUNK_SIZE, (byte) 0);
+            chunk.filled -= emptied;
+            filled -= emptied;
+            changed(chunk);
+        }
+    }
+
+    /**
+     * Get the number of lines removed by the last call to clearFullLines
+     * @return rows plus columns cleared
+     */
+    public int getClearedLines() {
+        return clearedLines;
+    }
+
+    /**
+     * Get the mask of the columns of a chunk which are on the board, as the last chunk of a row may be cut short
+     */
+    private long columnMask(int chunkX) {
+        return Bitboard.fullRow(Math.min(CHUNK_SIZE, cols - (chunkX << CHUNK_SHIFT)));
+    }
+
+    /**
+     * Get the number of rows of a chunk which are on the board
+     */
+    private int rowsIn(int chunkY) {
+        return Math.min(CHUNK_SIZE, rows - (chunkY << CHUNK_SHIFT));
+    }
+
+}
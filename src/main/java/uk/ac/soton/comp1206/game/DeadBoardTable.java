@@ -0,0 +1,162 @@
+package uk.ac.soton.comp1206.game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A precomputed answer, for every one of the 2^25 ways blocks can be filled on the standard 5x5 board, to which pieces
+ * can still be played somewhere. With the table loaded, checking whether a board is dead is a single lookup.
+ *
+ * A board is packed into an int with bit (y * 5 + x) set for each filled block, as a PackedBoard. The table file
+ * starts with a 16 byte header: the magic bytes "TDBT", then the format version, the columns and the rows as little
+ * endian ints. After it come 2^25 little endian shorts, one per packed board, with bit p set when piece p has at least
+ * one legal placement.
+ *
+ * The file is 64 MiB and is memory-mapped rather than read in, so only the pages actually looked at are loaded. It is
+ * made by sim.DeadBoardGenerator.
+ */
+public class DeadBoardTable {
+
+    private static final Logger logger = LogManager.getLogger(DeadBoardTable.class);
+
+    /**
+     * The number of columns and rows of the boards in the table
+     */
+    public static final int SIZE = PackedBoard.SIZE;
+
+    /**
+     * The number of boards in the table
+     */
+    public static final int STATES = 1 << (SIZE * SIZE);
+
+    /**
+     * The file the shared table is loaded from, unless the tetrecs.deadboards system property names another
+     */
+    public static final String DEFAULT_FILE = "deadboards.bin";
+
+    private static final int MAGIC = 'T' | 'D' << 8 | 'B' << 16 | 'T' << 24;
+    private static final int VERSION = 1;
+
+    /**
+     * The size of the file header in bytes
+     */
+    public static final int HEADER_BYTES = 16;
+
+    /**
+     * The size of a whole table file in bytes
+     */
+    public static final long FILE_BYTES = HEADER_BYTES + (long) STATES * Short.BYTES;
+
+    private static volatile DeadBoardTable shared;
+    private static volatile boolean sharedLoaded;
+
+    private final ByteBuffer table;
+
+    private DeadBoardTable(ByteBuffer table) {
+        this.table = table;
+    }
+
+    /**
+     * Map a table file
+     * @param path the file
+     * @return the table
+     * @throws IOException if the file cannot be read or is not a table of 5x5 boards
+     */
+    public static DeadBoardTable load(Path path) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if(channel.size() != FILE_BYTES) {
+                throw new IOException("Dead board table has the wrong size: " + channel.size());
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, FILE_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != SIZE
+                || buffer.getInt(12) != SIZE) {
+                throw new IOException("Not a dead board table for " + SIZE + "x" + SIZE + " boards");
+            }
+            //The mapping stays valid after the channel is closed
+            return new DeadBoardTable(buffer);
+        }
+    }
+
+    /**
+     * Write the file header into the start of a little endian buffer
+     * @param buffer the buffer
+     */
+    public static void writeHeader(ByteBuffer buffer) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, SIZE);
+        buffer.putInt(12, SIZE);
+    }
+
+    /**
+     * Get the table shared by every game, loading it the first time if its file exists
+     * @return the table, or null if there is no table file
+     */
+    public static DeadBoardTable shared() {
+        if(!sharedLoaded) {
+            synchronized(DeadBoardTable.class) {
+                if(!sharedLoaded) {
+                    Path path = Path.of(System.getProperty("tetrecs.deadboards", DEFAULT_FILE));
+                    if(Files.exists(path)) {
+                        try {
+                            shared = load(path);
+                            logger.info("Loaded the dead board table from {}", path);
+                        } catch(IOException e) {
+                            logger.error("Could not load the dead board table {}", e.getMessage());
+                        }
+                    }
+                    sharedLoaded = true;
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Pack a 5x5 board into an index into the table
+     * @param grid the grid, which must be 5x5
+     * @return the packed board
+     */
+    public static int pack(Grid grid) {
+        return PackedBoard.pack(grid);
+    }
+
+    /**
+     * Find which pieces can be played on a board
+     * @param board the packed board
+     * @return a mask with bit p set when piece p has at least one legal placement
+     */
+    public int playable(int board) {
+        return table.getShort(HEADER_BYTES + board * Short.BYTES) & 0xFFFF;
+    }
+
+    /**
+     * Check whether a piece can be played anywhere on a board
+     * @param board the packed board
+     * @param piece the piece number
+     * @return true if it has at least one legal placement
+     */
+    public boolean canPlay(int board, int piece) {
+        return (playable(board) & (1 << piece)) != 0;
+    }
+
+    /**
+     * Check whether a board is dead, meaning neither of two pieces can be played anywhere on it
+     * @param board the packed board
+     * @param current the piece number of the current piece
+     * @param following the piece number of the following piece
+     * @return true if no legal move exists
+     */
+    public boolean isDead(int board, int current, int following) {
+        return (playable(board) & (1 << current | 1 << following)) == 0;
+    }
+
+}
@@ -1,16 +1,16 @@
 package uk.ac.soton.comp1206.game;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Random;
-import java.util.Set;
 import javafx.application.Platform;
 import javafx.beans.binding.StringBinding;
 import javafx.beans.property.IntegerProperty;
@@ -18,12 +18,14 @@ import javafx.beans.property.SimpleIntegerProperty;
 import javafx.util.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.component.CellSet;
 import uk.ac.soton.comp1206.component.GameBlock;
-import uk.ac.soton.comp1206.component.GameBlockCoordinate;
 import uk.ac.soton.comp1206.component.PieceBoard;
+import uk.ac.soton.comp1206.event.CursorMovedListener;
 import uk.ac.soton.comp1206.event.GameEndedListener;
 import uk.ac.soton.comp1206.event.GameLoopListener;
 import uk.ac.soton.comp1206.event.LineClearedListener;
+import uk.ac.soton.comp1206.event.NextPieceListener;
 import uk.ac.soton.comp1206.scene.Multimedia;
 import java.util.Timer;
 import java.util.TimerTask;
@@ -33,32 +35,39 @@ import uk.ac.soton.comp1206.scene.ScoresList;
 /**
  * The Game class handles the main logic, state and properties of the TetrECS game. Methods to manipulate the game state
  * and to handle actions made by the player should take place inside this class.
+ *
+ * The rules themselves live in a GameEngine, which has no dependency on JavaFX. The Game adapts it for the UI: it
+ * mirrors the engine's score, level, lives and multiplier into bindable properties, shows the pieces on PieceBoards,
+ * plays sounds and runs the real time timer.
  */
 public class Game implements LineClearedListener {
-    private Random random = new Random();
-    public GamePiece currentPiece;
-    public GamePiece followingPiece;
-    public PieceBoard pieceBoard = new PieceBoard(3,3,120,120);
-    public PieceBoard followingPieceBoard = new PieceBoard(3,3,80,80);
+    public PieceBoard pieceBoard;
+    public PieceBoard followingPieceBoard;
     public IntegerProperty score = new SimpleIntegerProperty(0); //IntegerProperty makes it bindable
     private IntegerProperty level = new SimpleIntegerProperty(0);
-    public IntegerProperty lives = new SimpleIntegerProperty(3);
+    public IntegerProperty lives = new SimpleIntegerProperty(GameEngine.STARTING_LIVES);
     public IntegerProperty multiplier = new SimpleIntegerProperty(1);
     private static final Logger logger = LogManager.getLogger(Game.class);
     public Multimedia multimedia = new Multimedia();
-    public Set<GameBlockCoordinate> coords = new HashSet<>();
+    public final CellSet coords;
     private Timer timer;
     private TimerTask timerTask;
     private GameLoopListener gameLoopListener;
     private GameEndedListener gameEndedListener;
+    private NextPieceListener nextPieceListener;
+    private CursorMovedListener cursorMovedListener;
     private int timerDelayLength;
     private Boolean gameEnd = Boolean.FALSE;
     private IntegerProperty highScore = new SimpleIntegerProperty(0);
-    private int valueOfCenterBlock;
 
     //false = singleplayer. true = multiplayer
     private Boolean gameType = false;
 
+    /**
+     * The folder finished games save their replays into
+     */
+    public static final String REPLAY_FOLDER = "replays";
+
     /**
      * Number of rows
      */
@@ -69,25 +78,59 @@ public class Game implements LineClearedListener {
      */
     protected final int cols;
 
+    /**
+     * The headless engine holding the rules and state of this game
+     */
+    protected final GameEngine engine;
+
     /**
      * The grid model linked to the game
      */
     protected final Grid grid;
 
-    public int controlsX= 2;
-    public int controlsY = 2;
+    /**
+     * The keyboard cursor position, starting in the middle of the board
+     */
+    public int controlsX;
+    public int controlsY;
 
     /**
-     * Create a new game with the specified rows and columns. Creates a corresponding grid model.
+     * Whether the keyboard cursor is showing. The cursor is only drawn on the board, never put in the Grid.
+     */
+    private boolean cursorShown = false;
+
+    /**
+     * Create a new game with the specified rows and columns, played with the active piece pack. Creates a
+     * corresponding grid model.
      * @param cols number of columns
      * @param rows number of rows
      */
     public Game(int cols, int rows) {
-        this.cols = cols;
-        this.rows = rows;
+        this(new GameEngine(cols, rows, PieceCatalogue.active()));
+    }
+
+    /**
+     * Create a new game driving the given engine
+     * @param engine the engine holding the rules and state of the game
+     */
+    protected Game(GameEngine engine) {
+        this.engine = engine;
+
+        //The engine's grid model represents the game state
+        this.grid = engine.getGrid();
+        this.cols = grid.getCols();
+        this.rows = grid.getRows();
+
+        this.controlsX = cols / 2;
+        this.controlsY = rows / 2;
 
-        //Create a new grid model to represent the game state
-        this.grid = new Grid(cols,rows);
+        //Big enough for the largest piece of the pack
+        int pieceSize = engine.getCatalogue().getSize();
+        this.pieceBoard = new PieceBoard(pieceSize, pieceSize, 120, 120);
+        this.followingPieceBoard = new PieceBoard(pieceSize, pieceSize, 80, 80);
+
+        //Reused after every piece, so clearing lines creates no garbage
+        this.coords = new CellSet(cols, rows);
     }
 
     /**
@@ -105,10 +148,8 @@ public class Game implements LineClearedListener {
         logger.info("Initialising game");
 
         //we want the game to start with a piece already - hence put in initialise game method.
-        currentPiece = spawnPiece();
-        followingPiece = spawnPiece();
-        pieceBoard.displayPiece(currentPiece);
-        followingPieceBoard.displayPiece(followingPiece);
+        engine.start();
+        displayPieces();
 
         playSetupScene();
 
@@ -150,6 +191,17 @@ public class Game implements LineClearedListener {
 
         //specifies the task and how long after it should run it
         timer.schedule(timerTask, this.timerDelayLength);
+
+        nextPieceReady();
+    }
+
+    /**
+     * Tells the next piece listener that a piece is ready to be played. Does nothing until the game has pieces.
+     */
+    protected void nextPieceReady() {
+        if(nextPieceListener != null && getCurrentPiece() != null && !getGameEnd()){
+            nextPieceListener.nextPiece(getCurrentPiece(), getFollowingPiece());
+        }
     }
 
     /**
@@ -164,11 +216,13 @@ public class Game implements LineClearedListener {
     }
 
     /**
-     * stops the timer
+     * stops the timer, if it has been started
      */
 
     public void stopTimer() {
-        timer.cancel();
+        if(timer != null) {
+            timer.cancel();
+        }
     }
 
     /**
@@ -200,13 +254,13 @@ public class Game implements LineClearedListener {
 
     public void playPiecePostSteps(int x, int y){
         logger.info("Playing the post piece steps");
-        if(grid.canPlayPiece(currentPiece,x,y)){
+        if(getCurrentPiece() != null && engine.canPlay(x, y)){
             multimedia.playAudioFile("/sounds/pling.wav");
-            grid.playPiece(currentPiece, x, y);
-            //ensures that when the keys are used, the incorrect color isnt used
-            int color = grid.get(controlsX, controlsY);
-            this.grid.setPreviousColor(color);
+            //the placement and any lines it clears are published to the board as one change
+            grid.beginUpdate();
+            engine.play(x, y);
             afterPiece();
+            grid.commitUpdate();
             prepareAfterPiece();
         } else {
         //play something like a sound to denote you cannot play that piece
@@ -214,11 +268,69 @@ public class Game implements LineClearedListener {
     }
 
     /**
-     * Prepares the after piece by loading next piece and restarting timer
+     * Prepares the after piece by loading next piece and restarting timer, or ends the game if the engine says it is
+     * over
      */
     public void prepareAfterPiece() {
-        nextPiece();
-        restartTimer();
+        logger.info("The next piece is: {}", getCurrentPiece());
+        logger.info("The following piece is: {}", getFollowingPiece());
+        displayPieces();
+
+        if(engine.isGameOver()){
+            logger.info("The engine has ended the game");
+            gameOver();
+        } else {
+            restartTimer();
+        }
+    }
+
+    /**
+     * Shows the current and following pieces on their piece boards
+     */
+    protected void displayPieces() {
+        if(getCurrentPiece() != null){
+            pieceBoard.displayPiece(getCurrentPiece());
+        }
+        if(getFollowingPiece() != null){
+            followingPieceBoard.displayPiece(getFollowingPiece());
+        }
+    }
+
+    /**
+     * Copies the engine's score, level, lives and multiplier into the bindable properties
+     */
+    protected void updateProperties() {
+        score.set(engine.getScore());
+        level.set(engine.getLevel());
+        lives.set(engine.getLives());
+        multiplier.set(engine.getMultiplier());
+        if(score.get() >= highScore.get()){
+            highScore.set(score.get());
+        }
+    }
+
+    /**
+     * Get the engine holding the rules and state of this game
+     * @return engine
+     */
+    public GameEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Get the piece waiting to be played
+     * @return current piece
+     */
+    public GamePiece getCurrentPiece() {
+        return engine.getCurrentPiece();
+    }
+
+    /**
+     * Get the piece after the current piece
+     * @return following piece
+     */
+    public GamePiece getFollowingPiece() {
+        return engine.getFollowingPiece();
     }
 
     /**
@@ -270,119 +382,32 @@ public class Game implements LineClearedListener {
     }
 
     /**
-     * Replaces the current piece with a new piece that has been spawned in
-     * @return the new current piece
-     */
-    public GamePiece nextPiece(){
-        currentPiece = followingPiece;
-        followingPiece = spawnPiece();
-        logger.info("The next piece is: {}", currentPiece);
-        logger.info("The following piece is: {}", followingPiece);
-        pieceBoard.displayPiece(currentPiece);
-        followingPieceBoard.displayPiece(followingPiece);
-
-        return currentPiece;
-    }
-
-    /**
-     * Spawns a new piece at random in
-     * @return the piece that is created.
-     */
-    public GamePiece spawnPiece(){
-        //chooses at random out of total number of pieces
-        int randnum = random.nextInt(GamePiece.PIECES);
-        logger.info("Picking random piece: {}",randnum);
-        var piece = GamePiece.createPiece(randnum);
-        return piece;
-    }
-
-    /**
-     * Checks the rows and columns to see if they can be cleared or not, then clears any if found
+     * Picks up what the engine cleared after a piece was played: works out the coordinates to fade out, then updates
+     * the score, multiplier and level properties
      */
     public void afterPiece(){
-        logger.info("Running afterPiece(). Checking for rows and columns to clear... ");
+        logger.info("Running afterPiece(). Checking for rows and columns that were cleared... ");
         coords.clear();
-        int gridXRow = grid.getRows();
-        int gridYColumn = grid.getCols();
-
-        //Checks all the x-rows for valid blocks to clear
-        for(int j=0; j<gridYColumn; j++){
-            for(int i=0; i<gridXRow; i++) {
-                var gridBlock = grid.get(i,j);
-                if(gridBlock <= 0){
-                    break;
-                } else {
-                    if(i==(gridXRow-1)){
-                        //add all the 5 last x coords with the y coords to the hashset
-                        for(int k=0; k<gridXRow; k++){
-                            GameBlockCoordinate gameBlockCoordinate = new GameBlockCoordinate(k,j);
-                            coords.add(gameBlockCoordinate);
-                        }
-                    }
-                }
-            }
-        }
 
-        //Checks all the y-columns for valid squares to clear
-        for(int i=0; i<gridXRow; i++){
-            for(int j=0; j<gridYColumn; j++) {
-                var gridBlock = grid.get(i,j);
-                if(gridBlock <= 0){
-                    break;
-                } else {
-                    if(j==(gridYColumn-1)){
-                        //add all the 5 last y coords and the x coords to the hashset
-                        for(int k=0; k<gridYColumn; k++){
-                            GameBlockCoordinate gameBlockCoordinate = new GameBlockCoordinate(i,k);
-                            coords.add(gameBlockCoordinate);
-                        }
-                    }
-                }
+        //Only build up the coordinates for the fade out when something was actually cleared
+        if(engine.getLinesCleared() > 0){
+            long clearedRows = grid.getClearedRows();
+            long clearedCols = grid.getClearedCols();
+            if(logger.isInfoEnabled()){
+                logger.info("Cleared rows {} and columns {}", Long.toBinaryString(clearedRows), Long.toBinaryString(clearedCols));
+            }
+            for(long rowBits = clearedRows; rowBits != 0; rowBits &= rowBits - 1){
+                coords.addRow(Long.numberOfTrailingZeros(rowBits));
+            }
+            for(long colBits = clearedCols; colBits != 0; colBits &= colBits - 1){
+                coords.addColumn(Long.numberOfTrailingZeros(colBits));
             }
         }
 
         whenLineCleared(coords);
 
-        //Clearing the squares on the screen back to white (0)
-        for (GameBlockCoordinate coordinate : coords) {
-            logger.info("Clearing any fully filled rows/columns process has begun.");
-            int x = coordinate.getX(), y = coordinate.getY();
-            grid.setPreviousColor(0);
-            grid.set(x,y,0);
-            grid.get(x,y);
-        }
-
-        //calculates the multiplier and new score
-        int numberOfBlocks = coords.size();
-        int numberOfLines = (int) Math.ceil(numberOfBlocks/5);
-        if (numberOfLines>0){
-            multiplier.set(multiplier.get() + 1);
-        } else {
-            multiplier.set(1);
-        }
-        score(numberOfLines, numberOfBlocks);
-        if(score.getValue() >= highScore.getValue()){
-            highScore.setValue(score.getValue());
-        }
-
-        restartTimer();
-
-        //Sets the new level
-        level.set((int) Math.floor((double) score.get()/1000));
-
-    }
-
-    /**
-     * Increments the score if blocks have been cleared
-     * @param numberOfLines the number of lines cleared
-     * @param numberofBlocks total number of blocks that have been cleared
-     */
-    public void score(int numberOfLines, int numberofBlocks){
-        logger.info("Recalculating the score");
-        if(numberOfLines!=0){
-            int newScore = score.get() + (numberOfLines*numberofBlocks*10*(multiplier.get()));
-            score.set(newScore);
-        }
+        //the engine has already worked out the multiplier, new score and level
+        updateProperties();
     }
 
     /**
@@ -403,9 +428,12 @@ public class Game implements LineClearedListener {
      * Rotates the current piece the user is playing - CLOCKWISE
      */
     public void rotateCurrentPieceClockwise() {
+        if(getCurrentPiece() == null){
+            return;
+        }
         logger.info("Successfully rotated the current piece");
-        currentPiece.rotate();
-        pieceBoard.displayPiece(currentPiece);
+        engine.rotateClockwise();
+        pieceBoard.displayPiece(getCurrentPiece());
         multimedia.playAudioFile("/sounds/rotate.wav");
     }
 
@@ -413,11 +441,12 @@ public class Game implements LineClearedListener {
      * Rotates the current piece the user is playing - ANTICLOCKWISE
      */
     public void rotateCurrentPieceAnticlockwise() {
+        if(getCurrentPiece() == null){
+            return;
+        }
         logger.info("Successfully rotated the current piece");
-        currentPiece.rotate();
-        currentPiece.rotate();
-        currentPiece.rotate();
-        pieceBoard.displayPiece(currentPiece);
+        engine.rotateAnticlockwise();
+        pieceBoard.displayPiece(getCurrentPiece());
         multimedia.playAudioFile("/sounds/rotate.wav");
     }
 
@@ -426,12 +455,12 @@ public class Game implements LineClearedListener {
      * Swaps the current piece with the following piece (and vice versa)
      */
     public void swapCurrentPiece() {
+        if(getCurrentPiece() == null){
+            return;
+        }
         logger.info("Swapping the current piece and the following piece around");
-        GamePiece temp = currentPiece;
-        currentPiece = followingPiece;
-        followingPiece = temp;
-        pieceBoard.displayPiece(currentPiece);
-        followingPieceBoard.displayPiece(followingPiece);
+        engine.swap();
+        displayPieces();
         multimedia.playAudioFile("/sounds/place.wav");
     }
 
@@ -439,12 +468,11 @@ public class Game implements LineClearedListener {
      * Moves the users cursor left when playing with keyboard
      */
     public void moveLeft() {
-        removeCursor();
         logger.info("Moving the cursor left. New coordinate {}, {}", controlsX, controlsY);
         if(this.controlsX > 0){
             controlsX--;
         } else {
-            this.controlsX = 4;
+            this.controlsX = cols - 1;
         }
         displayCursor();
     }
@@ -453,9 +481,8 @@ public class Game implements LineClearedListener {
      * Moves the users cursor right when playing with keyboard
      */
     public void moveRight() {
-        removeCursor();
         logger.info("Moving the cursor right. New coordinate {}, {}", controlsX, controlsY);
-        if(this.controlsX >= 0 && this.controlsX < 4){
+        if(this.controlsX >= 0 && this.controlsX < cols - 1){
             controlsX++;
         } else {
             this.controlsX = 0;
@@ -467,12 +494,11 @@ public class Game implements LineClearedListener {
      * Moves the users cursor up when playing with keyboard
      */
     public void moveUp() {
-        removeCursor();
         logger.info("Moving the cursor up. New coordinate {}, {}", controlsX, controlsY);
         if(this.controlsY > 0){
             controlsY--;
         } else {
-            this.controlsY = 4;
+            this.controlsY = rows - 1;
         }
         displayCursor();
     }
@@ -481,9 +507,8 @@ public class Game implements LineClearedListener {
      * Moves the users cursor down when playing with keyboard
      */
     public void moveDown() {
-        removeCursor();
         logger.info("Moving the cursor down. New coordinate {}, {}", controlsX, controlsY);
-        if(this.controlsY >= 0 && this.controlsY < 4){
+        if(this.controlsY >= 0 && this.controlsY < rows - 1){
             controlsY++;
         } else {
             this.controlsY = 0;
@@ -495,15 +520,27 @@ public class Game implements LineClearedListener {
      * Displays the cursor when the user is playing with the keyboard
      */
     public void displayCursor() {
-        grid.addTemporaryBox(controlsX, controlsY);
+        cursorShown = true;
+        cursorMoved();
     }
 
     /**
      * Removes the cursor when the user is no longer playing with the keyboard, or to initialise a key control
      */
-
     public void removeCursor() {
-        grid.removeTemporaryBox(controlsX, controlsY);
+        if(cursorShown) {
+            cursorShown = false;
+            cursorMoved();
+        }
+    }
+
+    /**
+     * Tell the listener where the cursor is and whether it is showing
+     */
+    private void cursorMoved() {
+        if(cursorMovedListener != null) {
+            cursorMovedListener.cursorMoved(controlsX, controlsY, cursorShown);
+        }
     }
 
     /**
@@ -520,15 +557,16 @@ public class Game implements LineClearedListener {
      * @return the coordinates to be cleared
      */
     @Override
-    public Set<GameBlockCoordinate> whenLineCleared(Set<GameBlockCoordinate> coords) {
+    public CellSet whenLineCleared(CellSet coords) {
         return coords;
     }
 
     /**
-     * getter method for coordinates
+     * getter method for the coordinates cleared by the last piece. The set is reused, so it changes with the next
+     * piece; use asSet on it where a Set of GameBlockCoordinates is needed.
      * @return coordinates
      */
-    public Set<GameBlockCoordinate> getCoords() {
+    public CellSet getCoords() {
         return coords;
     }
 
@@ -537,7 +575,7 @@ public class Game implements LineClearedListener {
      * @return int of the time the player has to play each piece
      */
     public int getTimerDelay(){
-        int timerDelay = 12000-(500*level.getValue());
+        int timerDelay = engine.getTimerDelay();
         logger.info("Timer Delay is: {}", timerDelay);
         return timerDelay;
     }
@@ -548,24 +586,16 @@ public class Game implements LineClearedListener {
     public void gameLoop(){
         //Platform.runLater() used due to different thread issue
         Platform.runLater(() -> {
+            if(getCurrentPiece() == null || getGameEnd()){
+                return;
+            }
             logger.info("Timer Ended! Moving onto gameloop next piece");
-            lives.set(lives.get()-1);
+            engine.timerExpired();
+            updateProperties();
             multimedia.playAudioFile("/sounds/lifelose.wav");
-            multiplier.set(1);
-            prepareAfterPiece();
-
-            //If lives fall below 0, end the game. Or prepare the next piece
-            if(this.lives.get() < 0){
-                logger.info("TRYING TO STOP THE GAME !!!!!!!!!!!!!!!!!!!!!!");
-
-                if(gameEndedListener != null){
-                    gameEndedListener.gameEnded();
-                }
-
-                stopTimer();
-                this.endGame();
-            }
 
+            //If lives fall below 0 the engine ends the game. Or prepare the next piece
+            prepareAfterPiece();
         });
     }
 
@@ -581,7 +611,52 @@ public class Game implements LineClearedListener {
         this.gameEndedListener = listener;
     }
 
+    /**
+     * next piece listener, told each time a new piece is ready and its timer has started
+     * @param listener NextPieceListener, or null to stop listening
+     */
+    public void setOnNextPiece(NextPieceListener listener){
+        this.nextPieceListener = listener;
+    }
+
+    /**
+     * cursor moved listener, told each time the keyboard cursor moves, shows or hides
+     * @param listener CursorMovedListener, or null to stop listening
+     */
+    public void setOnCursorMoved(CursorMovedListener listener){
+        this.cursorMovedListener = listener;
+    }
+
+
+
+    /**
+     * Checks whether the board is dead, meaning neither the current piece nor the following piece (by swapping) can
+     * be played anywhere in any rotation
+     * @return true if no legal move exists
+     */
+    public boolean isBoardDead() {
+        if(getCurrentPiece() == null){
+            return false;
+        }
+        return engine.isBoardDead();
+    }
+
+    /**
+     * Finishes the game straight away: tells the game ended listener, stops the timer and ends the game.
+     * Does nothing if the game has already ended.
+     */
+    public void gameOver() {
+        if(getGameEnd()){
+            return;
+        }
 
+        if(gameEndedListener != null){
+            gameEndedListener.gameEnded();
+        }
+
+        stopTimer();
+        this.endGame();
+    }
 
     /**
      * Ends the game by ending the scene and opening the score scene
@@ -589,6 +664,37 @@ public class Game implements LineClearedListener {
     public void endGame(){
         logger.info("Game has ended... gameEnd is True");
         this.gameEnd = true;
+        engine.endGame();
+        saveReplay();
+    }
+
+    /**
+     * Saves the replay log of this game into the replays folder, so the game can be rebuilt later with the Replayer
+     */
+    protected void saveReplay() {
+        if(getCurrentPiece() == null){
+            //The game never started, so there is nothing to replay
+            return;
+        }
+        File folder = new File(REPLAY_FOLDER);
+        File file = new File(folder, "replay-" + System.currentTimeMillis() + ".trpl");
+        try{
+            folder.mkdirs();
+            try(OutputStream out = new BufferedOutputStream(new FileOutputStream(file))){
+                engine.getReplay().writeTo(out);
+            }
+            logger.info("Saved replay of {} bytes to {}", engine.getReplay().size(), file);
+        } catch (IOException e) {
+            logger.error("An error has occurred when saving the replay {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Get the record of every input made in this game so far
+     * @return replay log
+     */
+    public ReplayLog getReplay() {
+        return engine.getReplay();
     }
 
     /**
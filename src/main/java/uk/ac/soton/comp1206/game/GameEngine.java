@@ -0,0 +1,513 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.SplittableRandom;
+import java.util.function.IntSupplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The GameEngine holds the rules of TetrECS with no dependency on the JavaFX toolkit: the grid, the current and
+ * following piece, scoring, lives, level and the timer rules, all as plain primitives.
+ *
+ * The engine is driven one step at a time. Each call to play, rotateClockwise, rotateAnticlockwise, swap or
+ * timerExpired applies one action and returns straight away, so a game can run headless and as fast as the caller
+ * likes. Real time is left to the caller, which should call timerExpired when getTimerDelay milliseconds pass without
+ * a piece being played.
+ *
+ * Every input is recorded in a ReplayLog as it is applied. Seeded engines only need the seed and the inputs to be
+ * rebuilt, engines fed by an outside piece supplier also record each piece drawn. Replayer rebuilds a game from its log.
+ *
+ * Game and MultiplayerGame wrap an engine with the JavaFX properties, sounds and timers the UI needs.
+ */
+public class GameEngine {
+
+    private static final Logger logger = LogManager.getLogger(GameEngine.class);
+
+    /**
+     * The number of lives a game starts with
+     */
+    public static final int STARTING_LIVES = 3;
+
+    /**
+     * The grid model holding the state of the board
+     */
+    private final Grid grid;
+
+    /**
+     * The pack the pieces are drawn from
+     */
+    private final PieceCatalogue catalogue;
+
+    /**
+     * Supplies the piece number of every new piece, usually a PieceSource
+     */
+    private final IntSupplier pieceSupplier;
+
+    /**
+     * The record of every input applied to this engine
+     */
+    private final ReplayLog replay;
+
+    /**
+     * The precomputed dead board table, if this is a standard board with the standard pieces and the table is
+     * available
+     */
+    private final DeadBoardTable deadBoards;
+
+    private GamePiece currentPiece;
+    private GamePiece followingPiece;
+
+    private int score = 0;
+    private int level = 0;
+    private int lives = STARTING_LIVES;
+    private int multiplier = 1;
+    private boolean gameOver = false;
+
+    /**
+     * The number of lines and blocks cleared by the last piece played
+     */
+    private int linesCleared;
+    private int blocksCleared;
+
+    /**
+     * An immutable copy of the state of an engine: the board, the pieces and the score. It is a handful of numbers and a
+     * Grid.Snapshot, which shares its unchanged rows with the snapshots before it.
+     */
+    public static final class Snapshot {
+        private final Grid.Snapshot grid;
+        private final int currentPiece;
+        private final int currentRotation;
+        private final int followingPiece;
+        private final int followingRotation;
+        private final int score;
+        private final int level;
+        private final int lives;
+        private final int multiplier;
+        private final int linesCleared;
+        private final int blocksCleared;
+        private final boolean gameOver;
+
+        private Snapshot(GameEngine engine) {
+            this.grid = engine.grid.snapshot();
+            this.currentPiece = engine.currentPiece.getType();
+            this.currentRotation = engine.currentPiece.getRotation();
+            this.followingPiece = engine.followingPiece.getType();
+            this.followingRotation = engine.followingPiece.getRotation();
+            this.score = engine.score;
+            this.level = engine.level;
+            this.lives = engine.lives;
+            this.multiplier = engine.multiplier;
+            this.linesCleared = engine.linesCleared;
+            this.blocksCleared = engine.blocksCleared;
+            this.gameOver = engine.gameOver;
+        }
+
+        /**
+         * Get the board when the snapshot was taken
+         * @return board
+         */
+        public Grid.Snapshot getGrid() {
+            return grid;
+        }
+
+        /**
+         * Get the score when the snapshot was taken
+         * @return score
+         */
+        public int getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * Create a new engine with the specified columns and rows, drawing pieces at random from a fresh seed
+     * @param cols number of columns
+     * @param rows number of rows
+     */
+    public GameEngine(int cols, int rows) {
+        this(cols, rows, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Create a new engine with the specified columns and rows, drawing pieces at random from the given seed. Two
+     * engines with the same seed given the same inputs play out exactly the same game.
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param seed the piece seed
+     */
+    public GameEngine(int cols, int rows, long seed) {
+        this(cols, rows, PieceCatalogue.standard(), randomPieces(new SplittableRandom(seed)),
+            new ReplayLog(cols, rows, seed));
+    }
+
+    /**
+     * Create a new engine with the specified columns and rows, drawing pieces from the given supplier
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param pieceSupplier supplies the piece number of each new piece, such as a PieceSource. Called in the middle
+     *                      of playing a move, so should never block.
+     */
+    public GameEngine(int cols, int rows, IntSupplier pieceSupplier) {
+        this(cols, rows, PieceCatalogue.standard(), pieceSupplier, new ReplayLog(cols, rows));
+    }
+
+    /**
+     * Create a new engine with the specified columns and rows, drawing pieces at random from a pack. The replay log
+     * numbers the pieces by that pack and records its name, so it is never replayed with other pieces.
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param catalogue the pack to draw pieces from
+     */
+    public GameEngine(int cols, int rows, PieceCatalogue catalogue) {
+        this(cols, rows, catalogue, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Create a new engine with the specified columns and rows, drawing pieces at random from a pack with the given
+     * seed. Two engines with the same pack and seed given the same inputs play out exactly the same game.
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param catalogue the pack to draw pieces from
+     * @param seed the piece seed
+     */
+    public GameEngine(int cols, int rows, PieceCatalogue catalogue, long seed) {
+        this(cols, rows, catalogue, randomPieces(new SplittableRandom(seed), catalogue),
+            new ReplayLog(cols, rows, seed, catalogue.getName()));
+    }
+
+    /**
+     * Create a new engine with the specified columns and rows, drawing pieces of a pack from the given supplier
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param catalogue the pack the supplied piece numbers refer to
+     * @param pieceSupplier supplies the piece number of each new piece. Called in the middle of playing a move, so
+     *                      should never block.
+     */
+    public GameEngine(int cols, int rows, PieceCatalogue catalogue, IntSupplier pieceSupplier) {
+        this(cols, rows, catalogue, pieceSupplier, new ReplayLog(cols, rows, catalogue.getName()));
+    }
+
+    private GameEngine(int cols, int rows, PieceCatalogue catalogue, IntSupplier pieceSupplier, ReplayLog replay) {
+        this.grid = new Grid(cols, rows);
+        this.catalogue = catalogue;
+        this.pieceSupplier = pieceSupplier;
+        this.replay = replay;
+        this.deadBoards = catalogue.isStandard() && cols == DeadBoardTable.SIZE && rows == DeadBoardTable.SIZE
+            ? DeadBoardTable.shared() : null;
+    }
+
+    /**
+     * A piece supplier choosing uniformly at random between every piece
+     * @param random the source of randomness
+     * @return the supplier
+     */
+    public static PieceSource randomPieces(SplittableRandom random) {
+        return new RandomPieceSource(random);
+    }
+
+    /**
+     * A piece supplier choosing uniformly at random between every piece of a pack
+     * @param random the source of randomness
+     * @param catalogue the pack
+     * @return the supplier
+     */
+    public static PieceSource randomPieces(SplittableRandom random, PieceCatalogue catalogue) {
+        return new RandomPieceSource(random, catalogue.getPieces());
+    }
+
+    /**
+     * Start the game by drawing the current and following piece
+     */
+    public void start() {
+        currentPiece = spawnPiece();
+        followingPiece = spawnPiece();
+    }
+
+    /**
+     * Fill a block before the game starts, as a puzzle does
+     * @param x column
+     * @param y row
+     * @param value the colour of the block
+     * @throws IllegalStateException if the game has already started
+     */
+    public void fill(int x, int y, int value) {
+        if(currentPiece != null) {
+            throw new IllegalStateException("Blocks can only be filled before the game starts");
+        }
+        replay.fill(x, y, value);
+        grid.set(x, y, value);
+    }
+
+    /**
+     * Draw a new piece from the supplier. Each piece gets a handle of its own, so anything still holding the piece
+     * before it never sees it change into this one.
+     * @return the new piece
+     */
+    private GamePiece spawnPiece() {
+        int piece = pieceSupplier.getAsInt();
+        //A seeded game can draw its pieces again from the seed, anything else has to be written down
+        if(!replay.isSeeded()) {
+            replay.piece(piece);
+        }
+        return GamePiece.createPiece(catalogue, piece, 0);
+    }
+
+    /**
+     * Check whether the current piece can be played centred on the given block
+     * @param x column
+     * @param y row
+     * @return true if the piece fits
+     */
+    public boolean canPlay(int x, int y) {
+        return !gameOver && grid.canPlayPiece(currentPiece, x, y);
+    }
+
+    /**
+     * Play the current piece centred on the given block. Clears any completed lines, updates the score, multiplier
+     * and level, and moves on to the next piece.
+     * @param x column
+     * @param y row
+     * @return true if the piece was played, false if it does not fit there
+     */
+    public boolean play(int x, int y) {
+        if(!canPlay(x, y)) {
+            return false;
+        }
+        replay.place(x, y);
+
+        grid.beginUpdate();
+        grid.playPiece(currentPiece, x, y);
+        blocksCleared = grid.clearFullLines();
+        grid.commitUpdate();
+        linesCleared = Long.bitCount(grid.getClearedRows()) + Long.bitCount(grid.getClearedCols());
+
+        //A clear raises the multiplier before scoring, anything else resets it
+        if(linesCleared > 0) {
+            multiplier++;
+            score += linesCleared * blocksCleared * 10 * multiplier;
+        } else {
+            multiplier = 1;
+        }
+        level = score / 1000;
+
+        nextPiece();
+        return true;
+    }
+
+    /**
+     * The timer ran out before a piece was played: lose a life, reset the multiplier and move on to the next piece.
+     * The game is over once the lives fall below zero.
+     */
+    public void timerExpired() {
+        if(gameOver) {
+            return;
+        }
+        replay.record(ReplayLog.TIMER_EXPIRED);
+        lives--;
+        multiplier = 1;
+        linesCleared = 0;
+        blocksCleared = 0;
+        if(lives < 0) {
+            logger.debug("Lives have run out, game over");
+            gameOver = true;
+            return;
+        }
+        nextPiece();
+    }
+
+    /**
+     * Move the following piece up to be the current piece and draw a new following piece. Ends the game if the board
+     * is dead.
+     */
+    private void nextPiece() {
+        currentPiece = followingPiece;
+        followingPiece = spawnPiece();
+
+        //No need to wait for the lives to run out if neither piece can go anywhere
+        if(isBoardDead()) {
+            logger.debug("No legal placement for {} or {}, game over", currentPiece, followingPiece);
+            gameOver = true;
+        }
+    }
+
+    /**
+     * Checks whether the board is dead, meaning neither the current piece nor the following piece can be played
+     * anywhere in any rotation
+     * @return true if no legal move exists
+     */
+    public boolean isBoardDead() {
+        //On the standard board the answer may already be in the precomputed table
+        if(deadBoards != null) {
+            return deadBoards.isDead(DeadBoardTable.pack(grid), currentPiece.getType(), followingPiece.getType());
+        }
+        return !grid.hasLegalPlacement(currentPiece) && !grid.hasLegalPlacement(followingPiece);
+    }
+
+    /**
+     * Rotate the current piece clockwise
+     */
+    public void rotateClockwise() {
+        replay.record(ReplayLog.ROTATE_CLOCKWISE);
+        currentPiece.rotate();
+    }
+
+    /**
+     * Rotate the current piece anticlockwise
+     */
+    public void rotateAnticlockwise() {
+        replay.record(ReplayLog.ROTATE_ANTICLOCKWISE);
+        currentPiece.rotateAnticlockwise();
+    }
+
+    /**
+     * Swap the current piece with the following piece
+     */
+    public void swap() {
+        replay.record(ReplayLog.SWAP);
+        GamePiece temp = currentPiece;
+        currentPiece = followingPiece;
+        followingPiece = temp;
+    }
+
+    /**
+     * Calculates the timer delay for the current level
+     * @return the time in milliseconds the player has to play each piece
+     */
+    public int getTimerDelay() {
+        return 12000 - (500 * level);
+    }
+
+    /**
+     * Get the grid model holding the state of the board
+     * @return grid
+     */
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Get the pack the pieces are drawn from
+     * @return the pack
+     */
+    public PieceCatalogue getCatalogue() {
+        return catalogue;
+    }
+
+    /**
+     * Get the record of every input applied to this engine so far
+     * @return replay log
+     */
+    public ReplayLog getReplay() {
+        return replay;
+    }
+
+    /**
+     * Get the piece waiting to be played
+     * @return current piece
+     */
+    public GamePiece getCurrentPiece() {
+        return currentPiece;
+    }
+
+    /**
+     * Get the piece after the current piece
+     * @return following piece
+     */
+    public GamePiece getFollowingPiece() {
+        return followingPiece;
+    }
+
+    /**
+     * Get the score
+     * @return score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Get the level
+     * @return level
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Get the lives remaining
+     * @return lives
+     */
+    public int getLives() {
+        return lives;
+    }
+
+    /**
+     * Get the score multiplier
+     * @return multiplier
+     */
+    public int getMultiplier() {
+        return multiplier;
+    }
+
+    /**
+     * Get the number of lines cleared by the last piece played
+     * @return lines cleared
+     */
+    public int getLinesCleared() {
+        return linesCleared;
+    }
+
+    /**
+     * Get the number of blocks cleared by the last piece played
+     * @return blocks cleared
+     */
+    public int getBlocksCleared() {
+        return blocksCleared;
+    }
+
+    /**
+     * Check whether the game is over
+     * @return true once the lives have run out or the board is dead
+     */
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    /**
+     * Take an immutable snapshot of the state of the game, cheap enough to take after every input
+     * @return the snapshot
+     * @throws IllegalStateException if the game has not started
+     */
+    public Snapshot snapshot() {
+        if(currentPiece == null) {
+            throw new IllegalStateException("Only a started game can be snapshotted");
+        }
+        return new Snapshot(this);
+    }
+
+    /**
+     * Put the game back as it was in a snapshot of this engine. The pieces drawn after it are not put back into the
+     * piece supplier, and the replay log keeps every input, so it no longer describes the game.
+     * @param snapshot the snapshot
+     */
+    public void restore(Snapshot snapshot) {
+        grid.restore(snapshot.grid);
+        currentPiece = GamePiece.createPiece(catalogue, snapshot.currentPiece, snapshot.currentRotation);
+        followingPiece = GamePiece.createPiece(catalogue, snapshot.followingPiece, snapshot.followingRotation);
+        score = snapshot.score;
+        level = snapshot.level;
+        lives = snapshot.lives;
+        multiplier = snapshot.multiplier;
+        linesCleared = snapshot.linesCleared;
+        blocksCleared = snapshot.blocksCleared;
+        gameOver = snapshot.gameOver;
+    }
+
+    /**
+     * End the game early, for example when the player leaves
+     */
+    public void endGame() {
+        gameOver = true;
+    }
+
+}
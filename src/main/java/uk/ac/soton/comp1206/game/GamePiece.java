@@ -5,28 +5,53 @@ package uk.ac.soton.comp1206.game;
  *
  * The GamePiece class also contains a factory for producing a GamePiece of a particular shape, as specified by it's
  * number.
+ *
+ * The shapes come from a PieceCatalogue, which works out every shape in every rotation once when its pack loads. A
+ * GamePiece itself is only a handle holding its pack, a piece number and a rotation, so rotating it either way is a
+ * single step and never allocates. Piece numbers without a pack are from the standard pack.
  */
 public class GamePiece {
 
     /**
-     * The total number of pieces in this game
+     * The total number of pieces in the standard pack
      */
     public static final int PIECES = 15;
 
     /**
-     * The 2D grid representation of the shape of this piece
+     * The number of distinct rotations of every piece
+     */
+    public static final int ROTATIONS = 4;
+
+    /**
+     * The standard pack, which piece numbers refer to unless a pack is given
+     */
+    private static final PieceCatalogue STANDARD = PieceCatalogue.standard();
+
+    /**
+     * The row masks of every standard piece in every rotation, indexed by [piece][rotation][row]
+     */
+    private static final long[][][] ROW_MASKS = STANDARD.rowMasks;
+
+    /**
+     * The whole 3x3 shape of every standard piece in every rotation as one mask, with bit (y * 3 + x) set for each
+     * block
+     */
+    private static final int[][] MASKS = STANDARD.masks;
+
+    /**
+     * The pack this piece is from
      */
-    private int[][] blocks;
+    private final PieceCatalogue catalogue;
 
     /**
-     * The value of this piece
+     * The piece number of this piece
      */
-    private final int value;
+    private final int type;
 
     /**
-     * The name of this piece
+     * The current rotation of this piece, from 0 to ROTATIONS - 1
      */
-    private final String name;
+    private int rotation;
 
     /**
      * Create a new GamePiece of the specified piece number
@@ -34,100 +59,7 @@ public class GamePiece {
      * @return the created GamePiece
      */
     public static GamePiece createPiece(int piece) {
-        switch (piece) {
-            //Line
-            case 0 -> {
-                int[][] blocks = {{0, 0, 0}, {1, 1, 1}, {0, 0, 0}};
-                return new GamePiece("Line", blocks, 1);
-            }
-
-            //C
-            case 1 -> {
-                int[][] blocks = {{0, 0, 0}, {1, 1, 1}, {1, 0, 1}};
-                return new GamePiece("C", blocks, 2);
-            }
-
-            //Plus
-            case 2 -> {
-                int[][] blocks = {{0, 1, 0}, {1, 1, 1}, {0, 1, 0}};
-                return new GamePiece("Plus", blocks, 3);
-            }
-
-            //Dot
-            case 3 -> {
-                int[][] blocks = {{0, 0, 0}, {0, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Dot", blocks, 4);
-            }
-
-            //Square
-            case 4 -> {
-                int[][] blocks = {{1, 1, 0}, {1, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Square", blocks, 5);
-            }
-
-            //L
-            case 5 -> {
-                int[][] blocks = {{0, 0, 0}, {1, 1, 1}, {0, 0, 1}};
-                return new GamePiece("L", blocks, 6);
-            }
-
-            //J
-            case 6 -> {
-                int[][] blocks = {{0, 0, 1}, {1, 1, 1}, {0, 0, 0}};
-                return new GamePiece("J", blocks, 7);
-            }
-
-            //S
-            case 7 -> {
-                int[][] blocks = {{0, 0, 0}, {0, 1, 1}, {1, 1, 0}};
-                return new GamePiece("S", blocks, 8);
-            }
-
-            //Z
-            case 8 -> {
-                int[][] blocks = {{1, 1, 0}, {0, 1, 1}, {0, 0, 0}};
-                return new GamePiece("Z", blocks, 9);
-            }
-
-            //T
-            case 9 -> {
-                int[][] blocks = {{1, 0, 0}, {1, 1, 0}, {1, 0, 0}};
-                return new GamePiece("T", blocks, 10);
-            }
-
-            //X
-            case 10 -> {
-                int[][] blocks = {{1, 0, 1}, {0, 1, 0}, {1, 0, 1}};
-                return new GamePiece("X", blocks, 11);
-            }
-
-            //Corner
-            case 11 -> {
-                int[][] blocks = {{0, 0, 0}, {1, 1, 0}, {1, 0, 0}};
-                return new GamePiece("Corner", blocks, 12);
-            }
-
-            //Inverse Corner
-            case 12 -> {
-                int[][] blocks = {{1, 0, 0}, {1, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Inverse Corner", blocks, 13);
-            }
-
-            //Diagonal
-            case 13 -> {
-                int[][] blocks = {{1, 0, 0}, {0, 1, 0}, {0, 0, 1}};
-                return new GamePiece("Diagonal", blocks, 14);
-            }
-
-            //Double
-            case 14 -> {
-                int[][] blocks = {{0, 1, 0}, {0, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Double", blocks, 15);
-            }
-        }
-
-        //Not a valid piece number
-        throw new IndexOutOfBoundsException("No such piece: " + piece);
+        return createPiece(piece, 0);
     }
 
     /**
@@ -137,31 +69,79 @@ public class GamePiece {
      * @return the created GamePiece
      */
     public static GamePiece createPiece(int piece, int rotation) {
-        var newPiece = createPiece(piece);
+        return createPiece(STANDARD, piece, rotation);
+    }
 
-        newPiece.rotate(rotation);
-        return newPiece;
+    /**
+     * Create a new GamePiece of the specified piece number and rotation from a pack
+     * @param catalogue the pack the piece number is in
+     * @param piece piece number
+     * @param rotation number of times to rotate
+     * @return the created GamePiece
+     */
+    public static GamePiece createPiece(PieceCatalogue catalogue, int piece, int rotation) {
+        if(piece < 0 || piece >= catalogue.getPieces()) {
+            //Not a valid piece number
+            throw new IndexOutOfBoundsException("No such piece: " + piece);
+        }
+        return new GamePiece(catalogue, piece, Math.floorMod(rotation, ROTATIONS));
     }
 
     /**
-     * Create a new GamePiece with the given name, block makeup and value. Should not be called directly, only via the
+     * Create a new GamePiece handle onto the shared shape table. Should not be called directly, only via the
      * factory.
-     * @param name name of the piece
-     * @param blocks block makeup of the piece
-     * @param value the value of this piece
-     */
-    private GamePiece(String name, int[][] blocks, int value) {
-        this.name = name;
-        this.blocks = blocks;
-        this.value = value;
-
-        //Use the shape of the block to create a grid with either 0 (empty) or the value of this shape for each block.
-        for(int x = 0; x < blocks.length; x++) {
-            for (int y = 0; y < blocks[x].length; y++) {
-                if(blocks[x][y] == 0) continue;
-                blocks[x][y] = value;
-            }
-        }
+     * @param catalogue the pack the piece is from
+     * @param type piece number
+     * @param rotation the starting rotation
+     */
+    private GamePiece(PieceCatalogue catalogue, int type, int rotation) {
+        this.catalogue = catalogue;
+        this.type = type;
+        this.rotation = rotation;
+    }
+
+    /**
+     * Get the row masks of a standard piece in a given rotation without needing a GamePiece
+     * @param piece piece number
+     * @param rotation rotation, from 0 to ROTATIONS - 1
+     * @return row masks with bit x set when column x of that row holds a block
+     */
+    public static long[] rowMasks(int piece, int rotation) {
+        return ROW_MASKS[piece][rotation];
+    }
+
+    /**
+     * Get the 3x3 mask of a standard piece in a given rotation without needing a GamePiece
+     * @param piece piece number
+     * @param rotation rotation, from 0 to ROTATIONS - 1
+     * @return the mask, with bit (y * 3 + x) set for each block
+     */
+    public static int mask(int piece, int rotation) {
+        return MASKS[piece][rotation];
+    }
+
+    /**
+     * Get the pack this piece is from
+     * @return the pack
+     */
+    public PieceCatalogue getCatalogue() {
+        return catalogue;
+    }
+
+    /**
+     * Get the piece number of this piece
+     * @return piece number
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * Get the current rotation of this piece
+     * @return rotation, from 0 to ROTATIONS - 1
+     */
+    public int getRotation() {
+        return rotation;
     }
 
     /**
@@ -169,45 +149,63 @@ public class GamePiece {
      * @return piece value
      */
     public int getValue() {
-        return value;
+        return catalogue.getValue(type);
     }
 
     /**
-     * Get the block makeup of this piece
+     * Get the block makeup of this piece. The array is shared between every piece of this shape and rotation, so
+     * must not be modified.
      * @return 2D grid of the blocks representing the piece shape
      */
     public int[][] getBlocks() {
-        return blocks;
+        return catalogue.blocks[type][rotation];
+    }
+
+    /**
+     * Get the shape of this piece as occupancy masks, one per row of the 3x3 or 5x5 box it is laid out in, with its
+     * anchor in the middle
+     * @return row masks with bit x set when column x of that row holds a block
+     */
+    public long[] getRowMasks() {
+        return catalogue.rowMasks[type][rotation];
+    }
+
+    /**
+     * Get the whole shape of this piece as a single mask
+     * @return the mask, with bit (y * side + x) set for each block, where side is 3 or 5 as for getRowMasks
+     */
+    public int getMask() {
+        return catalogue.masks[type][rotation];
+    }
+
+    /**
+     * Get the bounding box of this piece relative to its anchor block
+     * @return {minX, minY, maxX, maxY}, shared so must not be modified
+     */
+    public int[] getBounds() {
+        return catalogue.bounds[type][rotation];
     }
 
     /**
      * Rotate this piece the given number of rotations
-     * @param rotations number of rotations
+     * @param rotations number of rotations, negative to rotate anticlockwise
      */
     public void rotate(int rotations) {
-        for(int rotated = 0; rotated < rotations; rotated ++) {
-            rotate();
-        }
+        rotation = Math.floorMod(rotation + rotations, ROTATIONS);
     }
 
     /**
-     * Rotate this piece exactly once by rotating it's 3x3 grid
+     * Rotate this piece exactly once clockwise
      */
     public void rotate() {
-        int[][] rotated = new int[blocks.length][blocks[0].length];
-        rotated[2][0] = blocks[0][0];
-        rotated[1][0] = blocks[0][1];
-        rotated[0][0] = blocks[0][2];
-
-        rotated[2][1] = blocks[1][0];
-        rotated[1][1] = blocks[1][1];
-        rotated[0][1] = blocks[1][2];
-
-        rotated[2][2] = blocks[2][0];
-        rotated[1][2] = blocks[2][1];
-        rotated[0][2] = blocks[2][2];
+        rotation = (rotation + 1) & (ROTATIONS - 1);
+    }
 
-        blocks = rotated;
+    /**
+     * Rotate this piece exactly once anticlockwise
+     */
+    public void rotateAnticlockwise() {
+        rotation = (rotation + ROTATIONS - 1) & (ROTATIONS - 1);
     }
 
 
@@ -216,7 +214,7 @@ public class GamePiece {
      * @return the name of this piece
      */
     public String toString() {
-        return this.name;
+        return catalogue.getName(type);
     }
 
 
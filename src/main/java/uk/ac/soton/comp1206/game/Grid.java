@@ -1,18 +1,29 @@
 package uk.ac.soton.comp1206.game;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.GridChangedListener;
 
 /**
  * The Grid is a model which holds the state of a game board. It is made up of a set of Integer values arranged in a 2D
  * arrow, with rows and columns.
  *
- * Each value inside the Grid is an IntegerProperty can be bound to enable modification and display of the contents of
- * the grid.
+ * The state is held in packed form: an occupancy bitboard with one long per row (bit x set when column x is filled)
+ * and a byte array of colours. Placement checks and line detection work directly on the bitboard masks.
+ *
+ * Each value inside the Grid can still be exposed as an IntegerProperty to enable binding for display. These properties
+ * are only created when asked for, so a Grid used without a UI never pays for them.
+ *
+ * Changes can be grouped with beginUpdate and commitUpdate. The blocks changed inside an update are collected and
+ * published to GridChangedListeners (and any bound properties) once, when the outermost update commits.
+ *
+ * The board can be captured as an immutable Snapshot and restored later. Snapshots share every row which has not
+ * changed with the snapshot before them, so taking one after a move only copies the rows the move touched.
  *
  * The Grid contains functions related to modifying the model, for example, placing a piece inside the grid.
  *
@@ -21,6 +32,21 @@ import org.apache.logging.log4j.Logger;
 public class Grid {
     private static final Logger logger = LogManager.getLogger(Grid.class);
 
+    /**
+     * The largest number of columns a grid can have, as each row is held in a single long
+     */
+    public static final int MAX_COLS = Long.SIZE;
+
+    /**
+     * The largest number of rows a grid can have, so that a set of rows fits in a single long
+     */
+    public static final int MAX_ROWS = Long.SIZE;
+
+    /**
+     * The value of the blocks a puzzle starts with
+     */
+    public static final int FIXED = 17;
+
     /**
      * The number of columns in this grid
      */
@@ -32,11 +58,121 @@ public class Grid {
     private final int rows;
 
     /**
-     * The grid is a 2D arrow with rows and columns of SimpleIntegerProperties.
+     * The occupancy bitboard. Bit x of occupancy[y] is set when the block at column x, row y is not empty.
+     */
+    private final long[] occupancy;
+
+    /**
+     * The colour of every block, indexed by y * cols + x
      */
-    private final SimpleIntegerProperty[][] grid;
+    private final byte[] colours;
 
-    private int previousColor;
+    /**
+     * A mask with a bit set for every column in a row
+     */
+    private final long fullRow;
+
+    /**
+     * The number of filled blocks in each row
+     */
+    private final int[] rowCounts;
+
+    /**
+     * The number of filled blocks in each column
+     */
+    private final int[] colCounts;
+
+    /**
+     * The Zobrist hash of the occupancy, kept up to date as blocks are filled and emptied
+     */
+    private long hash;
+
+    /**
+     * Rows and columns which have had a block filled since lines were last cleared, bit y / bit x set respectively
+     */
+    private long touchedRows;
+    private long touchedCols;
+
+    /**
+     * The rows and columns removed by the last call to clearFullLines
+     */
+    private long clearedRows;
+    private long clearedCols;
+
+    /**
+     * Observable adapters for blocks that have been bound to, created lazily
+     */
+    private IntegerProperty[][] properties;
+
+    /**
+     * Blocks whose value changed since changes were last published, one mask per row
+     */
+    private final long[] changedRows;
+
+    /**
+     * Whether any block has changed since changes were last published
+     */
+    private boolean changed;
+
+    /**
+     * How many batch updates are currently open
+     */
+    private int updateDepth;
+
+    /**
+     * Listeners told about each published set of changes
+     */
+    private final List<GridChangedListener> changeListeners = new ArrayList<>();
+
+    /**
+     * The last snapshot taken or restored, whose rows the next snapshot shares
+     */
+    private Snapshot lastSnapshot;
+
+    /**
+     * Rows which have changed since lastSnapshot, bit y set for row y
+     */
+    private long dirtyRows;
+
+    /**
+     * An immutable copy of the blocks of a Grid. Each row is its own array, never changed once made, so a snapshot is
+     * mostly references to rows shared with the snapshots before and after it.
+     */
+    public static final class Snapshot {
+        private final int cols;
+        private final byte[][] rows;
+
+        private Snapshot(int cols, byte[][] rows) {
+            this.cols = cols;
+            this.rows = rows;
+        }
+
+        /**
+         * Get the value of a block when the snapshot was taken
+         * @param x column
+         * @param y row
+         * @return the value
+         */
+        public int get(int x, int y) {
+            return rows[y][x];
+        }
+
+        /**
+         * Get the number of columns
+         * @return columns
+         */
+        public int getCols() {
+            return cols;
+        }
+
+        /**
+         * Get the number of rows
+         * @return rows
+         */
+        public int getRows() {
+            return rows.length;
+        }
+    }
 
     /**
      * Create a new Grid with the specified number of columns and rows and initialise them
@@ -44,18 +180,81 @@ public class Grid {
      * @param rows number of rows
      */
     public Grid(int cols, int rows) {
+        if(cols < 1 || cols > MAX_COLS || rows < 1 || rows > MAX_ROWS) {
+            throw new IllegalArgumentException("Unsupported grid size: " + cols + " x " + rows);
+        }
         this.cols = cols;
         this.rows = rows;
 
-        //Create the grid itself
-        grid = new SimpleIntegerProperty[cols][rows];
+        //Create the packed grid itself, every block starts empty
+        occupancy = new long[rows];
+        colours = new byte[cols * rows];
+        fullRow = Bitboard.fullRow(cols);
+        rowCounts = new int[rows];
+        colCounts = new int[cols];
+        changedRows = new long[rows];
+    }
+
+    /**
+     * Add a listener to be told about each published set of changed blocks
+     * @param listener the listener to add
+     */
+    public void addChangeListener(GridChangedListener listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Remove a listener previously added with addChangeListener
+     * @param listener the listener to remove
+     */
+    public void removeChangeListener(GridChangedListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Start a batch update. Changes made until the matching commitUpdate are published together as one change set.
+     * Batch updates can be nested, in which case only the outermost commit publishes.
+     */
+    public void beginUpdate() {
+        updateDepth++;
+    }
+
+    /**
+     * Finish a batch update started with beginUpdate, publishing the collected changes if it is the outermost one
+     */
+    public void commitUpdate() {
+        if(updateDepth == 0) {
+            throw new IllegalStateException("commitUpdate called without beginUpdate");
+        }
+        updateDepth--;
+        if(updateDepth == 0) {
+            publishChanges();
+        }
+    }
+
+    /**
+     * Publish the blocks changed since the last publish to any bound properties and change listeners
+     */
+    private void publishChanges() {
+        if(!changed) {
+            return;
+        }
+        changed = false;
 
-        //Add a SimpleIntegerProperty to every block in the grid
-        for(var y = 0; y < rows; y++) {
-            for(var x = 0; x < cols; x++) {
-                grid[x][y] = new SimpleIntegerProperty(0);
+        if(properties != null) {
+            for(int y = 0; y < rows; y++) {
+                for(long bits = changedRows[y]; bits != 0; bits &= bits - 1) {
+                    int x = Long.numberOfTrailingZeros(bits);
+                    if(properties[x][y] != null) {
+                        properties[x][y].set(colours[y * cols + x]);
+                    }
+                }
             }
         }
+        for(GridChangedListener listener : changeListeners) {
+            listener.gridChanged(this, changedRows);
+        }
+        Arrays.fill(changedRows, 0);
     }
 
     /**
@@ -65,7 +264,13 @@ public class Grid {
      * @return the IntegerProperty at the given x and y in this grid
      */
     public IntegerProperty getGridProperty(int x, int y) {
-        return grid[x][y];
+        if(properties == null) {
+            properties = new IntegerProperty[cols][rows];
+        }
+        if(properties[x][y] == null) {
+            properties[x][y] = new SimpleIntegerProperty(get(x, y));
+        }
+        return properties[x][y];
     }
 
     /**
@@ -75,23 +280,85 @@ public class Grid {
      * @param value the new value
      */
     public void set(int x, int y, int value) {
-        grid[x][y].set(value);
+        if(colours[y * cols + x] == value) {
+            return;
+        }
+        colours[y * cols + x] = (byte) value;
+        changedRows[y] |= 1L << x;
+        changed = true;
+        dirtyRows |= 1L << y;
+
+        //Only a block changing between empty and filled moves the occupancy and the fill counts
+        long bit = 1L << x;
+        boolean filled = (occupancy[y] & bit) != 0;
+        if(value != 0 && !filled) {
+            occupancy[y] |= bit;
+            hash ^= Zobrist.key(x, y);
+            rowCounts[y]++;
+            colCounts[x]++;
+            touchedRows |= 1L << y;
+            touchedCols |= bit;
+        } else if(value == 0 && filled) {
+            occupancy[y] &= ~bit;
+            hash ^= Zobrist.key(x, y);
+            rowCounts[y]--;
+            colCounts[x]--;
+        }
+
+        //Outside of a batch update every change is published straight away
+        if(updateDepth == 0) {
+            publishChanges();
+        }
     }
 
     /**
      * Get the value represented at the given x and y index within the grid
      * @param x column
      * @param y row
-     * @return the value
+     * @return the value, or -1 if there is no such index
      */
     public int get(int x, int y) {
-        try {
-            //Get the value held in the property at the x and y index provided
-            return grid[x][y].get();
-        } catch (ArrayIndexOutOfBoundsException e) {
+        if(x < 0 || x >= cols || y < 0 || y >= rows) {
             //No such index
             return -1;
         }
+        return colours[y * cols + x];
+    }
+
+    /**
+     * Check whether the block at the given x and y index is filled
+     * @param x column
+     * @param y row
+     * @return true if the block holds a value
+     */
+    public boolean isFilled(int x, int y) {
+        return (occupancy[y] & (1L << x)) != 0;
+    }
+
+    /**
+     * Get the occupancy mask of a row, with bit x set when column x is filled
+     * @param y row
+     * @return the row mask
+     */
+    public long getRowMask(int y) {
+        return occupancy[y];
+    }
+
+    /**
+     * Get the Zobrist hash of which blocks are filled. Two grids with the same blocks filled have the same hash,
+     * whatever their colours and however they got there.
+     * @return hash
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Get a mask with a bit set for every column in a row
+     * @return the full row mask
+     */
+    public long getFullRowMask() {
+        return fullRow;
     }
 
     /**
@@ -118,31 +385,82 @@ public class Grid {
      * @return true if the GamePiece can be played
      */
     public boolean canPlayPiece(GamePiece gamePiece, int x, int y) {
-        logger.info("Checking if we can play piece {} at {}, {}", gamePiece,x,y);
-
-        int tempX = x-1;
-        int tempY = y-1;
-
-        int[][] blocks = gamePiece.getBlocks();
-        for(var blockX=0; blockX < blocks.length; blockX++){
-            for(var blockY=0; blockY < blocks.length; blockY++){
-                //blockX and blockY coordinate inside the blocks 3x3 array
-                var blockValue = blocks[blockX][blockY];
-                //only updates the model if there is a colour (value of 1 or more)
-                if(blockValue>0){
-                    //checks if we can place this block on our grid
-                    var gridValue = get(tempX+blockX, tempY+blockY);
-                    if(gridValue!=0){
-                        //-1 returns out of bounds hence !=0 is used
-                        logger.info("Unable to play piece at coordinate {}, {}", x,y);
-                        return false;
-                    }
-                }
+        logger.trace("Checking if we can play piece {} at {}, {}", gamePiece,x,y);
+
+        long[] pieceRows = gamePiece.getRowMasks();
+        int anchor = Bitboard.anchor(pieceRows);
+        for(var blockY = 0; blockY < pieceRows.length; blockY++) {
+            long pieceRow = pieceRows[blockY];
+            if(pieceRow == 0) continue;
+
+            //The piece row must land on the grid...
+            int gridY = y - anchor + blockY;
+            int left = x - anchor + Long.numberOfTrailingZeros(pieceRow);
+            int right = x - anchor + (63 - Long.numberOfLeadingZeros(pieceRow));
+            if(gridY < 0 || gridY >= rows || left < 0 || right >= cols) {
+                return false;
+            }
+
+            //...and only cover empty blocks
+            if((Bitboard.shiftPieceRow(pieceRow, x, anchor) & occupancy[gridY]) != 0) {
+                return false;
             }
         }
         return true;
     }
 
+    /**
+     * Find every legal placement of a piece, across all of its rotations, in one pass over the grid.
+     * @param gamePiece the piece to place
+     * @return the placement index, see legalPlacements(int, long[])
+     */
+    public long[] legalPlacements(GamePiece gamePiece) {
+        long[] placements = new long[GamePiece.ROTATIONS * rows];
+        Bitboard.legalPlacements(occupancy, rows, fullRow, gamePiece.getCatalogue(), gamePiece.getType(), placements);
+        return placements;
+    }
+
+    /**
+     * Find every legal placement of a piece, across all of its rotations, in one pass over the grid.
+     * The result is a bitset: bit x of placements[rotation * rows + y] is set when the piece, turned clockwise that
+     * many times, can be played centred on column x, row y.
+     * @param piece the standard piece number
+     * @param placements an array of at least GamePiece.ROTATIONS * rows entries to fill in
+     * @return true if there is at least one legal placement
+     */
+    public boolean legalPlacements(int piece, long[] placements) {
+        return Bitboard.legalPlacements(occupancy, rows, fullRow, piece, placements);
+    }
+
+    /**
+     * Check quickly whether a piece can be played anywhere on the grid, in any rotation
+     * @param gamePiece the piece
+     * @return true if there is at least one legal placement
+     */
+    public boolean hasLegalPlacement(GamePiece gamePiece) {
+        PieceCatalogue catalogue = gamePiece.getCatalogue();
+        int piece = gamePiece.getType();
+        for(int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+            long[] pieceRows = catalogue.rowMasks(piece, rotation);
+            for(int y = 0; y < rows; y++) {
+                if(legalColumns(pieceRows, y) != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find every column a piece can be played on in a given row
+     * @param pieceRows the row masks of the piece
+     * @param y the row the anchor of the piece is placed on
+     * @return a mask with bit x set when the piece can be played anchored on column x
+     */
+    private long legalColumns(long[] pieceRows, int y) {
+        return Bitboard.legalColumns(occupancy, rows, fullRow, pieceRows, y);
+    }
+
     /**
      * allows the user to play a piece by updating the grid with the piece
      * @param gamePiece the gamePiece they want to play
@@ -151,66 +469,209 @@ public class Grid {
      */
 
     public void playPiece(GamePiece gamePiece, int x, int y) {
-        logger.info("Playing the piece {} at {}, {}", gamePiece,x,y);
+        logger.trace("Playing the piece {} at {}, {}", gamePiece,x,y);
 
-        int tempX = x-1;
-        int tempY = y-1;
+        if(!canPlayPiece(gamePiece,x,y)) {
+            return;
+        }
 
         int color = gamePiece.getValue();
-        int[][] blocks = gamePiece.getBlocks();
-        if(canPlayPiece(gamePiece,x,y)){
-            for(var blockX=0; blockX < blocks.length; blockX++){
-                for(var blockY=0; blockY < blocks.length; blockY++){
-                    //blockX and blockY coordinate inside the blocks 3x3 array
-                    var blockValue = blocks[blockX][blockY];
-                    //only updates the model if there is a colour (value of 1 or more)
-                    if(blockValue>0){
-                        logger.info("succesfully played the piece");
-                        set(tempX+blockX, tempY+blockY,color);
-                        this.setPreviousColor(color);
-                    }
+        long[] pieceRows = gamePiece.getRowMasks();
+        int anchor = Bitboard.anchor(pieceRows);
+        beginUpdate();
+        for(var blockY = 0; blockY < pieceRows.length; blockY++) {
+            long shifted = Bitboard.shiftPieceRow(pieceRows[blockY], x, anchor);
+            int gridY = y - anchor + blockY;
 
-                }
+            //Visit each set bit of the shifted row
+            while(shifted != 0) {
+                int gridX = Long.numberOfTrailingZeros(shifted);
+                shifted &= shifted - 1;
+                set(gridX, gridY, color);
             }
         }
+        commitUpdate();
     }
 
     /**
-     * Resets the entire grid back to value=0 all over in every square in the grid
+     * Get the number of filled blocks in a row
+     * @param y row
+     * @return filled blocks
      */
-    public void resetGrid(){
-        for(int i=0; i<rows; i++){
-            for(int j=0; j<cols; j++){
-                set(i,j,0);
+    public int getRowCount(int y) {
+        return rowCounts[y];
+    }
+
+    /**
+     * Get the number of filled blocks in a column
+     * @param x column
+     * @return filled blocks
+     */
+    public int getColCount(int x) {
+        return colCounts[x];
+    }
+
+    /**
+     * Find every full row in the grid
+     * @return a mask with bit y set for every full row y
+     */
+    public long fullRows() {
+        return fullRows(rows == MAX_ROWS ? -1L : (1L << rows) - 1);
+    }
+
+    /**
+     * Find which of the given rows are full
+     * @param candidates a mask of the rows to check
+     * @return a mask with bit y set for every full row y
+     */
+    public long fullRows(long candidates) {
+        long full = 0;
+        for(long bits = candidates; bits != 0; bits &= bits - 1) {
+            int y = Long.numberOfTrailingZeros(bits);
+            if(rowCounts[y] == cols) {
+                full |= 1L << y;
+            }
+        }
+        return full;
+    }
+
+    /**
+     * Find every full column in the grid
+     * @return a mask with bit x set for every full column x
+     */
+    public long fullCols() {
+        return fullCols(fullRow);
+    }
+
+    /**
+     * Find which of the given columns are full
+     * @param candidates a mask of the columns to check
+     * @return a mask with bit x set for every full column x
+     */
+    public long fullCols(long candidates) {
+        long full = 0;
+        for(long bits = candidates; bits != 0; bits &= bits - 1) {
+            int x = Long.numberOfTrailingZeros(bits);
+            if(colCounts[x] == rows) {
+                full |= 1L << x;
+            }
+        }
+        return full;
+    }
+
+    /**
+     * Clear every full row and column. Only rows and columns which have had a block filled since the last call are
+     * checked, so the cost depends on the pieces played rather than the size of the grid.
+     * The lines removed are available afterwards from getClearedRows and getClearedCols.
+     * @return the number of blocks cleared
+     */
+    public int clearFullLines() {
+        clearedRows = fullRows(touchedRows);
+        clearedCols = fullCols(touchedCols);
+        touchedRows = 0;
+        touchedCols = 0;
+
+        beginUpdate();
+        for(long bits = clearedRows; bits != 0; bits &= bits - 1) {
+            int y = Long.numberOfTrailingZeros(bits);
+            for(int x = 0; x < cols; x++) {
+                set(x, y, 0);
+            }
+        }
+        for(long bits = clearedCols; bits != 0; bits &= bits - 1) {
+            int x = Long.numberOfTrailingZeros(bits);
+            for(int y = 0; y < rows; y++) {
+                set(x, y, 0);
             }
         }
+        commitUpdate();
+
+        //Blocks where a cleared row crosses a cleared column only count once
+        int lineRows = Long.bitCount(clearedRows);
+        int lineCols = Long.bitCount(clearedCols);
+        return lineRows * cols + lineCols * rows - lineRows * lineCols;
     }
 
     /**
-     * Adds a temporary box which should resemble the cursor when the user plays with their keyboard
-     * @param x x coordinate
-     * @param y y coordinate
+     * Get the rows removed by the last call to clearFullLines
+     * @return a mask with bit y set for every cleared row y
      */
-    public void addTemporaryBox(int x, int y) {
-        this.previousColor = grid[x][y].getValue();
-        set(x,y,16);
+    public long getClearedRows() {
+        return clearedRows;
     }
 
     /**
-     * Removes the temporary box which resembles the cursor when the user plays with their keyboard
-     * @param x x coordinate
-     * @param y y coordinate
+     * Get the columns removed by the last call to clearFullLines
+     * @return a mask with bit x set for every cleared column x
      */
-    public void removeTemporaryBox(int x, int y) {
-        set(x,y,this.previousColor);
+    public long getClearedCols() {
+        return clearedCols;
+    }
+
+    /**
+     * Take an immutable snapshot of every block. Only the rows changed since the last snapshot are copied, the rest are
+     * shared with it, and if nothing has changed the last snapshot itself is returned.
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        if(lastSnapshot != null && dirtyRows == 0) {
+            return lastSnapshot;
+        }
+        byte[][] shared = lastSnapshot == null ? new byte[rows][] : lastSnapshot.rows.clone();
+        boolean copied = false;
+        for(long bits = lastSnapshot == null ? Bitboard.fullRow(rows) : dirtyRows; bits != 0; bits &= bits - 1) {
+            int y = Long.numberOfTrailingZeros(bits);
+            int from = y * cols;
+            //A row can change and change back, such as when a move is undone, and then it can still be shared
+            if(shared[y] == null || !Arrays.equals(colours, from, from + cols, shared[y], 0, cols)) {
+                shared[y] = Arrays.copyOfRange(colours, from, from + cols);
+                copied = true;
+            }
+        }
+        dirtyRows = 0;
+        if(lastSnapshot == null || copied) {
+            lastSnapshot = new Snapshot(cols, shared);
+        }
+        return lastSnapshot;
     }
 
     /**
-     * A setter method for changing the field variable previousColor;
-     * @param color the int color you want to change the field var to
+     * Put every block back as it was in a snapshot of this grid. Only rows which differ from the grid are visited, and
+     * the changes are published as one update.
+     * @param snapshot a snapshot taken from a grid of the same size
      */
-    public void setPreviousColor(int color) {
-        this.previousColor= color;
+    public void restore(Snapshot snapshot) {
+        if(snapshot.getCols() != cols || snapshot.getRows() != rows) {
+            throw new IllegalArgumentException("Cannot restore a " + snapshot.getCols() + " x " + snapshot.getRows()
+                + " snapshot onto a " + cols + " x " + rows + " grid");
+        }
+        beginUpdate();
+        for(int y = 0; y < rows; y++) {
+            byte[] row = snapshot.rows[y];
+            //A row shared with the last snapshot which has not changed since is already right
+            if(lastSnapshot != null && row == lastSnapshot.rows[y] && (dirtyRows & (1L << y)) == 0) {
+                continue;
+            }
+            for(int x = 0; x < cols; x++) {
+                set(x, y, row[x]);
+            }
+        }
+        commitUpdate();
+        lastSnapshot = snapshot;
+        dirtyRows = 0;
+    }
+
+    /**
+     * Resets the entire grid back to value=0 all over in every square in the grid
+     */
+    public void resetGrid(){
+        beginUpdate();
+        for(int y=0; y<rows; y++){
+            for(int x=0; x<cols; x++){
+                set(x,y,0);
+            }
+        }
+        commitUpdate();
     }
 
 }
@@ -0,0 +1,102 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * An undo and redo history of states, holding at most a fixed number of states to undo to.
+ *
+ * Every operation is constant time. Pushing a state drops the redo states, as they belong to a line of play which has
+ * been abandoned, and once the history is full the oldest state is forgotten to make room.
+ * @param <T> the type of state, which should be immutable
+ */
+public class History<T> {
+
+    private final int depth;
+    private final Deque<T> undo = new ArrayDeque<>();
+    private final Deque<T> redo = new ArrayDeque<>();
+
+    /**
+     * Create an empty history
+     * @param depth the most states that can be undone
+     */
+    public History(int depth) {
+        if(depth < 1) {
+            throw new IllegalArgumentException("The history must hold at least one state, not " + depth);
+        }
+        this.depth = depth;
+    }
+
+    /**
+     * Record the state before a change, so the change can be undone
+     * @param state the state before the change
+     */
+    public void push(T state) {
+        redo.clear();
+        undo.push(state);
+        trim();
+    }
+
+    /**
+     * Step back to the state before the last change
+     * @param current the state now, which redo will return to
+     * @return the state to go back to
+     * @throws IllegalStateException if there is nothing to undo
+     */
+    public T undo(T current) {
+        if(undo.isEmpty()) {
+            throw new IllegalStateException("Nothing to undo");
+        }
+        redo.push(current);
+        return undo.pop();
+    }
+
+    /**
+     * Step forward again to the state before the last undo
+     * @param current the state now, which undo will return to
+     * @return the state to go forward to
+     * @throws IllegalStateException if there is nothing to redo
+     */
+    public T redo(T current) {
+        if(redo.isEmpty()) {
+            throw new IllegalStateException("Nothing to redo");
+        }
+        undo.push(current);
+        trim();
+        return redo.pop();
+    }
+
+    /**
+     * Check whether there is a change to undo
+     * @return true if undo can be called
+     */
+    public boolean canUndo() {
+        return !undo.isEmpty();
+    }
+
+    /**
+     * Check whether there is an undone change to redo
+     * @return true if redo can be called
+     */
+    public boolean canRedo() {
+        return !redo.isEmpty();
+    }
+
+    /**
+     * Get the number of changes which can be undone
+     * @return undo depth
+     */
+    public int getUndoCount() {
+        return undo.size();
+    }
+
+    /**
+     * Forget the oldest state once there are more than the history holds
+     */
+    private void trim() {
+        if(undo.size() > depth) {
+            undo.removeLast();
+        }
+    }
+
+}
@@ -0,0 +1,129 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.Arrays;
+
+/**
+ * The rules on the standard 5x5 board packed into a single int, with bit (y * 5 + x) set for each filled block.
+ *
+ * A packed board is small enough to index a table with, as DeadBoardTable does, or to keep millions of in a plain int
+ * array. Every distinct placement of every piece is worked out once, so trying a move is a single AND.
+ */
+public final class PackedBoard {
+
+    /**
+     * The number of columns and rows of a packed board
+     */
+    public static final int SIZE = 5;
+
+    /**
+     * The number of blocks of a packed board
+     */
+    public static final int CELLS = SIZE * SIZE;
+
+    /**
+     * A bit at the start of each row
+     */
+    private static final int ROW_STARTS = 0b00001_00001_00001_00001_00001;
+
+    /**
+     * Every bit of the first row
+     */
+    private static final int FIRST_ROW = (1 << SIZE) - 1;
+
+    /**
+     * Every distinct placement of each piece, in ascending order, indexed by piece. Rotations with the same shape give
+     * the same placements, so each is only listed once.
+     */
+    static final int[][] PLACEMENTS = new int[GamePiece.PIECES][];
+
+    static {
+        for(int piece = 0; piece < GamePiece.PIECES; piece++) {
+            int[] placements = new int[GamePiece.ROTATIONS * CELLS];
+            int count = 0;
+            for(int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+                for(int y = 0; y < SIZE; y++) {
+                    for(int x = 0; x < SIZE; x++) {
+                        int placed = place(piece, rotation, x, y);
+                        if(placed != 0) {
+                            placements[count++] = placed;
+                        }
+                    }
+                }
+            }
+            PLACEMENTS[piece] = Arrays.stream(placements, 0, count).distinct().sorted().toArray();
+        }
+    }
+
+    private PackedBoard() {
+    }
+
+    /**
+     * Pack a 5x5 grid
+     * @param grid the grid, which must be 5x5
+     * @return the packed board
+     */
+    public static int pack(Grid grid) {
+        int packed = 0;
+        for(int y = 0; y < SIZE; y++) {
+            packed |= (int) grid.getRowMask(y) << (y * SIZE);
+        }
+        return packed;
+    }
+
+    /**
+     * Get the blocks a piece fills when played centred on a block
+     * @param piece the piece number
+     * @param rotation the rotation of the piece
+     * @param x the column the centre of the piece goes on
+     * @param y the row the centre of the piece goes on
+     * @return the packed blocks, or 0 if the piece would go off the board
+     */
+    public static int place(int piece, int rotation, int x, int y) {
+        int shape = GamePiece.mask(piece, rotation);
+        int placed = 0;
+        for(int by = 0; by < 3; by++) {
+            for(int bx = 0; bx < 3; bx++) {
+                if((shape & (1 << (by * 3 + bx))) == 0) continue;
+                int blockX = x - 1 + bx;
+                int blockY = y - 1 + by;
+                if(blockX < 0 || blockX >= SIZE || blockY < 0 || blockY >= SIZE) {
+                    return 0;
+                }
+                placed |= 1 << (blockY * SIZE + blockX);
+            }
+        }
+        return placed;
+    }
+
+    /**
+     * Get every distinct placement of a piece on an empty board
+     * @param piece the piece number
+     * @return the packed blocks of each placement, in ascending order
+     */
+    public static int[] placements(int piece) {
+        return PLACEMENTS[piece].clone();
+    }
+
+    /**
+     * Find the blocks of every full row and column, without branches
+     * @param board the packed board
+     * @return the packed blocks to clear
+     */
+    public static int fullLines(int board) {
+        //A row start stays set only if the four blocks after it are filled too, and likewise a column start
+        int fullRows = board & (board >>> 1) & (board >>> 2) & (board >>> 3) & (board >>> 4) & ROW_STARTS;
+        int fullCols = board & (board >>> 5) & (board >>> 10) & (board >>> 15) & (board >>> 20) & FIRST_ROW;
+        //Multiplying spreads each start bit across its line, and the lines of a board never carry into each other
+        return (fullRows * FIRST_ROW) | (fullCols * ROW_STARTS);
+    }
+
+    /**
+     * Clear every full row and column
+     * @param board the packed board
+     * @return the board left
+     */
+    public static int clear(int board) {
+        return board & ~fullLines(board);
+    }
+
+}
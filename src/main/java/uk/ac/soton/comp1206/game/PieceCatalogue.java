@@ -0,0 +1,495 @@
+package uk.ac.soton.comp1206.game;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A set of pieces, loaded from a piece pack text file and compiled once into the masks the board rules work on.
+ *
+ * A pack lists its pieces in piece number order. Each starts with a "piece: name" line, may set the colour of its
+ * blocks with a "colour: n" line, and then draws its shape as up to 5 rows of up to 5 characters:
+ *
+ * '#' a block, '.' an empty block, '@' the anchor block, '*' an empty anchor
+ *
+ * The anchor is the block the player clicks on, and the piece is rotated about it. Without one the anchor is the
+ * middle of the shape, rounding up and to the left. Every block must be within two blocks of the anchor. Blank lines
+ * and lines starting with "//" are ignored.
+ *
+ * At load every rotation of every piece is laid out in a square box centred on its anchor: 3x3 when the whole piece
+ * is within one block of its anchor, as all the standard pieces are, and 5x5 otherwise. Each box is compiled to row
+ * masks, a single mask and a bounding box, so checking or playing a piece costs the same whatever the size of its
+ * pack, and a standard piece costs exactly what it did before packs existed.
+ *
+ * The standard pack is bundled as /pieces/standard.pieces. The AI, the dead board table, puzzles and multiplayer
+ * all number pieces by it. The tetrecs.pieces system property picks the pack single player games use, either as the
+ * name of a bundled pack or as the path to a pack file, so seasonal packs can ship without changing any code.
+ */
+public class PieceCatalogue {
+
+    private static final Logger logger = LogManager.getLogger(PieceCatalogue.class);
+
+    /**
+     * The name of the standard pack
+     */
+    public static final String STANDARD = "standard";
+
+    /**
+     * The folder on the classpath the bundled packs are in
+     */
+    public static final String FOLDER = "/pieces/";
+
+    /**
+     * The file extension of a piece pack
+     */
+    public static final String EXTENSION = ".pieces";
+
+    /**
+     * The widest and tallest shape a piece can have
+     */
+    public static final int MAX_SHAPE = 5;
+
+    /**
+     * The furthest a block can be from the anchor of its piece, so every rotation fits in a 5x5 box
+     */
+    public static final int MAX_REACH = MAX_SHAPE / 2;
+
+    /**
+     * The number of colours blocks can be drawn in, 1 to PIECE_COLOURS. Pieces without a colour of their own take
+     * them in turn.
+     */
+    public static final int PIECE_COLOURS = 15;
+
+    private static final PieceCatalogue standard = loadStandard();
+
+    private static volatile PieceCatalogue active;
+
+    private final String name;
+    private final String[] names;
+    private final int[] values;
+    private final int size;
+
+    /**
+     * The compiled shapes, indexed by [piece][rotation]. Shared by every GamePiece, so never modified.
+     */
+    final long[][][] rowMasks;
+    final int[][] masks;
+    final int[][][] bounds;
+    final int[][][][] blocks;
+
+    /**
+     * A piece as it is read from a pack, before it is compiled
+     */
+    private static final class Shape {
+        private final String name;
+        private final int line;
+        private int colour;
+        private final List<String> rows = new ArrayList<>();
+
+        Shape(String name, int line) {
+            this.name = name;
+            this.line = line;
+        }
+    }
+
+    /**
+     * Compile the pieces of a pack
+     */
+    private PieceCatalogue(String name, List<Shape> shapes) throws IOException {
+        int pieces = shapes.size();
+        this.name = name;
+        this.names = new String[pieces];
+        this.values = new int[pieces];
+        this.rowMasks = new long[pieces][GamePiece.ROTATIONS][];
+        this.masks = new int[pieces][GamePiece.ROTATIONS];
+        this.bounds = new int[pieces][GamePiece.ROTATIONS][];
+        this.blocks = new int[pieces][GamePiece.ROTATIONS][][];
+
+        int largest = 0;
+        for(int piece = 0; piece < pieces; piece++) {
+            Shape shape = shapes.get(piece);
+            names[piece] = shape.name;
+            values[piece] = shape.colour != 0 ? shape.colour : piece % PIECE_COLOURS + 1;
+
+            int[][] box = compile(name, shape, values[piece]);
+            largest = Math.max(largest, box.length);
+            for(int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+                blocks[piece][rotation] = box;
+                rowMasks[piece][rotation] = toRowMasks(box);
+                masks[piece][rotation] = toMask(box);
+                bounds[piece][rotation] = toBounds(box);
+                box = rotated(box);
+            }
+        }
+        this.size = largest;
+    }
+
+    /**
+     * Get the standard pack, which every piece number outside single player games refers to
+     * @return the standard pack
+     */
+    public static PieceCatalogue standard() {
+        return standard;
+    }
+
+    /**
+     * Get the pack single player games use, loading it the first time. This is the pack named by the tetrecs.pieces
+     * system property, or the standard pack if it is not set or cannot be loaded.
+     * @return the active pack
+     */
+    public static PieceCatalogue active() {
+        if(active == null) {
+            synchronized(PieceCatalogue.class) {
+                if(active == null) {
+                    String pack = System.getProperty("tetrecs.pieces", STANDARD);
+                    try {
+                        active = load(pack);
+                        logger.info("Playing with the {} pieces of the {} pack", active.getPieces(), active.getName());
+                    } catch(IOException e) {
+                        logger.error("Could not load the piece pack {}, using the standard pieces: {}", pack,
+                            e.getMessage());
+                        active = standard;
+                    }
+                }
+            }
+        }
+        return active;
+    }
+
+    /**
+     * Load a pack, either one bundled in the folder of packs on the classpath or a pack file
+     * @param pack the name of a bundled pack, or the path to a pack file
+     * @return the pack
+     * @throws IOException if there is no such pack, or it is not a valid pack
+     */
+    public static PieceCatalogue load(String pack) throws IOException {
+        if(pack.equals(STANDARD)) {
+            return standard;
+        }
+        InputStream bundled = PieceCatalogue.class.getResourceAsStream(FOLDER + pack + EXTENSION);
+        if(bundled != null) {
+            try(Reader reader = new InputStreamReader(bundled, StandardCharsets.UTF_8)) {
+                return parse(pack, reader);
+            }
+        }
+        Path path = Path.of(pack);
+        String name = path.getFileName().toString();
+        if(name.endsWith(EXTENSION)) {
+            name = name.substring(0, name.length() - EXTENSION.length());
+        }
+        try(Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return parse(name, reader);
+        }
+    }
+
+    /**
+     * Read and compile a pack
+     * @param name the name of the pack
+     * @param in the text of the pack
+     * @return the pack
+     * @throws IOException if the text cannot be read or is not a valid pack
+     */
+    public static PieceCatalogue parse(String name, Reader in) throws IOException {
+        BufferedReader reader = in instanceof BufferedReader buffered ? buffered : new BufferedReader(in);
+        List<Shape> shapes = new ArrayList<>();
+        Shape shape = null;
+        int number = 0;
+        String line;
+        while((line = reader.readLine()) != null) {
+            number++;
+            line = line.strip();
+            if(line.isEmpty() || line.startsWith("//")) {
+                continue;
+            }
+            if(line.startsWith("piece:")) {
+                shape = new Shape(line.substring("piece:".length()).strip(), number);
+                shapes.add(shape);
+            } else if(shape == null) {
+                throw new IOException(error(name, number, "expected a piece: line"));
+            } else if(line.startsWith("colour:")) {
+                if(!shape.rows.isEmpty()) {
+                    throw new IOException(error(name, number, "the colour must come before the shape"));
+                }
+                try {
+                    shape.colour = Integer.parseInt(line.substring("colour:".length()).strip());
+                } catch(NumberFormatException e) {
+                    shape.colour = -1;
+                }
+                if(shape.colour < 1 || shape.colour > PIECE_COLOURS) {
+                    throw new IOException(error(name, number, "the colour must be from 1 to " + PIECE_COLOURS));
+                }
+            } else {
+                if(!line.matches("[#.@*]+")) {
+                    throw new IOException(error(name, number, "a shape can only hold # . @ and *"));
+                }
+                if(line.length() > MAX_SHAPE || shape.rows.size() == MAX_SHAPE) {
+                    throw new IOException(error(name, number, "a shape can be at most " + MAX_SHAPE + "x"
+                        + MAX_SHAPE));
+                }
+                shape.rows.add(line);
+            }
+        }
+        if(shapes.isEmpty()) {
+            throw new IOException("Piece pack " + name + " has no pieces");
+        }
+        return new PieceCatalogue(name, shapes);
+    }
+
+    /**
+     * Parse a pack held in a string, such as one built in code
+     * @param name the name of the pack
+     * @param text the text of the pack
+     * @return the pack
+     * @throws IOException if the text is not a valid pack
+     */
+    public static PieceCatalogue parse(String name, String text) throws IOException {
+        return parse(name, new StringReader(text));
+    }
+
+    /**
+     * Load the bundled standard pack. The rest of the game is built around it, so it has to be there.
+     */
+    private static PieceCatalogue loadStandard() {
+        InputStream in = PieceCatalogue.class.getResourceAsStream(FOLDER + STANDARD + EXTENSION);
+        if(in == null) {
+            throw new IllegalStateException("The standard piece pack is missing");
+        }
+        try(Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            PieceCatalogue catalogue = parse(STANDARD, reader);
+            if(catalogue.getPieces() != GamePiece.PIECES || catalogue.getSize() != 3) {
+                throw new IllegalStateException("The standard piece pack must have " + GamePiece.PIECES
+                    + " pieces of up to 3x3");
+            }
+            return catalogue;
+        } catch(IOException e) {
+            throw new IllegalStateException("Could not load the standard piece pack", e);
+        }
+    }
+
+    /**
+     * Describe a mistake in a pack
+     */
+    private static String error(String name, int line, String message) {
+        return "Piece pack " + name + " line " + line + ": " + message;
+    }
+
+    /**
+     * Lay a shape out in the smallest odd sized square box centred on its anchor
+     * @param pack the name of the pack, for errors
+     * @param shape the shape as read
+     * @param value the value to fill its blocks with
+     * @return the box, indexed [x][y]
+     */
+    private static int[][] compile(String pack, Shape shape, int value) throws IOException {
+        if(shape.rows.isEmpty()) {
+            throw new IOException(error(pack, shape.line, shape.name + ": the piece has no shape"));
+        }
+        int width = 0;
+        int anchorX = -1, anchorY = -1;
+        for(int y = 0; y < shape.rows.size(); y++) {
+            String row = shape.rows.get(y);
+            width = Math.max(width, row.length());
+            for(int x = 0; x < row.length(); x++) {
+                char c = row.charAt(x);
+                if(c != '@' && c != '*') continue;
+                if(anchorX >= 0) {
+                    throw new IOException(error(pack, shape.line,
+                        shape.name + ": the piece has more than one anchor"));
+                }
+                anchorX = x;
+                anchorY = y;
+            }
+        }
+        if(anchorX < 0) {
+            anchorX = (width - 1) / 2;
+            anchorY = (shape.rows.size() - 1) / 2;
+        }
+
+        //Every piece gets at least a 3x3 box, so the standard pieces keep the layout they have always had
+        int reach = 1;
+        boolean empty = true;
+        for(int y = 0; y < shape.rows.size(); y++) {
+            String row = shape.rows.get(y);
+            for(int x = 0; x < row.length(); x++) {
+                if(!isBlock(row.charAt(x))) continue;
+                empty = false;
+                reach = Math.max(reach, Math.max(Math.abs(x - anchorX), Math.abs(y - anchorY)));
+            }
+        }
+        if(empty) {
+            throw new IOException(error(pack, shape.line, shape.name + ": the piece has no blocks"));
+        }
+        if(reach > MAX_REACH) {
+            throw new IOException(error(pack, shape.line, shape.name + ": every block must be within " + MAX_REACH
+                + " of the anchor"));
+        }
+
+        int[][] box = new int[2 * reach + 1][2 * reach + 1];
+        for(int y = 0; y < shape.rows.size(); y++) {
+            String row = shape.rows.get(y);
+            for(int x = 0; x < row.length(); x++) {
+                if(isBlock(row.charAt(x))) {
+                    box[x - anchorX + reach][y - anchorY + reach] = value;
+                }
+            }
+        }
+        return box;
+    }
+
+    private static boolean isBlock(char c) {
+        return c == '#' || c == '@';
+    }
+
+    /**
+     * Rotate a square block makeup exactly once, clockwise, about its middle
+     * @param blocks block makeup to rotate
+     * @return a new, rotated block makeup
+     */
+    private static int[][] rotated(int[][] blocks) {
+        int side = blocks.length;
+        int[][] rotated = new int[side][side];
+        for(int x = 0; x < side; x++) {
+            for(int y = 0; y < side; y++) {
+                rotated[side - 1 - y][x] = blocks[x][y];
+            }
+        }
+        return rotated;
+    }
+
+    /**
+     * Pack a block makeup into one occupancy mask per row
+     * @param blocks block makeup of the piece
+     * @return the row masks
+     */
+    private static long[] toRowMasks(int[][] blocks) {
+        long[] masks = new long[blocks[0].length];
+        for(int x = 0; x < blocks.length; x++) {
+            for (int y = 0; y < blocks[x].length; y++) {
+                if(blocks[x][y] != 0) {
+                    masks[y] |= 1L << x;
+                }
+            }
+        }
+        return masks;
+    }
+
+    /**
+     * Pack a block makeup into a single mask
+     * @param blocks block makeup of the piece
+     * @return the mask, with bit (y * side + x) set for each block
+     */
+    private static int toMask(int[][] blocks) {
+        int side = blocks.length;
+        int mask = 0;
+        for(int x = 0; x < side; x++) {
+            for(int y = 0; y < side; y++) {
+                if(blocks[x][y] != 0) {
+                    mask |= 1 << (y * side + x);
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Find the bounding box of a block makeup, relative to its anchor in the middle
+     * @param blocks block makeup of the piece
+     * @return {minX, minY, maxX, maxY}
+     */
+    private static int[] toBounds(int[][] blocks) {
+        int middle = blocks.length / 2;
+        int minX = middle, minY = middle, maxX = -middle, maxY = -middle;
+        for(int x = 0; x < blocks.length; x++) {
+            for(int y = 0; y < blocks.length; y++) {
+                if(blocks[x][y] == 0) continue;
+                minX = Math.min(minX, x - middle);
+                minY = Math.min(minY, y - middle);
+                maxX = Math.max(maxX, x - middle);
+                maxY = Math.max(maxY, y - middle);
+            }
+        }
+        return new int[] {minX, minY, maxX, maxY};
+    }
+
+    /**
+     * Get the name of this pack
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the number of pieces in this pack
+     * @return number of pieces, numbered from 0
+     */
+    public int getPieces() {
+        return names.length;
+    }
+
+    /**
+     * Get the side of the largest box a piece of this pack is laid out in, which a board showing any of them needs
+     * @return 3 or 5
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Check whether this is the standard pack, which the AI, the dead board table and piece numbers sent over the
+     * network refer to
+     * @return true if it is
+     */
+    public boolean isStandard() {
+        return this == standard;
+    }
+
+    /**
+     * Get the name of a piece
+     * @param piece piece number
+     * @return name
+     */
+    public String getName(int piece) {
+        return names[piece];
+    }
+
+    /**
+     * Get the value, or colour, the blocks of a piece are filled with
+     * @param piece piece number
+     * @return value, from 1 to PIECE_COLOURS
+     */
+    public int getValue(int piece) {
+        return values[piece];
+    }
+
+    /**
+     * Get the row masks of a piece in a given rotation. There is one per row of the box the piece is laid out in,
+     * with the anchor in the middle.
+     * @param piece piece number
+     * @param rotation rotation, from 0 to ROTATIONS - 1
+     * @return row masks with bit x set when column x of that row holds a block, shared so must not be modified
+     */
+    public long[] rowMasks(int piece, int rotation) {
+        return rowMasks[piece][rotation];
+    }
+
+    /**
+     * Get the name of this pack
+     * @return name
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
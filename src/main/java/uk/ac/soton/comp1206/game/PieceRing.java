@@ -0,0 +1,144 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.concurrent.atomic.AtomicLong;
+import uk.ac.soton.comp1206.event.LowWatermarkListener;
+
+/**
+ * A bounded ring of piece numbers, handing pieces from one producer thread to one consumer thread without locks.
+ *
+ * The producer calls offer and the consumer calls poll. Neither ever blocks or allocates: a full ring turns an offer
+ * down and an empty ring returns EMPTY. Each side owns one counter, which only it writes, and publishes it to the
+ * other side with a release store. Each side also caches the last value it read of the other side's counter, so
+ * while there is room or there are pieces, an offer or a poll touches no memory written by the other thread.
+ *
+ * Every poll which leaves the ring at or below its low watermark tells the listener, on the consumer thread, how many
+ * pieces are left. The listener decides whether anything needs doing, for example by counting the pieces it has
+ * already asked for, so a top up which arrives a piece at a time and is taken as fast as it arrives is never missed.
+ */
+public final class PieceRing {
+
+    /**
+     * Returned by poll when there are no pieces
+     */
+    public static final int EMPTY = -1;
+
+    private final int[] pieces;
+    private final int mask;
+    private final int lowWatermark;
+    private final LowWatermarkListener listener;
+
+    /**
+     * The number of pieces ever taken, written only by the consumer
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * The number of pieces ever offered, written only by the producer
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    //The producer's last look at head and the consumer's last look at tail
+    private long cachedHead;
+    private long cachedTail;
+
+    /**
+     * Create an empty ring
+     * @param capacity the most pieces the ring holds, a power of two
+     * @param lowWatermark the number of pieces left at which the listener is told
+     * @param listener told when the ring reaches its low watermark. May be null.
+     */
+    public PieceRing(int capacity, int lowWatermark, LowWatermarkListener listener) {
+        if(capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The capacity must be a power of two, not " + capacity);
+        }
+        if(lowWatermark < 0 || lowWatermark >= capacity) {
+            throw new IllegalArgumentException("The low watermark must be below the capacity, not " + lowWatermark);
+        }
+        this.pieces = new int[capacity];
+        this.mask = capacity - 1;
+        this.lowWatermark = lowWatermark;
+        this.listener = listener;
+    }
+
+    /**
+     * Add a piece. Only the producer thread may call this.
+     * @param piece the piece number, not negative
+     * @return false if the ring is full, and the piece was not added
+     */
+    public boolean offer(int piece) {
+        long t = tail.getPlain();
+        if(t - cachedHead == pieces.length) {
+            cachedHead = head.getAcquire();
+            if(t - cachedHead == pieces.length) {
+                return false;
+            }
+        }
+        pieces[(int) t & mask] = piece;
+        tail.setRelease(t + 1);
+        return true;
+    }
+
+    /**
+     * Take the next piece. Only the consumer thread may call this.
+     * @return the piece number, or EMPTY if there are no pieces
+     */
+    public int poll() {
+        long h = head.getPlain();
+        if(h == cachedTail) {
+            cachedTail = tail.getAcquire();
+            if(h == cachedTail) {
+                report(0);
+                return EMPTY;
+            }
+        }
+        int piece = pieces[(int) h & mask];
+        head.setRelease(h + 1);
+
+        long remaining = cachedTail - h - 1;
+        if(remaining <= lowWatermark) {
+            //The cached tail may be behind, so look at the real one before deciding the ring is running low
+            cachedTail = tail.getAcquire();
+            remaining = cachedTail - h - 1;
+        }
+        if(remaining <= lowWatermark) {
+            report((int) remaining);
+        }
+        return piece;
+    }
+
+    /**
+     * Tell the listener the ring is low
+     */
+    private void report(int remaining) {
+        if(listener != null) {
+            listener.lowWatermark(remaining);
+        }
+    }
+
+    /**
+     * Get the number of pieces in the ring. Exact on either thread when the other is not using the ring, otherwise
+     * a snapshot which may already be out of date.
+     * @return the number of pieces
+     */
+    public int size() {
+        long h = head.getAcquire();
+        return (int) (tail.getAcquire() - h);
+    }
+
+    /**
+     * Get the most pieces the ring holds
+     * @return capacity
+     */
+    public int getCapacity() {
+        return pieces.length;
+    }
+
+    /**
+     * Get the number of pieces left at which the listener is told
+     * @return low watermark
+     */
+    public int getLowWatermark() {
+        return lowWatermark;
+    }
+
+}
@@ -0,0 +1,35 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Where the pieces of a game come from: a local random number generator, the server, or a saved replay.
+ *
+ * A GameEngine draws every new piece from its source, in the middle of playing a move, so taking a piece must not
+ * allocate, and must not block while the source is keeping up. Sources which produce their pieces on another thread
+ * hand them over through a PieceRing and top it up when it reports its low watermark. Only a source which cannot make
+ * up a piece, such as the server's, waits once its ring is empty. A PieceSource is an IntSupplier, so anything that only needs a stream
+ * of piece numbers can still be given a lambda.
+ */
+public interface PieceSource extends IntSupplier {
+
+    /**
+     * Take the next piece. Never allocates, and only blocks if the source has run dry and must not make up a piece.
+     * @return the piece number
+     */
+    @Override
+    int getAsInt();
+
+    /**
+     * Get the number of pieces ready to be taken straight away
+     * @return the number of pieces, Integer.MAX_VALUE for a source which makes them as they are taken
+     */
+    int available();
+
+    /**
+     * Stop producing pieces and let go of anything held to produce them. No more pieces may be taken afterwards.
+     */
+    default void close() {
+    }
+
+}
@@ -0,0 +1,230 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.IntSupplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A practice game, where every placement, swap and rotation can be undone and redone.
+ *
+ * Before each input the state of the engine is snapshotted onto a History. Snapshots share the board rows which have
+ * not changed, so each one costs a few words plus the rows the input touched, and undo or redo only rewrites the rows
+ * which differ. The pieces come from a queue which remembers every piece drawn, so going back and playing differently
+ * deals the same pieces again.
+ *
+ * There is no timer. When the board is dead the game waits for the player to undo rather than ending.
+ */
+public class PracticeGame extends Game {
+
+    private static final Logger logger = LogManager.getLogger(PracticeGame.class);
+
+    /**
+     * The number of inputs that can be undone by default
+     */
+    public static final int DEFAULT_HISTORY_DEPTH = 1000;
+
+    private final PieceQueue queue;
+    private final History<Step> history;
+
+    /**
+     * The state of the game before an input: the engine, and how far along the piece queue it had drawn
+     */
+    private static final class Step {
+        private final GameEngine.Snapshot engine;
+        private final int drawn;
+
+        Step(GameEngine.Snapshot engine, int drawn) {
+            this.engine = engine;
+            this.drawn = drawn;
+        }
+    }
+
+    /**
+     * Draws random pieces, remembering them so that after an undo the same pieces are drawn again
+     */
+    private static class PieceQueue implements IntSupplier {
+        private final SplittableRandom random = new SplittableRandom();
+        private int[] pieces = new int[64];
+        private int size;
+        private int drawn;
+
+        @Override
+        public int getAsInt() {
+            if(drawn == size) {
+                if(size == pieces.length) {
+                    pieces = Arrays.copyOf(pieces, size * 2);
+                }
+                pieces[size++] = random.nextInt(GamePiece.PIECES);
+            }
+            return pieces[drawn++];
+        }
+    }
+
+    /**
+     * Create a practice game with the default history depth
+     * @param cols number of columns
+     * @param rows number of rows
+     */
+    public PracticeGame(int cols, int rows) {
+        this(cols, rows, DEFAULT_HISTORY_DEPTH);
+    }
+
+    /**
+     * Create a practice game
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param historyDepth the most inputs that can be undone. Older ones are forgotten, which keeps memory bounded.
+     */
+    public PracticeGame(int cols, int rows, int historyDepth) {
+        this(cols, rows, historyDepth, new PieceQueue());
+    }
+
+    private PracticeGame(int cols, int rows, int historyDepth, PieceQueue queue) {
+        super(new GameEngine(cols, rows, queue));
+        this.queue = queue;
+        this.history = new History<>(historyDepth);
+    }
+
+    /**
+     * Practice is not timed, so only tell the listener that the next piece is ready
+     */
+    @Override
+    public void startTimer() {
+        nextPieceReady();
+    }
+
+    @Override
+    public void restartTimer() {
+        startTimer();
+    }
+
+    @Override
+    public void stopTimer() {
+    }
+
+    /**
+     * Play the current piece, remembering the state before it if it fits
+     */
+    @Override
+    public void playPiecePostSteps(int x, int y) {
+        if(getCurrentPiece() != null && engine.canPlay(x, y)) {
+            remember();
+        }
+        super.playPiecePostSteps(x, y);
+    }
+
+    @Override
+    public void rotateCurrentPieceClockwise() {
+        if(getCurrentPiece() != null) {
+            remember();
+        }
+        super.rotateCurrentPieceClockwise();
+    }
+
+    @Override
+    public void rotateCurrentPieceAnticlockwise() {
+        if(getCurrentPiece() != null) {
+            remember();
+        }
+        super.rotateCurrentPieceAnticlockwise();
+    }
+
+    @Override
+    public void swapCurrentPiece() {
+        if(getCurrentPiece() != null) {
+            remember();
+        }
+        super.swapCurrentPiece();
+    }
+
+    /**
+     * Carries on as normal, except that a dead board does not end the game, so the player can undo out of it
+     */
+    @Override
+    public void prepareAfterPiece() {
+        if(engine.isGameOver()) {
+            logger.info("No moves left, undo to try something else");
+            displayPieces();
+            return;
+        }
+        super.prepareAfterPiece();
+    }
+
+    /**
+     * Practice games are not saved, as undoing leaves the replay log describing moves which were taken back
+     */
+    @Override
+    protected void saveReplay() {
+    }
+
+    /**
+     * Undo the last placement, swap or rotation
+     * @return true if there was something to undo
+     */
+    public boolean undo() {
+        if(!history.canUndo()) {
+            return false;
+        }
+        logger.info("Undoing, {} more can be undone", history.getUndoCount() - 1);
+        restore(history.undo(capture()));
+        return true;
+    }
+
+    /**
+     * Redo the last input undone
+     * @return true if there was something to redo
+     */
+    public boolean redo() {
+        if(!history.canRedo()) {
+            return false;
+        }
+        logger.info("Redoing");
+        restore(history.redo(capture()));
+        return true;
+    }
+
+    /**
+     * Check whether there is an input to undo
+     * @return true if undo will do something
+     */
+    public boolean canUndo() {
+        return history.canUndo();
+    }
+
+    /**
+     * Check whether there is an undone input to redo
+     * @return true if redo will do something
+     */
+    public boolean canRedo() {
+        return history.canRedo();
+    }
+
+    /**
+     * Remember the state before an input, so it can be undone
+     */
+    private void remember() {
+        history.push(capture());
+    }
+
+    /**
+     * Snapshot the state of the game
+     */
+    private Step capture() {
+        return new Step(engine.snapshot(), queue.drawn);
+    }
+
+    /**
+     * Put the game back to a remembered state and show it
+     */
+    private void restore(Step step) {
+        engine.restore(step.engine);
+        queue.drawn = step.drawn;
+        coords.clear();
+        updateProperties();
+        displayPieces();
+        nextPieceReady();
+    }
+
+}
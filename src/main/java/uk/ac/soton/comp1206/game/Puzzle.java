@@ -0,0 +1,132 @@
+package uk.ac.soton.comp1206.game;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A puzzle on the standard 5x5 board: blocks already filled, and the pieces, in a fixed order, which must clear every
+ * one of them.
+ *
+ * A list of puzzles is saved in a compact form: the magic bytes "TPZL", a format version byte and the number of
+ * puzzles as an int, then for each puzzle the packed board as an int, the number of pieces as a byte and the pieces
+ * two to a byte, first piece in the low four bits. A puzzle of three pieces takes seven bytes.
+ */
+public final class Puzzle {
+
+    private static final byte[] MAGIC = {'T', 'P', 'Z', 'L'};
+    private static final int VERSION = 1;
+
+    private final int board;
+    private final int[] pieces;
+
+    /**
+     * Create a puzzle
+     * @param board the blocks filled at the start, packed as a PackedBoard
+     * @param pieces the piece numbers of the pieces to play, in order
+     */
+    public Puzzle(int board, int[] pieces) {
+        this.board = board;
+        this.pieces = pieces.clone();
+    }
+
+    /**
+     * Get the blocks filled at the start
+     * @return the packed board
+     */
+    public int getBoard() {
+        return board;
+    }
+
+    /**
+     * Get the pieces to play
+     * @return the piece numbers, in order
+     */
+    public int[] getPieces() {
+        return pieces.clone();
+    }
+
+    /**
+     * Get the number of pieces to play
+     * @return pieces
+     */
+    public int getPieceCount() {
+        return pieces.length;
+    }
+
+    /**
+     * Get one of the pieces to play
+     * @param index the position of the piece in the order
+     * @return the piece number
+     */
+    public int getPiece(int index) {
+        return pieces[index];
+    }
+
+    /**
+     * Save a list of puzzles
+     * @param puzzles the puzzles
+     * @param out the stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    public static void writeAll(List<Puzzle> puzzles, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(MAGIC);
+        data.writeByte(VERSION);
+        data.writeInt(puzzles.size());
+        for(Puzzle puzzle : puzzles) {
+            data.writeInt(puzzle.board);
+            data.writeByte(puzzle.pieces.length);
+            for(int i = 0; i < puzzle.pieces.length; i += 2) {
+                int high = i + 1 < puzzle.pieces.length ? puzzle.pieces[i + 1] : 0;
+                data.writeByte(puzzle.pieces[i] | high << 4);
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Load a list of puzzles
+     * @param in the stream to read from
+     * @return the puzzles
+     * @throws IOException if the stream cannot be read or does not hold puzzles
+     */
+    public static List<Puzzle> readAll(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] magic = new byte[MAGIC.length];
+        data.readFully(magic);
+        if(!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a puzzle file");
+        }
+        int version = data.readUnsignedByte();
+        if(version != VERSION) {
+            throw new IOException("Unsupported puzzle file version " + version);
+        }
+        int count = data.readInt();
+        List<Puzzle> puzzles = new ArrayList<>(count);
+        for(int p = 0; p < count; p++) {
+            int board = data.readInt();
+            int[] pieces = new int[data.readUnsignedByte()];
+            for(int i = 0; i < pieces.length; i += 2) {
+                int packed = data.readUnsignedByte();
+                pieces[i] = packed & 15;
+                if(i + 1 < pieces.length) {
+                    pieces[i + 1] = packed >>> 4;
+                }
+            }
+            puzzles.add(new Puzzle(board, pieces));
+        }
+        return puzzles;
+    }
+
+    @Override
+    public String toString() {
+        return "Puzzle " + Integer.toBinaryString(board) + " with pieces " + Arrays.toString(pieces);
+    }
+
+}
@@ -0,0 +1,158 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.function.IntSupplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A game of a single Puzzle. The board starts with the puzzle's blocks filled in white, and the player must clear every
+ * one of them using the puzzle's pieces in order.
+ *
+ * There is no timer and the pieces cannot be swapped. Once the last piece has been played the puzzle is solved if the
+ * board is empty, and failed otherwise. It also fails early if the next piece cannot go anywhere.
+ */
+public class PuzzleGame extends Game {
+
+    private static final Logger logger = LogManager.getLogger(PuzzleGame.class);
+
+    /**
+     * The piece drawn once the puzzle's pieces run out, only ever shown as the following piece of the last one
+     */
+    private static final int FILLER_PIECE = 0;
+
+    private final Puzzle puzzle;
+    private final PieceSequence sequence;
+    private boolean solved;
+
+    /**
+     * Create a game of a puzzle
+     * @param puzzle the puzzle to play
+     */
+    public PuzzleGame(Puzzle puzzle) {
+        this(puzzle, new PieceSequence(puzzle));
+    }
+
+    private PuzzleGame(Puzzle puzzle, PieceSequence sequence) {
+        super(new GameEngine(PackedBoard.SIZE, PackedBoard.SIZE, sequence));
+        this.puzzle = puzzle;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Hands out the puzzle's pieces in order, counting how many have been drawn
+     */
+    private static class PieceSequence implements IntSupplier {
+        private final Puzzle puzzle;
+        private int drawn;
+
+        PieceSequence(Puzzle puzzle) {
+            this.puzzle = puzzle;
+        }
+
+        @Override
+        public int getAsInt() {
+            int index = drawn++;
+            return index < puzzle.getPieceCount() ? puzzle.getPiece(index) : FILLER_PIECE;
+        }
+    }
+
+    /**
+     * Fill in the puzzle's blocks, then start the game as normal
+     */
+    @Override
+    public void initialiseGame() {
+        logger.info("Setting up {}", puzzle);
+        int board = puzzle.getBoard();
+        for(int bits = board; bits != 0; bits &= bits - 1) {
+            int cell = Integer.numberOfTrailingZeros(bits);
+            engine.fill(cell % PackedBoard.SIZE, cell / PackedBoard.SIZE, Grid.FIXED);
+        }
+        super.initialiseGame();
+    }
+
+    /**
+     * Puzzles are not timed, so only tell the listener that the next piece is ready
+     */
+    @Override
+    public void startTimer() {
+        nextPieceReady();
+    }
+
+    @Override
+    public void restartTimer() {
+        startTimer();
+    }
+
+    @Override
+    public void stopTimer() {
+    }
+
+    /**
+     * The pieces of a puzzle have to be played in order
+     */
+    @Override
+    public void swapCurrentPiece() {
+        logger.info("Pieces cannot be swapped in a puzzle");
+    }
+
+    /**
+     * Ends the puzzle once every piece has been played or the next one cannot go anywhere, otherwise carries on as
+     * normal
+     */
+    @Override
+    public void prepareAfterPiece() {
+        //Without swaps the engine's own dead board check is not enough, as only the current piece can be played
+        boolean stuck = getPiecesLeft() > 0 && !grid.hasLegalPlacement(getCurrentPiece());
+        if(getPiecesLeft() > 0 && !stuck && !engine.isGameOver()) {
+            super.prepareAfterPiece();
+            return;
+        }
+        solved = getPiecesLeft() == 0 && PackedBoard.pack(grid) == 0;
+        logger.info("Puzzle {}", solved ? "solved" : "failed");
+        displayPieces();
+        gameOver();
+    }
+
+    /**
+     * Shows the current and following pieces, leaving a board empty once the puzzle has no piece for it
+     */
+    @Override
+    protected void displayPieces() {
+        super.displayPieces();
+        if(getPiecesLeft() < 2) {
+            followingPieceBoard.clear();
+        }
+        if(getPiecesLeft() < 1) {
+            pieceBoard.clear();
+        }
+    }
+
+    /**
+     * Get the puzzle being played
+     * @return puzzle
+     */
+    public Puzzle getPuzzle() {
+        return puzzle;
+    }
+
+    /**
+     * Get the number of the puzzle's pieces still to play, counting the current piece
+     * @return pieces left
+     */
+    public int getPiecesLeft() {
+        if(getCurrentPiece() == null) {
+            return puzzle.getPieceCount();
+        }
+        //The current and following pieces have been drawn but not played
+        return Math.max(0, puzzle.getPieceCount() - (sequence.drawn - 2));
+    }
+
+    /**
+     * Check whether the puzzle was solved. Only meaningful once the game has ended.
+     * @return true if every piece was played and the board is empty
+     */
+    public boolean isSolved() {
+        return solved;
+    }
+
+}
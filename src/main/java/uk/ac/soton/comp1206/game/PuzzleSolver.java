@@ -0,0 +1,150 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Finds the ways to solve a Puzzle: a placement for each piece in turn, after which every block has been cleared.
+ *
+ * The search tries every distinct placement of each piece in order. It gives up on a board as soon as some filled
+ * block needs more blocks to finish its row or column than the pieces left hold, and remembers the boards it has
+ * already found to have no solution, as different placements often lead to the same board.
+ */
+public final class PuzzleSolver {
+
+    private static final int SIZE = PackedBoard.SIZE;
+
+    /**
+     * Every block of the first column of a packed board
+     */
+    private static final int FIRST_COL = 0b00001_00001_00001_00001_00001;
+
+    private PuzzleSolver() {
+    }
+
+    /**
+     * Count the solutions of a puzzle, up to a limit. Placements are counted once however many rotations give them.
+     * @param puzzle the puzzle
+     * @param limit the most solutions to look for
+     * @return the number of solutions, at most the limit
+     */
+    public static int countSolutions(Puzzle puzzle, int limit) {
+        return countSolutions(puzzle.getBoard(), puzzle.getPieces(), limit);
+    }
+
+    /**
+     * Count the ways to clear a board with pieces in a fixed order, up to a limit
+     * @param board the packed board
+     * @param pieces the piece numbers, in order
+     * @param limit the most solutions to look for
+     * @return the number of solutions, at most the limit
+     */
+    public static int countSolutions(int board, int[] pieces, int limit) {
+        return count(board, pieces, 0, blocks(pieces, 0), limit, new HashSet<>(), null);
+    }
+
+    /**
+     * Find a solution of a puzzle
+     * @param puzzle the puzzle
+     * @return the packed blocks filled by each piece in turn, or null if there is no solution
+     */
+    public static int[] solve(Puzzle puzzle) {
+        int[] pieces = puzzle.getPieces();
+        int[] solution = new int[pieces.length];
+        int found = count(puzzle.getBoard(), pieces, 0, blocks(pieces, 0), 1, new HashSet<>(), solution);
+        return found == 0 ? null : solution;
+    }
+
+    /**
+     * The number of blocks in the pieces from an index on
+     */
+    private static int blocks(int[] pieces, int from) {
+        int blocks = 0;
+        for(int i = from; i < pieces.length; i++) {
+            blocks += Integer.bitCount(GamePiece.mask(pieces[i], 0));
+        }
+        return blocks;
+    }
+
+    /**
+     * Count solutions from a board with pieces from an index on still to play
+     * @param blocksLeft the number of blocks in the pieces still to play
+     * @param dead the boards, with the index, already found to have no solution
+     * @param solution filled in with the placement of each piece of the first solution found, or null
+     */
+    private static int count(int board, int[] pieces, int index, int blocksLeft, int limit, Set<Long> dead,
+                             int[] solution) {
+        if(board == 0) {
+            //Every piece must still be played, even once the board is clear
+            return index == pieces.length ? 1 : countFromEmpty(pieces, index, blocksLeft, limit, dead, solution);
+        }
+        if(index == pieces.length || blocksNeeded(board) > blocksLeft) {
+            return 0;
+        }
+        long key = (long) index << 32 | board;
+        if(dead.contains(key)) {
+            return 0;
+        }
+        int piece = pieces[index];
+        int pieceBlocks = Integer.bitCount(GamePiece.mask(piece, 0));
+        int found = 0;
+        for(int placed : PackedBoard.PLACEMENTS[piece]) {
+            if((board & placed) != 0) continue;
+            found += count(PackedBoard.clear(board | placed), pieces, index + 1, blocksLeft - pieceBlocks,
+                limit - found, dead, solution);
+            if(found > 0 && solution != null && solution[index] == 0) {
+                solution[index] = placed;
+            }
+            if(found >= limit) {
+                return found;
+            }
+        }
+        if(found == 0) {
+            dead.add(key);
+        }
+        return found;
+    }
+
+    /**
+     * The board has been cleared with pieces still to play, which must clear it again themselves
+     */
+    private static int countFromEmpty(int[] pieces, int index, int blocksLeft, int limit, Set<Long> dead,
+                                      int[] solution) {
+        int piece = pieces[index];
+        int pieceBlocks = Integer.bitCount(GamePiece.mask(piece, 0));
+        int found = 0;
+        for(int placed : PackedBoard.PLACEMENTS[piece]) {
+            found += count(PackedBoard.clear(placed), pieces, index + 1, blocksLeft - pieceBlocks, limit - found,
+                dead, solution);
+            if(found > 0 && solution != null && solution[index] == 0) {
+                solution[index] = placed;
+            }
+            if(found >= limit) {
+                return found;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * The fewest blocks that could clear the hardest filled block: every filled block has to have its row or its
+     * column finished
+     */
+    private static int blocksNeeded(int board) {
+        int[] colEmpty = new int[SIZE];
+        for(int x = 0; x < SIZE; x++) {
+            colEmpty[x] = SIZE - Integer.bitCount(board & (FIRST_COL << x));
+        }
+        int needed = 0;
+        for(int y = 0; y < SIZE; y++) {
+            int row = (board >>> (y * SIZE)) & ((1 << SIZE) - 1);
+            int rowEmpty = SIZE - Integer.bitCount(row);
+            for(int bits = row; bits != 0; bits &= bits - 1) {
+                int x = Integer.numberOfTrailingZeros(bits);
+                needed = Math.max(needed, Math.min(rowEmpty, colEmpty[x]));
+            }
+        }
+        return needed;
+    }
+
+}
@@ -0,0 +1,42 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.SplittableRandom;
+
+/**
+ * Draws pieces uniformly at random from a local random number generator, on the thread taking them. Seeded, it deals
+ * exactly the pieces a seeded GameEngine always has, so replays and seeded games are unchanged.
+ */
+public class RandomPieceSource implements PieceSource {
+
+    private final SplittableRandom random;
+    private final int pieces;
+
+    /**
+     * Create a source of standard pieces
+     * @param random the source of randomness
+     */
+    public RandomPieceSource(SplittableRandom random) {
+        this(random, GamePiece.PIECES);
+    }
+
+    /**
+     * Create a source choosing between a given number of pieces
+     * @param random the source of randomness
+     * @param pieces the number of pieces to choose between
+     */
+    public RandomPieceSource(SplittableRandom random, int pieces) {
+        this.random = random;
+        this.pieces = pieces;
+    }
+
+    @Override
+    public int getAsInt() {
+        return random.nextInt(pieces);
+    }
+
+    @Override
+    public int available() {
+        return Integer.MAX_VALUE;
+    }
+
+}
@@ -0,0 +1,357 @@
+package uk.ac.soton.comp1206.game;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A compact binary record of every input made in a game, enough to rebuild the game exactly.
+ *
+ * The log starts with a header: the magic bytes "TRPL", a format version, a flags byte, the board columns and rows as
+ * varints, for games played with a piece pack other than the standard one the name of the pack as a varint length and
+ * UTF-8 bytes, and for seeded games the 8 byte piece seed. After the header comes one entry per input: a single opcode
+ * byte, followed for placements by the column and row as varints. Games whose pieces do not come from a seed (for
+ * example multiplayer games, where the server picks them) also record each piece drawn, so they can be replayed too.
+ * Games that start with blocks already filled, such as puzzles, record each of those blocks before any other input.
+ *
+ * Varints are unsigned LEB128: seven bits per byte, low bits first, with the top bit set on every byte but the last.
+ */
+public class ReplayLog {
+
+    private static final byte[] MAGIC = {'T', 'R', 'P', 'L'};
+    private static final int VERSION = 1;
+    private static final int FLAG_SEEDED = 1;
+    private static final int FLAG_PACK = 2;
+
+    /**
+     * The opcodes for each kind of input
+     */
+    public static final int PLACE = 0;
+    public static final int ROTATE_CLOCKWISE = 1;
+    public static final int ROTATE_ANTICLOCKWISE = 2;
+    public static final int SWAP = 3;
+    public static final int TIMER_EXPIRED = 4;
+    public static final int PIECE = 5;
+    public static final int FILL = 6;
+
+    private final int cols;
+    private final int rows;
+    private final boolean seeded;
+    private final long seed;
+    private final String pack;
+
+    /**
+     * The encoded inputs, not including the header
+     */
+    private byte[] data;
+    private int length;
+
+    /**
+     * Create an empty log for a game whose pieces come from the given seed
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param seed the piece seed
+     */
+    public ReplayLog(int cols, int rows, long seed) {
+        this(cols, rows, seed, PieceCatalogue.STANDARD);
+    }
+
+    /**
+     * Create an empty log for a game whose pieces come from the given seed, drawn from a piece pack
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param seed the piece seed
+     * @param pack the name of the pack the pieces are numbered by
+     */
+    public ReplayLog(int cols, int rows, long seed, String pack) {
+        this(cols, rows, true, seed, pack, new byte[64], 0);
+    }
+
+    /**
+     * Create an empty log for a game whose pieces are recorded as they are drawn
+     * @param cols number of columns
+     * @param rows number of rows
+     */
+    public ReplayLog(int cols, int rows) {
+        this(cols, rows, PieceCatalogue.STANDARD);
+    }
+
+    /**
+     * Create an empty log for a game whose pieces are recorded as they are drawn from a piece pack
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param pack the name of the pack the pieces are numbered by
+     */
+    public ReplayLog(int cols, int rows, String pack) {
+        this(cols, rows, false, 0, pack, new byte[64], 0);
+    }
+
+    private ReplayLog(int cols, int rows, boolean seeded, long seed, String pack, byte[] data, int length) {
+        this.cols = cols;
+        this.rows = rows;
+        this.seeded = seeded;
+        this.seed = seed;
+        this.pack = pack;
+        this.data = data;
+        this.length = length;
+    }
+
+    /**
+     * Record a piece being played centred on the given block
+     * @param x column
+     * @param y row
+     */
+    public void place(int x, int y) {
+        writeByte(PLACE);
+        writeVarint(x);
+        writeVarint(y);
+    }
+
+    /**
+     * Record an input with no arguments
+     * @param opcode ROTATE_CLOCKWISE, ROTATE_ANTICLOCKWISE, SWAP or TIMER_EXPIRED
+     */
+    public void record(int opcode) {
+        writeByte(opcode);
+    }
+
+    /**
+     * Record a piece being drawn. Only needed for games that are not seeded.
+     * @param piece the piece number
+     */
+    public void piece(int piece) {
+        writeByte(PIECE);
+        writeVarint(piece);
+    }
+
+    /**
+     * Record a block filled before the game started
+     * @param x column
+     * @param y row
+     * @param value the colour of the block
+     */
+    public void fill(int x, int y, int value) {
+        writeByte(FILL);
+        writeVarint(x);
+        writeVarint(y);
+        writeVarint(value);
+    }
+
+    private void writeByte(int value) {
+        if(length == data.length) {
+            data = Arrays.copyOf(data, data.length * 2);
+        }
+        data[length++] = (byte) value;
+    }
+
+    private void writeVarint(int value) {
+        while((value & ~0x7F) != 0) {
+            writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        writeByte(value);
+    }
+
+    /**
+     * Get the number of columns of the recorded game
+     * @return columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the number of rows of the recorded game
+     * @return rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Check whether the recorded game drew its pieces from a seed
+     * @return true if seeded
+     */
+    public boolean isSeeded() {
+        return seeded;
+    }
+
+    /**
+     * Get the name of the piece pack the recorded game numbered its pieces by
+     * @return the pack name, PieceCatalogue.STANDARD for the standard pieces
+     */
+    public String getPack() {
+        return pack;
+    }
+
+    /**
+     * Get the piece seed of the recorded game
+     * @return seed, only meaningful if isSeeded
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Get the size of the encoded inputs in bytes, not including the header
+     * @return size
+     */
+    public int size() {
+        return length;
+    }
+
+    /**
+     * Start reading the recorded inputs from the beginning
+     * @return a reader over the inputs
+     */
+    public Reader reader() {
+        return new Reader();
+    }
+
+    /**
+     * Write the whole log, header and inputs, to a stream
+     * @param out the stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        var header = new ByteArrayOutputStream();
+        header.write(MAGIC);
+        header.write(VERSION);
+        boolean standard = pack.equals(PieceCatalogue.STANDARD);
+        header.write((seeded ? FLAG_SEEDED : 0) | (standard ? 0 : FLAG_PACK));
+        writeVarint(header, cols);
+        writeVarint(header, rows);
+        if(!standard) {
+            byte[] name = pack.getBytes(StandardCharsets.UTF_8);
+            writeVarint(header, name.length);
+            header.write(name);
+        }
+        if(seeded) {
+            for(int shift = 56; shift >= 0; shift -= 8) {
+                header.write((int) (seed >>> shift));
+            }
+        }
+        writeVarint(header, length);
+        header.writeTo(out);
+        out.write(data, 0, length);
+    }
+
+    private static void writeVarint(OutputStream out, int value) throws IOException {
+        while((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Read a log previously written with writeTo
+     * @param in the stream to read from
+     * @return the log
+     * @throws IOException if the stream cannot be read or does not hold a replay log
+     */
+    public static ReplayLog readFrom(InputStream in) throws IOException {
+        byte[] magic = in.readNBytes(MAGIC.length);
+        if(!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a replay log");
+        }
+        int version = in.read();
+        if(version != VERSION) {
+            throw new IOException("Unsupported replay log version: " + version);
+        }
+        int flags = readByte(in);
+        boolean seeded = (flags & FLAG_SEEDED) != 0;
+        int cols = readVarint(in);
+        int rows = readVarint(in);
+        String pack = PieceCatalogue.STANDARD;
+        if((flags & FLAG_PACK) != 0) {
+            int nameLength = readVarint(in);
+            byte[] name = in.readNBytes(nameLength);
+            if(name.length != nameLength) {
+                throw new IOException("Replay log is truncated");
+            }
+            pack = new String(name, StandardCharsets.UTF_8);
+        }
+        long seed = 0;
+        if(seeded) {
+            for(int i = 0; i < 8; i++) {
+                seed = (seed << 8) | readByte(in);
+            }
+        }
+        int length = readVarint(in);
+        byte[] data = in.readNBytes(length);
+        if(data.length != length) {
+            throw new IOException("Replay log is truncated");
+        }
+        return new ReplayLog(cols, rows, seeded, seed, pack, data, length);
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int value = in.read();
+        if(value < 0) {
+            throw new IOException("Replay log is truncated");
+        }
+        return value;
+    }
+
+    private static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for(int shift = 0; ; shift += 7) {
+            int b = readByte(in);
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Reads the recorded inputs back in order
+     */
+    public class Reader {
+        private int position = 0;
+
+        /**
+         * Check whether there are more inputs to read
+         * @return true if there are
+         */
+        public boolean hasNext() {
+            return position < length;
+        }
+
+        /**
+         * Look at the next opcode without reading it
+         * @return the opcode
+         */
+        public int peekOpcode() {
+            return data[position];
+        }
+
+        /**
+         * Read the next opcode
+         * @return the opcode
+         */
+        public int nextOpcode() {
+            return data[position++];
+        }
+
+        /**
+         * Read the next varint argument
+         * @return the value
+         */
+        public int nextVarint() {
+            int value = 0;
+            for(int shift = 0; ; shift += 7) {
+                int b = data[position++];
+                value |= (b & 0x7F) << shift;
+                if((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+    }
+
+}
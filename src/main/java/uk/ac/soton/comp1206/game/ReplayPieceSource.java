@@ -0,0 +1,106 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.SplittableRandom;
+
+/**
+ * The pieces of a saved game, taken from its replay log, so a new game can be dealt exactly the same pieces.
+ *
+ * A seeded replay is dealt from its seed, as the original game was, and never runs out. Any other replay has its
+ * pieces written down in the log as they were drawn, and this source is a cursor over the log which walks on to the
+ * next recorded piece each time one is taken. The log is already in memory, so taking a piece never blocks or
+ * allocates.
+ *
+ * A replay which runs out of pieces cannot make one up the way a random game can, so taking a piece past the last one
+ * fails straight away.
+ */
+public class ReplayPieceSource implements PieceSource {
+
+    private final PieceSource seeded;
+    private final ReplayLog.Reader inputs;
+
+    /**
+     * The number of recorded pieces not yet taken
+     */
+    private int remaining;
+
+    /**
+     * Deal the pieces of a replay
+     * @param log the replay log, which must not change while its pieces are taken
+     * @throws IllegalStateException if the piece pack the game was played with cannot be loaded
+     */
+    public ReplayPieceSource(ReplayLog log) {
+        this(log, Replayer.catalogue(log));
+    }
+
+    /**
+     * Deal the pieces of a replay from a pack already loaded
+     * @param log the replay log, which must not change while its pieces are taken
+     * @param catalogue the pack the game was played with, which a seeded replay draws from
+     */
+    public ReplayPieceSource(ReplayLog log, PieceCatalogue catalogue) {
+        if(log.isSeeded()) {
+            this.seeded = GameEngine.randomPieces(new SplittableRandom(log.getSeed()), catalogue);
+            this.inputs = null;
+        } else {
+            this.seeded = null;
+            this.inputs = log.reader();
+            //Count the pieces once, so available is exact without looking ahead on every take
+            ReplayLog.Reader counter = log.reader();
+            while(nextPiece(counter) >= 0) {
+                remaining++;
+            }
+        }
+    }
+
+    /**
+     * Take the next piece of the replay. Never blocks.
+     * @return the piece number
+     * @throws IllegalStateException if the replay has no more pieces
+     */
+    @Override
+    public int getAsInt() {
+        if(seeded != null) {
+            return seeded.getAsInt();
+        }
+        int piece = nextPiece(inputs);
+        if(piece < 0) {
+            throw new IllegalStateException("Replay log is missing a piece");
+        }
+        remaining--;
+        return piece;
+    }
+
+    @Override
+    public int available() {
+        return seeded != null ? Integer.MAX_VALUE : remaining;
+    }
+
+    /**
+     * Move a reader on past the next recorded piece, skipping the other inputs
+     * @param reader the reader
+     * @return the piece number, or -1 if the log has no more pieces
+     */
+    private static int nextPiece(ReplayLog.Reader reader) {
+        while(reader.hasNext()) {
+            switch(reader.nextOpcode()) {
+                case ReplayLog.PIECE -> {
+                    return reader.nextVarint();
+                }
+                case ReplayLog.PLACE -> {
+                    reader.nextVarint();
+                    reader.nextVarint();
+                }
+                case ReplayLog.FILL -> {
+                    reader.nextVarint();
+                    reader.nextVarint();
+                    reader.nextVarint();
+                }
+                default -> {
+                    //The other inputs have no arguments
+                }
+            }
+        }
+        return -1;
+    }
+
+}
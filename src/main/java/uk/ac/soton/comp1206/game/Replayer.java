@@ -0,0 +1,109 @@
+package uk.ac.soton.comp1206.game;
+
+import java.io.IOException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.PlacementListener;
+
+/**
+ * Rebuilds a game from its ReplayLog by feeding every recorded input into a fresh headless GameEngine. Nothing is
+ * rendered and no time passes between inputs, so a whole game replays in a fraction of a millisecond.
+ *
+ * A game played with a piece pack is replayed with the pack named in its log, loaded again with PieceCatalogue.load.
+ * Bundled packs can always be loaded again, but a pack played from a file can only be replayed while that file can
+ * still be found by the name recorded.
+ */
+public class Replayer {
+
+    private static final Logger logger = LogManager.getLogger(Replayer.class);
+
+    private Replayer() {
+    }
+
+    /**
+     * Replay a recorded game
+     * @param log the replay log of the game
+     * @return the engine in the state the game was left in
+     * @throws IllegalStateException if the log does not describe a game that could have been played, or its piece
+     *                               pack cannot be loaded
+     */
+    public static GameEngine replay(ReplayLog log) {
+        return replay(log, null);
+    }
+
+    /**
+     * Replay a recorded game, stopping to look at the game before each piece is placed
+     * @param log the replay log of the game
+     * @param listener told about each placement before it is made. May be null.
+     * @return the engine in the state the game was left in
+     * @throws IllegalStateException if the log does not describe a game that could have been played, or its piece
+     *                               pack cannot be loaded
+     */
+    public static GameEngine replay(ReplayLog log, PlacementListener listener) {
+        PieceCatalogue catalogue = catalogue(log);
+        ReplayLog.Reader reader = log.reader();
+        GameEngine engine;
+        if(log.isSeeded()) {
+            engine = new GameEngine(log.getCols(), log.getRows(), catalogue, log.getSeed());
+        } else {
+            //The pieces were written down as they were drawn, so deal them back in the same order
+            engine = new GameEngine(log.getCols(), log.getRows(), catalogue, new ReplayPieceSource(log, catalogue));
+        }
+
+        //A puzzle fills its blocks before the first pieces are drawn
+        int inputs = 0;
+        while(reader.hasNext() && reader.peekOpcode() == ReplayLog.FILL) {
+            reader.nextOpcode();
+            engine.fill(reader.nextVarint(), reader.nextVarint(), reader.nextVarint());
+            inputs++;
+        }
+        engine.start();
+        while(reader.hasNext()) {
+            int opcode = reader.nextOpcode();
+            switch(opcode) {
+                case ReplayLog.PLACE -> {
+                    int x = reader.nextVarint();
+                    int y = reader.nextVarint();
+                    if(listener != null && engine.canPlay(x, y)) {
+                        listener.beforePlacement(engine, x, y);
+                    }
+                    if(!engine.play(x, y)) {
+                        throw new IllegalStateException("Replay diverged: input " + inputs + " plays "
+                            + engine.getCurrentPiece() + " at " + x + "," + y + " where it does not fit");
+                    }
+                }
+                case ReplayLog.ROTATE_CLOCKWISE -> engine.rotateClockwise();
+                case ReplayLog.ROTATE_ANTICLOCKWISE -> engine.rotateAnticlockwise();
+                case ReplayLog.SWAP -> engine.swap();
+                case ReplayLog.TIMER_EXPIRED -> engine.timerExpired();
+                case ReplayLog.FILL -> engine.fill(reader.nextVarint(), reader.nextVarint(), reader.nextVarint());
+                case ReplayLog.PIECE -> {
+                    //Already dealt to the engine by its piece source
+                    reader.nextVarint();
+                    continue;
+                }
+                default -> throw new IllegalStateException("Unexpected opcode " + opcode + " at input " + inputs);
+            }
+            inputs++;
+        }
+        logger.debug("Replayed {} inputs, score {}", inputs, engine.getScore());
+        return engine;
+    }
+
+    /**
+     * Load the piece pack a recorded game numbered its pieces by
+     * @param log the replay log of the game
+     * @return the pack
+     * @throws IllegalStateException if the pack cannot be loaded
+     */
+    public static PieceCatalogue catalogue(ReplayLog log) {
+        try {
+            return PieceCatalogue.load(log.getPack());
+        } catch(IOException e) {
+            //Its piece numbers mean other shapes, and replaying them as standard pieces would quietly diverge
+            throw new IllegalStateException("Replay log was played with the " + log.getPack()
+                + " pieces, which could not be loaded: " + e.getMessage(), e);
+        }
+    }
+
+}
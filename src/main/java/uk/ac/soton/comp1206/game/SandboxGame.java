@@ -0,0 +1,207 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.SplittableRandom;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.NextPieceListener;
+
+/**
+ * A sandbox game, played on a ChunkedGrid which can be far bigger than any board a Game can use.
+ *
+ * There is no timer, no lives and no end: pieces are played anywhere they fit, and full rows and columns still clear
+ * and score as in a challenge. The game never looks at the whole board, only at the blocks a piece covers and the lines
+ * running through them, so a move costs the same on a board of any size.
+ */
+public class SandboxGame {
+
+    private static final Logger logger = LogManager.getLogger(SandboxGame.class);
+
+    /**
+     * The number of columns and rows of a sandbox board unless another size is asked for
+     */
+    public static final int DEFAULT_SIZE = 4096;
+
+    private final ChunkedGrid grid;
+    private final PieceCatalogue catalogue;
+    private final PieceSource pieces;
+
+    private GamePiece currentPiece;
+    private GamePiece followingPiece;
+
+    private final IntegerProperty score = new SimpleIntegerProperty(0);
+    private final IntegerProperty multiplier = new SimpleIntegerProperty(1);
+    private final IntegerProperty lines = new SimpleIntegerProperty(0);
+
+    private NextPieceListener nextPieceListener;
+
+    /**
+     * Create a new sandbox game on a square board, with the active piece pack
+     * @param size number of columns and rows
+     */
+    public SandboxGame(int size) {
+        this(size, size, PieceCatalogue.active());
+    }
+
+    /**
+     * Create a new sandbox game
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param catalogue the pieces to play with
+     */
+    public SandboxGame(int cols, int rows, PieceCatalogue catalogue) {
+        this.grid = new ChunkedGrid(cols, rows);
+        this.catalogue = catalogue;
+        this.pieces = GameEngine.randomPieces(new SplittableRandom(), catalogue);
+    }
+
+    /**
+     * Deal the first two pieces
+     */
+    public void start() {
+        logger.info("Starting a {} x {} sandbox", grid.getCols(), grid.getRows());
+        currentPiece = GamePiece.createPiece(catalogue, pieces.getAsInt(), 0);
+        followingPiece = GamePiece.createPiece(catalogue, pieces.getAsInt(), 0);
+        nextPieceReady();
+    }
+
+    /**
+     * Play the current piece anchored on the given block, clearing any lines it completes
+     * @param x column
+     * @param y row
+     * @return true if the piece fitted and was played
+     */
+    public boolean play(int x, int y) {
+        if(currentPiece == null || !grid.playPiece(currentPiece, x, y)) {
+            return false;
+        }
+
+        //Only lines through the piece can have been completed by it
+        long[] pieceRows = currentPiece.getRowMasks();
+        int anchor = Bitboard.anchor(pieceRows);
+        long cleared = grid.clearFullLines(x - anchor, y - anchor, x - anchor + pieceRows.length - 1,
+            y - anchor + pieceRows.length - 1);
+        int linesCleared = grid.getClearedLines();
+        if(linesCleared > 0) {
+            multiplier.set(multiplier.get() + 1);
+            score.set((int) Math.min(Integer.MAX_VALUE,
+                score.get() + (long) linesCleared * cleared * 10 * multiplier.get()));
+            lines.set(lines.get() + linesCleared);
+            logger.info("Cleared {} lines, {} blocks", linesCleared, cleared);
+        } else {
+            multiplier.set(1);
+        }
+
+        currentPiece = followingPiece;
+        followingPiece = GamePiece.createPiece(catalogue, pieces.getAsInt(), 0);
+        nextPieceReady();
+        return true;
+    }
+
+    /**
+     * Rotate the current piece clockwise
+     */
+    public void rotateCurrentPieceClockwise() {
+        if(currentPiece != null) {
+            currentPiece.rotate();
+            nextPieceReady();
+        }
+    }
+
+    /**
+     * Rotate the current piece anticlockwise
+     */
+    public void rotateCurrentPieceAnticlockwise() {
+        if(currentPiece != null) {
+            currentPiece.rotateAnticlockwise();
+            nextPieceReady();
+        }
+    }
+
+    /**
+     * Swap the current piece with the following piece
+     */
+    public void swapCurrentPiece() {
+        if(currentPiece != null) {
+            GamePiece piece = currentPiece;
+            currentPiece = followingPiece;
+            followingPiece = piece;
+            nextPieceReady();
+        }
+    }
+
+    /**
+     * Set the listener to tell when the pieces change
+     * @param listener the listener
+     */
+    public void setOnNextPiece(NextPieceListener listener) {
+        this.nextPieceListener = listener;
+    }
+
+    /**
+     * Tell the listener about the pieces to play
+     */
+    private void nextPieceReady() {
+        if(nextPieceListener != null) {
+            nextPieceListener.nextPiece(currentPiece, followingPiece);
+        }
+    }
+
+    /**
+     * Get the board
+     * @return the grid
+     */
+    public ChunkedGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Get the pieces this game is played with
+     * @return the piece catalogue
+     */
+    public PieceCatalogue getCatalogue() {
+        return catalogue;
+    }
+
+    /**
+     * Get the piece to play next
+     * @return the current piece
+     */
+    public GamePiece getCurrentPiece() {
+        return currentPiece;
+    }
+
+    /**
+     * Get the piece after the current one
+     * @return the following piece
+     */
+    public GamePiece getFollowingPiece() {
+        return followingPiece;
+    }
+
+    /**
+     * Get the score, for binding
+     * @return score property
+     */
+    public IntegerProperty scoreProperty() {
+        return score;
+    }
+
+    /**
+     * Get the score multiplier, for binding
+     * @return multiplier property
+     */
+    public IntegerProperty multiplierProperty() {
+        return multiplier;
+    }
+
+    /**
+     * Get the number of lines cleared, for binding
+     * @return lines property
+     */
+    public IntegerProperty linesProperty() {
+        return lines;
+    }
+
+}
@@ -0,0 +1,234 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.CommunicationsListener;
+import uk.ac.soton.comp1206.network.Communicator;
+
+/**
+ * Pieces dealt by the server, for a multiplayer game.
+ *
+ * Each PIECE request is answered with one piece, which arrives on the communicator's thread and goes straight into a
+ * PieceRing. The game takes its pieces out of the ring on its own thread. Each piece taken is replaced straight away:
+ * the game thread only notes how many pieces are wanted, and a requester thread of this source sends the requests,
+ * so the game never waits on the socket or on a LocalServer while the server keeps up.
+ *
+ * Every player must be dealt the server's pieces in the server's order, so a piece is never made up locally. If the
+ * server falls a whole ring of pieces behind, the game waits for its next piece to arrive.
+ */
+public class ServerPieceSource implements PieceSource {
+
+    private static final Logger logger = LogManager.getLogger(ServerPieceSource.class);
+
+    /**
+     * The most pieces held ready at once
+     */
+    public static final int CAPACITY = 16;
+
+    /**
+     * The number of pieces left at which more are asked for. One below the capacity, so every piece taken is asked
+     * for again at once and the server has as long as possible to answer before the ring runs dry.
+     */
+    public static final int LOW_WATERMARK = CAPACITY - 1;
+
+    /**
+     * How long the game waits for a late piece before logging that it is still waiting
+     */
+    private static final long WAIT_NANOS = 1_000_000_000L;
+
+    private final Communicator communicator;
+    private final PieceRing ring;
+    private final CommunicationsListener listener = this::receive;
+
+    /**
+     * The number of pieces asked for and not yet received
+     */
+    private final AtomicInteger requested = new AtomicInteger();
+
+    /**
+     * The number of pieces the requester thread still has to ask for
+     */
+    private final AtomicInteger wanted = new AtomicInteger();
+
+    private final Thread requester;
+
+    /**
+     * The game thread while it waits for a late piece, otherwise null
+     */
+    private volatile Thread waiting;
+
+    private volatile Runnable onReady;
+    private volatile boolean closed;
+
+    //Only touched on the communicator's thread
+    private boolean ready;
+
+    /**
+     * Create a source of pieces from the server. Nothing is asked for until it is started.
+     * @param communicator the communicator to the server
+     */
+    public ServerPieceSource(Communicator communicator) {
+        this.communicator = communicator;
+        this.ring = new PieceRing(CAPACITY, LOW_WATERMARK, this::lowWatermark);
+        this.requester = new Thread(this::sendRequests, "PieceRequester");
+        this.requester.setDaemon(true);
+    }
+
+    /**
+     * Set what to do once the first pieces have arrived and the game can start. Called on the communicator's thread.
+     * @param onReady the action
+     */
+    public void setOnReady(Runnable onReady) {
+        this.onReady = onReady;
+    }
+
+    /**
+     * Start listening for pieces and ask for enough to fill the ring
+     */
+    public void start() {
+        communicator.addListener(listener);
+        requester.start();
+        request(CAPACITY);
+    }
+
+    /**
+     * Take the next piece dealt by the server. Only the game's thread may call this. Returns straight away unless the
+     * server has fallen a whole ring of pieces behind, in which case it waits for the next piece to arrive.
+     * @return the piece number
+     * @throws IllegalStateException if the source is closed while waiting
+     */
+    @Override
+    public int getAsInt() {
+        int piece = ring.poll();
+        if(piece == PieceRing.EMPTY) {
+            piece = awaitPiece();
+        }
+        return piece;
+    }
+
+    /**
+     * Wait for the server to send the next piece, as any other piece would put this game out of step with the others
+     */
+    private int awaitPiece() {
+        logger.warn("Piece buffer is empty, waiting for the server");
+        long start = System.nanoTime();
+        waiting = Thread.currentThread();
+        try {
+            int piece = ring.poll();
+            while(piece == PieceRing.EMPTY) {
+                if(closed) {
+                    throw new IllegalStateException("Piece source closed while waiting for a piece");
+                }
+                LockSupport.parkNanos(this, WAIT_NANOS);
+                piece = ring.poll();
+                if(piece == PieceRing.EMPTY && System.nanoTime() - start >= WAIT_NANOS) {
+                    logger.warn("Still waiting for the server to send a piece, {} asked for", requested.get());
+                }
+            }
+            logger.info("Piece arrived after {} ms", (System.nanoTime() - start) / 1_000_000);
+            return piece;
+        } finally {
+            waiting = null;
+        }
+    }
+
+    @Override
+    public int available() {
+        return ring.size();
+    }
+
+    /**
+     * Stop listening for pieces and stop the requester thread
+     */
+    @Override
+    public void close() {
+        closed = true;
+        communicator.removeListener(listener);
+        LockSupport.unpark(requester);
+        wakeGame();
+    }
+
+    /**
+     * Ask for pieces, counting them as asked for straight away so the ring is never asked to hold more than it can
+     */
+    private void request(int pieces) {
+        requested.addAndGet(pieces);
+        wanted.addAndGet(pieces);
+        LockSupport.unpark(requester);
+    }
+
+    /**
+     * The ring is running low: ask for enough pieces to fill it, less those already on their way. Called on the
+     * game's thread for each piece taken below the watermark, so only hands the requests to the requester thread.
+     * @param remaining the pieces left in the ring
+     */
+    private void lowWatermark(int remaining) {
+        int missing = CAPACITY - remaining - requested.get();
+        if(missing > 0 && !closed) {
+            request(missing);
+        }
+    }
+
+    /**
+     * Send the requests asked for, waiting in between for more to be asked for
+     */
+    private void sendRequests() {
+        while(!closed) {
+            int pieces = wanted.getAndSet(0);
+            if(pieces == 0) {
+                LockSupport.park(this);
+                continue;
+            }
+            logger.info("Requesting {} pieces from the server", pieces);
+            for(int i = 0; i < pieces && !closed; i++) {
+                communicator.send("PIECE");
+            }
+        }
+    }
+
+    /**
+     * Wake the game thread if it is waiting for a piece
+     */
+    private void wakeGame() {
+        Thread thread = waiting;
+        if(thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Put a piece sent by the server into the ring. Called on the communicator's thread.
+     * @param message the message from the server
+     */
+    private void receive(String message) {
+        if(!message.startsWith("PIECE ")) {
+            return;
+        }
+        requested.decrementAndGet();
+        int piece = -1;
+        try {
+            piece = Integer.parseInt(message, "PIECE ".length(), message.length(), 10);
+        } catch(NumberFormatException e) {
+            //Not a number, so not a piece either
+        }
+        if(piece < 0 || piece >= GamePiece.PIECES) {
+            logger.error("Server sent a piece which does not exist: {}", message);
+        } else if(!ring.offer(piece)) {
+            logger.warn("Piece buffer is full, dropping piece {}", piece);
+        } else {
+            wakeGame();
+        }
+
+        //The game can start once every piece first asked for has been answered
+        if(!ready && requested.get() <= 0) {
+            ready = true;
+            Runnable action = onReady;
+            if(action != null) {
+                action.run();
+            }
+        }
+    }
+
+}
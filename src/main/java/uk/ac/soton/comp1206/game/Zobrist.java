@@ -0,0 +1,84 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist hashing of board occupancy. Every block on the largest board has a fixed random key, and the hash of a board
+ * is the XOR of the keys of its filled blocks. Filling or emptying a block XORs its key in or out, so a hash can be
+ * kept up to date one change at a time, and two boards with the same blocks filled always hash the same however they
+ * were reached.
+ *
+ * The keys come from a fixed seed, so hashes are the same in every run.
+ */
+public final class Zobrist {
+
+    private static final long[] KEYS = new long[Grid.MAX_COLS * Grid.MAX_ROWS];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x7E7EC5L);
+        for(int i = 0; i < KEYS.length; i++) {
+            KEYS[i] = random.nextLong();
+        }
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Get the key of a block
+     * @param x column
+     * @param y row
+     * @return key
+     */
+    public static long key(int x, int y) {
+        return KEYS[y * Grid.MAX_COLS + x];
+    }
+
+    /**
+     * Get the combined keys of the given blocks of a row
+     * @param y row
+     * @param bits a mask with bit x set for each block at column x
+     * @return the XOR of their keys
+     */
+    public static long hashRow(int y, long bits) {
+        long hash = 0;
+        int base = y * Grid.MAX_COLS;
+        for(; bits != 0; bits &= bits - 1) {
+            hash ^= KEYS[base + Long.numberOfTrailingZeros(bits)];
+        }
+        return hash;
+    }
+
+    /**
+     * Hash a whole board
+     * @param occupancy the row masks of the board
+     * @param rows number of rows
+     * @return hash
+     */
+    public static long hash(long[] occupancy, int rows) {
+        long hash = 0;
+        for(int y = 0; y < rows; y++) {
+            hash ^= hashRow(y, occupancy[y]);
+        }
+        return hash;
+    }
+
+    /**
+     * Bring a hash up to date after a board changed, looking only at the blocks that changed
+     * @param hash the hash of the board before
+     * @param before the row masks before
+     * @param after the row masks after
+     * @param rows number of rows
+     * @return the hash of the board after
+     */
+    public static long update(long hash, long[] before, long[] after, int rows) {
+        for(int y = 0; y < rows; y++) {
+            long changed = before[y] ^ after[y];
+            if(changed != 0) {
+                hash ^= hashRow(y, changed);
+            }
+        }
+        return hash;
+    }
+
+}
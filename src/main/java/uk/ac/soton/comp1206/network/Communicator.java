@@ -6,8 +6,8 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.event.CommunicationsListener;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Uses web sockets to talk to a web socket server and relays communication to attached listeners
@@ -20,8 +20,10 @@ public class Communicator {
 
     /**
      * Attached communication listeners listening to messages on this Communicator. Each will be sent any messages.
+     * Messages arrive on the socket's thread while listeners are added on the JavaFX thread, so the list is copied on
+     * write.
      */
-    private final List<CommunicationsListener> handlers = new ArrayList<>();
+    private final List<CommunicationsListener> handlers = new CopyOnWriteArrayList<>();
 
     private WebSocket ws = null;
 
@@ -82,6 +84,12 @@ public class Communicator {
         }
     }
 
+    /**
+     * Create a communicator with no server behind it, for a subclass which answers messages itself
+     */
+    protected Communicator() {
+    }
+
     /** Send a message to the server
      *
      * @param message Message to send
@@ -100,6 +108,14 @@ public class Communicator {
         this.handlers.add(listener);
     }
 
+    /**
+     * Remove a listener added with addListener
+     * @param listener the listener to remove
+     */
+    public void removeListener(CommunicationsListener listener) {
+        this.handlers.remove(listener);
+    }
+
     /**
      * Clear all current listeners
      */
@@ -113,6 +129,14 @@ public class Communicator {
      * @param message the message that was received
      */
     private void receive(WebSocket websocket, String message) {
+        receive(message);
+    }
+
+    /** Relay a message to any attached listeners, as if it had come from the server
+     *
+     * @param message the message that was received
+     */
+    protected void receive(String message) {
         logger.info("Received: " + message);
 
         for(CommunicationsListener handler : handlers) {
@@ -0,0 +1,127 @@
+package uk.ac.soton.comp1206.network;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.StringJoiner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.GamePiece;
+
+/**
+ * A stand in for the TetrECS server, for a multiplayer game played offline against computer opponents.
+ *
+ * It answers the messages a MultiplayerGame sends during a game - PIECE, SCORE, LIVES, DIE and SCORES - the way the
+ * server does, so the game and its leaderboard work unchanged. Opponents report to it through handle, with the same
+ * messages a player on the network would send. Every player is dealt the same pieces, drawn from the seed exactly as a
+ * GameEngine with that seed draws them. Replies are sent on the server's own thread, as a socket would.
+ */
+public class LocalServer extends Communicator {
+
+    private static final Logger logger = LogManager.getLogger(LocalServer.class);
+
+    /**
+     * The name the player at this computer appears under on the leaderboard
+     */
+    public static final String LOCAL_PLAYER = "You";
+
+    private final long seed;
+
+    /**
+     * Each player's own copy of the piece sequence
+     */
+    private final Map<String, SplittableRandom> pieces = new HashMap<>();
+
+    /**
+     * Each player's score and lives, in the order they joined. Lives are DEAD once a player has died.
+     */
+    private final Map<String, String[]> players = new LinkedHashMap<>();
+
+    private final ExecutorService replies = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "LocalServer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Create a local server with the local player already joined
+     * @param seed the seed every player's pieces are drawn from
+     */
+    public LocalServer(long seed) {
+        this.seed = seed;
+        join(LOCAL_PLAYER);
+    }
+
+    /**
+     * Get the seed the pieces are drawn from. A GameEngine with this seed is dealt the same pieces as every player.
+     * @return seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Add a player to the game
+     * @param name the name shown on the leaderboard
+     */
+    public synchronized void join(String name) {
+        logger.info("{} joined the local game", name);
+        players.put(name, new String[] {"0", String.valueOf(GameEngine.STARTING_LIVES)});
+    }
+
+    /**
+     * Send a message from the local player
+     * @param message the message
+     */
+    @Override
+    public void send(String message) {
+        handle(LOCAL_PLAYER, message);
+    }
+
+    /**
+     * Handle a message from a player, replying to it if the server would
+     * @param player the name of the player sending it
+     * @param message the message
+     */
+    public synchronized void handle(String player, String message) {
+        String[] parts = message.split(" ", 2);
+        String[] stats = players.get(player);
+        switch(parts[0]) {
+            case "PIECE" -> {
+                int piece = pieces.computeIfAbsent(player, name -> new SplittableRandom(seed))
+                    .nextInt(GamePiece.PIECES);
+                reply("PIECE " + piece);
+            }
+            case "SCORE" -> stats[0] = parts[1];
+            case "LIVES" -> stats[1] = parts[1];
+            case "DIE" -> stats[1] = "DEAD";
+            case "SCORES" -> {
+                StringJoiner scores = new StringJoiner("\n", "SCORES ", "");
+                players.forEach((name, playerStats) -> scores.add(name + ":" + playerStats[0] + ":" + playerStats[1]));
+                reply(scores.toString());
+            }
+            default -> logger.debug("Ignoring {} from {}", message, player);
+        }
+    }
+
+    /**
+     * Send a reply to the listeners on the server's thread
+     */
+    private void reply(String message) {
+        if(!replies.isShutdown()) {
+            replies.execute(() -> receive(message));
+        }
+    }
+
+    /**
+     * Stop replying to messages
+     */
+    public synchronized void shutdown() {
+        replies.shutdownNow();
+    }
+
+}
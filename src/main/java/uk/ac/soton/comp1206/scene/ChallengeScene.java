@@ -1,7 +1,6 @@
 package uk.ac.soton.comp1206.scene;
 
 import java.security.Key;
-import java.util.Set;
 import javafx.animation.Animation;
 import javafx.animation.KeyFrame;
 import javafx.animation.KeyValue;
@@ -17,8 +16,11 @@ import javafx.scene.text.Text;
 import javafx.util.Duration;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.ai.AutoPlayer;
+import uk.ac.soton.comp1206.ai.HintSearch;
+import uk.ac.soton.comp1206.ai.Position;
+import uk.ac.soton.comp1206.component.CellSet;
 import uk.ac.soton.comp1206.component.GameBlock;
-import uk.ac.soton.comp1206.component.GameBlockCoordinate;
 import uk.ac.soton.comp1206.component.GameBoard;
 import uk.ac.soton.comp1206.component.PieceBoard;
 import uk.ac.soton.comp1206.event.GameEndedListener;
@@ -41,15 +43,45 @@ public class ChallengeScene extends BaseScene implements LineClearedListener, Ga
     private static final Logger logger = LogManager.getLogger(ChallengeScene.class);
     protected Game game;
     private GameBoard board;
-    private Rectangle timerBar;
+    protected Rectangle timerBar;
     private Timeline timeline;
 
+    /**
+     * The computer player, while it has taken over the game
+     */
+    private AutoPlayer autoPlayer;
+
+    /**
+     * Works out where the current piece is best played, while hints are turned on
+     */
+    private HintSearch hints;
+
+    /**
+     * The standard number of columns and rows on the board
+     */
+    public static final int DEFAULT_BOARD_SIZE = 5;
+
+    /**
+     * The number of columns and rows on the board for this challenge
+     */
+    private final int boardSize;
+
     /**
      * Create a new Single Player challenge scene
      * @param gameWindow the Game Window
      */
     public ChallengeScene(GameWindow gameWindow) {
+        this(gameWindow, DEFAULT_BOARD_SIZE);
+    }
+
+    /**
+     * Create a new Single Player challenge scene on a square board of the given size
+     * @param gameWindow the Game Window
+     * @param boardSize the number of columns and rows on the board
+     */
+    public ChallengeScene(GameWindow gameWindow, int boardSize) {
         super(gameWindow);
+        this.boardSize = boardSize;
         logger.info("Creating Challenge Scene");
     }
 
@@ -191,6 +223,8 @@ public class ChallengeScene extends BaseScene implements LineClearedListener, Ga
 
         //Handle block on gameboard grid being clicked
         board.setOnBlockClick(this::blockClicked);
+        //Draw the keyboard cursor over the board
+        game.setOnCursorMoved(board);
         //Handle the following piece board being clicked
         followingPieceBoard.setOnMouseClicked(this::followingBoardClicked);
         //handles the current pieceboard being clicked
@@ -234,6 +268,7 @@ public class ChallengeScene extends BaseScene implements LineClearedListener, Ga
         logger.info("Attempting to swap the current piece with the following piece...");
         if(mouseEvent.getButton() == MouseButton.SECONDARY){
             game.swapCurrentPiece();
+            requestHint();
         }
     }
 
@@ -243,7 +278,7 @@ public class ChallengeScene extends BaseScene implements LineClearedListener, Ga
      */
     void blockClicked(GameBlock gameBlock) {
         game.blockClicked(gameBlock);
-        Set<GameBlockCoordinate> coords = game.getCoords();
+        CellSet coords = game.getCoords();
         whenLineCleared(coords);
         game.removeCursor();
     }
@@ -255,7 +290,7 @@ public class ChallengeScene extends BaseScene implements LineClearedListener, Ga
         logger.info("Starting a new challenge");
 
         //Start new game
-        game = new Game(5, 5);
+        game = new Game(boardSize, boardSize);
     }
 
     /**
@@ -271,12 +306,19 @@ public class ChallengeScene extends BaseScene implements LineClearedListener, Ga
                 game.rotateCurrentPieceClockwise();
             } else if(keyEvent.getCode() == KeyCode.E || keyEvent.getCode() == KeyCode.C || keyEvent.getCode() == KeyCode.CLOSE_BRACKET ) {
                 game.rotateCurrentPieceAnticlockwise();
+            } else if(keyEvent.getCode() == KeyCode.A) {
+                toggleAutoPlayer(game);
+            } else if(keyEvent.getCode() == KeyCode.H) {
+                toggleHints();
             } else if(keyEvent.getCode() == KeyCode.ESCAPE) {
+                stopAutoPlayer();
+                stopHints();
                 game.gameClose();
                 game = null;
                 gameWindow.loadScene(new MenuScene(gameWindow));
             } else if(keyEvent.getCode() == KeyCode.SPACE || keyEvent.getCode() == KeyCode.R) {
                 game.swapCurrentPiece();
+                requestHint();
             } else if (keyEvent.getCode() == KeyCode.LEFT) {
                 game.moveLeft();
             } else if (keyEvent.getCode() == KeyCode.RIGHT) {
@@ -287,7 +329,7 @@ public class ChallengeScene extends BaseScene implements LineClearedListener, Ga
                 game.moveDown();
             } else if (keyEvent.getCode() == KeyCode.ENTER) {
                 game.playPieceUsingControl();
-                Set<GameBlockCoordinate> coords = game.getCoords();
+                CellSet coords = game.getCoords();
                 whenLineCleared(coords);
             }
         });
@@ -299,9 +341,9 @@ public class ChallengeScene extends BaseScene implements LineClearedListener, Ga
      * @return the coords
      */
     @Override
-    public Set<GameBlockCoordinate> whenLineCleared(Set<GameBlockCoordinate> coords) {
-        for (GameBlockCoordinate coordinates : coords) {
-            GameBlock block = board.getBlock(coordinates.getX(), coordinates.getY());
+    public CellSet whenLineCleared(CellSet coords) {
+        for (int cell = coords.nextCell(0); cell >= 0; cell = coords.nextCell(cell + 1)) {
+            GameBlock block = board.getBlock(coords.getX(cell), coords.getY(cell));
             if (block != null) {
                 block.fadeOut();
             }
@@ -337,6 +379,81 @@ public class ChallengeScene extends BaseScene implements LineClearedListener, Ga
         timerBar.setFill(Color.GREEN); // Reset color
         timeline.playFromStart();
 
+        requestHint();
+    }
+
+    /**
+     * Hands the game over to the computer player, or takes it back if the computer is already playing
+     * @param game the game to play
+     */
+    protected void toggleAutoPlayer(Game game) {
+        if(autoPlayer != null) {
+            stopAutoPlayer();
+        } else if(!game.getEngine().getCatalogue().isStandard()) {
+            logger.info("The computer player only knows the standard pieces");
+        } else {
+            autoPlayer = new AutoPlayer(game, this);
+            autoPlayer.start();
+        }
+    }
+
+    /**
+     * Stops the computer player if it is playing
+     */
+    protected void stopAutoPlayer() {
+        if(autoPlayer != null) {
+            autoPlayer.stop();
+            autoPlayer = null;
+        }
+    }
+
+    /**
+     * Turns the placement hints on, or off if they are already showing
+     */
+    protected void toggleHints() {
+        if(hints != null) {
+            stopHints();
+        } else if(game == null || !game.getEngine().getCatalogue().isStandard()) {
+            logger.info("Hints are only available with the standard pieces");
+        } else {
+            hints = new HintSearch();
+            requestHint();
+        }
+    }
+
+    /**
+     * Starts working out a hint for the piece now in play, if hints are on. The hint is drawn over the board when it
+     * arrives, and any older hint is taken off straight away.
+     */
+    protected void requestHint() {
+        if(hints == null) {
+            return;
+        }
+        board.clearHint();
+        if(game == null || game.getGameEnd() || game.getCurrentPiece() == null) {
+            hints.cancel();
+            return;
+        }
+        Position position = Position.of(game.getEngine());
+        hints.request(position, move -> {
+            if(move == null) {
+                board.clearHint();
+                return;
+            }
+            int piece = move.isSwap() ? position.getFollowingPiece() : position.getCurrentPiece();
+            board.showHint(piece, move.getRotation(), move.getX(), move.getY());
+        });
+    }
+
+    /**
+     * Turns the placement hints off if they are on
+     */
+    protected void stopHints() {
+        if(hints != null) {
+            hints.shutdown();
+            hints = null;
+            board.clearHint();
+        }
     }
 
     /**
@@ -344,6 +461,8 @@ public class ChallengeScene extends BaseScene implements LineClearedListener, Ga
      */
     @Override
     public void gameEnded() {
+        stopAutoPlayer();
+        stopHints();
 
         gameWindow.displayScoreScreen(game);
     }
@@ -9,6 +9,7 @@ import javafx.scene.text.Text;
 import javafx.util.Duration;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.SandboxGame;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
@@ -19,6 +20,21 @@ public class MenuScene extends BaseScene {
 
     private static final Logger logger = LogManager.getLogger(MenuScene.class);
 
+    /**
+     * The number of columns and rows used by the big board variant
+     */
+    private static final int BIG_BOARD_SIZE = 16;
+
+    /**
+     * The number of columns and rows of a sandbox board, which can be set with the tetrecs.sandbox property
+     */
+    private static final int SANDBOX_SIZE = Integer.getInteger("tetrecs.sandbox", SandboxGame.DEFAULT_SIZE);
+
+    /**
+     * The button that opens the puzzles, which shows when they are loading
+     */
+    private Button puzzlesButton;
+
     /**
      * Create a new menu scene
      * @param gameWindow the Game Window this will be displayed in
@@ -71,10 +87,20 @@ public class MenuScene extends BaseScene {
         //For now, let us just add a button that starts the game. I'm sure you'll do something way better.
         var playButton = new Button("Play");
         playButton.getStyleClass().add("menu-scene-items");
+        var bigBoardButton = new Button("Big Board");
+        bigBoardButton.getStyleClass().add("menu-scene-items");
+        puzzlesButton = new Button("Puzzles");
+        puzzlesButton.getStyleClass().add("menu-scene-items");
+        var practiceButton = new Button("Practice");
+        practiceButton.getStyleClass().add("menu-scene-items");
+        var sandboxButton = new Button("Sandbox");
+        sandboxButton.getStyleClass().add("menu-scene-items");
         var instructionsButton = new Button("Instructions");
         instructionsButton.getStyleClass().add("menu-scene-items");
         var multiplayerButton = new Button("Multiplayer");
         multiplayerButton.getStyleClass().add("menu-scene-items");
+        var offlineButton = new Button("Vs Computer");
+        offlineButton.getStyleClass().add("menu-scene-items");
         var exitButton = new Button("Exit");
         exitButton.getStyleClass().add("menu-scene-items");
 
@@ -82,8 +108,13 @@ public class MenuScene extends BaseScene {
         VBox buttonsVBox = new VBox();
         buttonsVBox.getStyleClass().add("menu-options-vbox");
         buttonsVBox.getChildren().add(playButton);
+        buttonsVBox.getChildren().add(bigBoardButton);
+        buttonsVBox.getChildren().add(puzzlesButton);
+        buttonsVBox.getChildren().add(practiceButton);
+        buttonsVBox.getChildren().add(sandboxButton);
         buttonsVBox.getChildren().add(instructionsButton);
         buttonsVBox.getChildren().add(multiplayerButton);
+        buttonsVBox.getChildren().add(offlineButton);
         buttonsVBox.getChildren().add(exitButton);
 
         buttonsVBox.setAlignment(Pos.CENTER_RIGHT);
@@ -92,9 +123,19 @@ public class MenuScene extends BaseScene {
         //Bind the button action to the startGame method in the menu
         playButton.setOnAction(this::startGame);
 
+        bigBoardButton.setOnAction(this::startBigBoard);
+
+        puzzlesButton.setOnAction(this::startPuzzles);
+
+        practiceButton.setOnAction(this::startPractice);
+
+        sandboxButton.setOnAction(this::startSandbox);
+
         instructionsButton.setOnAction(this::displayInstructions);
 
         multiplayerButton.setOnAction(this::displayMultiplayer);
+
+        offlineButton.setOnAction(this::startOfflineGame);
     }
 
     private void displayInstructions(ActionEvent actionEvent) {
@@ -105,6 +146,10 @@ public class MenuScene extends BaseScene {
         gameWindow.displayLobby();
     }
 
+    private void startOfflineGame(ActionEvent actionEvent){
+        gameWindow.startOfflineGame();
+    }
+
     /**
      * Initialise the menu
      */
@@ -123,4 +168,46 @@ public class MenuScene extends BaseScene {
         gameWindow.startChallenge();
     }
 
+    /**
+     * Handle when the Puzzles button is pressed
+     * @param event event
+     */
+    private void startPuzzles(ActionEvent event) {
+        puzzlesButton.setText("Loading puzzles...");
+        puzzlesButton.setDisable(true);
+        gameWindow.startPuzzles(this);
+    }
+
+    /**
+     * Tell the player no puzzles could be loaded, and let them try again
+     */
+    public void puzzlesUnavailable() {
+        puzzlesButton.setText("No puzzles, try again");
+        puzzlesButton.setDisable(false);
+    }
+
+    /**
+     * Handle when the Practice button is pressed
+     * @param event event
+     */
+    private void startPractice(ActionEvent event) {
+        gameWindow.startPractice();
+    }
+
+    /**
+     * Handle when the Sandbox button is pressed
+     * @param event event
+     */
+    private void startSandbox(ActionEvent event) {
+        gameWindow.startSandbox(SANDBOX_SIZE);
+    }
+
+    /**
+     * Handle when the Big Board button is pressed
+     * @param event event
+     */
+    private void startBigBoard(ActionEvent event) {
+        gameWindow.startChallenge(BIG_BOARD_SIZE);
+    }
+
 }
@@ -1,6 +1,7 @@
 package uk.ac.soton.comp1206.scene;
 
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
 import javafx.animation.Animation;
@@ -26,13 +27,19 @@ import javafx.util.Duration;
 import javafx.util.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.ai.BotScheduler;
+import uk.ac.soton.comp1206.ai.Evaluator;
+import uk.ac.soton.comp1206.ai.ExpectimaxSearch;
+import uk.ac.soton.comp1206.ai.Opponent;
+import uk.ac.soton.comp1206.ai.SearchStrategy;
+import uk.ac.soton.comp1206.component.CellSet;
 import uk.ac.soton.comp1206.component.GameBlock;
-import uk.ac.soton.comp1206.component.GameBlockCoordinate;
 import uk.ac.soton.comp1206.component.GameBoard;
 import uk.ac.soton.comp1206.component.PieceBoard;
 import uk.ac.soton.comp1206.event.MultiplayerLeaderboardListener;
 import uk.ac.soton.comp1206.game.MultiplayerGame;
 import uk.ac.soton.comp1206.network.Communicator;
+import uk.ac.soton.comp1206.network.LocalServer;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
@@ -50,6 +57,27 @@ public class MultiplayerScene extends ChallengeScene implements MultiplayerLeade
   private VBox leaderboardVBox = new VBox();
   private VBox leaderboardScores = new VBox();
 
+  /**
+   * The number of computer opponents in an offline game started from the menu
+   */
+  public static final int DEFAULT_OPPONENTS = 4;
+
+  /**
+   * The server standing in for the real one in an offline game, or null when playing online
+   */
+  private LocalServer localServer;
+
+  /**
+   * The number of computer opponents to play against offline
+   */
+  private int opponentCount;
+
+  /**
+   * Runs the computer opponents' moves within their share of the CPU
+   */
+  private BotScheduler botScheduler;
+  private final List<Opponent> opponents = new ArrayList<>();
+
   /**
    * Create a new Single Player challenge scene
    *
@@ -60,6 +88,19 @@ public class MultiplayerScene extends ChallengeScene implements MultiplayerLeade
     this.communicator = communicator;
   }
 
+  /**
+   * Create a multiplayer scene played offline against computer opponents
+   *
+   * @param gameWindow the Game Window
+   * @param localServer the server standing in for the real one
+   * @param opponentCount the number of computer opponents
+   */
+  public MultiplayerScene(GameWindow gameWindow, LocalServer localServer, int opponentCount) {
+    this(gameWindow, localServer);
+    this.localServer = localServer;
+    this.opponentCount = opponentCount;
+  }
+
   /**
    * Build the Challenge window
    */
@@ -182,6 +223,8 @@ public class MultiplayerScene extends ChallengeScene implements MultiplayerLeade
 
     //Handle block on gameboard grid being clicked
     board.setOnBlockClick(this::blockClicked);
+    //Draw the keyboard cursor over the board
+    game.setOnCursorMoved(board);
     //Handle the following piece board being clicked
     followingPieceBoard.setOnMouseClicked(this::followingBoardClicked);
     //handles the current pieceboard being clicked
@@ -267,7 +310,7 @@ public class MultiplayerScene extends ChallengeScene implements MultiplayerLeade
    */
   void blockClicked(GameBlock gameBlock) {
     game.blockClicked(gameBlock);
-    Set<GameBlockCoordinate> coords = game.getCoords();
+    CellSet coords = game.getCoords();
     whenLineCleared(coords);
     game.removeCursor();
   }
@@ -289,13 +332,20 @@ public class MultiplayerScene extends ChallengeScene implements MultiplayerLeade
   public void initialise() {
     logger.info("Initialising Challenge");
     game.start();
+    startOpponents();
 
     (gameWindow.getScene()).setOnKeyPressed(keyEvent -> {
       if(keyEvent.getCode() == KeyCode.Q || keyEvent.getCode() == KeyCode.Z || keyEvent.getCode() == KeyCode.OPEN_BRACKET ) {
         game.rotateCurrentPieceClockwise();
       } else if(keyEvent.getCode() == KeyCode.E || keyEvent.getCode() == KeyCode.C || keyEvent.getCode() == KeyCode.CLOSE_BRACKET ) {
         game.rotateCurrentPieceAnticlockwise();
+      } else if(keyEvent.getCode() == KeyCode.A) {
+        toggleAutoPlayer(game);
       } else if(keyEvent.getCode() == KeyCode.ESCAPE) {
+        stopAutoPlayer();
+        stopOpponents();
+        timer.cancel();
+        game.gameClose();
         gameWindow.loadScene(new MenuScene(gameWindow));
       } else if(keyEvent.getCode() == KeyCode.SPACE || keyEvent.getCode() == KeyCode.R) {
         game.swapCurrentPiece();
@@ -309,7 +359,7 @@ public class MultiplayerScene extends ChallengeScene implements MultiplayerLeade
         game.moveDown();
       } else if (keyEvent.getCode() == KeyCode.ENTER) {
         game.playPieceUsingControl();
-        Set<GameBlockCoordinate> coords = game.getCoords();
+        CellSet coords = game.getCoords();
         whenLineCleared(coords);
       }
     });
@@ -321,9 +371,9 @@ public class MultiplayerScene extends ChallengeScene implements MultiplayerLeade
    * @return the coords
    */
   @Override
-  public Set<GameBlockCoordinate> whenLineCleared(Set<GameBlockCoordinate> coords) {
-    for (GameBlockCoordinate coordinates : coords) {
-      GameBlock block = board.getBlock(coordinates.getX(), coordinates.getY());
+  public CellSet whenLineCleared(CellSet coords) {
+    for (int cell = coords.nextCell(0); cell >= 0; cell = coords.nextCell(cell + 1)) {
+      GameBlock block = board.getBlock(coords.getX(cell), coords.getY(cell));
       if (block != null) {
         block.fadeOut();
       }
@@ -363,9 +413,45 @@ public class MultiplayerScene extends ChallengeScene implements MultiplayerLeade
 
   @Override
   public void gameEnded() {
+    stopAutoPlayer();
+    stopOpponents();
+    timer.cancel();
     gameWindow.displayScoreScreen(game);
   }
 
+  /**
+   * Starts the computer opponents of an offline game, each searching a little deeper than the one before, up to the
+   * deepest search
+   */
+  private void startOpponents() {
+    if(localServer == null) {
+      return;
+    }
+    botScheduler = new BotScheduler();
+    for(int i = 0; i < opponentCount; i++) {
+      ExpectimaxSearch search = new ExpectimaxSearch(new Evaluator(), botScheduler.getPool());
+      int depth = 1 + i % ExpectimaxSearch.MAX_DEPTH;
+      Opponent opponent = new Opponent("Bot " + (i + 1), new SearchStrategy(search, depth), localServer, botScheduler);
+      opponents.add(opponent);
+      opponent.start();
+    }
+    logger.info("Started {} computer opponents", opponentCount);
+  }
+
+  /**
+   * Stops the computer opponents of an offline game, if there are any
+   */
+  private void stopOpponents() {
+    if(botScheduler == null) {
+      return;
+    }
+    opponents.forEach(Opponent::stop);
+    opponents.clear();
+    botScheduler.shutdown();
+    botScheduler = null;
+    localServer.shutdown();
+  }
+
 
   @Override
   public void updateLeaderboard(ObservableList<Pair<String, Pair<Integer, String>>> leaderboard) {
@@ -0,0 +1,74 @@
+package uk.ac.soton.comp1206.scene;
+
+import javafx.event.EventHandler;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.text.Text;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.PracticeGame;
+import uk.ac.soton.comp1206.ui.GameWindow;
+
+/**
+ * The practice scene. A challenge without the timer, where every move can be undone with U or Ctrl+Z and redone with
+ * Y or Ctrl+Y, to try out different ways of playing the same pieces.
+ */
+public class PracticeScene extends ChallengeScene {
+
+    private static final Logger logger = LogManager.getLogger(PracticeScene.class);
+
+    /**
+     * Create a new practice scene
+     * @param gameWindow the Game Window
+     */
+    public PracticeScene(GameWindow gameWindow) {
+        super(gameWindow);
+        logger.info("Creating Practice Scene");
+    }
+
+    /**
+     * Build the practice window: the challenge window without its timer bar, and with the undo keys
+     */
+    @Override
+    public void build() {
+        super.build();
+        timerBar.setVisible(false);
+
+        Text practiceText = new Text("Practice - U to undo, Y to redo");
+        practiceText.getStyleClass().add("level");
+        practiceText.setTranslateX(40);
+        practiceText.setTranslateY(60);
+        root.getChildren().add(practiceText);
+    }
+
+    /**
+     * Setup the practice game
+     */
+    @Override
+    public void setupGame() {
+        logger.info("Starting a practice game");
+        game = new PracticeGame(DEFAULT_BOARD_SIZE, DEFAULT_BOARD_SIZE);
+    }
+
+    /**
+     * Initialise the scene as a challenge, then add the undo and redo keys in front of the challenge's keys
+     */
+    @Override
+    public void initialise() {
+        super.initialise();
+        EventHandler<? super KeyEvent> challengeKeys = gameWindow.getScene().getOnKeyPressed();
+        gameWindow.getScene().setOnKeyPressed(keyEvent -> {
+            boolean undo = keyEvent.getCode() == KeyCode.U || (keyEvent.isShortcutDown() && keyEvent.getCode() == KeyCode.Z);
+            boolean redo = keyEvent.getCode() == KeyCode.Y;
+            if(game != null && (undo || redo)) {
+                PracticeGame practiceGame = (PracticeGame) game;
+                if(undo ? practiceGame.undo() : practiceGame.redo()) {
+                    requestHint();
+                }
+            } else {
+                challengeKeys.handle(keyEvent);
+            }
+        });
+    }
+
+}
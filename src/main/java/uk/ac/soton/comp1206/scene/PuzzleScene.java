@@ -0,0 +1,117 @@
+package uk.ac.soton.comp1206.scene;
+
+import java.util.List;
+import javafx.animation.PauseTransition;
+import javafx.scene.text.Text;
+import javafx.util.Duration;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.Puzzle;
+import uk.ac.soton.comp1206.game.PuzzleGame;
+import uk.ac.soton.comp1206.ui.GameWindow;
+
+/**
+ * The puzzle scene. Plays through a list of puzzles one at a time, moving on to the next when one is solved and
+ * starting it again when it is failed.
+ */
+public class PuzzleScene extends ChallengeScene {
+
+    private static final Logger logger = LogManager.getLogger(PuzzleScene.class);
+
+    /**
+     * The number of pieces in each puzzle from the menu
+     */
+    public static final int DEFAULT_PIECES = 3;
+
+    /**
+     * The number of puzzles from the menu
+     */
+    public static final int DEFAULT_COUNT = 1000;
+
+    /**
+     * How long the finished board stays on screen before the next puzzle, so the last clear can be seen
+     */
+    private static final Duration RESULT_PAUSE = Duration.seconds(1);
+
+    private final List<Puzzle> puzzles;
+    private final int index;
+
+    /**
+     * Create a new puzzle scene
+     * @param gameWindow the Game Window
+     * @param puzzles the puzzles to play through
+     * @param index the position in the list of the puzzle to play
+     */
+    public PuzzleScene(GameWindow gameWindow, List<Puzzle> puzzles, int index) {
+        super(gameWindow);
+        this.puzzles = puzzles;
+        this.index = index;
+        logger.info("Creating Puzzle Scene for puzzle {} of {}", index + 1, puzzles.size());
+    }
+
+    /**
+     * Build the puzzle window: the challenge window without its timer bar, and with the puzzle number
+     */
+    @Override
+    public void build() {
+        super.build();
+        timerBar.setVisible(false);
+
+        Text puzzleText = new Text("Puzzle " + (index + 1) + " of " + puzzles.size());
+        puzzleText.getStyleClass().add("level");
+        puzzleText.setTranslateX(40);
+        puzzleText.setTranslateY(60);
+        root.getChildren().add(puzzleText);
+    }
+
+    /**
+     * Setup the game of the puzzle
+     */
+    @Override
+    public void setupGame() {
+        logger.info("Starting puzzle {}", index + 1);
+        game = new PuzzleGame(puzzles.get(index));
+    }
+
+    /**
+     * The computer player does not play puzzles
+     * @param game the game
+     */
+    @Override
+    protected void toggleAutoPlayer(Game game) {
+        logger.info("The computer player is not available in puzzles");
+    }
+
+    /**
+     * Hints search for the best score, not for clearing the board, so they are not offered in puzzles
+     */
+    @Override
+    protected void toggleHints() {
+        logger.info("Hints are not available in puzzles");
+    }
+
+    /**
+     * Move on to the next puzzle if this one was solved, or start it again if not. After the last puzzle it is back to
+     * the menu.
+     */
+    @Override
+    public void gameEnded() {
+        PuzzleGame puzzleGame = (PuzzleGame) game;
+        int next = puzzleGame.isSolved() ? index + 1 : index;
+        PauseTransition pause = new PauseTransition(RESULT_PAUSE);
+        pause.setOnFinished(event -> {
+            if(game == null) {
+                //Already left for the menu
+                return;
+            }
+            puzzleGame.gameClose();
+            if(next < puzzles.size()) {
+                gameWindow.loadScene(new PuzzleScene(gameWindow, puzzles, next));
+            } else {
+                gameWindow.startMenu();
+            }
+        });
+        pause.play();
+    }
+}
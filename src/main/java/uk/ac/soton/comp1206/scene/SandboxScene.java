@@ -0,0 +1,206 @@
+package uk.ac.soton.comp1206.scene;
+
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
+import javafx.scene.text.Text;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.component.PieceBoard;
+import uk.ac.soton.comp1206.component.SandboxBoard;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.SandboxGame;
+import uk.ac.soton.comp1206.ui.GamePane;
+import uk.ac.soton.comp1206.ui.GameWindow;
+
+/**
+ * The sandbox scene. An untimed game on a board thousands of blocks across, seen through a viewport which is panned by
+ * dragging or with the arrow keys and zoomed with the mouse wheel or + and -.
+ */
+public class SandboxScene extends BaseScene {
+
+    private static final Logger logger = LogManager.getLogger(SandboxScene.class);
+
+    /**
+     * How far the arrow keys pan, as a share of the viewport
+     */
+    private static final double PAN_STEP = 0.25;
+
+    /**
+     * How much + and - zoom by
+     */
+    private static final double ZOOM_STEP = 1.25;
+
+    private final int boardSize;
+
+    private SandboxGame game;
+    private SandboxBoard board;
+    private PieceBoard pieceBoard;
+    private PieceBoard followingPieceBoard;
+    private final Multimedia multimedia = new Multimedia();
+
+    /**
+     * Create a new sandbox scene on a square board
+     * @param gameWindow the Game Window
+     * @param boardSize the number of columns and rows on the board
+     */
+    public SandboxScene(GameWindow gameWindow, int boardSize) {
+        super(gameWindow);
+        this.boardSize = boardSize;
+        logger.info("Creating Sandbox Scene");
+    }
+
+    /**
+     * Build the sandbox window: the board fills the window, with the score and pieces over it
+     */
+    @Override
+    public void build() {
+        logger.info("Building " + this.getClass().getName());
+
+        game = new SandboxGame(boardSize);
+
+        root = new GamePane(gameWindow.getWidth(), gameWindow.getHeight());
+
+        board = new SandboxBoard(game.getGrid(), gameWindow.getWidth(), gameWindow.getHeight());
+        root.getChildren().add(board);
+
+        Text sandboxText = new Text("Sandbox " + boardSize + " x " + boardSize
+            + " - drag to pan, scroll to zoom, Esc to leave");
+        sandboxText.getStyleClass().add("level");
+        sandboxText.setTranslateX(20);
+        sandboxText.setTranslateY(20);
+        sandboxText.setMouseTransparent(true);
+        root.getChildren().add(sandboxText);
+
+        Text scoreText = new Text("Score");
+        scoreText.getStyleClass().add("score");
+        Label scoreLabel = new Label();
+        scoreLabel.textProperty().bind(game.scoreProperty().asString());
+        scoreLabel.getStyleClass().add("gameItems");
+
+        Text linesText = new Text("Lines");
+        linesText.getStyleClass().add("multiplier");
+        Label linesLabel = new Label();
+        linesLabel.textProperty().bind(game.linesProperty().asString());
+        linesLabel.getStyleClass().add("gameItems");
+
+        VBox leftSideBox = new VBox(scoreText, scoreLabel, linesText, linesLabel);
+        leftSideBox.setTranslateX(20);
+        leftSideBox.setTranslateY(60);
+        leftSideBox.setMaxSize(180, 200);
+        leftSideBox.setMouseTransparent(true);
+        StackPane.setAlignment(leftSideBox, Pos.TOP_LEFT);
+        root.getChildren().add(leftSideBox);
+
+        //The pieces, built the same as a challenge's
+        int pieceSize = game.getCatalogue().getSize();
+        pieceBoard = new PieceBoard(pieceSize, pieceSize, 120, 120);
+        followingPieceBoard = new PieceBoard(pieceSize, pieceSize, 80, 80);
+
+        Text currentPieceText = new Text("Current Piece");
+        currentPieceText.getStyleClass().add("game-currentPieceText");
+        Text followingPieceText = new Text("Upcoming Piece");
+        followingPieceText.getStyleClass().add("game-currentPieceText");
+
+        VBox rightSideBox = new VBox(currentPieceText, pieceBoard, followingPieceText, followingPieceBoard);
+        rightSideBox.setMaxWidth(180);
+        rightSideBox.getStyleClass().add("game-right-box");
+        rightSideBox.setAlignment(Pos.TOP_RIGHT);
+        rightSideBox.setPickOnBounds(false);
+        StackPane.setAlignment(rightSideBox, Pos.CENTER_RIGHT);
+        root.getChildren().add(rightSideBox);
+
+        board.setOnCellClick(this::cellClicked);
+        pieceBoard.setOnMouseClicked(this::currentBoardClicked);
+        followingPieceBoard.setOnMouseClicked(this::followingBoardClicked);
+        game.setOnNextPiece(this::nextPiece);
+        game.linesProperty().addListener((observable, oldValue, newValue) ->
+            multimedia.playAudioFile("/sounds/clear.wav"));
+    }
+
+    /**
+     * Start the game and listen for keys
+     */
+    @Override
+    public void initialise() {
+        logger.info("Initialising Sandbox");
+        multimedia.playBackgroundMusic("/music/menu.mp3");
+        game.start();
+
+        gameWindow.getScene().setOnKeyPressed(keyEvent -> {
+            KeyCode code = keyEvent.getCode();
+            if(code == KeyCode.Q || code == KeyCode.Z || code == KeyCode.OPEN_BRACKET) {
+                game.rotateCurrentPieceClockwise();
+                multimedia.playAudioFile("/sounds/rotate.wav");
+            } else if(code == KeyCode.E || code == KeyCode.C || code == KeyCode.CLOSE_BRACKET) {
+                game.rotateCurrentPieceAnticlockwise();
+                multimedia.playAudioFile("/sounds/rotate.wav");
+            } else if(code == KeyCode.SPACE || code == KeyCode.R) {
+                game.swapCurrentPiece();
+            } else if(code == KeyCode.LEFT) {
+                board.pan(-board.getWidth() * PAN_STEP, 0);
+            } else if(code == KeyCode.RIGHT) {
+                board.pan(board.getWidth() * PAN_STEP, 0);
+            } else if(code == KeyCode.UP) {
+                board.pan(0, -board.getHeight() * PAN_STEP);
+            } else if(code == KeyCode.DOWN) {
+                board.pan(0, board.getHeight() * PAN_STEP);
+            } else if(code == KeyCode.EQUALS || code == KeyCode.PLUS || code == KeyCode.ADD) {
+                board.zoom(ZOOM_STEP);
+            } else if(code == KeyCode.MINUS || code == KeyCode.SUBTRACT) {
+                board.zoom(1 / ZOOM_STEP);
+            } else if(code == KeyCode.ESCAPE) {
+                board.dispose();
+                gameWindow.loadScene(new MenuScene(gameWindow));
+            }
+        });
+    }
+
+    /**
+     * Play the current piece where the board was clicked
+     * @param x column
+     * @param y row
+     */
+    private void cellClicked(int x, int y) {
+        if(game.play(x, y)) {
+            multimedia.playAudioFile("/sounds/place.wav");
+        } else {
+            multimedia.playAudioFile("/sounds/fail.wav");
+        }
+    }
+
+    /**
+     * Show the pieces to play, and preview the current one under the mouse
+     * @param currentPiece the piece to play
+     * @param followingPiece the piece after it
+     */
+    private void nextPiece(GamePiece currentPiece, GamePiece followingPiece) {
+        pieceBoard.displayPiece(currentPiece);
+        followingPieceBoard.displayPiece(followingPiece);
+        board.setPreview(currentPiece);
+    }
+
+    /**
+     * Rotate the current piece when its board is clicked
+     * @param mouseEvent the user click
+     */
+    private void currentBoardClicked(MouseEvent mouseEvent) {
+        if(mouseEvent.getButton() == MouseButton.PRIMARY) {
+            game.rotateCurrentPieceClockwise();
+            multimedia.playAudioFile("/sounds/rotate.wav");
+        }
+    }
+
+    /**
+     * Swap the pieces when the following piece board is clicked
+     * @param mouseEvent the user click
+     */
+    private void followingBoardClicked(MouseEvent mouseEvent) {
+        game.swapCurrentPiece();
+    }
+
+}
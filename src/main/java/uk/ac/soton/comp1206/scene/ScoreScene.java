@@ -18,6 +18,8 @@ import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Pos;
 import javafx.scene.control.TextInputDialog;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
@@ -25,6 +27,8 @@ import javafx.scene.text.Text;
 import javafx.util.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.ai.MoveAnalyzer;
+import uk.ac.soton.comp1206.ai.MoveGrade;
 import uk.ac.soton.comp1206.game.Game;
 import uk.ac.soton.comp1206.game.MultiplayerGame;
 import uk.ac.soton.comp1206.network.Communicator;
@@ -42,6 +46,17 @@ public class ScoreScene extends BaseScene {
   private ScoresList scoresList;
   private VBox topScores;
 
+  /**
+   * The number of costliest moves listed by the analysis
+   */
+  private static final int WORST_MOVES_SHOWN = 3;
+
+  /**
+   * Shows the grades of the moves of the game, once they have been asked for
+   */
+  private VBox analysis;
+  private boolean analysing = false;
+
   /**
    * Create a new scene, passing in the GameWindow the scene will be displayed
    * @param gameWindow the game window
@@ -69,6 +84,12 @@ public class ScoreScene extends BaseScene {
     //Loads the online scores and adds them all to the remoteScores ArrayList
     loadOnlineScores();
 
+    (gameWindow.getScene()).setOnKeyPressed((KeyEvent event) -> {
+      if (event.getCode() == KeyCode.A) {
+        analyseMoves();
+      }
+    });
+
   }
 
   /**
@@ -100,6 +121,80 @@ public class ScoreScene extends BaseScene {
     root.getChildren().add(scoresList);
     root.getChildren().add(topScores);
 
+    analysis = new VBox();
+    analysis.setAlignment(Pos.BOTTOM_LEFT);
+    Text analysisPrompt = new Text("Press A to analyse your moves");
+    analysisPrompt.getStyleClass().add("scoreitem");
+    analysis.getChildren().add(analysisPrompt);
+    root.getChildren().add(analysis);
+
+  }
+
+  /**
+   * Starts grading every move of the game in the background, showing the results when they are ready
+   */
+  public void analyseMoves() {
+    if (analysing) {
+      return;
+    }
+    if (!finalGameState.getEngine().getCatalogue().isStandard()) {
+      //The search only knows the standard pieces, so it would grade the game against the wrong ones
+      showAnalysisMessage("Moves can only be analysed with the standard pieces");
+      return;
+    }
+    analysing = true;
+    logger.info("Analysing the moves of the game");
+    showAnalysisMessage("Analysing your moves...");
+    new MoveAnalyzer().analyzeLater(finalGameState.getReplay(), this::displayAnalysis, this::analysisFailed);
+  }
+
+  /**
+   * Tells the player the game could not be analysed, and lets them try again
+   * @param failure why the analysis failed
+   */
+  public void analysisFailed(RuntimeException failure) {
+    analysing = false;
+    showAnalysisMessage("Could not analyse this game");
+  }
+
+  /**
+   * Replaces whatever the analysis area shows with a single line of text
+   * @param message the text to show
+   */
+  private void showAnalysisMessage(String message) {
+    analysis.getChildren().clear();
+    Text messageText = new Text(message);
+    messageText.getStyleClass().add("scoreitem");
+    analysis.getChildren().add(messageText);
+  }
+
+  /**
+   * Displays the expected points lost over the game and the moves that lost the most
+   * @param grades the grade of each move of the game
+   */
+  public void displayAnalysis(List<MoveGrade> grades) {
+    analysis.getChildren().clear();
+    Text title = new Text("Move Analysis");
+    title.getStyleClass().add("scoreitemTitle");
+    analysis.getChildren().add(title);
+
+    Text summary = new Text(String.format("%d moves, %.0f points lost", grades.size(),
+        MoveAnalyzer.totalPointsLost(grades)));
+    summary.getStyleClass().add("scoreitem");
+    analysis.getChildren().add(summary);
+
+    //Lists the costliest moves first
+    List<MoveGrade> worst = new ArrayList<>(grades);
+    worst.sort(Comparator.comparingDouble(MoveGrade::getPointsLost).reversed());
+    for (MoveGrade grade : worst.subList(0, Math.min(WORST_MOVES_SHOWN, worst.size()))) {
+      if (grade.getPointsLost() < 1) {
+        break;
+      }
+      Text moveText = new Text(String.format("Move %d lost %.0f, best was %s", grade.getTurn() + 1,
+          grade.getPointsLost(), grade.getBest()));
+      moveText.getStyleClass().add("scoreitem");
+      analysis.getChildren().add(moveText);
+    }
   }
 
   /**
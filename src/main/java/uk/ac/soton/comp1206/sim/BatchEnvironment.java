@@ -0,0 +1,455 @@
+package uk.ac.soton.comp1206.sim;
+
+import java.util.SplittableRandom;
+import uk.ac.soton.comp1206.game.DeadBoardTable;
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.PackedBoard;
+
+/**
+ * Many independent games on the standard 5x5 board, stepped together, for training and tuning workloads that need far
+ * more moves than stepping GameEngines one at a time can give.
+ *
+ * The state is kept as one primitive array per field rather than one object per game: each board is packed into an
+ * int with bit (y * 5 + x) set for each filled block, as a PackedBoard. Each call to step applies one action to
+ * every board. Every placement of every piece is worked out up front, so checking and making a move is a table
+ * lookup and two bit operations, and lines are found and cleared by a branch free loop of int operations over the
+ * whole batch which the JIT can compile to vector instructions.
+ *
+ * The rules are those of GameEngine: a clear raises the multiplier and scores lines * blocks * 10 * multiplier,
+ * anything else resets it. An action that does not fit costs a life, as if the timer had run out. A swap action that
+ * does not fit still swaps first, as calling swap and then failing to play does on a GameEngine, so it is the piece
+ * swapped in that is thrown away. A game is over once its lives fall below zero or neither piece fits anywhere, and is
+ * then started again in place. Each board draws its pieces from its own generator, exactly as a GameEngine made with
+ * the same seed would, so board i of a batch seeded with s plays the same pieces as new GameEngine(5, 5, s + i).
+ * BatchEnvironmentCheck steps both side by side to check this.
+ *
+ * An environment is not thread safe. To use more cores, give each thread its own environment.
+ *
+ * Run the benchmark with: java -cp target/classes uk.ac.soton.comp1206.sim.BatchEnvironment [boards] [steps]
+ */
+public class BatchEnvironment {
+
+    /**
+     * The number of columns and rows of each board
+     */
+    public static final int SIZE = PackedBoard.SIZE;
+
+    /**
+     * The number of blocks on each board
+     */
+    public static final int CELLS = PackedBoard.CELLS;
+
+    /**
+     * The number of actions that play the current piece: one per rotation and centre block
+     */
+    public static final int PLACEMENTS = GamePiece.ROTATIONS * CELLS;
+
+    /**
+     * The number of actions. Actions from PLACEMENTS up swap in the following piece and play that instead.
+     */
+    public static final int ACTIONS = 2 * PLACEMENTS;
+
+    /**
+     * A bit at the start of each row of a packed board
+     */
+    private static final int ROW_STARTS = 0b00001_00001_00001_00001_00001;
+
+    /**
+     * Every bit of the first row of a packed board
+     */
+    private static final int FIRST_ROW = (1 << SIZE) - 1;
+
+    /**
+     * The gamma and mixing constants of SplittableRandom, so each board draws the same pieces a seeded GameEngine would
+     */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /**
+     * The blocks filled by each placement, indexed by piece * PLACEMENTS + rotation * CELLS + y * SIZE + x, or 0 where
+     * the piece would go off the board
+     */
+    private static final int[] PLACED = new int[GamePiece.PIECES * PLACEMENTS];
+
+    /**
+     * Every distinct placement of each piece, for checking whether a board is dead without the DeadBoardTable
+     */
+    private static final int[][] DISTINCT = new int[GamePiece.PIECES][];
+
+    static {
+        for(int piece = 0; piece < GamePiece.PIECES; piece++) {
+            for(int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+                for(int y = 0; y < SIZE; y++) {
+                    for(int x = 0; x < SIZE; x++) {
+                        PLACED[piece * PLACEMENTS + rotation * CELLS + y * SIZE + x] =
+                            PackedBoard.place(piece, rotation, x, y);
+                    }
+                }
+            }
+            DISTINCT[piece] = PackedBoard.placements(piece);
+        }
+    }
+
+    private final int size;
+    private final DeadBoardTable deadBoards;
+
+    private final int[] boards;
+    private final byte[] current;
+    private final byte[] following;
+    private final int[] multipliers;
+    private final int[] lives;
+    private final int[] scores;
+    private final long[] seeds;
+
+    //Scratch space for each step, kept between steps so stepping never allocates
+    private final int[] placed;
+    private final int[] lines;
+    private final int[] blocks;
+
+    /**
+     * Create a batch of new games
+     * @param size the number of boards
+     * @param seed the seed of board 0. Board i is seeded with seed + i.
+     */
+    public BatchEnvironment(int size, long seed) {
+        this(size, seed, DeadBoardTable.shared());
+    }
+
+    /**
+     * Create a batch of new games
+     * @param size the number of boards
+     * @param seed the seed of board 0. Board i is seeded with seed + i.
+     * @param deadBoards the table to check for dead boards with, or null to search the placements instead
+     */
+    public BatchEnvironment(int size, long seed, DeadBoardTable deadBoards) {
+        this.size = size;
+        this.deadBoards = deadBoards;
+        boards = new int[size];
+        current = new byte[size];
+        following = new byte[size];
+        multipliers = new int[size];
+        lives = new int[size];
+        scores = new int[size];
+        seeds = new long[size];
+        placed = new int[size];
+        lines = new int[size];
+        blocks = new int[size];
+        for(int i = 0; i < size; i++) {
+            seeds[i] = seed + i;
+            reset(i);
+        }
+    }
+
+    /**
+     * Get the action that plays a piece
+     * @param swap whether to swap in the following piece and play that
+     * @param rotation the rotation to play the piece in
+     * @param x the column the centre of the piece goes on
+     * @param y the row the centre of the piece goes on
+     * @return the action
+     */
+    public static int action(boolean swap, int rotation, int x, int y) {
+        return (swap ? PLACEMENTS : 0) + rotation * CELLS + y * SIZE + x;
+    }
+
+    /**
+     * Apply one action to every board, starting a new game on each board whose game ends
+     * @param actions the action for each board
+     * @param rewards filled in with the points each board scored
+     * @param dones filled in with whether the game on each board ended, in which case the board now holds a new game
+     */
+    public void step(int[] actions, int[] rewards, boolean[] dones) {
+        //Look up the blocks each action fills, leaving 0 where it does not fit
+        for(int i = 0; i < size; i++) {
+            int action = actions[i];
+            if(action < 0 || action >= ACTIONS) {
+                throw new IllegalArgumentException("No such action " + action + " for board " + i);
+            }
+            int piece = action >= PLACEMENTS ? following[i] : current[i];
+            int mask = PLACED[piece * PLACEMENTS + action % PLACEMENTS];
+            placed[i] = (boards[i] & mask) == 0 ? mask : 0;
+        }
+
+        clearLines(boards, placed, lines, blocks, size);
+
+        for(int i = 0; i < size; i++) {
+            int reward = 0;
+            boolean done;
+            //The swap happens whether or not the piece then fits, as it does on a GameEngine
+            if(actions[i] >= PLACEMENTS) {
+                byte swapped = current[i];
+                current[i] = following[i];
+                following[i] = swapped;
+            }
+            if(placed[i] != 0) {
+                //A clear raises the multiplier before scoring, anything else resets it
+                if(lines[i] > 0) {
+                    multipliers[i]++;
+                    reward = lines[i] * blocks[i] * 10 * multipliers[i];
+                    scores[i] += reward;
+                } else {
+                    multipliers[i] = 1;
+                }
+                done = nextPiece(i);
+            } else {
+                //A move that does not fit is as good as letting the timer run out
+                lives[i]--;
+                multipliers[i] = 1;
+                done = lives[i] < 0 || nextPiece(i);
+            }
+            rewards[i] = reward;
+            dones[i] = done;
+            if(done) {
+                reset(i);
+            }
+        }
+    }
+
+    /**
+     * Play every placement on every board and clear any lines completed. Only int operations without branches, so the
+     * JIT can run several boards at once in vector registers.
+     * @param boards the packed boards, updated in place
+     * @param placed the blocks to fill on each board
+     * @param lines filled in with the number of lines cleared on each board
+     * @param blocks filled in with the number of blocks cleared on each board
+     * @param size the number of boards
+     */
+    static void clearLines(int[] boards, int[] placed, int[] lines, int[] blocks, int size) {
+        for(int i = 0; i < size; i++) {
+            int board = boards[i] | placed[i];
+            //A row start stays set only if the four blocks after it are filled too, and likewise a column start
+            int fullRows = board & (board >>> 1) & (board >>> 2) & (board >>> 3) & (board >>> 4) & ROW_STARTS;
+            int fullCols = board & (board >>> 5) & (board >>> 10) & (board >>> 15) & (board >>> 20) & FIRST_ROW;
+            //Multiplying spreads each start bit across its line, and the lines of a board never carry into each other
+            int cleared = (fullRows * FIRST_ROW) | (fullCols * ROW_STARTS);
+            boards[i] = board & ~cleared;
+            lines[i] = Integer.bitCount(fullRows) + Integer.bitCount(fullCols);
+            blocks[i] = Integer.bitCount(cleared);
+        }
+    }
+
+    /**
+     * Move the following piece up on a board and draw a new following piece
+     * @return true if the board is now dead
+     */
+    private boolean nextPiece(int i) {
+        current[i] = following[i];
+        following[i] = (byte) nextPiece(seeds, i);
+        if(deadBoards != null) {
+            return deadBoards.isDead(boards[i], current[i], following[i]);
+        }
+        return !canPlay(boards[i], current[i]) && !canPlay(boards[i], following[i]);
+    }
+
+    private static boolean canPlay(int board, int piece) {
+        for(int placed : DISTINCT[piece]) {
+            if((board & placed) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Start a new game on a board, carrying on with its piece generator
+     */
+    private void reset(int i) {
+        boards[i] = 0;
+        multipliers[i] = 1;
+        lives[i] = GameEngine.STARTING_LIVES;
+        scores[i] = 0;
+        current[i] = (byte) nextPiece(seeds, i);
+        following[i] = (byte) nextPiece(seeds, i);
+    }
+
+    /**
+     * Draw a piece number the same way SplittableRandom.nextInt(GamePiece.PIECES) does
+     */
+    private static int nextPiece(long[] seeds, int i) {
+        int bound = GamePiece.PIECES;
+        int r = mix32(seeds[i] += GOLDEN_GAMMA);
+        //Throw away the rare draws that would make some pieces more likely than others
+        for(int u = r >>> 1; u + bound - 1 - (r = u % bound) < 0; u = mix32(seeds[i] += GOLDEN_GAMMA) >>> 1) {
+        }
+        return r;
+    }
+
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    /**
+     * Check whether an action fits on a board
+     * @param i the board
+     * @param action the action
+     * @return true if the piece it plays fits there
+     */
+    public boolean isLegal(int i, int action) {
+        int piece = action >= PLACEMENTS ? following[i] : current[i];
+        int mask = PLACED[piece * PLACEMENTS + action % PLACEMENTS];
+        return mask != 0 && (boards[i] & mask) == 0;
+    }
+
+    /**
+     * Get the number of boards
+     * @return boards
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Get a board, packed with bit (y * 5 + x) set for each filled block
+     * @param i the board
+     * @return the packed board
+     */
+    public int getBoard(int i) {
+        return boards[i];
+    }
+
+    /**
+     * Get the piece number of the current piece on a board
+     * @param i the board
+     * @return piece number
+     */
+    public int getCurrentPiece(int i) {
+        return current[i];
+    }
+
+    /**
+     * Get the piece number of the following piece on a board
+     * @param i the board
+     * @return piece number
+     */
+    public int getFollowingPiece(int i) {
+        return following[i];
+    }
+
+    /**
+     * Get the score multiplier of a board
+     * @param i the board
+     * @return multiplier
+     */
+    public int getMultiplier(int i) {
+        return multipliers[i];
+    }
+
+    /**
+     * Get the lives left on a board
+     * @param i the board
+     * @return lives
+     */
+    public int getLives(int i) {
+        return lives[i];
+    }
+
+    /**
+     * Get the score of the game in progress on a board
+     * @param i the board
+     * @return score
+     */
+    public int getScore(int i) {
+        return scores[i];
+    }
+
+    /**
+     * Measure board steps per second for a batch, against stepping GameEngines one at a time, with a policy that
+     * tries random actions until one fits
+     * @param args optionally, the number of boards and the number of steps
+     */
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        System.out.printf("%,d boards, dead board table %s%n", size,
+            DeadBoardTable.shared() != null ? "loaded" : "not found");
+
+        //Warm up so the JIT has compiled the hot paths before timing
+        runBatch(size, steps / 4, 1);
+        runEngines(size, steps / 40, 1);
+
+        long[] batch = runBatch(size, steps, 2);
+        System.out.printf("%-8s %,8d steps %,16.0f board steps/s %,16.0f with the policy %,10d games ended%n",
+            "Batch", steps, perSecond(size, steps, batch[0]), perSecond(size, steps, batch[1]), batch[2]);
+        int engineSteps = Math.max(1, steps / 10);
+        long[] engines = runEngines(size, engineSteps, 2);
+        System.out.printf("%-8s %,8d steps %16s board steps/s %,16.0f with the policy %,10d games ended%n",
+            "Engines", engineSteps, "", perSecond(size, engineSteps, engines[0]), engines[1]);
+    }
+
+    private static double perSecond(int size, int steps, long nanos) {
+        return (double) size * steps / (nanos / 1e9);
+    }
+
+    /**
+     * @return {nanoseconds spent stepping, nanoseconds spent choosing and stepping, games ended}
+     */
+    private static long[] runBatch(int size, int steps, long seed) {
+        BatchEnvironment environment = new BatchEnvironment(size, seed);
+        SplittableRandom random = new SplittableRandom(~seed);
+        int[] actions = new int[size];
+        int[] rewards = new int[size];
+        boolean[] dones = new boolean[size];
+        long stepping = 0;
+        long ended = 0;
+        long begin = System.nanoTime();
+        for(int step = 0; step < steps; step++) {
+            for(int i = 0; i < size; i++) {
+                int action = random.nextInt(ACTIONS);
+                for(int tries = 1; tries < 16 && !environment.isLegal(i, action); tries++) {
+                    action = random.nextInt(ACTIONS);
+                }
+                actions[i] = action;
+            }
+            long start = System.nanoTime();
+            environment.step(actions, rewards, dones);
+            stepping += System.nanoTime() - start;
+            for(int i = 0; i < size; i++) {
+                if(dones[i]) {
+                    ended++;
+                }
+            }
+        }
+        return new long[] {stepping, System.nanoTime() - begin, ended};
+    }
+
+    /**
+     * @return {nanoseconds spent choosing and stepping, games ended}
+     */
+    private static long[] runEngines(int size, int steps, long seed) {
+        GameEngine[] engines = new GameEngine[size];
+        for(int i = 0; i < size; i++) {
+            engines[i] = new GameEngine(SIZE, SIZE, seed + i);
+            engines[i].start();
+        }
+        SplittableRandom random = new SplittableRandom(~seed);
+        long ended = 0;
+        long begin = System.nanoTime();
+        for(int step = 0; step < steps; step++) {
+            for(int i = 0; i < size; i++) {
+                GameEngine engine = engines[i];
+                //The same policy: random placements until one fits
+                boolean played = false;
+                for(int tries = 0; tries < 16 && !played; tries++) {
+                    if(random.nextBoolean()) {
+                        engine.swap();
+                    }
+                    for(int turns = random.nextInt(GamePiece.ROTATIONS); turns > 0; turns--) {
+                        engine.rotateClockwise();
+                    }
+                    played = engine.play(random.nextInt(SIZE), random.nextInt(SIZE));
+                }
+                if(!played) {
+                    engine.timerExpired();
+                }
+                if(engine.isGameOver()) {
+                    engines[i] = new GameEngine(SIZE, SIZE, random.nextLong());
+                    engines[i].start();
+                    ended++;
+                }
+            }
+        }
+        return new long[] {System.nanoTime() - begin, ended};
+    }
+
+}
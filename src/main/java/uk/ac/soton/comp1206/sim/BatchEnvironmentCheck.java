@@ -0,0 +1,151 @@
+package uk.ac.soton.comp1206.sim;
+
+import java.util.SplittableRandom;
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.PackedBoard;
+import uk.ac.soton.comp1206.game.PieceSource;
+
+/**
+ * Checks BatchEnvironment follows the rules of GameEngine, by stepping a batch and one GameEngine per board side by
+ * side with the same random actions, including actions that do not fit. Each action is applied to its engine as the
+ * inputs a player would make: swap if it is a swap action, rotate the piece to the rotation of the action, then play,
+ * or let the timer run out if the piece does not fit. After every step the board, both pieces, the score, multiplier
+ * and lives, and whether the game ended must match. A board whose game ends carries on with a new engine drawing from
+ * the same piece generator, as the batch does.
+ *
+ * Exits with status 1 at the first difference, so it can be run as a check.
+ *
+ * Run with: java -cp target/classes uk.ac.soton.comp1206.sim.BatchEnvironmentCheck [boards] [steps] [seed]
+ */
+public class BatchEnvironmentCheck {
+
+    private BatchEnvironmentCheck() {
+    }
+
+    /**
+     * Run the check
+     * @param args optionally, the number of boards, the number of steps and the seed
+     */
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+
+        BatchEnvironment environment = new BatchEnvironment(size, seed);
+        PieceSource[] pieces = new PieceSource[size];
+        GameEngine[] engines = new GameEngine[size];
+        for(int i = 0; i < size; i++) {
+            //The same generator new GameEngine(5, 5, seed + i) draws from, kept for the games after the first
+            pieces[i] = GameEngine.randomPieces(new SplittableRandom(seed + i));
+            engines[i] = newEngine(pieces[i]);
+        }
+
+        SplittableRandom random = new SplittableRandom(~seed);
+        int[] actions = new int[size];
+        int[] rewards = new int[size];
+        boolean[] dones = new boolean[size];
+        long illegal = 0;
+        long ended = 0;
+        for(int step = 0; step < steps; step++) {
+            for(int i = 0; i < size; i++) {
+                //Mostly moves that fit, so games last, with enough that do not to use up lives
+                int action = random.nextInt(BatchEnvironment.ACTIONS);
+                for(int tries = 0; tries < 8 && !environment.isLegal(i, action); tries++) {
+                    action = random.nextInt(BatchEnvironment.ACTIONS);
+                }
+                actions[i] = action;
+            }
+            environment.step(actions, rewards, dones);
+
+            for(int i = 0; i < size; i++) {
+                GameEngine engine = engines[i];
+                int scoreBefore = engine.getScore();
+                if(!apply(engine, actions[i])) {
+                    illegal++;
+                }
+                String difference = compare(environment, i, engine, engine.getScore() - scoreBefore, rewards[i],
+                    dones[i]);
+                if(difference != null) {
+                    System.out.printf("Step %d, board %d, action %d: %s%n", step, i, actions[i], difference);
+                    System.exit(1);
+                }
+                if(dones[i]) {
+                    ended++;
+                    engines[i] = newEngine(pieces[i]);
+                }
+            }
+        }
+        System.out.printf("BatchEnvironment matched GameEngine over %,d board steps, %,d of them not fitting, and "
+            + "%,d games%n", (long) size * steps, illegal, ended);
+    }
+
+    private static GameEngine newEngine(PieceSource pieces) {
+        GameEngine engine = new GameEngine(BatchEnvironment.SIZE, BatchEnvironment.SIZE, pieces);
+        engine.start();
+        return engine;
+    }
+
+    /**
+     * Make the inputs of a batch action on an engine
+     * @return true if the piece fitted
+     */
+    private static boolean apply(GameEngine engine, int action) {
+        int move = action % BatchEnvironment.PLACEMENTS;
+        int rotation = move / BatchEnvironment.CELLS;
+        int x = move % BatchEnvironment.SIZE;
+        int y = move % BatchEnvironment.CELLS / BatchEnvironment.SIZE;
+        if(action >= BatchEnvironment.PLACEMENTS) {
+            engine.swap();
+        }
+        while(engine.getCurrentPiece().getRotation() != rotation) {
+            engine.rotateClockwise();
+        }
+        if(engine.play(x, y)) {
+            return true;
+        }
+        engine.timerExpired();
+        return false;
+    }
+
+    /**
+     * Compare a board of the batch with its engine after a step
+     * @return what differs, or null if nothing does
+     */
+    private static String compare(BatchEnvironment environment, int i, GameEngine engine, int engineReward,
+                                  int reward, boolean done) {
+        if(done != engine.isGameOver()) {
+            return "batch game ended " + done + ", engine game over " + engine.isGameOver();
+        }
+        if(reward != engineReward) {
+            return "reward " + reward + ", engine scored " + engineReward;
+        }
+        if(done) {
+            //The batch has already started its next game, which the next engine is checked against
+            return null;
+        }
+        int board = PackedBoard.pack(engine.getGrid());
+        if(environment.getBoard(i) != board) {
+            return "board " + Integer.toBinaryString(environment.getBoard(i)) + ", engine "
+                + Integer.toBinaryString(board);
+        }
+        GamePiece current = engine.getCurrentPiece();
+        GamePiece following = engine.getFollowingPiece();
+        if(environment.getCurrentPiece(i) != current.getType()
+            || environment.getFollowingPiece(i) != following.getType()) {
+            return "pieces " + environment.getCurrentPiece(i) + " and " + environment.getFollowingPiece(i)
+                + ", engine " + current + " and " + following;
+        }
+        if(environment.getScore(i) != engine.getScore()) {
+            return "score " + environment.getScore(i) + ", engine " + engine.getScore();
+        }
+        if(environment.getMultiplier(i) != engine.getMultiplier()) {
+            return "multiplier " + environment.getMultiplier(i) + ", engine " + engine.getMultiplier();
+        }
+        if(environment.getLives(i) != engine.getLives()) {
+            return "lives " + environment.getLives(i) + ", engine " + engine.getLives();
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,82 @@
+package uk.ac.soton.comp1206.sim;
+
+import java.util.SplittableRandom;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+
+/**
+ * A headless benchmark showing how the cost of a move grows with the size of the board.
+ *
+ * For each board size it repeatedly picks a random piece and position, plays it if it fits and clears any lines it
+ * completes, and reports the average time per attempted move and per successful placement.
+ *
+ * Run with: java -cp target/classes uk.ac.soton.comp1206.sim.BoardSizeBenchmark [moves per size]
+ */
+public class BoardSizeBenchmark {
+
+    /**
+     * The board sizes to measure
+     */
+    private static final int[] SIZES = {5, 8, 16, 32, 64};
+
+    /**
+     * Run the benchmark
+     * @param args optionally, the number of moves to time for each board size
+     */
+    public static void main(String[] args) {
+        int moves = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+
+        System.out.printf("%8s %14s %16s %12s%n", "board", "ns/move", "ns/placement", "lines");
+        for(int size : SIZES) {
+            //Warm up so the JIT has compiled the hot paths before timing
+            run(size, moves / 4, 1);
+
+            long start = System.nanoTime();
+            long[] result = run(size, moves, 2);
+            long elapsed = System.nanoTime() - start;
+
+            System.out.printf("%8s %14.1f %16.1f %12d%n", size + "x" + size,
+                (double) elapsed / moves, (double) elapsed / Math.max(1, result[0]), result[1]);
+        }
+    }
+
+    /**
+     * Play random moves on a board of the given size
+     * @param size the number of columns and rows
+     * @param moves the number of moves to attempt
+     * @param seed the random seed
+     * @return {placements made, lines cleared}
+     */
+    private static long[] run(int size, int moves, long seed) {
+        var random = new SplittableRandom(seed);
+        var grid = new Grid(size, size);
+        GamePiece[] pieces = new GamePiece[GamePiece.PIECES];
+        for(int i = 0; i < pieces.length; i++) {
+            pieces[i] = GamePiece.createPiece(i);
+        }
+
+        long placements = 0;
+        long lines = 0;
+        int misses = 0;
+        for(int move = 0; move < moves; move++) {
+            GamePiece piece = pieces[random.nextInt(pieces.length)];
+            piece.rotate(random.nextInt(GamePiece.ROTATIONS));
+            int x = random.nextInt(size);
+            int y = random.nextInt(size);
+
+            if(grid.canPlayPiece(piece, x, y)) {
+                grid.playPiece(piece, x, y);
+                grid.clearFullLines();
+                lines += Long.bitCount(grid.getClearedRows()) + Long.bitCount(grid.getClearedCols());
+                placements++;
+                misses = 0;
+            } else if(++misses > size * size) {
+                //The board has clogged up, so start again
+                grid.resetGrid();
+                misses = 0;
+            }
+        }
+        return new long[] {placements, lines};
+    }
+
+}
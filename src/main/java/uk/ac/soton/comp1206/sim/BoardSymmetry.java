@@ -0,0 +1,159 @@
+package uk.ac.soton.comp1206.sim;
+
+import java.util.HashSet;
+import java.util.Set;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.PackedBoard;
+
+/**
+ * The symmetries of the packed 5x5 board which keep the rules the same.
+ *
+ * Turning a board a quarter turn never changes what can be played on it, as every piece can be turned too. Mirroring a
+ * board swaps each piece for its mirror image, such as L for J, so mirroring is only used if every piece has a mirror
+ * image in the set. Symmetries 0 to 3 turn the board that many quarter turns, 4 to 7 mirror it left to right first.
+ */
+final class BoardSymmetry {
+
+    private static final int SIZE = PackedBoard.SIZE;
+
+    /**
+     * The image of each row of a board under each symmetry: transforms[symmetry][y][row bits] is the packed board
+     * that row becomes
+     */
+    private final int[][][] transforms;
+
+    /**
+     * Which piece each piece becomes under each symmetry, indexed by [symmetry][piece]
+     */
+    private final int[][] pieceMaps;
+
+    /**
+     * Work out the symmetries of the current piece set
+     */
+    BoardSymmetry() {
+        int[] mirror = mirrorPieces();
+        int symmetries = mirror == null ? 4 : 8;
+        transforms = new int[symmetries][SIZE][1 << SIZE];
+        pieceMaps = new int[symmetries][GamePiece.PIECES];
+        for(int symmetry = 0; symmetry < symmetries; symmetry++) {
+            for(int y = 0; y < SIZE; y++) {
+                for(int bits = 0; bits < 1 << SIZE; bits++) {
+                    int image = 0;
+                    for(int x = 0; x < SIZE; x++) {
+                        if((bits & (1 << x)) != 0) {
+                            image |= 1 << cell(symmetry, x, y);
+                        }
+                    }
+                    transforms[symmetry][y][bits] = image;
+                }
+            }
+            for(int piece = 0; piece < GamePiece.PIECES; piece++) {
+                pieceMaps[symmetry][piece] = symmetry < 4 ? piece : mirror[piece];
+            }
+        }
+    }
+
+    /**
+     * Where a block goes under a symmetry
+     * @return the packed index of the block
+     */
+    private static int cell(int symmetry, int x, int y) {
+        if(symmetry >= 4) {
+            x = SIZE - 1 - x;
+        }
+        for(int turn = 0; turn < (symmetry & 3); turn++) {
+            int turned = SIZE - 1 - y;
+            y = x;
+            x = turned;
+        }
+        return y * SIZE + x;
+    }
+
+    /**
+     * Find the mirror image of each piece: the piece whose rotations are exactly the mirrored rotations of this one
+     * @return the mirror of each piece, or null if some piece has no mirror image in the set
+     */
+    private static int[] mirrorPieces() {
+        int[] mirror = new int[GamePiece.PIECES];
+        for(int piece = 0; piece < GamePiece.PIECES; piece++) {
+            Set<Integer> mirrored = new HashSet<>();
+            for(int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+                int shape = GamePiece.mask(piece, rotation);
+                int flipped = 0;
+                for(int i = 0; i < 9; i++) {
+                    if((shape & (1 << i)) != 0) {
+                        flipped |= 1 << ((i / 3) * 3 + 2 - i % 3);
+                    }
+                }
+                mirrored.add(flipped);
+            }
+            mirror[piece] = -1;
+            for(int other = 0; other < GamePiece.PIECES && mirror[piece] == -1; other++) {
+                Set<Integer> shapes = new HashSet<>();
+                for(int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+                    shapes.add(GamePiece.mask(other, rotation));
+                }
+                if(shapes.equals(mirrored)) {
+                    mirror[piece] = other;
+                }
+            }
+            if(mirror[piece] == -1) {
+                return null;
+            }
+        }
+        return mirror;
+    }
+
+    /**
+     * Get the number of symmetries
+     * @return 8 with mirroring, otherwise 4
+     */
+    int count() {
+        return transforms.length;
+    }
+
+    /**
+     * Find the image of a board under a symmetry
+     * @param board the packed board
+     * @param symmetry the symmetry
+     * @return the packed image
+     */
+    int transform(int board, int symmetry) {
+        int image = 0;
+        int[][] rows = transforms[symmetry];
+        for(int y = 0; y < SIZE; y++) {
+            image |= rows[y][(board >>> (y * SIZE)) & ((1 << SIZE) - 1)];
+        }
+        return image;
+    }
+
+    /**
+     * Find the piece a piece becomes under a symmetry
+     * @param piece the piece number
+     * @param symmetry the symmetry
+     * @return the piece number of its image
+     */
+    int mapPiece(int piece, int symmetry) {
+        return pieceMaps[symmetry][piece];
+    }
+
+    /**
+     * Swap each piece in a mask of pieces for its image under a symmetry
+     * @param pieces a mask with bit p set for each piece p
+     * @param symmetry the symmetry
+     * @return the mask of the images
+     */
+    int mapPieces(int pieces, int symmetry) {
+        if(symmetry < 4) {
+            return pieces;
+        }
+        int mapped = 0;
+        for(int piece = 0; piece < GamePiece.PIECES; piece++) {
+            if((pieces & (1 << piece)) != 0) {
+                mapped |= 1 << pieceMaps[symmetry][piece];
+            }
+        }
+        return mapped;
+    }
+
+}
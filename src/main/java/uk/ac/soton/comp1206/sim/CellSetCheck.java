@@ -0,0 +1,168 @@
+package uk.ac.soton.comp1206.sim;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+import uk.ac.soton.comp1206.component.CellSet;
+import uk.ac.soton.comp1206.component.GameBlockCoordinate;
+
+/**
+ * Checks CellSet against a HashSet of GameBlockCoordinates, the way cleared blocks were held before, on random boards
+ * up to 64x64. Each round makes the same random changes to both, adding and removing blocks, whole rows and columns,
+ * and taking unions and intersections, then compares every block, the size, the order nextCell walks the blocks in
+ * and the asSet view.
+ *
+ * Exits with status 1 at the first difference, so it can be run as a check.
+ *
+ * Run with: java -cp target/classes uk.ac.soton.comp1206.sim.CellSetCheck [rounds] [seed]
+ */
+public class CellSetCheck {
+
+    /**
+     * The most columns and rows of a board checked
+     */
+    private static final int MAX_SIZE = 64;
+
+    /**
+     * The number of changes made to each pair of sets
+     */
+    private static final int CHANGES = 64;
+
+    private CellSetCheck() {
+    }
+
+    /**
+     * Run the check
+     * @param args optionally, the number of rounds and the seed
+     */
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        SplittableRandom random = new SplittableRandom(seed);
+
+        long comparisons = 0;
+        for(int round = 0; round < rounds; round++) {
+            int cols = random.nextInt(1, MAX_SIZE + 1);
+            int rows = random.nextInt(1, MAX_SIZE + 1);
+            CellSet cells = new CellSet(cols, rows);
+            Set<GameBlockCoordinate> reference = new HashSet<>();
+            for(int change = 0; change < CHANGES; change++) {
+                change(random, cells, reference, cols, rows);
+                String difference = compare(cells, reference, cols, rows);
+                if(difference != null) {
+                    System.out.printf("Round %d, %dx%d board, change %d: %s%n", round, cols, rows, change, difference);
+                    System.exit(1);
+                }
+                comparisons++;
+            }
+        }
+        System.out.printf("CellSet matched the HashSet in %,d comparisons over %,d boards%n", comparisons, rounds);
+    }
+
+    /**
+     * Make the same random change to both sets
+     */
+    private static void change(SplittableRandom random, CellSet cells, Set<GameBlockCoordinate> reference, int cols,
+                               int rows) {
+        int x = random.nextInt(cols);
+        int y = random.nextInt(rows);
+        switch(random.nextInt(8)) {
+            case 0, 1 -> {
+                cells.add(x, y);
+                reference.add(new GameBlockCoordinate(x, y));
+            }
+            case 2 -> {
+                cells.remove(x, y);
+                reference.remove(new GameBlockCoordinate(x, y));
+            }
+            case 3 -> {
+                cells.addRow(y);
+                for(int column = 0; column < cols; column++) {
+                    reference.add(new GameBlockCoordinate(column, y));
+                }
+            }
+            case 4 -> {
+                cells.addColumn(x);
+                for(int row = 0; row < rows; row++) {
+                    reference.add(new GameBlockCoordinate(x, row));
+                }
+            }
+            case 5, 6 -> {
+                Set<GameBlockCoordinate> other = randomBlocks(random, cols, rows);
+                if(random.nextBoolean()) {
+                    cells.union(CellSet.of(cols, rows, other));
+                    reference.addAll(other);
+                } else {
+                    cells.intersect(CellSet.of(cols, rows, other));
+                    reference.retainAll(other);
+                }
+            }
+            default -> {
+                if(random.nextInt(8) == 0) {
+                    cells.clear();
+                    reference.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * A random set of blocks, with a random line through it so unions can fill whole rows and columns
+     */
+    private static Set<GameBlockCoordinate> randomBlocks(SplittableRandom random, int cols, int rows) {
+        Set<GameBlockCoordinate> blocks = new HashSet<>();
+        int count = random.nextInt(cols * rows / 2 + 1);
+        for(int i = 0; i < count; i++) {
+            blocks.add(new GameBlockCoordinate(random.nextInt(cols), random.nextInt(rows)));
+        }
+        int y = random.nextInt(rows);
+        for(int x = 0; x < cols; x++) {
+            blocks.add(new GameBlockCoordinate(x, y));
+        }
+        return blocks;
+    }
+
+    /**
+     * Compare a CellSet with its reference
+     * @return what differs, or null if nothing does
+     */
+    private static String compare(CellSet cells, Set<GameBlockCoordinate> reference, int cols, int rows) {
+        for(int y = 0; y < rows; y++) {
+            for(int x = 0; x < cols; x++) {
+                if(cells.contains(x, y) != reference.contains(new GameBlockCoordinate(x, y))) {
+                    return "contains(" + x + ", " + y + ") is " + cells.contains(x, y);
+                }
+            }
+        }
+        if(cells.size() != reference.size()) {
+            return "size is " + cells.size() + ", expected " + reference.size();
+        }
+        if(cells.isEmpty() != reference.isEmpty()) {
+            return "isEmpty is " + cells.isEmpty();
+        }
+
+        //nextCell must visit each block once, along each row and then down the rows
+        int visited = 0;
+        int previous = -1;
+        for(int cell = cells.nextCell(0); cell >= 0; cell = cells.nextCell(cell + 1)) {
+            GameBlockCoordinate coord = new GameBlockCoordinate(cells.getX(cell), cells.getY(cell));
+            if(cell <= previous || !reference.contains(coord)) {
+                return "nextCell visited " + coord + " out of order or not in the set";
+            }
+            previous = cell;
+            visited++;
+        }
+        if(visited != reference.size()) {
+            return "nextCell visited " + visited + " blocks, expected " + reference.size();
+        }
+
+        if(!cells.asSet().equals(reference) || !reference.equals(cells.asSet())) {
+            return "asSet differs: " + cells;
+        }
+        if(!CellSet.of(cols, rows, reference).equals(cells)) {
+            return "CellSet.of the reference differs: " + cells;
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,360 @@
+package uk.ac.soton.comp1206.sim;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.PlacementListener;
+import uk.ac.soton.comp1206.game.DeadBoardTable;
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.PieceCatalogue;
+import uk.ac.soton.comp1206.game.Replayer;
+import uk.ac.soton.comp1206.game.ReplayLog;
+
+/**
+ * Writes (board, current piece, following piece, move, reward) samples from 5x5 games to a stream of fixed width
+ * binary records, for training on outside the game.
+ *
+ * Records go straight into memory-mapped files, so adding one is a handful of stores into memory and the operating
+ * system writes the pages out in the background. Each file holds at most a set number of bytes, after which the
+ * writer rolls over to the next: prefix-00000.tds, prefix-00001.tds and so on.
+ *
+ * Every file starts with a 32 byte little endian header: the magic bytes "TDSF", the format version, the header size
+ * and the record size as ints, then the number of the first sample in the file and the number of samples in it as
+ * longs. Sample i of a file is at byte headerBytes + i * recordBytes, so a file can be sliced, or mapped as an array
+ * of records, without reading any of it. The count is written when a file is finished, so a file whose count is still
+ * 0 was never finished.
+ *
+ * Each 12 byte record holds, little endian:
+ * <ul>
+ *     <li>the board as an int, with bit (y * 5 + x) set for each filled block, as in DeadBoardTable</li>
+ *     <li>the current and following piece numbers as a byte each</li>
+ *     <li>the move as a byte, numbered as a BatchEnvironment action</li>
+ *     <li>a flags byte, with bit 0 set on the last move of a game</li>
+ *     <li>the points the move scored as an int</li>
+ * </ul>
+ *
+ * Run with: java -cp target/classes uk.ac.soton.comp1206.sim.DatasetWriter [prefix] [samples] [replay files...]
+ */
+public class DatasetWriter implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(DatasetWriter.class);
+
+    /**
+     * The size of the header at the start of each file in bytes
+     */
+    public static final int HEADER_BYTES = 32;
+
+    /**
+     * The size of each record in bytes
+     */
+    public static final int RECORD_BYTES = 12;
+
+    /**
+     * Set in the flags of the last move of a game
+     */
+    public static final int FLAG_DONE = 1;
+
+    /**
+     * The default most bytes in each file
+     */
+    public static final long DEFAULT_FILE_BYTES = 256L << 20;
+
+    private static final int MAGIC = 'T' | 'D' << 8 | 'S' << 16 | 'F' << 24;
+    private static final int VERSION = 1;
+
+    private final String prefix;
+    private final int recordsPerFile;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int files = 0;
+    private long firstSample = 0;
+    private int recordsInFile = 0;
+    private boolean closed = false;
+
+    /**
+     * Create a writer rolling over at the default file size
+     * @param prefix the path of the files without their number and extension
+     */
+    public DatasetWriter(String prefix) {
+        this(prefix, DEFAULT_FILE_BYTES);
+    }
+
+    /**
+     * Create a writer
+     * @param prefix the path of the files without their number and extension
+     * @param maxFileBytes the most bytes in each file, which must fit the header and at least one record
+     */
+    public DatasetWriter(String prefix, long maxFileBytes) {
+        long records = (Math.min(maxFileBytes, Integer.MAX_VALUE) - HEADER_BYTES) / RECORD_BYTES;
+        if(records < 1) {
+            throw new IllegalArgumentException("Files of " + maxFileBytes + " bytes cannot hold a record");
+        }
+        this.prefix = prefix;
+        this.recordsPerFile = (int) records;
+    }
+
+    /**
+     * Get the path of a file written by this writer
+     * @param file the number of the file, counting from 0
+     * @return the path
+     */
+    public Path path(int file) {
+        return Path.of(String.format("%s-%05d.tds", prefix, file));
+    }
+
+    /**
+     * Add a sample
+     * @param board the board before the move, packed as in DeadBoardTable
+     * @param current the piece number of the current piece
+     * @param following the piece number of the following piece
+     * @param action the move, numbered as a BatchEnvironment action
+     * @param reward the points the move scored
+     * @param done whether this was the last move of the game
+     * @throws IOException if a new file could not be made
+     */
+    public void add(int board, int current, int following, int action, int reward, boolean done) throws IOException {
+        if(buffer == null || recordsInFile == recordsPerFile) {
+            nextFile();
+        }
+        int offset = HEADER_BYTES + recordsInFile * RECORD_BYTES;
+        buffer.putInt(offset, board);
+        buffer.put(offset + 4, (byte) current);
+        buffer.put(offset + 5, (byte) following);
+        buffer.put(offset + 6, (byte) action);
+        buffer.put(offset + 7, (byte) (done ? FLAG_DONE : 0));
+        buffer.putInt(offset + 8, reward);
+        recordsInFile++;
+    }
+
+    /**
+     * Add every placement of a recorded 5x5 game. Each move is written as played, after any swap, with the points
+     * scored up to the next placement.
+     * @param log the replay log of the game
+     * @throws IOException if a new file could not be made
+     * @throws IllegalArgumentException if the game was not on a 5x5 board, or was played with a piece pack other than
+     *                                  the standard one
+     * @throws IllegalStateException if the log does not describe a game that could have been played
+     */
+    public void addReplay(ReplayLog log) throws IOException {
+        if(log.getCols() != DeadBoardTable.SIZE || log.getRows() != DeadBoardTable.SIZE) {
+            throw new IllegalArgumentException("Only 5x5 games can be written, not " + log.getCols() + "x"
+                + log.getRows());
+        }
+        if(!log.getPack().equals(PieceCatalogue.STANDARD)) {
+            //Records number pieces by the standard pack, so another pack's numbers would mean the wrong shapes
+            throw new IllegalArgumentException("Only games with the standard pieces can be written, not the "
+                + log.getPack() + " pieces");
+        }
+        ReplayRecorder recorder = new ReplayRecorder();
+        GameEngine engine = Replayer.replay(log, recorder);
+        recorder.finish(engine);
+    }
+
+    /**
+     * Adds each placement of a replayed game. A move's reward is only known once it has been played, so each one is
+     * held back until the next placement, or the end of the game.
+     */
+    private class ReplayRecorder implements PlacementListener {
+
+        private boolean pending = false;
+        private int board;
+        private int current;
+        private int following;
+        private int action;
+        private int scoreBefore;
+
+        /**
+         * The first file which could not be made, thrown once the replay is over
+         */
+        private IOException failure;
+
+        @Override
+        public void beforePlacement(GameEngine engine, int x, int y) {
+            if(failure != null) {
+                return;
+            }
+            try {
+                addPending(engine, false);
+            } catch(IOException e) {
+                failure = e;
+                return;
+            }
+            GamePiece piece = engine.getCurrentPiece();
+            board = DeadBoardTable.pack(engine.getGrid());
+            current = piece.getType();
+            following = engine.getFollowingPiece().getType();
+            action = BatchEnvironment.action(false, piece.getRotation(), x, y);
+            scoreBefore = engine.getScore();
+            pending = true;
+        }
+
+        /**
+         * Add the last move, once the replay is over
+         * @param engine the engine in the state the game was left in
+         * @throws IOException if a new file could not be made for any of the moves
+         */
+        void finish(GameEngine engine) throws IOException {
+            if(failure != null) {
+                throw failure;
+            }
+            addPending(engine, true);
+        }
+
+        /**
+         * Add the move held back, if any, with the points scored since it was played
+         */
+        private void addPending(GameEngine engine, boolean done) throws IOException {
+            if(pending) {
+                pending = false;
+                add(board, current, following, action, engine.getScore() - scoreBefore, done);
+            }
+        }
+
+    }
+
+    /**
+     * Finish the file being written, if any, and start the next
+     */
+    private void nextFile() throws IOException {
+        if(closed) {
+            throw new IOException("Dataset writer is closed");
+        }
+        finishFile();
+        Path path = path(files);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+            HEADER_BYTES + (long) recordsPerFile * RECORD_BYTES);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        writeHeader(buffer, firstSample, 0);
+        files++;
+        logger.debug("Writing samples from {} to {}", firstSample, path);
+    }
+
+    /**
+     * Write the count into the header of the file being written and trim off the space no record was written to
+     */
+    private void finishFile() throws IOException {
+        if(channel == null) {
+            return;
+        }
+        writeHeader(buffer, firstSample, recordsInFile);
+        firstSample += recordsInFile;
+        long used = HEADER_BYTES + (long) recordsInFile * RECORD_BYTES;
+        buffer = null;
+        try {
+            channel.truncate(used);
+        } catch(IOException e) {
+            //Some systems cannot shrink a mapped file, and the count in the header is enough to find the end anyway
+            logger.debug("Could not trim the dataset file: {}", e.getMessage());
+        }
+        channel.close();
+        channel = null;
+        recordsInFile = 0;
+    }
+
+    private static void writeHeader(ByteBuffer buffer, long firstSample, int samples) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, HEADER_BYTES);
+        buffer.putInt(12, RECORD_BYTES);
+        buffer.putLong(16, firstSample);
+        buffer.putLong(24, samples);
+    }
+
+    /**
+     * Get the number of samples added so far
+     * @return samples
+     */
+    public long getSamples() {
+        return firstSample + recordsInFile;
+    }
+
+    /**
+     * Get the number of files started so far
+     * @return files
+     */
+    public int getFiles() {
+        return files;
+    }
+
+    /**
+     * Finish the last file. No more samples can be added.
+     * @throws IOException if the file could not be finished
+     */
+    @Override
+    public void close() throws IOException {
+        if(!closed) {
+            finishFile();
+            closed = true;
+        }
+    }
+
+    /**
+     * Write self-play samples from a BatchEnvironment, then any replay files given, and report how fast they went
+     * @param args optionally, the prefix of the files, the number of self-play samples and replay files to add
+     * @throws IOException if the files could not be written or the replays read
+     */
+    public static void main(String[] args) throws IOException {
+        String prefix = args.length > 0 ? args[0] : "dataset";
+        long samples = args.length > 1 ? Long.parseLong(args[1]) : 50_000_000L;
+        int size = 4096;
+
+        BatchEnvironment environment = new BatchEnvironment(size, 1);
+        SplittableRandom random = new SplittableRandom(2);
+        int[] boards = new int[size];
+        int[] current = new int[size];
+        int[] following = new int[size];
+        int[] actions = new int[size];
+        int[] rewards = new int[size];
+        boolean[] dones = new boolean[size];
+
+        long writing = 0;
+        long start = System.nanoTime();
+        try(DatasetWriter writer = new DatasetWriter(prefix)) {
+            while(writer.getSamples() < samples) {
+                for(int i = 0; i < size; i++) {
+                    boards[i] = environment.getBoard(i);
+                    current[i] = environment.getCurrentPiece(i);
+                    following[i] = environment.getFollowingPiece(i);
+                    //Random actions until one fits
+                    int action = random.nextInt(BatchEnvironment.ACTIONS);
+                    for(int tries = 1; tries < 16 && !environment.isLegal(i, action); tries++) {
+                        action = random.nextInt(BatchEnvironment.ACTIONS);
+                    }
+                    actions[i] = action;
+                }
+                environment.step(actions, rewards, dones);
+
+                long writeStart = System.nanoTime();
+                for(int i = 0; i < size; i++) {
+                    writer.add(boards[i], current[i], following[i], actions[i], rewards[i], dones[i]);
+                }
+                writing += System.nanoTime() - writeStart;
+            }
+
+            for(int i = 2; i < args.length; i++) {
+                try(var in = Files.newInputStream(Path.of(args[i]))) {
+                    writer.addReplay(ReplayLog.readFrom(in));
+                }
+            }
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Wrote %,d samples to %d files in %.1f s: %,.0f samples/s overall, %,.0f samples/s "
+                    + "spent writing%n", writer.getSamples(), writer.getFiles(), seconds,
+                writer.getSamples() / seconds, writer.getSamples() / (writing / 1e9));
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+package uk.ac.soton.comp1206.sim;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import uk.ac.soton.comp1206.game.DeadBoardTable;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.PackedBoard;
+
+/**
+ * Builds the DeadBoardTable file by working out, for every possible 5x5 board, which pieces can still be played.
+ *
+ * The boards are swept in parallel across every core. Symmetry saves most of the work: each group of up to eight
+ * boards related by a BoardSymmetry is worked out once, from the smallest board of the group, and the answer is
+ * written to all of them, with each piece swapped for its image.
+ *
+ * Run with: java -cp target/classes uk.ac.soton.comp1206.sim.DeadBoardGenerator [file]
+ */
+public class DeadBoardGenerator {
+
+    /**
+     * How many boards each task sweeps before it is worth splitting further
+     */
+    private static final int BOARDS_PER_TASK = 1 << 16;
+
+    /**
+     * Every distinct place each piece can go on an empty board, as packed boards, indexed by piece
+     */
+    private final int[][] placements = new int[GamePiece.PIECES][];
+
+    private final BoardSymmetry symmetry = new BoardSymmetry();
+
+    /**
+     * Set up the placements and symmetries
+     */
+    public DeadBoardGenerator() {
+        for(int piece = 0; piece < GamePiece.PIECES; piece++) {
+            placements[piece] = PackedBoard.placements(piece);
+        }
+    }
+
+    /**
+     * Get the number of symmetries used
+     * @return 8 with mirroring, otherwise 4
+     */
+    public int getSymmetries() {
+        return symmetry.count();
+    }
+
+    /**
+     * Work out which pieces can be played on a board, directly
+     * @param board the packed board
+     * @return a mask with bit p set when piece p has at least one legal placement
+     */
+    public int playable(int board) {
+        int playable = 0;
+        for(int piece = 0; piece < GamePiece.PIECES; piece++) {
+            for(int placed : placements[piece]) {
+                if((board & placed) == 0) {
+                    playable |= 1 << piece;
+                    break;
+                }
+            }
+        }
+        return playable;
+    }
+
+    /**
+     * Write the whole table to a file
+     * @param path the file to write
+     * @param pool the pool to sweep the boards on
+     * @throws IOException if the file cannot be written
+     */
+    public void generate(Path path, ForkJoinPool pool) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, DeadBoardTable.FILE_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            pool.invoke(new SweepTask(buffer.slice(DeadBoardTable.HEADER_BYTES, DeadBoardTable.STATES * Short.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN), 0, DeadBoardTable.STATES));
+
+            //The header goes in last, so a half written file is never mistaken for a table
+            DeadBoardTable.writeHeader(buffer);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Sweeps a range of boards, splitting the range in half until it is small enough
+     */
+    @SuppressWarnings("serial")
+    private class SweepTask extends RecursiveAction {
+        private final ByteBuffer table;
+        private final int from;
+        private final int to;
+
+        SweepTask(ByteBuffer table, int from, int to) {
+            this.table = table;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > BOARDS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SweepTask(table, from, middle), new SweepTask(table, middle, to));
+                return;
+            }
+            int[] images = new int[symmetry.count()];
+            for(int board = from; board < to; board++) {
+                if(!isSmallestImage(board, images)) {
+                    continue;
+                }
+                //Symmetric boards may be written more than once, but always with the same answer
+                int playable = playable(board);
+                for(int image = 0; image < images.length; image++) {
+                    table.putShort(images[image] * Short.BYTES, (short) symmetry.mapPieces(playable, image));
+                }
+            }
+        }
+    }
+
+    /**
+     * Work out every image of a board under the symmetries and check whether the board is the smallest of them
+     * @param images filled in with the image under each symmetry
+     */
+    private boolean isSmallestImage(int board, int[] images) {
+        for(int i = 0; i < images.length; i++) {
+            int image = symmetry.transform(board, i);
+            if(image < board) {
+                return false;
+            }
+            images[i] = image;
+        }
+        return true;
+    }
+
+    /**
+     * Generate the table, then check a sample of it against working each board out directly
+     * @param args optionally, the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Path path = Path.of(args.length > 0 ? args[0] : DeadBoardTable.DEFAULT_FILE);
+        DeadBoardGenerator generator = new DeadBoardGenerator();
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        System.out.printf("Sweeping %d boards with %d symmetries on %d threads%n", DeadBoardTable.STATES,
+            generator.getSymmetries(), pool.getParallelism());
+
+        long start = System.nanoTime();
+        generator.generate(path, pool);
+        System.out.printf("Wrote %s in %.1f s%n", path, (System.nanoTime() - start) / 1e9);
+
+        DeadBoardTable table = DeadBoardTable.load(path);
+        SplittableRandom random = new SplittableRandom(1);
+        int mismatches = 0;
+        int samples = 1_000_000;
+        for(int i = 0; i < samples; i++) {
+            int board = random.nextInt(DeadBoardTable.STATES);
+            if(table.playable(board) != generator.playable(board)) {
+                mismatches++;
+            }
+        }
+        System.out.printf("Checked %d random boards, %d mismatches%n", samples, mismatches);
+    }
+
+}
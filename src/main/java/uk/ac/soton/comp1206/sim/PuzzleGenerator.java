@@ -0,0 +1,314 @@
+package uk.ac.soton.comp1206.sim;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.PackedBoard;
+import uk.ac.soton.comp1206.game.Puzzle;
+import uk.ac.soton.comp1206.game.PuzzleSolver;
+
+/**
+ * Generates puzzles with a guaranteed solution, in parallel across every core.
+ *
+ * Each candidate is built backwards from a solution: a few random rows and columns are chosen to be cleared, the
+ * pieces are dropped at random places inside them without overlapping, and whatever of those lines the pieces do not
+ * cover is filled in as the starting board. The PuzzleSolver then checks the candidate, as clearing some lines early
+ * can spoil the intended solution and other solutions may exist. Candidates related by a BoardSymmetry, with their
+ * pieces swapped for their images, are the same puzzle, so only the first of each is kept.
+ *
+ * Generated puzzles are cached in the puzzles folder, one file per number of pieces, so they only ever have to be
+ * generated once.
+ *
+ * Run with: java -cp target/classes uk.ac.soton.comp1206.sim.PuzzleGenerator [pieces] [count]
+ */
+public class PuzzleGenerator {
+
+    private static final Logger logger = LogManager.getLogger(PuzzleGenerator.class);
+
+    /**
+     * The folder generated puzzles are cached in
+     */
+    public static final String PUZZLE_FOLDER = "puzzles";
+
+    /**
+     * The number of candidates made in each round, between which the generator checks whether it has enough
+     */
+    private static final int CANDIDATES_PER_ROUND = 1 << 12;
+
+    /**
+     * The fewest new puzzles a round must find for the generator to keep going. Some difficulties have only a few
+     * hundred distinct puzzles, which are all found early on, with the rest trickling in ever more slowly.
+     */
+    private static final int NEW_PER_ROUND = 4;
+
+    /**
+     * The number of rounds in a row finding too few new puzzles before the generator gives up on finding enough
+     */
+    private static final int ROUNDS_WITHOUT_PROGRESS = 16;
+
+    /**
+     * How many candidates each task makes before it is worth splitting further
+     */
+    private static final int CANDIDATES_PER_TASK = 64;
+
+    /**
+     * The most tries at finding room for a piece inside the chosen lines
+     */
+    private static final int PLACEMENT_TRIES = 8;
+
+    private static final int SIZE = PackedBoard.SIZE;
+
+    private final BoardSymmetry symmetry = new BoardSymmetry();
+    private final int[][] placements = new int[GamePiece.PIECES][];
+    private final ForkJoinPool pool;
+
+    /**
+     * Create a generator on the common pool
+     */
+    public PuzzleGenerator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a generator
+     * @param pool the pool to make and check candidates on
+     */
+    public PuzzleGenerator(ForkJoinPool pool) {
+        this.pool = pool;
+        for(int piece = 0; piece < GamePiece.PIECES; piece++) {
+            placements[piece] = PackedBoard.placements(piece);
+        }
+    }
+
+    /**
+     * Generate distinct puzzles
+     * @param count the number of puzzles
+     * @param pieces the number of pieces in each puzzle, which sets how hard it is
+     * @param unique whether to keep only puzzles with exactly one solution, rather than at least one
+     * @param seed the seed. The same seed always gives the same puzzles.
+     * @return the puzzles, fewer than asked for if there are not that many to find
+     */
+    public List<Puzzle> generate(int count, int pieces, boolean unique, long seed) {
+        if(pieces < 1 || pieces > 8) {
+            throw new IllegalArgumentException("Puzzles can have from 1 to 8 pieces, not " + pieces);
+        }
+        Map<Long, Puzzle> distinct = new LinkedHashMap<>();
+        long candidates = 0;
+        int stalled = 0;
+        for(int round = 0; distinct.size() < count && stalled < ROUNDS_WITHOUT_PROGRESS; round++) {
+            Puzzle[] found = new Puzzle[CANDIDATES_PER_ROUND];
+            long first = (long) round * CANDIDATES_PER_ROUND;
+            pool.invoke(new CandidateTask(found, 0, found.length, first, pieces, unique, seed));
+            candidates += found.length;
+            int before = distinct.size();
+            //Merged in candidate order, so the result does not depend on how the work was shared out
+            for(Puzzle puzzle : found) {
+                if(puzzle != null && distinct.size() < count) {
+                    distinct.putIfAbsent(canonicalKey(puzzle), puzzle);
+                }
+            }
+            stalled = distinct.size() - before < NEW_PER_ROUND ? stalled + 1 : 0;
+        }
+        if(distinct.size() < count) {
+            logger.warn("Only found {} of {} puzzles of {} pieces", distinct.size(), count, pieces);
+        }
+        logger.info("Generated {} puzzles of {} pieces from {} candidates", distinct.size(), pieces, candidates);
+        return new ArrayList<>(distinct.values());
+    }
+
+    /**
+     * Makes and checks a range of candidates, splitting the range in half until it is small enough
+     */
+    @SuppressWarnings("serial")
+    private class CandidateTask extends RecursiveAction {
+        private final Puzzle[] found;
+        private final int from;
+        private final int to;
+        private final long first;
+        private final int pieces;
+        private final boolean unique;
+        private final long seed;
+
+        CandidateTask(Puzzle[] found, int from, int to, long first, int pieces, boolean unique, long seed) {
+            this.found = found;
+            this.from = from;
+            this.to = to;
+            this.first = first;
+            this.pieces = pieces;
+            this.unique = unique;
+            this.seed = seed;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > CANDIDATES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new CandidateTask(found, from, middle, first, pieces, unique, seed),
+                    new CandidateTask(found, middle, to, first, pieces, unique, seed));
+                return;
+            }
+            for(int i = from; i < to; i++) {
+                //Each candidate has its own generator, so it is the same whichever thread makes it
+                SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + first + i);
+                Puzzle candidate = candidate(random, pieces);
+                if(candidate != null && PuzzleSolver.countSolutions(candidate, unique ? 2 : 1) == 1) {
+                    found[i] = candidate;
+                }
+            }
+        }
+    }
+
+    /**
+     * Build a candidate puzzle from a random solution
+     * @return the candidate, or null if the pieces did not fit
+     */
+    private Puzzle candidate(SplittableRandom random, int pieces) {
+        //Enough lines to hold the pieces, and sometimes one more to leave more of the board filled
+        int lines = Math.min(2 * SIZE, 1 + random.nextInt(Math.min(4, pieces + 1)));
+        int target = 0;
+        for(int line = 0; line < lines; line++) {
+            int index = random.nextInt(SIZE);
+            target |= random.nextBoolean() ? rowMask(index) : colMask(index);
+        }
+
+        int[] sequence = new int[pieces];
+        int covered = 0;
+        for(int i = 0; i < pieces; i++) {
+            int placed = 0;
+            for(int tries = 0; tries < PLACEMENT_TRIES && placed == 0; tries++) {
+                int piece = random.nextInt(GamePiece.PIECES);
+                placed = randomFit(placements[piece], target & ~covered, random);
+                sequence[i] = piece;
+            }
+            if(placed == 0) {
+                return null;
+            }
+            covered |= placed;
+        }
+
+        int board = target & ~covered;
+        //The board must start with something on it and no line already full
+        if(board == 0 || PackedBoard.fullLines(board) != 0) {
+            return null;
+        }
+        return new Puzzle(board, sequence);
+    }
+
+    /**
+     * Pick a random placement that lies inside the space given
+     * @return the placement, or 0 if none fits
+     */
+    private static int randomFit(int[] placements, int space, SplittableRandom random) {
+        int start = random.nextInt(placements.length);
+        for(int i = 0; i < placements.length; i++) {
+            int placed = placements[(start + i) % placements.length];
+            if((placed & ~space) == 0) {
+                return placed;
+            }
+        }
+        return 0;
+    }
+
+    private static int rowMask(int y) {
+        return ((1 << SIZE) - 1) << (y * SIZE);
+    }
+
+    private static int colMask(int x) {
+        int mask = 0;
+        for(int y = 0; y < SIZE; y++) {
+            mask |= 1 << (y * SIZE + x);
+        }
+        return mask;
+    }
+
+    /**
+     * A key shared by every puzzle related to this one by a symmetry: the smallest, over the symmetries, of the image
+     * of the board with the images of the pieces above it, four bits each
+     */
+    private long canonicalKey(Puzzle puzzle) {
+        long smallest = Long.MAX_VALUE;
+        for(int s = 0; s < symmetry.count(); s++) {
+            long key = symmetry.transform(puzzle.getBoard(), s);
+            for(int i = 0; i < puzzle.getPieceCount(); i++) {
+                key |= (long) symmetry.mapPiece(puzzle.getPiece(i), s) << (PackedBoard.CELLS + 4 * i);
+            }
+            smallest = Math.min(smallest, key);
+        }
+        return smallest;
+    }
+
+    /**
+     * Get the file the puzzles of a number of pieces are cached in
+     * @param pieces the number of pieces
+     * @return the path
+     */
+    public static Path cacheFile(int pieces) {
+        return Path.of(PUZZLE_FOLDER, "puzzles-" + pieces + ".tpz");
+    }
+
+    /**
+     * Load cached puzzles, generating them and saving them to the cache first if there are not enough
+     * @param count the number of puzzles
+     * @param pieces the number of pieces in each puzzle
+     * @return the puzzles
+     */
+    public static List<Puzzle> cached(int count, int pieces) {
+        Path path = cacheFile(pieces);
+        if(Files.exists(path)) {
+            try(InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+                List<Puzzle> puzzles = Puzzle.readAll(in);
+                if(puzzles.size() >= count) {
+                    return puzzles.subList(0, count);
+                }
+            } catch(IOException e) {
+                logger.error("Could not load the puzzle cache {}: {}", path, e.getMessage());
+            }
+        }
+
+        List<Puzzle> puzzles = new PuzzleGenerator().generate(count, pieces, true, pieces);
+        try {
+            Files.createDirectories(path.getParent());
+            try(OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+                Puzzle.writeAll(puzzles, out);
+            }
+            logger.info("Cached {} puzzles in {}", puzzles.size(), path);
+        } catch(IOException e) {
+            logger.error("Could not save the puzzle cache {}: {}", path, e.getMessage());
+        }
+        return puzzles;
+    }
+
+    /**
+     * Generate puzzles of every difficulty up to the number of pieces given and report how long they took
+     * @param args optionally, the most pieces and the number of puzzles of each difficulty
+     */
+    public static void main(String[] args) {
+        int maxPieces = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        PuzzleGenerator generator = new PuzzleGenerator();
+        System.out.printf("Generating on %d threads%n", generator.pool.getParallelism());
+        for(int pieces = 1; pieces <= maxPieces; pieces++) {
+            for(boolean unique : new boolean[] {false, true}) {
+                long start = System.nanoTime();
+                List<Puzzle> puzzles = generator.generate(count, pieces, unique, pieces);
+                System.out.printf("%d pieces, %-16s %,d puzzles in %.2f s%n", pieces,
+                    unique ? "one solution:" : "any solutions:", puzzles.size(), (System.nanoTime() - start) / 1e9);
+            }
+        }
+    }
+
+}
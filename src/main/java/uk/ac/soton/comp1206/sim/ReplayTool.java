@@ -0,0 +1,43 @@
+package uk.ac.soton.comp1206.sim;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.ReplayLog;
+import uk.ac.soton.comp1206.game.Replayer;
+
+/**
+ * Replays saved games headless and prints how each one ended, for checking score claims and reproducing bug reports.
+ *
+ * Run with: java -cp target/classes uk.ac.soton.comp1206.sim.ReplayTool replays/replay-1234.trpl [...]
+ */
+public class ReplayTool {
+
+    /**
+     * Replay each file given
+     * @param args the replay files
+     */
+    public static void main(String[] args) {
+        if(args.length == 0) {
+            System.err.println("Usage: ReplayTool <replay file>...");
+            System.exit(1);
+        }
+
+        System.out.printf("%-40s %10s %6s %6s %8s %10s%n", "replay", "score", "level", "lives", "bytes", "us");
+        for(String path : args) {
+            try(InputStream in = new BufferedInputStream(new FileInputStream(path))) {
+                ReplayLog log = ReplayLog.readFrom(in);
+                long start = System.nanoTime();
+                GameEngine engine = Replayer.replay(log);
+                long elapsed = System.nanoTime() - start;
+                System.out.printf("%-40s %10d %6d %6d %8d %10.1f%n", path, engine.getScore(), engine.getLevel(),
+                    engine.getLives(), log.size(), elapsed / 1000.0);
+            } catch(IOException | IllegalStateException e) {
+                System.out.printf("%-40s failed: %s%n", path, e.getMessage());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,269 @@
+package uk.ac.soton.comp1206.sim;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.LongFunction;
+import uk.ac.soton.comp1206.ai.Evaluator;
+import uk.ac.soton.comp1206.ai.ExpectimaxSearch;
+import uk.ac.soton.comp1206.ai.Move;
+import uk.ac.soton.comp1206.ai.Position;
+import uk.ac.soton.comp1206.ai.RandomStrategy;
+import uk.ac.soton.comp1206.ai.SearchStrategy;
+import uk.ac.soton.comp1206.ai.Strategy;
+import uk.ac.soton.comp1206.ai.TranspositionTable;
+import uk.ac.soton.comp1206.game.GameEngine;
+
+/**
+ * Plays large numbers of headless games at once and reports how they went, so changes to the scoring, the levels or
+ * the pieces can be measured without a person playing.
+ *
+ * Every game gets its own seed, its own GameEngine and its own Strategy. The games are shared out across the cores
+ * on a work-stealing ForkJoinPool.
+ *
+ * The greedy and search strategies made by strategy all use the one ExpectimaxSearch they are given, and main gives
+ * it one TranspositionTable for every game, so boards seen in one game speed up the others. An entry is keyed by the
+ * Zobrist hash of the board, the multiplier and the depth searched, and holds exactly the value searching that board
+ * again would give, so which game stored it, or whether it has been evicted, changes how fast a game runs but not the
+ * moves chosen. A tournament with the same seed therefore plays out the same, unless two different boards share a
+ * 64 bit hash, when the value a game reads can depend on which game's thread stored it first. For a run that cannot
+ * depend on the others at all, give each game a search with a table of its own, or none.
+ *
+ * A strategy plays instantly, so the timer never runs out while it thinks. When neither piece can be played the
+ * timer is treated as having expired, costing a life, as it would for a person who could not move.
+ *
+ * Run with: java -cp target/classes uk.ac.soton.comp1206.sim.Tournament [games] [random|greedy|search ...]
+ */
+public class Tournament {
+
+    /**
+     * The most pieces a game may last, so a strategy that never loses still finishes
+     */
+    public static final int DEFAULT_MAX_PIECES = 2_000;
+
+    /**
+     * How many games each task plays before it is worth splitting further
+     */
+    private static final int GAMES_PER_TASK = 8;
+
+    /**
+     * The number of entries in the transposition table shared by the search strategy
+     */
+    private static final int SEARCH_TABLE_SIZE = 1 << 20;
+
+    private final int cols;
+    private final int rows;
+    private final int maxPieces;
+    private final ForkJoinPool pool;
+
+    /**
+     * The outcome of every game, indexed by game
+     */
+    public static final class Results {
+        private final int[] scores;
+        private final int[] levels;
+        private final int[] pieces;
+        private final long elapsedNanos;
+
+        private Results(int[] scores, int[] levels, int[] pieces, long elapsedNanos) {
+            this.scores = scores;
+            this.levels = levels;
+            this.pieces = pieces;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Get the final score of each game
+         * @return scores
+         */
+        public int[] getScores() {
+            return scores;
+        }
+
+        /**
+         * Get the final level of each game
+         * @return levels
+         */
+        public int[] getLevels() {
+            return levels;
+        }
+
+        /**
+         * Get the number of pieces played in each game
+         * @return pieces played
+         */
+        public int[] getPieces() {
+            return pieces;
+        }
+
+        /**
+         * Get the number of games played per second of wall clock time
+         * @return games per second
+         */
+        public double getGamesPerSecond() {
+            return scores.length / (elapsedNanos / 1e9);
+        }
+    }
+
+    /**
+     * Create a tournament on the common pool
+     * @param cols number of columns of every board
+     * @param rows number of rows of every board
+     * @param maxPieces the most pieces a game may last
+     */
+    public Tournament(int cols, int rows, int maxPieces) {
+        this(cols, rows, maxPieces, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a tournament
+     * @param cols number of columns of every board
+     * @param rows number of rows of every board
+     * @param maxPieces the most pieces a game may last
+     * @param pool the pool to play the games on
+     */
+    public Tournament(int cols, int rows, int maxPieces, ForkJoinPool pool) {
+        this.cols = cols;
+        this.rows = rows;
+        this.maxPieces = maxPieces;
+        this.pool = pool;
+    }
+
+    /**
+     * Play a tournament
+     * @param seed the seed of the tournament. Game i uses seed + i for its pieces.
+     * @param games the number of games to play
+     * @param strategies makes the strategy for each game from a seed of its own
+     * @return the outcome of every game
+     */
+    public Results run(long seed, int games, LongFunction<Strategy> strategies) {
+        int[] scores = new int[games];
+        int[] levels = new int[games];
+        int[] pieces = new int[games];
+        long start = System.nanoTime();
+        pool.invoke(new GamesTask(seed, strategies, scores, levels, pieces, 0, games));
+        return new Results(scores, levels, pieces, System.nanoTime() - start);
+    }
+
+    /**
+     * Plays a range of games, splitting the range in half until each task holds only a few games
+     */
+    @SuppressWarnings("serial")
+    private class GamesTask extends RecursiveAction {
+        private final long seed;
+        private final LongFunction<Strategy> strategies;
+        private final int[] scores;
+        private final int[] levels;
+        private final int[] pieces;
+        private final int from;
+        private final int to;
+
+        GamesTask(long seed, LongFunction<Strategy> strategies, int[] scores, int[] levels, int[] pieces,
+                  int from, int to) {
+            this.seed = seed;
+            this.strategies = strategies;
+            this.scores = scores;
+            this.levels = levels;
+            this.pieces = pieces;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > GAMES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new GamesTask(seed, strategies, scores, levels, pieces, from, middle),
+                    new GamesTask(seed, strategies, scores, levels, pieces, middle, to));
+                return;
+            }
+            for(int game = from; game < to; game++) {
+                play(game);
+            }
+        }
+
+        /**
+         * Play one game to the end and record how it went
+         */
+        private void play(int game) {
+            GameEngine engine = new GameEngine(cols, rows, seed + game);
+            //The strategy gets a seed of its own, so its choices are not tied to the pieces
+            Strategy strategy = strategies.apply(~(seed + game));
+            engine.start();
+            int played = 0;
+            while(!engine.isGameOver() && played < maxPieces) {
+                Move move = strategy.choose(Position.of(engine));
+                if(move != null && move.playOn(engine)) {
+                    played++;
+                } else {
+                    engine.timerExpired();
+                }
+            }
+            scores[game] = engine.getScore();
+            levels[game] = engine.getLevel();
+            pieces[game] = played;
+        }
+    }
+
+    /**
+     * Make the strategy with the given name
+     * @param name random, greedy or search
+     * @param search the search used by the greedy and search strategies
+     * @return makes the strategy for a game from its seed
+     */
+    public static LongFunction<Strategy> strategy(String name, ExpectimaxSearch search) {
+        switch(name) {
+            case "random":
+                return RandomStrategy::new;
+            case "greedy":
+                return seed -> new SearchStrategy(search, 1);
+            case "search":
+                return seed -> new SearchStrategy(search, 2);
+            default:
+                throw new IllegalArgumentException("Unknown strategy: " + name);
+        }
+    }
+
+    /**
+     * Run a tournament for each strategy named and print the distributions
+     * @param args optionally, the number of games, followed by the strategies to play
+     */
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        String[] names = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length)
+            : new String[] {"random", "greedy", "search"};
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        Tournament tournament = new Tournament(5, 5, DEFAULT_MAX_PIECES, pool);
+        System.out.printf("%d games of each strategy on %d threads%n", games, pool.getParallelism());
+        System.out.printf("%-8s %-8s %10s %8s %8s %8s %8s %10s%n",
+            "strategy", "stat", "mean", "p10", "p50", "p90", "max", "games/s");
+        //Every game shares one table, so boards seen in one game help the others
+        TranspositionTable table = new TranspositionTable(SEARCH_TABLE_SIZE);
+        ExpectimaxSearch search = new ExpectimaxSearch(new Evaluator(), pool, table);
+        for(String name : names) {
+            Results results = tournament.run(1, games, strategy(name, search));
+            printDistribution(name, "score", results.getScores(), results.getGamesPerSecond());
+            printDistribution("", "level", results.getLevels(), -1);
+            printDistribution("", "pieces", results.getPieces(), -1);
+            if(table.getHits() + table.getMisses() > 0) {
+                System.out.println("Transposition table: " + table);
+                table.clear();
+            }
+        }
+    }
+
+    private static void printDistribution(String name, String stat, int[] values, double gamesPerSecond) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        double mean = Arrays.stream(sorted).average().orElse(0);
+        System.out.printf("%-8s %-8s %10.1f %8d %8d %8d %8d %10s%n", name, stat, mean,
+            percentile(sorted, 10), percentile(sorted, 50), percentile(sorted, 90), sorted[sorted.length - 1],
+            gamesPerSecond < 0 ? "" : String.format("%.1f", gamesPerSecond));
+    }
+
+    private static int percentile(int[] sorted, int percent) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * percent / 100)];
+    }
+
+}
@@ -0,0 +1,376 @@
+package uk.ac.soton.comp1206.sim;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.ai.Evaluator;
+import uk.ac.soton.comp1206.ai.ExpectimaxSearch;
+import uk.ac.soton.comp1206.ai.SearchStrategy;
+
+/**
+ * Tunes the weights of the Evaluator by evolution, playing every candidate on all cores with a Tournament.
+ *
+ * The weights are evolved with a separable CMA-ES: each generation a population of candidates is drawn around a mean,
+ * the better half pulls the mean towards them, and the spread of each weight and the overall step size adapt to how
+ * far the good candidates lie from the mean. Each weight is searched in units of its default, so a step of 0.1 means
+ * a tenth of the default whether that is 3.0 or 0.002.
+ *
+ * Every candidate of a generation plays the same seeded games, and the mean is played on them too, so differences in
+ * score come from the weights and not from one candidate being dealt better pieces. Each generation has new seeds, so
+ * the weights are not tuned to one set of games.
+ *
+ * The whole state is saved to a checkpoint after every generation, and the random draws of each generation come from
+ * its own seed, so a run that is stopped and resumed carries on exactly as if it had never stopped.
+ *
+ * Run with: java -cp target/classes uk.ac.soton.comp1206.sim.WeightTuner [checkpoint] [generations] [games]
+ * [population] [depth]
+ */
+public class WeightTuner {
+
+    private static final Logger logger = LogManager.getLogger(WeightTuner.class);
+
+    /**
+     * The checkpoint used when none is given
+     */
+    public static final String DEFAULT_CHECKPOINT = "tuning.ckpt";
+
+    /**
+     * The number of games each candidate plays per generation by default
+     */
+    public static final int DEFAULT_GAMES = 256;
+
+    /**
+     * The search depth the candidates play at by default. Greedy play is quick, and weights that help it help
+     * deeper searches too.
+     */
+    public static final int DEFAULT_DEPTH = 1;
+
+    /**
+     * The most pieces each tuning game may last, so good candidates do not take forever
+     */
+    public static final int MAX_PIECES = 500;
+
+    /**
+     * The step size to start with, in units of the default weights
+     */
+    private static final double INITIAL_SIGMA = 0.3;
+
+    private static final byte[] MAGIC = {'T', 'T', 'U', 'N'};
+    private static final int VERSION = 1;
+
+    private static final int N = Evaluator.FEATURES;
+
+    //Settings, fixed for a run
+    private final long seed;
+    private final int population;
+    private final int games;
+    private final int depth;
+
+    //Strategy parameters worked out from the settings
+    private final int parents;
+    private final double[] recombination;
+    private final double effectiveParents;
+    private final double cSigma;
+    private final double dSigma;
+    private final double cc;
+    private final double c1;
+    private final double cMu;
+    private final double expectedNorm;
+
+    //The state of the search, which is what the checkpoint holds
+    private int generation;
+    private final double[] mean = new double[N];
+    private double sigma = INITIAL_SIGMA;
+    private final double[] variances = new double[N];
+    private final double[] sigmaPath = new double[N];
+    private final double[] covariancePath = new double[N];
+    private final double[] best = new double[N];
+    private double bestScore = Double.NEGATIVE_INFINITY;
+
+    private final double[] scale = Evaluator.defaultWeights();
+
+    /**
+     * Start a new run from the default weights
+     * @param seed the seed of the run, from which every game and every candidate is drawn
+     * @param population the number of candidates in each generation, at least 4
+     * @param games the number of games each candidate plays per generation
+     * @param depth the search depth the candidates play at
+     */
+    public WeightTuner(long seed, int population, int games, int depth) {
+        if(population < 4) {
+            throw new IllegalArgumentException("The population must be at least 4, not " + population);
+        }
+        this.seed = seed;
+        this.population = population;
+        this.games = games;
+        this.depth = depth;
+
+        //Standard CMA-ES settings, with the covariance learning rates raised for a diagonal covariance
+        parents = population / 2;
+        recombination = new double[parents];
+        double sum = 0;
+        for(int i = 0; i < parents; i++) {
+            recombination[i] = Math.log(parents + 0.5) - Math.log(i + 1);
+            sum += recombination[i];
+        }
+        double sumSquares = 0;
+        for(int i = 0; i < parents; i++) {
+            recombination[i] /= sum;
+            sumSquares += recombination[i] * recombination[i];
+        }
+        effectiveParents = 1 / sumSquares;
+        cSigma = (effectiveParents + 2) / (N + effectiveParents + 5);
+        dSigma = 1 + 2 * Math.max(0, Math.sqrt((effectiveParents - 1) / (N + 1)) - 1) + cSigma;
+        cc = (4 + effectiveParents / N) / (N + 4 + 2 * effectiveParents / N);
+        double separable = (N + 2) / 3.0;
+        c1 = Math.min(1, separable * 2 / ((N + 1.3) * (N + 1.3) + effectiveParents));
+        cMu = Math.min(1 - c1, separable * 2 * (effectiveParents - 2 + 1 / effectiveParents)
+            / ((N + 2) * (N + 2) + effectiveParents));
+        expectedNorm = Math.sqrt(N) * (1 - 1.0 / (4 * N) + 1.0 / (21 * N * N));
+
+        for(int i = 0; i < N; i++) {
+            mean[i] = Math.signum(scale[i]);
+            scale[i] = Math.abs(scale[i]);
+            variances[i] = 1;
+        }
+        System.arraycopy(mean, 0, best, 0, N);
+    }
+
+    /**
+     * Run a number of generations
+     * @param generations the number of generations to run
+     * @param checkpoint where to save the state after each generation, or null to not save it
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public void run(int generations, Path checkpoint) throws IOException {
+        Tournament tournament = new Tournament(5, 5, MAX_PIECES);
+        for(int g = 0; g < generations; g++) {
+            step(tournament);
+            if(checkpoint != null) {
+                save(checkpoint);
+            }
+        }
+    }
+
+    /**
+     * Run one generation: draw the candidates, play them and move the mean towards the best of them
+     */
+    private void step(Tournament tournament) {
+        long start = System.nanoTime();
+        SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + generation);
+        //Every candidate plays the same games this generation
+        long gameSeed = random.nextLong();
+
+        double[][] steps = new double[population][N];
+        double[][] candidates = new double[population][N];
+        double[] scores = new double[population];
+        for(int k = 0; k < population; k++) {
+            for(int i = 0; i < N; i++) {
+                steps[k][i] = Math.sqrt(variances[i]) * random.nextGaussian();
+                candidates[k][i] = mean[i] + sigma * steps[k][i];
+            }
+            scores[k] = play(tournament, candidates[k], gameSeed);
+        }
+        double meanScore = play(tournament, mean, gameSeed);
+
+        Integer[] order = IntStream.range(0, population).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, Comparator.comparingDouble(k -> -scores[k]));
+        if(scores[order[0]] > bestScore) {
+            bestScore = scores[order[0]];
+            System.arraycopy(candidates[order[0]], 0, best, 0, N);
+        }
+
+        //Move the mean by the weighted step of the better half
+        double[] meanStep = new double[N];
+        for(int j = 0; j < parents; j++) {
+            double[] chosen = steps[order[j]];
+            for(int i = 0; i < N; i++) {
+                meanStep[i] += recombination[j] * chosen[i];
+            }
+        }
+        double pathNorm = 0;
+        for(int i = 0; i < N; i++) {
+            mean[i] += sigma * meanStep[i];
+            sigmaPath[i] = (1 - cSigma) * sigmaPath[i]
+                + Math.sqrt(cSigma * (2 - cSigma) * effectiveParents) * meanStep[i] / Math.sqrt(variances[i]);
+            pathNorm += sigmaPath[i] * sigmaPath[i];
+        }
+        pathNorm = Math.sqrt(pathNorm);
+
+        //Stall the covariance path while the step size is growing fast, as the standard algorithm does
+        double stall = 1 - Math.pow(1 - cSigma, 2 * (generation + 1));
+        boolean steady = pathNorm / Math.sqrt(stall) < (1.4 + 2.0 / (N + 1)) * expectedNorm;
+        for(int i = 0; i < N; i++) {
+            covariancePath[i] = (1 - cc) * covariancePath[i]
+                + (steady ? Math.sqrt(cc * (2 - cc) * effectiveParents) * meanStep[i] : 0);
+            double rankMu = 0;
+            for(int j = 0; j < parents; j++) {
+                double chosen = steps[order[j]][i];
+                rankMu += recombination[j] * chosen * chosen;
+            }
+            variances[i] = (1 - c1 - cMu) * variances[i] + c1 * covariancePath[i] * covariancePath[i] + cMu * rankMu;
+        }
+        sigma *= Math.exp((cSigma / dSigma) * (pathNorm / expectedNorm - 1));
+        generation++;
+
+        logger.info("Generation {}: best {} mean {} sigma {} in {} s", generation,
+            String.format("%.1f", scores[order[0]]), String.format("%.1f", meanScore), String.format("%.4f", sigma),
+            String.format("%.1f", (System.nanoTime() - start) / 1e9));
+        logger.info("Mean weights {}", Arrays.toString(weights(mean)));
+    }
+
+    /**
+     * Play the games of a generation with a candidate
+     * @return the mean score
+     */
+    private double play(Tournament tournament, double[] candidate, long gameSeed) {
+        ExpectimaxSearch search = new ExpectimaxSearch(new Evaluator(weights(candidate)));
+        int[] scores = tournament.run(gameSeed, games, strategySeed -> new SearchStrategy(search, depth)).getScores();
+        return Arrays.stream(scores).average().orElse(0);
+    }
+
+    /**
+     * Convert a point of the search, in units of the defaults, to evaluator weights
+     */
+    private double[] weights(double[] point) {
+        double[] weights = new double[N];
+        for(int i = 0; i < N; i++) {
+            weights[i] = point[i] * scale[i];
+        }
+        return weights;
+    }
+
+    /**
+     * Get the number of generations run so far
+     * @return generations
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Get the weights at the mean of the search, which is the best guess at the best weights
+     * @return weights
+     */
+    public double[] getMeanWeights() {
+        return weights(mean);
+    }
+
+    /**
+     * Get the weights of the best candidate seen. Its score was on one generation's games, so it may have been lucky.
+     * @return weights
+     */
+    public double[] getBestWeights() {
+        return weights(best);
+    }
+
+    /**
+     * Get the mean score of the best candidate seen
+     * @return score
+     */
+    public double getBestScore() {
+        return bestScore;
+    }
+
+    /**
+     * Save the state of the run, replacing the checkpoint only once the new one is complete
+     * @param path the checkpoint
+     * @throws IOException if it cannot be written
+     */
+    public void save(Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try(DataOutputStream data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            data.write(MAGIC);
+            data.writeByte(VERSION);
+            data.writeByte(N);
+            data.writeLong(seed);
+            data.writeInt(population);
+            data.writeInt(games);
+            data.writeInt(depth);
+            data.writeInt(generation);
+            data.writeDouble(sigma);
+            data.writeDouble(bestScore);
+            for(double[] values : new double[][] {mean, variances, sigmaPath, covariancePath, best}) {
+                for(double value : values) {
+                    data.writeDouble(value);
+                }
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Load a run saved by save
+     * @param path the checkpoint
+     * @return the run, ready to carry on
+     * @throws IOException if it cannot be read or is not a checkpoint of the current evaluator
+     */
+    public static WeightTuner load(Path path) throws IOException {
+        try(DataInputStream data = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            byte[] magic = new byte[MAGIC.length];
+            data.readFully(magic);
+            if(!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a tuning checkpoint");
+            }
+            int version = data.readUnsignedByte();
+            if(version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version);
+            }
+            int features = data.readUnsignedByte();
+            if(features != N) {
+                throw new IOException("Checkpoint has " + features + " weights, the evaluator has " + N);
+            }
+            WeightTuner tuner = new WeightTuner(data.readLong(), data.readInt(), data.readInt(), data.readInt());
+            tuner.generation = data.readInt();
+            tuner.sigma = data.readDouble();
+            tuner.bestScore = data.readDouble();
+            for(double[] values : new double[][] {tuner.mean, tuner.variances, tuner.sigmaPath, tuner.covariancePath,
+                tuner.best}) {
+                for(int i = 0; i < N; i++) {
+                    values[i] = data.readDouble();
+                }
+            }
+            return tuner;
+        }
+    }
+
+    /**
+     * Tune the weights, carrying on from the checkpoint if there is one
+     * @param args optionally, the checkpoint, the number of generations to run, the games per candidate, the
+     * population and the search depth
+     * @throws IOException if the checkpoint cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        Path checkpoint = Path.of(args.length > 0 ? args[0] : DEFAULT_CHECKPOINT);
+        int generations = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int games = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_GAMES;
+        int population = args.length > 3 ? Integer.parseInt(args[3]) : 4 + (int) (3 * Math.log(N));
+        int depth = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_DEPTH;
+
+        WeightTuner tuner;
+        if(Files.exists(checkpoint)) {
+            tuner = load(checkpoint);
+            System.out.printf("Resuming %s at generation %d%n", checkpoint, tuner.getGeneration());
+        } else {
+            tuner = new WeightTuner(System.nanoTime(), population, games, depth);
+            System.out.printf("Starting %s: %d candidates of %d games at depth %d%n", checkpoint, population, games,
+                depth);
+        }
+        tuner.run(generations, checkpoint);
+        System.out.println("Mean weights: " + Arrays.toString(tuner.getMeanWeights()));
+        System.out.printf("Best weights: %s scored %.1f%n", Arrays.toString(tuner.getBestWeights()),
+            tuner.getBestScore());
+    }
+
+}
@@ -1,6 +1,9 @@
 package uk.ac.soton.comp1206.ui;
 
+import java.util.List;
+import java.util.SplittableRandom;
 import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.scene.Scene;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
@@ -10,8 +13,11 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.App;
 import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.Puzzle;
 import uk.ac.soton.comp1206.network.Communicator;
+import uk.ac.soton.comp1206.network.LocalServer;
 import uk.ac.soton.comp1206.scene.*;
+import uk.ac.soton.comp1206.sim.PuzzleGenerator;
 
 /**
  * The GameWindow is the single window for the game where everything takes place. To move between screens in the game,
@@ -34,6 +40,16 @@ public class GameWindow {
 
     final Communicator communicator;
 
+    /**
+     * The puzzles being loaded in the background, or null when none are
+     */
+    private Task<List<Puzzle>> puzzleLoader;
+
+    /**
+     * The menu that last asked for the puzzles, which they are shown from once loaded
+     */
+    private MenuScene puzzleMenu;
+
     /**
      * Create a new GameWindow attached to the given stage with the specified width and height
      * @param stage stage
@@ -86,6 +102,74 @@ public class GameWindow {
      */
     public void startChallenge() { loadScene(new ChallengeScene(this)); }
 
+    /**
+     * Display the single player challenge on a larger board
+     * @param boardSize the number of columns and rows on the board
+     */
+    public void startChallenge(int boardSize) { loadScene(new ChallengeScene(this, boardSize)); }
+
+    /**
+     * Display the puzzles, loading them from the cache, or generating them the first time, off the FX thread.
+     * Only one load runs at a time, so asking again while it runs just waits for the same puzzles. They are only shown
+     * if the menu that last asked is still on screen when they arrive.
+     * @param menu the menu asking, which is told if no puzzles could be loaded
+     */
+    public void startPuzzles(MenuScene menu) {
+        puzzleMenu = menu;
+        if(puzzleLoader != null) {
+            logger.info("Puzzles are already loading");
+            return;
+        }
+
+        Task<List<Puzzle>> loader = new Task<>() {
+            @Override
+            protected List<Puzzle> call() {
+                return PuzzleGenerator.cached(PuzzleScene.DEFAULT_COUNT, PuzzleScene.DEFAULT_PIECES);
+            }
+        };
+        loader.setOnSucceeded(event -> puzzlesLoaded(loader.getValue()));
+        loader.setOnFailed(event -> {
+            logger.error("Could not load the puzzles: {}", loader.getException().toString());
+            puzzlesLoaded(List.of());
+        });
+        puzzleLoader = loader;
+
+        Thread thread = new Thread(loader, "Puzzles");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Show the puzzles once loaded, if the menu that asked for them is still on screen
+     * @param puzzles the puzzles loaded, which is empty if none could be
+     */
+    private void puzzlesLoaded(List<Puzzle> puzzles) {
+        MenuScene menu = puzzleMenu;
+        puzzleLoader = null;
+        puzzleMenu = null;
+
+        if(currentScene != menu) {
+            logger.info("Left the menu while the puzzles loaded, so not showing them");
+            return;
+        }
+        if(puzzles.isEmpty()) {
+            menu.puzzlesUnavailable();
+            return;
+        }
+        loadScene(new PuzzleScene(this, puzzles, 0));
+    }
+
+    /**
+     * Display a practice game, where moves can be undone
+     */
+    public void startPractice() { loadScene(new PracticeScene(this)); }
+
+    /**
+     * Display a sandbox game on a board of any size, drawn through a viewport
+     * @param boardSize the number of columns and rows on the board
+     */
+    public void startSandbox(int boardSize) { loadScene(new SandboxScene(this, boardSize)); }
+
     public void displayInstructions() { loadScene(new InstructionScene(this));}
 
     public void displayScoreScreen(Game game) { loadScene(new ScoreScene(this, game, communicator));}
@@ -94,6 +178,14 @@ public class GameWindow {
 
     public void startGame() { loadScene(new MultiplayerScene(this, communicator));}
 
+    /**
+     * Display a multiplayer game played offline against computer opponents
+     */
+    public void startOfflineGame() {
+        LocalServer server = new LocalServer(new SplittableRandom().nextLong());
+        loadScene(new MultiplayerScene(this, server, MultiplayerScene.DEFAULT_OPPONENTS));
+    }
+
     /**
      * Setup the default settings for the stage itself (the window), such as the title and minimum width and height.
      */